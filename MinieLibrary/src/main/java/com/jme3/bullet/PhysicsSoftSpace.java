@@ -33,8 +33,10 @@ package com.jme3.bullet;
 
 import com.jme3.bullet.collision.PhysicsCollisionObject;
 import com.jme3.bullet.joints.PhysicsJoint;
+import com.jme3.bullet.objects.PhysicsRope;
 import com.jme3.bullet.objects.PhysicsSoftBody;
 import com.jme3.math.Vector3f;
+import com.jme3.util.SafeArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -43,7 +45,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * A PhysicsSpace that supports soft bodies, with its own
+ * A PhysicsSpace that supports soft bodies and ropes, with its own
  * btSoftRigidDynamicsWorld.
  *
  * @author dokthar
@@ -60,6 +62,11 @@ public class PhysicsSoftSpace extends PhysicsSpace {
     // *************************************************************************
     // fields
 
+    /**
+     * ropes added to this space
+     */
+    final private Collection<PhysicsRope> ropes
+            = new SafeArrayList<>(PhysicsRope.class);
     /**
      * map soft-body IDs to added objects
      */
@@ -99,6 +106,16 @@ public class PhysicsSoftSpace extends PhysicsSpace {
     // *************************************************************************
     // new methods exposed
 
+    /**
+     * Count the ropes in this space.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countRopes() {
+        int count = ropes.size();
+        return count;
+    }
+
     /**
      * Count the soft bodies in this space.
      *
@@ -112,6 +129,16 @@ public class PhysicsSoftSpace extends PhysicsSpace {
         return count;
     }
 
+    /**
+     * Enumerate ropes that have been added to this space and not yet removed.
+     *
+     * @return a new unmodifiable collection of pre-existing instances (not
+     * null)
+     */
+    public Collection<PhysicsRope> getRopeList() {
+        return Collections.unmodifiableCollection(ropes);
+    }
+
     /**
      * Enumerate soft bodies that have been added to this space and not yet
      * removed.
@@ -147,6 +174,22 @@ public class PhysicsSoftSpace extends PhysicsSpace {
     // *************************************************************************
     // PhysicsSpace methods
 
+    /**
+     * Add the specified object to this space.
+     *
+     * @param object the PhysicsRope, PhysicsControl,
+     * Spatial-with-PhysicsControl, collision object, or PhysicsJoint to add
+     * (not null)
+     */
+    @Override
+    public void add(Object object) {
+        if (object instanceof PhysicsRope) {
+            addRope((PhysicsRope) object);
+        } else {
+            super.add(object);
+        }
+    }
+
     /**
      * Add the specified collision object to this space.
      *
@@ -225,6 +268,9 @@ public class PhysicsSoftSpace extends PhysicsSpace {
         for (PhysicsSoftBody softBody : softBodyMap.values()) {
             removeSoftBody(softBody);
         }
+        for (PhysicsRope rope : ropes) {
+            removeRope(rope);
+        }
     }
 
     /**
@@ -249,11 +295,27 @@ public class PhysicsSoftSpace extends PhysicsSpace {
     @Override
     public boolean isEmpty() {
         boolean result = super.isEmpty();
-        result = result && softBodyMap.isEmpty();
+        result = result && softBodyMap.isEmpty() && ropes.isEmpty();
 
         return result;
     }
 
+    /**
+     * Remove the specified object from this space.
+     *
+     * @param object the PhysicsRope, PhysicsControl,
+     * Spatial-with-PhysicsControl, collision object, or PhysicsJoint to
+     * remove, or null
+     */
+    @Override
+    public void remove(Object object) {
+        if (object instanceof PhysicsRope) {
+            removeRope((PhysicsRope) object);
+        } else {
+            super.remove(object);
+        }
+    }
+
     /**
      * Remove the specified collision object from this space.
      *
@@ -286,6 +348,29 @@ public class PhysicsSoftSpace extends PhysicsSpace {
     // *************************************************************************
     // Java private methods
 
+    /**
+     * NOTE: When a rope is added, its gravity is replaced with that of the
+     * space.
+     *
+     * @param rope the rope to add (not null, not already in the space)
+     */
+    private void addRope(PhysicsRope rope) {
+        if (ropes.contains(rope)) {
+            logger2.log(Level.WARNING, "{0} is already added to {1}.",
+                    new Object[]{rope, this});
+            return;
+        }
+        if (logger2.isLoggable(Level.FINE)) {
+            logger2.log(Level.FINE, "Adding {0} to {1}.",
+                    new Object[]{rope, this});
+        }
+
+        ropes.add(rope);
+        addTickListener(rope);
+        Vector3f gravity = getGravity(null);
+        rope.setGravity(gravity);
+    }
+
     /**
      * NOTE: When a soft body is added, its world info may get replaced with
      * that of the space.
@@ -315,6 +400,25 @@ public class PhysicsSoftSpace extends PhysicsSpace {
         }
     }
 
+    /**
+     * Remove the specified rope from this space.
+     *
+     * @param rope the rope to remove (not null)
+     */
+    private void removeRope(PhysicsRope rope) {
+        if (!ropes.contains(rope)) {
+            logger2.log(Level.WARNING, "{0} does not exist in {1}.",
+                    new Object[]{rope, this});
+            return;
+        }
+        if (logger2.isLoggable(Level.FINE)) {
+            logger2.log(Level.FINE, "Removing {0} from {1}.",
+                    new Object[]{rope, this});
+        }
+        ropes.remove(rope);
+        removeTickListener(rope);
+    }
+
     private void removeSoftBody(PhysicsSoftBody softBody) {
         long softBodyId = softBody.nativeId();
         if (!softBodyMap.containsKey(softBodyId)) {
@@ -45,7 +45,10 @@ import com.jme3.util.clone.Cloner;
 import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.logging.Logger;
 import jme3utilities.Validate;
 
@@ -87,6 +90,16 @@ public class CompoundCollisionShape extends CollisionShape {
      * child shapes of this shape
      */
     private ArrayList<ChildCollisionShape> children;
+    /**
+     * children that existed when the current edit session began, or null if
+     * no session is in progress
+     */
+    private Set<ChildCollisionShape> editBaseline = null;
+    /**
+     * pre-existing children whose transforms were altered during the current
+     * edit session, or null if no session is in progress
+     */
+    private Set<ChildCollisionShape> editTransformed = null;
     // *************************************************************************
     // constructors
 
@@ -182,8 +195,10 @@ public class CompoundCollisionShape extends CollisionShape {
                 = new ChildCollisionShape(offset, rotation, childShape);
         children.add(child);
 
-        long parentId = nativeId();
-        addChildShape(parentId, childId, offset, rotation);
+        if (!isEditing()) {
+            long parentId = nativeId();
+            addChildShape(parentId, childId, offset, rotation);
+        }
     }
 
     /**
@@ -201,6 +216,92 @@ public class CompoundCollisionShape extends CollisionShape {
         addChildShape(shape, offset, rotation);
     }
 
+    /**
+     * Begin a batched edit session. Until {@link #commitEdit()} is invoked,
+     * child additions, removals, and transform changes are applied to the
+     * Java-side children only. At commit, redundant edits are coalesced, the
+     * remainder are applied to the native shape, and its AABB is recalculated
+     * once.
+     * <p>
+     * While a session is in progress, don't use this shape in a physics space
+     * and don't invoke
+     * {@link #principalAxes(java.nio.FloatBuffer, com.jme3.math.Transform, com.jme3.math.Vector3f)}.
+     */
+    public void beginEdit() {
+        if (isEditing()) {
+            throw new IllegalStateException("An edit is already in progress.");
+        }
+
+        int numChildren = children.size();
+        editBaseline = Collections.newSetFromMap(
+                new IdentityHashMap<ChildCollisionShape, Boolean>(
+                        2 * numChildren + 1));
+        editBaseline.addAll(children);
+        editTransformed = Collections.newSetFromMap(
+                new IdentityHashMap<ChildCollisionShape, Boolean>(16));
+    }
+
+    /**
+     * End the current batched edit session, applying its net effect to the
+     * native shape.
+     *
+     * @see #beginEdit()
+     */
+    public void commitEdit() {
+        if (!isEditing()) {
+            throw new IllegalStateException("No edit is in progress.");
+        }
+
+        long parentId = nativeId();
+        Set<ChildCollisionShape> remaining = Collections.newSetFromMap(
+                new IdentityHashMap<ChildCollisionShape, Boolean>(
+                        2 * children.size() + 1));
+        remaining.addAll(children);
+        /*
+         * Remove pre-existing children that are no longer present.
+         * Removal is by shape, so each shape need only be removed once.
+         */
+        Set<CollisionShape> removedShapes = Collections.newSetFromMap(
+                new IdentityHashMap<CollisionShape, Boolean>(16));
+        for (ChildCollisionShape child : editBaseline) {
+            if (!remaining.contains(child)) {
+                CollisionShape shape = child.getShape();
+                if (removedShapes.add(shape)) {
+                    removeChildShape(parentId, shape.nativeId());
+                }
+            }
+        }
+        /*
+         * Update the transforms of surviving pre-existing children.
+         */
+        Vector3f offset = new Vector3f();
+        Matrix3f rotation = new Matrix3f();
+        for (ChildCollisionShape child : editTransformed) {
+            if (remaining.contains(child)) {
+                long childId = child.getShape().nativeId();
+                child.copyOffset(offset);
+                child.copyRotationMatrix(rotation);
+                setChildTransform(parentId, childId, offset, rotation);
+            }
+        }
+        /*
+         * Add children that are new since the session began.
+         */
+        for (ChildCollisionShape child : children) {
+            if (!editBaseline.contains(child)) {
+                long childId = child.getShape().nativeId();
+                child.copyOffset(offset);
+                child.copyRotationMatrix(rotation);
+                addChildShape(parentId, childId, offset, rotation);
+            }
+        }
+
+        editBaseline = null;
+        editTransformed = null;
+        recalcAabb(parentId);
+        assert children.size() == countChildren(parentId);
+    }
+
     /**
      * Apply the inverse of the specified Transform to each child shape.
      *
@@ -229,7 +330,7 @@ public class CompoundCollisionShape extends CollisionShape {
      */
     public int countChildren() {
         int numChildren = children.size();
-        assert numChildren == countChildren(nativeId());
+        assert isEditing() || numChildren == countChildren(nativeId());
 
         return numChildren;
     }
@@ -254,6 +355,16 @@ public class CompoundCollisionShape extends CollisionShape {
         return result;
     }
 
+    /**
+     * Test whether a batched edit session is in progress.
+     *
+     * @return true if editing, otherwise false
+     */
+    public boolean isEditing() {
+        boolean result = (editBaseline != null);
+        return result;
+    }
+
     /**
      * Enumerate the child shapes.
      *
@@ -288,6 +399,9 @@ public class CompoundCollisionShape extends CollisionShape {
         if (!masses.isDirect()) {
             throw new IllegalArgumentException("The buffer must be direct.");
         }
+        if (isEditing()) {
+            throw new IllegalStateException("An edit is in progress.");
+        }
         Transform result
                 = (storeTransform == null) ? new Transform() : storeTransform;
         Validate.nonNull(storeInertia, "storage for inertia");
@@ -304,9 +418,11 @@ public class CompoundCollisionShape extends CollisionShape {
      * @param childShape the collision shape to remove (not null)
      */
     public void removeChildShape(CollisionShape childShape) {
-        long childId = childShape.nativeId();
-        long parentId = nativeId();
-        removeChildShape(parentId, childId);
+        if (!isEditing()) {
+            long childId = childShape.nativeId();
+            long parentId = nativeId();
+            removeChildShape(parentId, childId);
+        }
 
         for (Iterator<ChildCollisionShape> it = children.iterator();
                 it.hasNext();) {
@@ -336,6 +452,10 @@ public class CompoundCollisionShape extends CollisionShape {
             child.setTransform(offset, basis);
         }
 
+        /*
+         * During an edit, the native children are rotated here, while
+         * children added during the edit are already rotated in Java.
+         */
         long shapeId = nativeId();
         rotate(shapeId, rotation);
     }
@@ -359,9 +479,14 @@ public class CompoundCollisionShape extends CollisionShape {
         assert childIndex < children.size();
 
         Matrix3f rotation = transform.getRotation().toRotationMatrix();
-        setChildTransform(parentId, childId, offset, rotation);
-
         ChildCollisionShape child = children.get(childIndex);
+        if (isEditing()) {
+            if (editBaseline.contains(child)) {
+                editTransformed.add(child);
+            }
+        } else {
+            setChildTransform(parentId, childId, offset, rotation);
+        }
         child.setTransform(offset, rotation);
     }
 
@@ -426,6 +551,8 @@ public class CompoundCollisionShape extends CollisionShape {
         super.cloneFields(cloner, original);
 
         children = cloner.clone(children);
+        editBaseline = null;
+        editTransformed = null;
         createEmpty(children.size());
         loadChildren();
     }
@@ -33,6 +33,7 @@ package com.jme3.bullet.collision.shapes;
 
 import com.jme3.bullet.PhysicsSpace;
 import com.jme3.bullet.util.DebugShapeFactory;
+import com.jme3.bullet.util.HullSimplifier;
 import com.jme3.export.InputCapsule;
 import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
@@ -350,6 +351,46 @@ public class HullCollisionShape extends ConvexShape {
         assert volume >= 0f : volume;
         return volume;
     }
+
+    /**
+     * Create a simplified hull with fewer vertices, to speed up narrow-phase
+     * collision detection. The new hull is built from a subset of the points
+     * used to generate this one, so it's never larger. Its scale and margin
+     * are copied from this shape.
+     *
+     * @param maxVertices the maximum number of vertices to keep (&gt;0)
+     * @param tolerance the acceptable deviation between the hulls (in unscaled
+     * shape units, &ge;0)
+     * @return a new shape
+     * @see com.jme3.bullet.util.HullSimplifier
+     */
+    public HullCollisionShape simplify(int maxVertices, float tolerance) {
+        float[] reducedPoints
+                = HullSimplifier.simplify(points, maxVertices, tolerance);
+        HullCollisionShape result = new HullCollisionShape(reducedPoints);
+        result.setScale(scale);
+        result.setMargin(margin);
+
+        return result;
+    }
+
+    /**
+     * Calculate how much the volume of the specified approximation deviates
+     * from the volume of this hull, relative to {@link #scaledVolume()}.
+     *
+     * @param approximation the hull to compare (not null, unaffected)
+     * @return the fractional deviation (&ge;0, 0 if identical volumes)
+     */
+    public float volumeDeviation(HullCollisionShape approximation) {
+        Validate.nonNull(approximation, "approximation");
+
+        float volume = scaledVolume();
+        float difference = FastMath.abs(volume - approximation.scaledVolume());
+        float result = (volume > 0f) ? difference / volume : difference;
+
+        assert result >= 0f : result;
+        return result;
+    }
     // *************************************************************************
     // CollisionShape methods
 
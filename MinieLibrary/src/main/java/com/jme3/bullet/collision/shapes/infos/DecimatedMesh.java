@@ -0,0 +1,676 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.collision.shapes.infos;
+
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A triangle mesh reduced by quadric-error edge collapse (Garland and
+ * Heckbert), for use as a lower level of detail in a collision shape.
+ * Immutable.
+ * <p>
+ * Decimation stops when the triangle count reaches the target or when the
+ * next collapse would exceed the error bound, whichever comes first. The error
+ * of a collapse is the square root of its quadric cost, which approximates
+ * the distance between the new vertex and the original surface. Boundary
+ * edges are weighted to preserve open borders, and collapses that would flip
+ * a triangle are rejected.
+ * <p>
+ * Decimation is pure Java. Vertices should be welded beforehand, for
+ * instance using {@link WeldedMesh}, since unwelded seams can't be collapsed.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class DecimatedMesh {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * weight of the planes that constrain boundary edges
+     */
+    final private static double boundaryWeight = 100.0;
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * number of vertices per triangle
+     */
+    final private static int vpt = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(DecimatedMesh.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * vertex positions of the reduced mesh (length a multiple of 3)
+     */
+    final private float[] positions;
+    /**
+     * largest error of any collapse performed (&ge;0)
+     */
+    private float maxAppliedError = 0f;
+    /**
+     * triangle indices of the reduced mesh (length a multiple of 3)
+     */
+    final private int[] indices;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Decimate the specified triangles.
+     *
+     * @param positions the input vertex positions (not null, length a multiple
+     * of 3, unaffected)
+     * @param indices the input triangle indices (not null, length a multiple of
+     * 3, unaffected)
+     * @param targetTriangles the desired number of triangles (&ge;0)
+     * @param maxError the maximum error per collapse (in mesh units, &ge;0)
+     */
+    public DecimatedMesh(float[] positions, int[] indices, int targetTriangles,
+            float maxError) {
+        Validate.nonNull(positions, "positions");
+        Validate.nonNull(indices, "indices");
+        Validate.require(positions.length % numAxes == 0,
+                "position length a multiple of 3");
+        Validate.require(indices.length % vpt == 0,
+                "index length a multiple of 3");
+        Validate.nonNegative(targetTriangles, "target triangles");
+        Validate.nonNegative(maxError, "max error");
+
+        Decimator decimator = new Decimator(positions, indices);
+        decimator.run(targetTriangles, maxError);
+        this.maxAppliedError = decimator.maxError;
+
+        int numVertices = positions.length / numAxes;
+        int[] newIndex = new int[numVertices];
+        for (int i = 0; i < numVertices; ++i) {
+            newIndex[i] = -1;
+        }
+        List<Integer> keptIndices = new ArrayList<>(indices.length);
+        int numKept = 0;
+        for (int triIndex = 0; triIndex < decimator.numTriangles; ++triIndex) {
+            if (decimator.triRemoved[triIndex]) {
+                continue;
+            }
+            for (int j = 0; j < vpt; ++j) {
+                int oldIndex = decimator.tris[vpt * triIndex + j];
+                if (newIndex[oldIndex] == -1) {
+                    newIndex[oldIndex] = numKept;
+                    ++numKept;
+                }
+                keptIndices.add(newIndex[oldIndex]);
+            }
+        }
+
+        this.indices = new int[keptIndices.size()];
+        for (int i = 0; i < this.indices.length; ++i) {
+            this.indices[i] = keptIndices.get(i);
+        }
+        this.positions = new float[numAxes * numKept];
+        for (int oldIndex = 0; oldIndex < numVertices; ++oldIndex) {
+            int vi = newIndex[oldIndex];
+            if (vi != -1) {
+                for (int axis = 0; axis < numAxes; ++axis) {
+                    this.positions[numAxes * vi + axis]
+                            = (float) decimator.xyz[numAxes * oldIndex + axis];
+                }
+            }
+        }
+    }
+
+    /**
+     * Decimate the specified welded mesh.
+     *
+     * @param welded the input mesh (not null, unaffected)
+     * @param targetTriangles the desired number of triangles (&ge;0)
+     * @param maxError the maximum error per collapse (in mesh units, &ge;0)
+     */
+    public DecimatedMesh(WeldedMesh welded, int targetTriangles,
+            float maxError) {
+        this(welded.copyPositions(), welded.copyIndices(), targetTriangles,
+                maxError);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Copy the triangle indices of the reduced mesh.
+     *
+     * @return a new array (length a multiple of 3)
+     */
+    public int[] copyIndices() {
+        int[] result = indices.clone();
+        return result;
+    }
+
+    /**
+     * Copy the vertex positions of the reduced mesh.
+     *
+     * @return a new array (length a multiple of 3)
+     */
+    public float[] copyPositions() {
+        float[] result = positions.clone();
+        return result;
+    }
+
+    /**
+     * Count the triangles in the reduced mesh.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countTriangles() {
+        int result = indices.length / vpt;
+        return result;
+    }
+
+    /**
+     * Count the vertices in the reduced mesh.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countVertices() {
+        int result = positions.length / numAxes;
+        return result;
+    }
+
+    /**
+     * Return the largest error of any collapse performed.
+     *
+     * @return the error (in mesh units, &ge;0)
+     */
+    public float maxError() {
+        return maxAppliedError;
+    }
+
+    /**
+     * Create an IndexedMesh from the reduced mesh.
+     *
+     * @return a new instance
+     */
+    public IndexedMesh toIndexedMesh() {
+        int numVertices = countVertices();
+        Vector3f[] positionArray = new Vector3f[numVertices];
+        for (int vi = 0; vi < numVertices; ++vi) {
+            positionArray[vi] = new Vector3f(positions[numAxes * vi],
+                    positions[numAxes * vi + 1], positions[numAxes * vi + 2]);
+        }
+        IndexedMesh result = new IndexedMesh(positionArray, indices);
+
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A candidate collapse of the edge v0-v1, moving v0 to the target
+     * location and discarding v1.
+     */
+    private static class Collapse implements Comparable<Collapse> {
+        final double cost;
+        final double[] target;
+        final int v0, v1;
+        final int stamp0, stamp1;
+
+        Collapse(double cost, double[] target, int v0, int v1, int stamp0,
+                int stamp1) {
+            this.cost = cost;
+            this.target = target;
+            this.v0 = v0;
+            this.v1 = v1;
+            this.stamp0 = stamp0;
+            this.stamp1 = stamp1;
+        }
+
+        @Override
+        public int compareTo(Collapse other) {
+            int result = Double.compare(cost, other.cost);
+            return result;
+        }
+    }
+
+    /**
+     * Mutable state of a decimation in progress.
+     */
+    private static class Decimator {
+        /**
+         * true if the indexed triangle has been removed
+         */
+        final boolean[] triRemoved;
+        /**
+         * true if the indexed vertex has been collapsed away
+         */
+        final boolean[] vertexRemoved;
+        /**
+         * current vertex positions
+         */
+        final double[] xyz;
+        /**
+         * error quadric for each vertex (10 coefficients per vertex)
+         */
+        final double[] quadrics;
+        /**
+         * largest error of any collapse performed
+         */
+        float maxError = 0f;
+        /**
+         * current triangle indices
+         */
+        final int[] tris;
+        /**
+         * version of each vertex, incremented whenever it changes
+         */
+        final int[] stamps;
+        /**
+         * number of input triangles
+         */
+        final int numTriangles;
+        /**
+         * number of triangles not yet removed
+         */
+        int numLiveTriangles;
+        /**
+         * triangles incident on each vertex (may include removed ones)
+         */
+        final List<List<Integer>> vertexTris;
+        /**
+         * candidate collapses, cheapest first
+         */
+        final PriorityQueue<Collapse> queue = new PriorityQueue<>();
+
+        Decimator(float[] positions, int[] indices) {
+            int numVertices = positions.length / numAxes;
+            numTriangles = indices.length / vpt;
+            numLiveTriangles = numTriangles;
+
+            xyz = new double[positions.length];
+            for (int i = 0; i < positions.length; ++i) {
+                xyz[i] = positions[i];
+            }
+            tris = indices.clone();
+            triRemoved = new boolean[numTriangles];
+            vertexRemoved = new boolean[numVertices];
+            stamps = new int[numVertices];
+            quadrics = new double[10 * numVertices];
+            vertexTris = new ArrayList<>(numVertices);
+            for (int vi = 0; vi < numVertices; ++vi) {
+                vertexTris.add(new ArrayList<Integer>(6));
+            }
+
+            for (int ti = 0; ti < numTriangles; ++ti) {
+                for (int j = 0; j < vpt; ++j) {
+                    int vi = tris[vpt * ti + j];
+                    Validate.inRange(vi, "index", 0, numVertices - 1);
+                    vertexTris.get(vi).add(ti);
+                }
+                double[] plane = trianglePlane(ti);
+                if (plane != null) {
+                    for (int j = 0; j < vpt; ++j) {
+                        addPlane(tris[vpt * ti + j], plane, 1.0);
+                    }
+                }
+            }
+            addBoundaryPlanes();
+        }
+
+        /**
+         * Add constraint planes along boundary edges, so that open borders
+         * are preserved.
+         */
+        void addBoundaryPlanes() {
+            for (int ti = 0; ti < numTriangles; ++ti) {
+                double[] plane = trianglePlane(ti);
+                if (plane == null) {
+                    continue;
+                }
+                for (int j = 0; j < vpt; ++j) {
+                    int a = tris[vpt * ti + j];
+                    int b = tris[vpt * ti + (j + 1) % vpt];
+                    if (countSharedTriangles(a, b) != 1) {
+                        continue;
+                    }
+                    double ex = xyz[numAxes * b] - xyz[numAxes * a];
+                    double ey = xyz[numAxes * b + 1] - xyz[numAxes * a + 1];
+                    double ez = xyz[numAxes * b + 2] - xyz[numAxes * a + 2];
+                    double[] n = {
+                        ey * plane[2] - ez * plane[1],
+                        ez * plane[0] - ex * plane[2],
+                        ex * plane[1] - ey * plane[0]
+                    };
+                    double length = Math.sqrt(n[0] * n[0] + n[1] * n[1]
+                            + n[2] * n[2]);
+                    if (length == 0.0) {
+                        continue;
+                    }
+                    double[] edgePlane = new double[4];
+                    for (int axis = 0; axis < numAxes; ++axis) {
+                        edgePlane[axis] = n[axis] / length;
+                    }
+                    edgePlane[3] = -(edgePlane[0] * xyz[numAxes * a]
+                            + edgePlane[1] * xyz[numAxes * a + 1]
+                            + edgePlane[2] * xyz[numAxes * a + 2]);
+                    addPlane(a, edgePlane, boundaryWeight);
+                    addPlane(b, edgePlane, boundaryWeight);
+                }
+            }
+        }
+
+        /**
+         * Accumulate the quadric of a plane into a vertex.
+         */
+        void addPlane(int vi, double[] p, double weight) {
+            int q = 10 * vi;
+            double a = p[0], b = p[1], c = p[2], d = p[3];
+            quadrics[q] += weight * a * a;
+            quadrics[q + 1] += weight * a * b;
+            quadrics[q + 2] += weight * a * c;
+            quadrics[q + 3] += weight * a * d;
+            quadrics[q + 4] += weight * b * b;
+            quadrics[q + 5] += weight * b * c;
+            quadrics[q + 6] += weight * b * d;
+            quadrics[q + 7] += weight * c * c;
+            quadrics[q + 8] += weight * c * d;
+            quadrics[q + 9] += weight * d * d;
+        }
+
+        /**
+         * Count the live triangles that contain both specified vertices.
+         */
+        int countSharedTriangles(int a, int b) {
+            int result = 0;
+            for (int ti : vertexTris.get(a)) {
+                if (!triRemoved[ti] && contains(ti, b)) {
+                    ++result;
+                }
+            }
+            return result;
+        }
+
+        boolean contains(int ti, int vi) {
+            boolean result = tris[vpt * ti] == vi || tris[vpt * ti + 1] == vi
+                    || tris[vpt * ti + 2] == vi;
+            return result;
+        }
+
+        /**
+         * Evaluate the combined quadric of 2 vertices at a location.
+         */
+        double evaluate(double[] q, double x, double y, double z) {
+            double result = q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z
+                    + 2 * q[3] * x + q[4] * y * y + 2 * q[5] * y * z
+                    + 2 * q[6] * y + q[7] * z * z + 2 * q[8] * z + q[9];
+            return Math.max(0.0, result);
+        }
+
+        /**
+         * Calculate the best collapse of the specified edge.
+         */
+        Collapse planCollapse(int v0, int v1) {
+            double[] q = new double[10];
+            for (int i = 0; i < 10; ++i) {
+                q[i] = quadrics[10 * v0 + i] + quadrics[10 * v1 + i];
+            }
+            /*
+             * Solve for the location that minimizes the quadric.
+             */
+            double a11 = q[0], a12 = q[1], a13 = q[2];
+            double a22 = q[4], a23 = q[5], a33 = q[7];
+            double det = a11 * (a22 * a33 - a23 * a23)
+                    - a12 * (a12 * a33 - a23 * a13)
+                    + a13 * (a12 * a23 - a22 * a13);
+            double[] best = null;
+            double bestCost = Double.POSITIVE_INFINITY;
+            if (Math.abs(det) > 1e-12) {
+                double b1 = -q[3], b2 = -q[6], b3 = -q[8];
+                double x = (b1 * (a22 * a33 - a23 * a23)
+                        - a12 * (b2 * a33 - a23 * b3)
+                        + a13 * (b2 * a23 - a22 * b3)) / det;
+                double y = (a11 * (b2 * a33 - a23 * b3)
+                        - b1 * (a12 * a33 - a23 * a13)
+                        + a13 * (a12 * b3 - b2 * a13)) / det;
+                double z = (a11 * (a22 * b3 - b2 * a23)
+                        - a12 * (a12 * b3 - b2 * a13)
+                        + b1 * (a12 * a23 - a22 * a13)) / det;
+                if (!Double.isNaN(x + y + z) && !Double.isInfinite(x + y + z)) {
+                    best = new double[]{x, y, z};
+                    bestCost = evaluate(q, x, y, z);
+                }
+            }
+            /*
+             * Fall back on the endpoints and the midpoint.
+             */
+            if (best == null) {
+                for (int k = 0; k < 3; ++k) {
+                    double[] c = new double[numAxes];
+                    for (int axis = 0; axis < numAxes; ++axis) {
+                        double p0 = xyz[numAxes * v0 + axis];
+                        double p1 = xyz[numAxes * v1 + axis];
+                        c[axis] = (k == 0) ? p0 : (k == 1) ? p1
+                                : 0.5 * (p0 + p1);
+                    }
+                    double cost = evaluate(q, c[0], c[1], c[2]);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        best = c;
+                    }
+                }
+            }
+
+            Collapse result = new Collapse(bestCost, best, v0, v1, stamps[v0],
+                    stamps[v1]);
+            return result;
+        }
+
+        /**
+         * Queue collapses for every edge incident on the specified vertex.
+         */
+        void queueEdges(int vi) {
+            Set<Integer> neighbors = new HashSet<>(12);
+            for (int ti : vertexTris.get(vi)) {
+                if (triRemoved[ti]) {
+                    continue;
+                }
+                for (int j = 0; j < vpt; ++j) {
+                    int other = tris[vpt * ti + j];
+                    if (other != vi) {
+                        neighbors.add(other);
+                    }
+                }
+            }
+            for (int other : neighbors) {
+                queue.add(planCollapse(vi, other));
+            }
+        }
+
+        /**
+         * Perform collapses until a stopping criterion is met.
+         */
+        void run(int targetTriangles, float maxErrorBound) {
+            int numVertices = vertexRemoved.length;
+            for (int vi = 0; vi < numVertices; ++vi) {
+                Set<Integer> neighbors = new HashSet<>(12);
+                for (int ti : vertexTris.get(vi)) {
+                    for (int j = 0; j < vpt; ++j) {
+                        int other = tris[vpt * ti + j];
+                        if (other > vi) {
+                            neighbors.add(other);
+                        }
+                    }
+                }
+                for (int other : neighbors) {
+                    queue.add(planCollapse(vi, other));
+                }
+            }
+
+            double maxCost = (double) maxErrorBound * maxErrorBound;
+            while (numLiveTriangles > targetTriangles && !queue.isEmpty()) {
+                Collapse collapse = queue.poll();
+                int v0 = collapse.v0;
+                int v1 = collapse.v1;
+                if (vertexRemoved[v0] || vertexRemoved[v1]
+                        || stamps[v0] != collapse.stamp0
+                        || stamps[v1] != collapse.stamp1) {
+                    continue; // stale
+                }
+                if (collapse.cost > maxCost) {
+                    break;
+                }
+                if (flips(v0, v1, collapse.target)
+                        || flips(v1, v0, collapse.target)) {
+                    continue;
+                }
+                apply(collapse);
+                float error = (float) Math.sqrt(collapse.cost);
+                maxError = Math.max(maxError, error);
+            }
+        }
+
+        /**
+         * Test whether moving vertex vi to the target would flip any of its
+         * triangles that don't contain the other vertex.
+         */
+        boolean flips(int vi, int other, double[] target) {
+            for (int ti : vertexTris.get(vi)) {
+                if (triRemoved[ti] || contains(ti, other)) {
+                    continue;
+                }
+                double[] before = normal(ti, -1, null);
+                double[] after = normal(ti, vi, target);
+                double dot = before[0] * after[0] + before[1] * after[1]
+                        + before[2] * after[2];
+                if (dot <= 0.0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Calculate the (unnormalized) normal of a triangle, optionally with
+         * one vertex replaced.
+         */
+        double[] normal(int ti, int replaced, double[] location) {
+            double[][] p = new double[vpt][];
+            for (int j = 0; j < vpt; ++j) {
+                int vi = tris[vpt * ti + j];
+                if (vi == replaced) {
+                    p[j] = location;
+                } else {
+                    p[j] = new double[]{xyz[numAxes * vi],
+                        xyz[numAxes * vi + 1], xyz[numAxes * vi + 2]};
+                }
+            }
+            double ux = p[1][0] - p[0][0], uy = p[1][1] - p[0][1],
+                    uz = p[1][2] - p[0][2];
+            double vx = p[2][0] - p[0][0], vy = p[2][1] - p[0][1],
+                    vz = p[2][2] - p[0][2];
+            double[] result = {
+                uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx
+            };
+            return result;
+        }
+
+        /**
+         * Perform the specified collapse.
+         */
+        void apply(Collapse collapse) {
+            int v0 = collapse.v0;
+            int v1 = collapse.v1;
+            for (int axis = 0; axis < numAxes; ++axis) {
+                xyz[numAxes * v0 + axis] = collapse.target[axis];
+            }
+            for (int i = 0; i < 10; ++i) {
+                quadrics[10 * v0 + i] += quadrics[10 * v1 + i];
+            }
+            vertexRemoved[v1] = true;
+            ++stamps[v0];
+            ++stamps[v1];
+
+            List<Integer> trisOf0 = vertexTris.get(v0);
+            for (int ti : vertexTris.get(v1)) {
+                if (triRemoved[ti]) {
+                    continue;
+                }
+                if (contains(ti, v0)) {
+                    triRemoved[ti] = true;
+                    --numLiveTriangles;
+                } else {
+                    for (int j = 0; j < vpt; ++j) {
+                        if (tris[vpt * ti + j] == v1) {
+                            tris[vpt * ti + j] = v0;
+                        }
+                    }
+                    trisOf0.add(ti);
+                }
+            }
+            vertexTris.get(v1).clear();
+            /*
+             * Prune removed triangles, then requeue the affected edges.
+             */
+            for (int i = trisOf0.size() - 1; i >= 0; --i) {
+                if (triRemoved[trisOf0.get(i)]) {
+                    trisOf0.remove(i);
+                }
+            }
+            queueEdges(v0);
+        }
+
+        /**
+         * Calculate the plane of a triangle as (a, b, c, d) with a unit
+         * normal, or null if the triangle is degenerate.
+         */
+        double[] trianglePlane(int ti) {
+            double[] n = normal(ti, -1, null);
+            double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+            if (length == 0.0) {
+                return null;
+            }
+            int vi = tris[vpt * ti];
+            double a = n[0] / length, b = n[1] / length, c = n[2] / length;
+            double d = -(a * xyz[numAxes * vi] + b * xyz[numAxes * vi + 1]
+                    + c * xyz[numAxes * vi + 2]);
+            double[] result = {a, b, c, d};
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,787 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.collision.shapes.infos;
+
+import com.jme3.bullet.collision.shapes.MultiSphere;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A signed distance field sampled on a regular grid, precomputed from a closed
+ * triangle mesh, for fast point and sphere queries against dense static
+ * geometry. Distances are negative inside the mesh and positive outside.
+ * Immutable.
+ * <p>
+ * Samples are stored as 32-bit floats in a direct buffer, so the memory cost
+ * depends only on the grid resolution, not on the triangle count. Distances
+ * between samples are interpolated trilinearly, so features smaller than a
+ * cell are smoothed away.
+ * <p>
+ * Construction and queries are pure Java: the field isn't a native shape and
+ * doesn't participate in PhysicsSpace collision detection. It's intended for
+ * resolving sphere-like bodies, MultiSphere bodies, debris, and particles
+ * directly.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class SignedDistanceField {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of cells of padding around the mesh bounds
+     */
+    final private static int paddingCells = 2;
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * number of vertices per triangle
+     */
+    final private static int vpt = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(SignedDistanceField.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * sampled distances, indexed by i + numX * (j + numY * k)
+     */
+    final private FloatBuffer distances;
+    /**
+     * width of each (cubical) cell (in mesh units, &gt;0)
+     */
+    final private float cellSize;
+    /**
+     * number of samples along the X axis (&ge;2)
+     */
+    final private int numX;
+    /**
+     * number of samples along the Y axis (&ge;2)
+     */
+    final private int numY;
+    /**
+     * number of samples along the Z axis (&ge;2)
+     */
+    final private int numZ;
+    /**
+     * location of sample (0,0,0) (in mesh coordinates)
+     */
+    final private Vector3f origin;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Sample the distance field of the specified closed mesh.
+     *
+     * @param positions the vertex positions (not null, length a multiple of 3,
+     * unaffected)
+     * @param indices the vertex indices of the triangles (not null, not empty,
+     * length a multiple of 3, unaffected)
+     * @param cellSize the spacing of the samples (in mesh units, &gt;0)
+     */
+    public SignedDistanceField(float[] positions, int[] indices,
+            float cellSize) {
+        Validate.nonNull(positions, "positions");
+        Validate.require(positions.length % numAxes == 0,
+                "length a multiple of 3");
+        Validate.nonEmpty(indices, "indices");
+        Validate.require(indices.length % vpt == 0, "length a multiple of 3");
+        Validate.positive(cellSize, "cell size");
+
+        this.cellSize = cellSize;
+        /*
+         * Size the grid to cover the mesh bounds plus padding.
+         */
+        Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        Vector3f min = new Vector3f(Float.POSITIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        Vector3f tmp = new Vector3f();
+        for (int index : indices) {
+            tmp.set(positions[numAxes * index],
+                    positions[numAxes * index + 1],
+                    positions[numAxes * index + 2]);
+            max.maxLocal(tmp);
+            min.minLocal(tmp);
+        }
+        float padding = paddingCells * cellSize;
+        this.origin = min.subtract(padding, padding, padding);
+        this.numX = 1 + (int) Math.ceil(
+                (max.x - origin.x + padding) / cellSize);
+        this.numY = 1 + (int) Math.ceil(
+                (max.y - origin.y + padding) / cellSize);
+        this.numZ = 1 + (int) Math.ceil(
+                (max.z - origin.z + padding) / cellSize);
+        long numSamples = (long) numX * numY * numZ;
+        Validate.require(numSamples <= Integer.MAX_VALUE,
+                "a cell size large enough for the mesh");
+
+        float[] phi = computeField(positions, indices);
+        this.distances = BufferUtils.createFloatBuffer(phi);
+    }
+
+    /**
+     * Sample the distance field of the specified closed mesh.
+     *
+     * @param mesh the mesh to sample (not null, at least one triangle,
+     * unaffected)
+     * @param cellSize the spacing of the samples (in mesh units, &gt;0)
+     */
+    public SignedDistanceField(IndexedMesh mesh, float cellSize) {
+        this(toArray(mesh.copyVertexPositions()),
+                toArray(mesh.copyIndices()), cellSize);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Return the width of each cell.
+     *
+     * @return the width (in mesh units, &gt;0)
+     */
+    public float cellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Count the samples in the grid.
+     *
+     * @return the count (&ge;8)
+     */
+    public int countSamples() {
+        int result = numX * numY * numZ;
+        return result;
+    }
+
+    /**
+     * Estimate the signed distance from the surface to the specified location.
+     * Beyond the grid, the distance to the grid is added to the boundary value.
+     *
+     * @param location the location to query (in mesh coordinates, not null,
+     * unaffected)
+     * @return the distance (negative inside the mesh)
+     */
+    public float distance(Vector3f location) {
+        float gx = (location.x - origin.x) / cellSize;
+        float gy = (location.y - origin.y) / cellSize;
+        float gz = (location.z - origin.z) / cellSize;
+
+        float cx = clamp(gx, numX);
+        float cy = clamp(gy, numY);
+        float cz = clamp(gz, numZ);
+        int i = Math.min((int) cx, numX - 2);
+        int j = Math.min((int) cy, numY - 2);
+        int k = Math.min((int) cz, numZ - 2);
+        float fx = cx - i;
+        float fy = cy - j;
+        float fz = cz - k;
+
+        int base = i + numX * (j + numY * k);
+        int dy = numX;
+        int dz = numX * numY;
+        float c00 = lerp(fx, distances.get(base), distances.get(base + 1));
+        float c10 = lerp(fx, distances.get(base + dy),
+                distances.get(base + dy + 1));
+        float c01 = lerp(fx, distances.get(base + dz),
+                distances.get(base + dz + 1));
+        float c11 = lerp(fx, distances.get(base + dy + dz),
+                distances.get(base + dy + dz + 1));
+        float result = lerp(fz, lerp(fy, c00, c10), lerp(fy, c01, c11));
+
+        if (cx != gx || cy != gy || cz != gz) {
+            float ex = (gx - cx) * cellSize;
+            float ey = (gy - cy) * cellSize;
+            float ez = (gz - cz) * cellSize;
+            result += (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+        }
+
+        return result;
+    }
+
+    /**
+     * Estimate the outward surface normal nearest the specified location, from
+     * the gradient of the field.
+     *
+     * @param location the location to query (in mesh coordinates, not null,
+     * unaffected)
+     * @param storeResult storage for the result (modified if not null)
+     * @return a unit vector (either storeResult or a new vector), or zero if
+     * the gradient vanishes
+     */
+    public Vector3f normal(Vector3f location, Vector3f storeResult) {
+        Vector3f result
+                = (storeResult == null) ? new Vector3f() : storeResult;
+        float h = 0.5f * cellSize;
+        float x = location.x;
+        float y = location.y;
+        float z = location.z;
+        Vector3f probe = new Vector3f();
+
+        float gx = distance(probe.set(x + h, y, z))
+                - distance(probe.set(x - h, y, z));
+        float gy = distance(probe.set(x, y + h, z))
+                - distance(probe.set(x, y - h, z));
+        float gz = distance(probe.set(x, y, z + h))
+                - distance(probe.set(x, y, z - h));
+        result.set(gx, gy, gz);
+        float length = result.length();
+        if (length > 0f) {
+            result.divideLocal(length);
+        }
+
+        return result;
+    }
+
+    /**
+     * Test a MultiSphere shape for penetration, reporting the deepest sphere.
+     *
+     * @param shape the shape to test (not null, unaffected)
+     * @param transform the shape's transform relative to the field (not null,
+     * unaffected)
+     * @param storeNormal storage for the outward contact normal (not null,
+     * modified)
+     * @return the greatest penetration depth (&gt;0) or a non-positive
+     * separation distance if no sphere penetrates
+     */
+    public float multiSphereContact(MultiSphere shape, Transform transform,
+            Vector3f storeNormal) {
+        Validate.nonNull(shape, "shape");
+        Validate.nonNull(storeNormal, "store normal");
+
+        Vector3f scale = shape.getScale(null);
+        float radiusScale = Math.max(scale.x, Math.max(scale.y, scale.z))
+                * transform.getScale().x;
+        Vector3f center = new Vector3f();
+        Vector3f normal = new Vector3f();
+        float result = Float.NEGATIVE_INFINITY;
+        int numSpheres = shape.countSpheres();
+        for (int sphereIndex = 0; sphereIndex < numSpheres; ++sphereIndex) {
+            shape.copyCenter(sphereIndex, center);
+            center.multLocal(scale);
+            transform.transformVector(center, center);
+            float radius = shape.getRadius(sphereIndex) * radiusScale;
+            float depth = sphereContact(center, radius, normal);
+            if (depth > result) {
+                result = depth;
+                storeNormal.set(normal);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Push the specified sphere out of the surface, if it penetrates. Useful
+     * for debris and particles.
+     *
+     * @param center the center of the sphere (in mesh coordinates, not null,
+     * modified if penetrating)
+     * @param radius the radius of the sphere (&ge;0)
+     * @return true if the sphere was moved, otherwise false
+     */
+    public boolean resolveSphere(Vector3f center, float radius) {
+        Vector3f normal = new Vector3f();
+        float depth = sphereContact(center, radius, normal);
+        boolean result = depth > 0f && !normal.equals(Vector3f.ZERO);
+        if (result) {
+            center.addLocal(normal.multLocal(depth));
+        }
+
+        return result;
+    }
+
+    /**
+     * Test a sphere for penetration.
+     *
+     * @param center the center of the sphere (in mesh coordinates, not null,
+     * unaffected)
+     * @param radius the radius of the sphere (&ge;0)
+     * @param storeNormal storage for the outward contact normal (not null,
+     * modified)
+     * @return the penetration depth (&gt;0) or a non-positive separation
+     * distance
+     */
+    public float sphereContact(Vector3f center, float radius,
+            Vector3f storeNormal) {
+        Validate.nonNegative(radius, "radius");
+        Validate.nonNull(storeNormal, "store normal");
+
+        float result = radius - distance(center);
+        normal(center, storeNormal);
+
+        return result;
+    }
+    // *************************************************************************
+    // Object methods
+
+    /**
+     * Represent this field as a String.
+     *
+     * @return a descriptive string of text (not null, not empty)
+     */
+    @Override
+    public String toString() {
+        String result = String.format("SignedDistanceField[%dx%dx%d cell=%s]",
+                numX, numY, numZ, cellSize);
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Clamp a grid coordinate to the grid.
+     *
+     * @param g the coordinate (in cells)
+     * @param count the number of samples on the axis
+     * @return the clamped coordinate
+     */
+    private static float clamp(float g, int count) {
+        float result = Math.max(0f, Math.min(g, count - 1));
+        return result;
+    }
+
+    /**
+     * Compute the sampled distances: exact distances in a narrow band around
+     * each triangle, fast sweeping to propagate closest triangles to the rest
+     * of the grid, then ray parity along the X axis to determine signs.
+     *
+     * @param positions the vertex positions (not null, unaffected)
+     * @param indices the triangle indices (not null, unaffected)
+     * @return a new array of samples
+     */
+    private float[] computeField(float[] positions, int[] indices) {
+        int numSamples = numX * numY * numZ;
+        float[] phi = new float[numSamples];
+        int[] closest = new int[numSamples];
+        int[] crossings = new int[numSamples];
+        float far = (numX + numY + numZ) * cellSize;
+        for (int n = 0; n < numSamples; ++n) {
+            phi[n] = far;
+            closest[n] = -1;
+        }
+
+        int numTriangles = indices.length / vpt;
+        double[] grid = new double[9]; // triangle vertices in grid units
+        for (int t = 0; t < numTriangles; ++t) {
+            for (int v = 0; v < vpt; ++v) {
+                int vi = numAxes * indices[vpt * t + v];
+                grid[3 * v] = (positions[vi] - origin.x) / cellSize;
+                grid[3 * v + 1] = (positions[vi + 1] - origin.y) / cellSize;
+                grid[3 * v + 2] = (positions[vi + 2] - origin.z) / cellSize;
+            }
+            /*
+             * Exact distances within one cell of the triangle's bounds.
+             */
+            int i0 = clampIndex(Math.floor(min3(grid, 0)) - 1, numX);
+            int i1 = clampIndex(Math.ceil(max3(grid, 0)) + 1, numX);
+            int j0 = clampIndex(Math.floor(min3(grid, 1)) - 1, numY);
+            int j1 = clampIndex(Math.ceil(max3(grid, 1)) + 1, numY);
+            int k0 = clampIndex(Math.floor(min3(grid, 2)) - 1, numZ);
+            int k1 = clampIndex(Math.ceil(max3(grid, 2)) + 1, numZ);
+            for (int k = k0; k <= k1; ++k) {
+                for (int j = j0; j <= j1; ++j) {
+                    for (int i = i0; i <= i1; ++i) {
+                        int n = i + numX * (j + numY * k);
+                        float d = triangleDistance(i, j, k, t, positions,
+                                indices);
+                        if (d < phi[n]) {
+                            phi[n] = d;
+                            closest[n] = t;
+                        }
+                    }
+                }
+            }
+            /*
+             * Count crossings of rays cast in the +X direction.
+             */
+            j0 = clampIndex(Math.ceil(min3(grid, 1)), numY);
+            j1 = clampIndex(Math.floor(max3(grid, 1)), numY);
+            k0 = clampIndex(Math.ceil(min3(grid, 2)), numZ);
+            k1 = clampIndex(Math.floor(max3(grid, 2)), numZ);
+            double[] abc = new double[3];
+            for (int k = k0; k <= k1; ++k) {
+                for (int j = j0; j <= j1; ++j) {
+                    if (pointInTriangle2d(j, k, grid[1], grid[2], grid[4],
+                            grid[5], grid[7], grid[8], abc)) {
+                        double fi = abc[0] * grid[0] + abc[1] * grid[3]
+                                + abc[2] * grid[6];
+                        int interval = (int) Math.ceil(fi);
+                        if (interval < 0) {
+                            ++crossings[numX * (j + numY * k)];
+                        } else if (interval < numX) {
+                            ++crossings[interval + numX * (j + numY * k)];
+                        }
+                    }
+                }
+            }
+        }
+        /*
+         * Propagate closest triangles with 2 passes of fast sweeping.
+         */
+        for (int pass = 0; pass < 2; ++pass) {
+            sweep(phi, closest, positions, indices, +1, +1, +1);
+            sweep(phi, closest, positions, indices, -1, -1, -1);
+            sweep(phi, closest, positions, indices, +1, +1, -1);
+            sweep(phi, closest, positions, indices, -1, -1, +1);
+            sweep(phi, closest, positions, indices, +1, -1, +1);
+            sweep(phi, closest, positions, indices, -1, +1, -1);
+            sweep(phi, closest, positions, indices, +1, -1, -1);
+            sweep(phi, closest, positions, indices, -1, +1, +1);
+        }
+        /*
+         * Samples after an odd number of crossings are inside.
+         */
+        for (int k = 0; k < numZ; ++k) {
+            for (int j = 0; j < numY; ++j) {
+                int total = 0;
+                for (int i = 0; i < numX; ++i) {
+                    int n = i + numX * (j + numY * k);
+                    total += crossings[n];
+                    if (total % 2 == 1) {
+                        phi[n] = -phi[n];
+                    }
+                }
+            }
+        }
+
+        return phi;
+    }
+
+    /**
+     * Clamp a floating-point grid index to the grid.
+     *
+     * @param index the index
+     * @param count the number of samples on the axis
+     * @return the clamped index (&ge;0, &lt;count)
+     */
+    private static int clampIndex(double index, int count) {
+        int result = (int) Math.max(0.0, Math.min(index, count - 1));
+        return result;
+    }
+
+    /**
+     * Interpolate linearly between 2 values.
+     *
+     * @param t the fraction (&ge;0, &le;1)
+     * @param a the value at t=0
+     * @param b the value at t=1
+     * @return the interpolated value
+     */
+    private static float lerp(float t, float a, float b) {
+        float result = a + t * (b - a);
+        return result;
+    }
+
+    /**
+     * Find the maximum of the specified coordinate over 3 vertices.
+     *
+     * @param xyz the vertex coordinates (not null, length 9, unaffected)
+     * @param axis the index of the coordinate (0, 1, or 2)
+     * @return the maximum
+     */
+    private static double max3(double[] xyz, int axis) {
+        double result = Math.max(xyz[axis],
+                Math.max(xyz[axis + 3], xyz[axis + 6]));
+        return result;
+    }
+
+    /**
+     * Find the minimum of the specified coordinate over 3 vertices.
+     *
+     * @param xyz the vertex coordinates (not null, length 9, unaffected)
+     * @param axis the index of the coordinate (0, 1, or 2)
+     * @return the minimum
+     */
+    private static double min3(double[] xyz, int axis) {
+        double result = Math.min(xyz[axis],
+                Math.min(xyz[axis + 3], xyz[axis + 6]));
+        return result;
+    }
+
+    /**
+     * Determine the orientation of the origin relative to the directed edge
+     * (x1,y1)-(x2,y2), breaking ties consistently so that each ray crosses a
+     * shared edge exactly once.
+     *
+     * @param x1 the X coordinate of the edge's start
+     * @param y1 the Y coordinate of the edge's start
+     * @param x2 the X coordinate of the edge's end
+     * @param y2 the Y coordinate of the edge's end
+     * @param store storage for twice the signed area (not null, length&ge;1)
+     * @return +1, -1, or 0 (degenerate edge)
+     */
+    private static int orientation(double x1, double y1, double x2,
+            double y2, double[] store) {
+        double twiceArea = y1 * x2 - x1 * y2;
+        store[0] = twiceArea;
+
+        int result;
+        if (twiceArea > 0.0) {
+            result = 1;
+        } else if (twiceArea < 0.0) {
+            result = -1;
+        } else if (y2 > y1) {
+            result = 1;
+        } else if (y2 < y1) {
+            result = -1;
+        } else if (x1 > x2) {
+            result = 1;
+        } else if (x1 < x2) {
+            result = -1;
+        } else {
+            result = 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * Test whether a 2-D point lies in a 2-D triangle, and if so, calculate its
+     * barycentric coordinates.
+     *
+     * @param x0 the X coordinate of the point
+     * @param y0 the Y coordinate of the point
+     * @param x1 the X coordinate of the 1st vertex
+     * @param y1 the Y coordinate of the 1st vertex
+     * @param x2 the X coordinate of the 2nd vertex
+     * @param y2 the Y coordinate of the 2nd vertex
+     * @param x3 the X coordinate of the 3rd vertex
+     * @param y3 the Y coordinate of the 3rd vertex
+     * @param storeAbc storage for the barycentric coordinates (not null,
+     * length&ge;3, modified)
+     * @return true if inside, otherwise false
+     */
+    private static boolean pointInTriangle2d(double x0, double y0,
+            double x1, double y1, double x2, double y2, double x3,
+            double y3, double[] storeAbc) {
+        double[] area = new double[1];
+        int signA = orientation(x2 - x0, y2 - y0, x3 - x0, y3 - y0, area);
+        if (signA == 0) {
+            return false;
+        }
+        double a = area[0];
+        int signB = orientation(x3 - x0, y3 - y0, x1 - x0, y1 - y0, area);
+        if (signB != signA) {
+            return false;
+        }
+        double b = area[0];
+        int signC = orientation(x1 - x0, y1 - y0, x2 - x0, y2 - y0, area);
+        if (signC != signA) {
+            return false;
+        }
+        double c = area[0];
+
+        double sum = a + b + c;
+        if (sum == 0.0) {
+            return false;
+        }
+        storeAbc[0] = a / sum;
+        storeAbc[1] = b / sum;
+        storeAbc[2] = c / sum;
+
+        return true;
+    }
+
+    /**
+     * Sweep the grid in one octant direction, updating each sample from its
+     * upwind neighbors' closest triangles.
+     *
+     * @param phi the unsigned distances (not null, modified)
+     * @param closest the indices of the closest triangles (not null, modified)
+     * @param positions the vertex positions (not null, unaffected)
+     * @param indices the triangle indices (not null, unaffected)
+     * @param di the X direction of the sweep (+1 or -1)
+     * @param dj the Y direction of the sweep (+1 or -1)
+     * @param dk the Z direction of the sweep (+1 or -1)
+     */
+    private void sweep(float[] phi, int[] closest, float[] positions,
+            int[] indices, int di, int dj, int dk) {
+        int iStart = (di > 0) ? 1 : numX - 2;
+        int iEnd = (di > 0) ? numX : -1;
+        int jStart = (dj > 0) ? 1 : numY - 2;
+        int jEnd = (dj > 0) ? numY : -1;
+        int kStart = (dk > 0) ? 1 : numZ - 2;
+        int kEnd = (dk > 0) ? numZ : -1;
+
+        for (int k = kStart; k != kEnd; k += dk) {
+            for (int j = jStart; j != jEnd; j += dj) {
+                for (int i = iStart; i != iEnd; i += di) {
+                    int n = i + numX * (j + numY * k);
+                    for (int neighbor = 1; neighbor < 8; ++neighbor) {
+                        int ni = i - ((neighbor & 1) == 0 ? 0 : di);
+                        int nj = j - ((neighbor & 2) == 0 ? 0 : dj);
+                        int nk = k - ((neighbor & 4) == 0 ? 0 : dk);
+                        int t = closest[ni + numX * (nj + numY * nk)];
+                        if (t >= 0 && t != closest[n]) {
+                            float d = triangleDistance(i, j, k, t, positions,
+                                    indices);
+                            if (d < phi[n]) {
+                                phi[n] = d;
+                                closest[n] = t;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the contents of a buffer to a new array.
+     *
+     * @param buffer the buffer to read (not null, unaffected)
+     * @return a new array
+     */
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] result = new float[buffer.capacity()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = buffer.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Copy the contents of a buffer to a new array.
+     *
+     * @param buffer the buffer to read (not null, unaffected)
+     * @return a new array
+     */
+    private static int[] toArray(IntBuffer buffer) {
+        int[] result = new int[buffer.capacity()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = buffer.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculate the distance from a grid sample to a triangle, using the
+     * closest-point classification by Voronoi regions.
+     *
+     * @param i the X index of the sample
+     * @param j the Y index of the sample
+     * @param k the Z index of the sample
+     * @param t the index of the triangle
+     * @param positions the vertex positions (not null, unaffected)
+     * @param indices the triangle indices (not null, unaffected)
+     * @return the unsigned distance (in mesh units, &ge;0)
+     */
+    private float triangleDistance(int i, int j, int k, int t,
+            float[] positions, int[] indices) {
+        double px = origin.x + i * cellSize;
+        double py = origin.y + j * cellSize;
+        double pz = origin.z + k * cellSize;
+        int ia = numAxes * indices[vpt * t];
+        int ib = numAxes * indices[vpt * t + 1];
+        int ic = numAxes * indices[vpt * t + 2];
+        double ax = positions[ia];
+        double ay = positions[ia + 1];
+        double az = positions[ia + 2];
+        double bx = positions[ib];
+        double by = positions[ib + 1];
+        double bz = positions[ib + 2];
+        double cx = positions[ic];
+        double cy = positions[ic + 1];
+        double cz = positions[ic + 2];
+
+        double abx = bx - ax, aby = by - ay, abz = bz - az;
+        double acx = cx - ax, acy = cy - ay, acz = cz - az;
+        double apx = px - ax, apy = py - ay, apz = pz - az;
+        double d1 = abx * apx + aby * apy + abz * apz;
+        double d2 = acx * apx + acy * apy + acz * apz;
+        double qx, qy, qz;
+        if (d1 <= 0.0 && d2 <= 0.0) {
+            qx = ax;
+            qy = ay;
+            qz = az;
+        } else {
+            double bpx = px - bx, bpy = py - by, bpz = pz - bz;
+            double d3 = abx * bpx + aby * bpy + abz * bpz;
+            double d4 = acx * bpx + acy * bpy + acz * bpz;
+            double cpx = px - cx, cpy = py - cy, cpz = pz - cz;
+            double d5 = abx * cpx + aby * cpy + abz * cpz;
+            double d6 = acx * cpx + acy * cpy + acz * cpz;
+            double vc = d1 * d4 - d3 * d2;
+            double vb = d5 * d2 - d1 * d6;
+            double va = d3 * d6 - d5 * d4;
+
+            if (d3 >= 0.0 && d4 <= d3) {
+                qx = bx;
+                qy = by;
+                qz = bz;
+            } else if (d6 >= 0.0 && d5 <= d6) {
+                qx = cx;
+                qy = cy;
+                qz = cz;
+            } else if (vc <= 0.0 && d1 >= 0.0 && d3 <= 0.0) {
+                double v = d1 / (d1 - d3);
+                qx = ax + v * abx;
+                qy = ay + v * aby;
+                qz = az + v * abz;
+            } else if (vb <= 0.0 && d2 >= 0.0 && d6 <= 0.0) {
+                double w = d2 / (d2 - d6);
+                qx = ax + w * acx;
+                qy = ay + w * acy;
+                qz = az + w * acz;
+            } else if (va <= 0.0 && d4 - d3 >= 0.0 && d5 - d6 >= 0.0) {
+                double w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+                qx = bx + w * (cx - bx);
+                qy = by + w * (cy - by);
+                qz = bz + w * (cz - bz);
+            } else {
+                double sum = va + vb + vc;
+                double v = (sum == 0.0) ? 0.0 : vb / sum;
+                double w = (sum == 0.0) ? 0.0 : vc / sum;
+                qx = ax + v * abx + w * acx;
+                qy = ay + v * aby + w * acy;
+                qz = az + v * abz + w * acz;
+            }
+        }
+
+        double dx = px - qx, dy = py - qy, dz = pz - qz;
+        float result = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        return result;
+    }
+}
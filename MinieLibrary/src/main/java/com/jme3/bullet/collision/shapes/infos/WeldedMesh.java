@@ -0,0 +1,534 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.collision.shapes.infos;
+
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import jme3utilities.MyMesh;
+import jme3utilities.Validate;
+import jme3utilities.math.MyMath;
+
+/**
+ * A triangle mesh prepared for use in a collision shape: vertices within a
+ * tolerance of one another are welded, and degenerate and duplicate triangles
+ * are dropped. Immutable.
+ * <p>
+ * A triangle is degenerate if, after welding, 2 of its vertices coincide or
+ * its smallest altitude is within the tolerance (a zero-area triangle or
+ * sliver). Triangles with the same 3 vertices are duplicates, regardless of
+ * winding.
+ * <p>
+ * Preparation is pure Java. The result can be converted using
+ * {@link #toIndexedMesh()} for use in a MeshCollisionShape or
+ * GImpactCollisionShape.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class WeldedMesh {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * number of vertices per triangle
+     */
+    final private static int vpt = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(WeldedMesh.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * vertex positions of the prepared mesh (length a multiple of 3)
+     */
+    final private float[] positions;
+    /**
+     * triangle indices of the prepared mesh (length a multiple of 3)
+     */
+    final private int[] indices;
+    /**
+     * number of degenerate triangles dropped (&ge;0)
+     */
+    private int numDegenerate = 0;
+    /**
+     * number of duplicate triangles dropped (&ge;0)
+     */
+    private int numDuplicate = 0;
+    /**
+     * number of triangles in the input (&ge;0)
+     */
+    final private int numInputTriangles;
+    /**
+     * number of vertices in the input (&ge;0)
+     */
+    final private int numInputVertices;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Prepare the specified triangles.
+     *
+     * @param positions the input vertex positions (not null, length a multiple
+     * of 3, unaffected)
+     * @param indices the input triangle indices (not null, length a multiple of
+     * 3, unaffected)
+     * @param tolerance the welding distance (in mesh units, &ge;0)
+     */
+    public WeldedMesh(float[] positions, int[] indices, float tolerance) {
+        Validate.nonNull(positions, "positions");
+        Validate.nonNull(indices, "indices");
+        Validate.require(positions.length % numAxes == 0,
+                "position length a multiple of 3");
+        Validate.require(indices.length % vpt == 0,
+                "index length a multiple of 3");
+        Validate.nonNegative(tolerance, "tolerance");
+
+        numInputVertices = positions.length / numAxes;
+        numInputTriangles = indices.length / vpt;
+        /*
+         * Weld each input vertex to the first earlier one within tolerance.
+         */
+        int[] weldMap = weld(positions, tolerance);
+        /*
+         * Filter the triangles.
+         */
+        float toleranceSquared = tolerance * tolerance;
+        List<Integer> keptIndices = new ArrayList<>(indices.length);
+        Set<TriangleKey> keptTriangles = new HashSet<>(numInputTriangles);
+        for (int triIndex = 0; triIndex < numInputTriangles; ++triIndex) {
+            int vi0 = indices[vpt * triIndex];
+            int vi1 = indices[vpt * triIndex + 1];
+            int vi2 = indices[vpt * triIndex + 2];
+            Validate.inRange(vi0, "index", 0, numInputVertices - 1);
+            Validate.inRange(vi1, "index", 0, numInputVertices - 1);
+            Validate.inRange(vi2, "index", 0, numInputVertices - 1);
+            int a = weldMap[vi0];
+            int b = weldMap[vi1];
+            int c = weldMap[vi2];
+
+            if (a == b || b == c || c == a
+                    || isSliver(positions, a, b, c, toleranceSquared)) {
+                ++numDegenerate;
+            } else if (!keptTriangles.add(new TriangleKey(a, b, c))) {
+                ++numDuplicate;
+            } else {
+                keptIndices.add(a);
+                keptIndices.add(b);
+                keptIndices.add(c);
+            }
+        }
+        /*
+         * Compact the vertices, keeping only those that are referenced.
+         */
+        int[] newIndex = new int[numInputVertices];
+        for (int i = 0; i < numInputVertices; ++i) {
+            newIndex[i] = -1;
+        }
+        int numIndices = keptIndices.size();
+        this.indices = new int[numIndices];
+        int numVertices = 0;
+        for (int i = 0; i < numIndices; ++i) {
+            int oldIndex = keptIndices.get(i);
+            if (newIndex[oldIndex] == -1) {
+                newIndex[oldIndex] = numVertices;
+                ++numVertices;
+            }
+            this.indices[i] = newIndex[oldIndex];
+        }
+        this.positions = new float[numAxes * numVertices];
+        for (int oldIndex = 0; oldIndex < numInputVertices; ++oldIndex) {
+            int vi = newIndex[oldIndex];
+            if (vi != -1) {
+                System.arraycopy(positions, numAxes * oldIndex,
+                        this.positions, numAxes * vi, numAxes);
+            }
+        }
+    }
+
+    /**
+     * Prepare the triangles of the specified JME mesh.
+     *
+     * @param jmeMesh the input mesh (not null, unaffected,
+     * mode=Triangles/TriangleFan/TriangleStrip)
+     * @param transform the Transform to apply to vertex positions (unaffected)
+     * or null to use untransformed vertex positions
+     * @param tolerance the welding distance (in transformed units, &ge;0)
+     */
+    public WeldedMesh(Mesh jmeMesh, Transform transform, float tolerance) {
+        this(positionArray(jmeMesh, transform), indexArray(jmeMesh),
+                tolerance);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Copy the triangle indices of the prepared mesh.
+     *
+     * @return a new array (length a multiple of 3)
+     */
+    public int[] copyIndices() {
+        int[] result = indices.clone();
+        return result;
+    }
+
+    /**
+     * Copy the vertex positions of the prepared mesh.
+     *
+     * @return a new array (length a multiple of 3)
+     */
+    public float[] copyPositions() {
+        float[] result = positions.clone();
+        return result;
+    }
+
+    /**
+     * Count the degenerate triangles that were dropped.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countDegenerateTriangles() {
+        return numDegenerate;
+    }
+
+    /**
+     * Count the duplicate triangles that were dropped.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countDuplicateTriangles() {
+        return numDuplicate;
+    }
+
+    /**
+     * Count the triangles in the input.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countInputTriangles() {
+        return numInputTriangles;
+    }
+
+    /**
+     * Count the vertices in the input.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countInputVertices() {
+        return numInputVertices;
+    }
+
+    /**
+     * Count the triangles in the prepared mesh.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countTriangles() {
+        int result = indices.length / vpt;
+        return result;
+    }
+
+    /**
+     * Count the vertices in the prepared mesh.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countVertices() {
+        int result = positions.length / numAxes;
+        return result;
+    }
+
+    /**
+     * Create an IndexedMesh from the prepared mesh.
+     *
+     * @return a new instance
+     */
+    public IndexedMesh toIndexedMesh() {
+        int numVertices = countVertices();
+        Vector3f[] positionArray = new Vector3f[numVertices];
+        for (int vi = 0; vi < numVertices; ++vi) {
+            positionArray[vi] = new Vector3f(positions[numAxes * vi],
+                    positions[numAxes * vi + 1], positions[numAxes * vi + 2]);
+        }
+        IndexedMesh result = new IndexedMesh(positionArray, indices);
+
+        return result;
+    }
+    // *************************************************************************
+    // Object methods
+
+    /**
+     * Summarize the savings, for logging.
+     *
+     * @return a descriptive string of text (not null, not empty)
+     */
+    @Override
+    public String toString() {
+        String result = String.format(
+                "WeldedMesh[vertices %d->%d, triangles %d->%d, "
+                + "degenerate=%d, duplicate=%d]",
+                numInputVertices, countVertices(), numInputTriangles,
+                countTriangles(), numDegenerate, numDuplicate);
+
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Copy the triangle indices of the specified JME mesh.
+     *
+     * @param jmeMesh the mesh to read (not null, unaffected)
+     * @return a new array
+     */
+    private static int[] indexArray(Mesh jmeMesh) {
+        Validate.nonNull(jmeMesh, "JME mesh");
+        Validate.require(MyMesh.hasTriangles(jmeMesh),
+                "mode=Triangles/TriangleFan/TriangleStrip");
+
+        int numIndices = vpt * jmeMesh.getTriangleCount();
+        int[] result = new int[numIndices];
+        IndexBuffer triangleIndices = jmeMesh.getIndicesAsList();
+        for (int offset = 0; offset < numIndices; ++offset) {
+            result[offset] = triangleIndices.get(offset);
+        }
+
+        return result;
+    }
+
+    /**
+     * Test whether the specified triangle is a sliver: its smallest altitude
+     * is within tolerance.
+     *
+     * @param xyz the vertex positions (not null, unaffected)
+     * @param a the index of the 1st vertex
+     * @param b the index of the 2nd vertex
+     * @param c the index of the 3rd vertex
+     * @param toleranceSquared the square of the tolerance (&ge;0)
+     * @return true if a sliver, otherwise false
+     */
+    private static boolean isSliver(float[] xyz, int a, int b, int c,
+            float toleranceSquared) {
+        double abx = xyz[numAxes * b] - xyz[numAxes * a];
+        double aby = xyz[numAxes * b + 1] - xyz[numAxes * a + 1];
+        double abz = xyz[numAxes * b + 2] - xyz[numAxes * a + 2];
+        double acx = xyz[numAxes * c] - xyz[numAxes * a];
+        double acy = xyz[numAxes * c + 1] - xyz[numAxes * a + 1];
+        double acz = xyz[numAxes * c + 2] - xyz[numAxes * a + 2];
+        double bcx = acx - abx;
+        double bcy = acy - aby;
+        double bcz = acz - abz;
+        /*
+         * The smallest altitude is 2 * area / longest edge,
+         * so compare squares: (|ab x ac|)^2 <= tol^2 * longest^2
+         */
+        double cx = aby * acz - abz * acy;
+        double cy = abz * acx - abx * acz;
+        double cz = abx * acy - aby * acx;
+        double crossSquared = cx * cx + cy * cy + cz * cz;
+        double longestSquared = Math.max(abx * abx + aby * aby + abz * abz,
+                Math.max(acx * acx + acy * acy + acz * acz,
+                        bcx * bcx + bcy * bcy + bcz * bcz));
+        boolean result = crossSquared <= toleranceSquared * longestSquared;
+
+        return result;
+    }
+
+    /**
+     * Copy the vertex positions of the specified JME mesh, optionally
+     * transforming them.
+     *
+     * @param jmeMesh the mesh to read (not null, unaffected)
+     * @param transform the Transform to apply (unaffected) or null for none
+     * @return a new array
+     */
+    private static float[] positionArray(Mesh jmeMesh, Transform transform) {
+        Validate.nonNull(jmeMesh, "JME mesh");
+
+        int numVertices = Math.max(0, jmeMesh.getVertexCount());
+        FloatBuffer meshVs = jmeMesh.getFloatBuffer(VertexBuffer.Type.Position);
+        float[] result = new float[numAxes * numVertices];
+        for (int offset = 0; offset < result.length; ++offset) {
+            result[offset] = meshVs.get(offset);
+        }
+
+        if (transform != null && !MyMath.isIdentity(transform)) {
+            Vector3f tmpVector = new Vector3f();
+            for (int vi = 0; vi < numVertices; ++vi) {
+                int start = numAxes * vi;
+                tmpVector.set(result[start], result[start + 1],
+                        result[start + 2]);
+                transform.transformVector(tmpVector, tmpVector);
+                result[start] = tmpVector.x;
+                result[start + 1] = tmpVector.y;
+                result[start + 2] = tmpVector.z;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Map each vertex to the first earlier vertex within tolerance, using a
+     * spatial hash.
+     *
+     * @param xyz the vertex positions (not null, unaffected)
+     * @param tolerance the welding distance (&ge;0)
+     * @return a new array of vertex indices
+     */
+    private static int[] weld(float[] xyz, float tolerance) {
+        int numVertices = xyz.length / numAxes;
+        int[] result = new int[numVertices];
+        float cellSize = (tolerance > 0f) ? tolerance : 1f;
+        float toleranceSquared = tolerance * tolerance;
+        Map<Long, List<Integer>> grid = new HashMap<>(numVertices);
+
+        for (int vi = 0; vi < numVertices; ++vi) {
+            float x = xyz[numAxes * vi];
+            float y = xyz[numAxes * vi + 1];
+            float z = xyz[numAxes * vi + 2];
+            long ix = (long) Math.floor(x / cellSize);
+            long iy = (long) Math.floor(y / cellSize);
+            long iz = (long) Math.floor(z / cellSize);
+            /*
+             * Search the 27 neighboring cells for a representative.
+             */
+            int match = -1;
+            search:
+            for (long dx = -1; dx <= 1; ++dx) {
+                for (long dy = -1; dy <= 1; ++dy) {
+                    for (long dz = -1; dz <= 1; ++dz) {
+                        List<Integer> list = grid.get(
+                                cellHash(ix + dx, iy + dy, iz + dz));
+                        if (list == null) {
+                            continue;
+                        }
+                        for (int candidate : list) {
+                            float ex = xyz[numAxes * candidate] - x;
+                            float ey = xyz[numAxes * candidate + 1] - y;
+                            float ez = xyz[numAxes * candidate + 2] - z;
+                            if (ex * ex + ey * ey + ez * ez
+                                    <= toleranceSquared) {
+                                match = candidate;
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (match == -1) {
+                result[vi] = vi;
+                Long key = cellHash(ix, iy, iz);
+                List<Integer> list = grid.get(key);
+                if (list == null) {
+                    list = new ArrayList<>(2);
+                    grid.put(key, list);
+                }
+                list.add(vi);
+            } else {
+                result[vi] = match;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Hash the specified cell indices. Collisions are harmless, since
+     * candidates are compared by distance.
+     *
+     * @param ix the X index
+     * @param iy the Y index
+     * @param iz the Z index
+     * @return the hash value
+     */
+    private static Long cellHash(long ix, long iy, long iz) {
+        long result = ix * 73_856_093L ^ iy * 19_349_663L ^ iz * 83_492_791L;
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * Identify a triangle by its vertex indices, regardless of winding.
+     * Immutable.
+     */
+    private static class TriangleKey {
+        /**
+         * vertex indices, in ascending order
+         */
+        final private int low, middle, high;
+
+        TriangleKey(int a, int b, int c) {
+            int min = Math.min(a, Math.min(b, c));
+            int max = Math.max(a, Math.max(b, c));
+            this.low = min;
+            this.high = max;
+            this.middle = a + b + c - min - max;
+        }
+
+        @Override
+        public boolean equals(Object otherObject) {
+            boolean result = false;
+            if (otherObject instanceof TriangleKey) {
+                TriangleKey other = (TriangleKey) otherObject;
+                result = low == other.low && middle == other.middle
+                        && high == other.high;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * (31 * low + middle) + high;
+            return result;
+        }
+    }
+}
@@ -34,11 +34,13 @@ package com.jme3.bullet.control;
 import com.jme3.bullet.PhysicsSoftSpace;
 import com.jme3.bullet.PhysicsSpace;
 import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.bullet.util.InterleavedVertexWriter;
 import com.jme3.bullet.util.NativeSoftBodyUtil;
 import com.jme3.export.InputCapsule;
 import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
+import com.jme3.math.Matrix4f;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Transform;
 import com.jme3.math.Vector3f;
@@ -97,10 +99,31 @@ public class SoftBodyControl extends AbstractPhysicsControl {
      * map from mesh-vertex indices to body-node indices, or null for identity
      */
     private IntBuffer indexMap = null; // TODO use an IndexBuffer to save memory
+    /**
+     * writer for an interleaved mesh, or null if not yet created
+     */
+    private InterleavedVertexWriter interleavedWriter = null;
     /**
      * underlying collision object
      */
     private PhysicsSoftBody body = null;
+    /**
+     * updater that synchronizes the mesh on this Control's behalf, or null if
+     * the Control synchronizes it during update()
+     */
+    private SoftBodyMeshUpdater meshUpdater = null;
+    /**
+     * temporary storage for transform matrices
+     */
+    private Matrix4f tmpMatrix = new Matrix4f();
+    /**
+     * temporary storage for transform matrices
+     */
+    private Matrix4f tmpMatrix2 = new Matrix4f();
+    /**
+     * temporary storage for the physics-to-mesh transform
+     */
+    private Transform tmpPhysicsToMesh = new Transform();
     // *************************************************************************
     // constructors
 
@@ -144,6 +167,108 @@ public class SoftBodyControl extends AbstractPhysicsControl {
     public PhysicsSoftBody getBody() {
         return body;
     }
+
+    /**
+     * Access the Geometry whose mesh is synchronized with the body.
+     *
+     * @return the pre-existing instance, or null if the Control is not added to
+     * a Spatial
+     */
+    Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Access the map from mesh-vertex indices to body-node indices.
+     *
+     * @return the pre-existing buffer, or null for identity
+     */
+    IntBuffer getIndexMap() {
+        return indexMap;
+    }
+
+    /**
+     * Access the updater that synchronizes the mesh on this Control's behalf.
+     *
+     * @return the pre-existing instance, or null if none
+     */
+    SoftBodyMeshUpdater getMeshUpdater() {
+        return meshUpdater;
+    }
+
+    /**
+     * Convert the controlled mesh to jME's interleaved layout, so that each
+     * update writes positions, normals, and (optionally) tangents into a
+     * single vertex buffer. Invoke after the Control is added to a Spatial.
+     * Interleaved meshes aren't supported by {@link SoftBodyMeshUpdater}.
+     *
+     * @param addTangents if true, add a tangent buffer to be recalculated
+     * during each update (requires a triangle mesh with normals and texture
+     * coordinates)
+     */
+    public void interleaveMesh(boolean addTangents) {
+        if (geometry == null) {
+            throw new IllegalStateException(
+                    "The control isn't added to a Spatial.");
+        }
+        Mesh mesh = geometry.getMesh();
+        InterleavedVertexWriter.interleave(mesh, addTangents);
+        this.interleavedWriter = null;
+    }
+
+    /**
+     * Test whether the controlled mesh uses jME's interleaved layout.
+     *
+     * @return true if interleaved, otherwise false
+     */
+    public boolean isMeshInterleaved() {
+        boolean result = geometry != null && geometry.getMesh().getBuffer(
+                VertexBuffer.Type.InterleavedData) != null;
+        return result;
+    }
+
+    /**
+     * Test whether mesh normals are updated.
+     *
+     * @return true if updated, otherwise false
+     */
+    boolean isUpdateNormals() {
+        return updateNormals;
+    }
+
+    /**
+     * Calculate the transform from physics-space coordinates to mesh
+     * coordinates, without allocating any objects. Invoke only from the
+     * render thread.
+     *
+     * @param storeResult storage for the result (not null, modified)
+     * @return storeResult
+     */
+    Transform physicsToMesh(Transform storeResult) {
+        Transform meshToWorld = geometry.getWorldTransform(); // alias
+        Matrix4f worldToMesh = meshToWorld.toTransformMatrix(tmpMatrix);
+        worldToMesh.invertLocal();
+        if (isApplyPhysicsLocal()) {
+            Spatial spatial = getSpatial();
+            Transform localToWorld = spatial.getWorldTransform(); // alias
+            localToWorld.toTransformMatrix(tmpMatrix2);
+            worldToMesh.multLocal(tmpMatrix2); // now local-to-mesh
+        }
+        storeResult.fromTransformMatrix(worldToMesh);
+
+        return storeResult;
+    }
+
+    /**
+     * Alter which updater (if any) synchronizes the mesh on this Control's
+     * behalf.
+     *
+     * @param updater the desired updater (alias created) or null to
+     * synchronize during update()
+     */
+    void setMeshUpdater(SoftBodyMeshUpdater updater) {
+        this.meshUpdater = updater;
+    }
     // *************************************************************************
     // AbstractPhysicsControl methods
 
@@ -171,6 +296,11 @@ public class SoftBodyControl extends AbstractPhysicsControl {
 
         geometry = cloner.clone(geometry);
         body = cloner.clone(body);
+        meshUpdater = null;
+        interleavedWriter = null;
+        tmpMatrix = new Matrix4f();
+        tmpMatrix2 = new Matrix4f();
+        tmpPhysicsToMesh = new Transform();
 
         if (indexMap != null) {
             SoftBodyControl originalControl = (SoftBodyControl) original;
@@ -310,30 +440,27 @@ public class SoftBodyControl extends AbstractPhysicsControl {
      */
     @Override
     public void update(float tpf) {
-        if (!isEnabled()) {
+        if (!isEnabled() || meshUpdater != null) {
             return;
         }
 
         Spatial spatial = getSpatial();
-
-        Transform physicsToMesh;
-        Transform meshToWorld = geometry.getWorldTransform(); // alias
-        Transform worldToMesh = meshToWorld.invert();
-        if (isApplyPhysicsLocal()) {
-            Transform localToWorld = spatial.getWorldTransform(); // alias
-            Transform localToMesh
-                    = localToWorld.clone().combineWithParent(worldToMesh);
-            physicsToMesh = localToMesh; // alias
-        } else {
-            physicsToMesh = worldToMesh; // alias
-        }
+        Transform physicsToMesh = physicsToMesh(tmpPhysicsToMesh);
 
         Mesh mesh = geometry.getMesh();
         boolean localFlag = false; // copy physics-space locations, not local
-        NativeSoftBodyUtil.updateMesh(body, indexMap, mesh, localFlag,
-                updateNormals, physicsToMesh);
-
-        spatial.updateModelBound(); // TODO needed?
+        if (isMeshInterleaved()) {
+            if (interleavedWriter == null) {
+                interleavedWriter = new InterleavedVertexWriter(mesh);
+            }
+            interleavedWriter.update(body, indexMap, localFlag, updateNormals,
+                    physicsToMesh);
+            geometry.setModelBound(mesh.getBound());
+        } else {
+            NativeSoftBodyUtil.updateMesh(body, indexMap, mesh, localFlag,
+                    updateNormals, physicsToMesh);
+            spatial.updateModelBound(); // TODO needed?
+        }
     }
 
     /**
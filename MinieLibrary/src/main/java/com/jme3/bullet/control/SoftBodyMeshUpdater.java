@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.control;
+
+import com.jme3.app.state.AbstractAppState;
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.bullet.util.NativeSoftBodyUtil;
+import com.jme3.math.Transform;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * An AppState to synchronize the meshes of many SoftBodyControls in parallel,
+ * using double-buffered vertex data.
+ * <p>
+ * During {@link #render(com.jme3.renderer.RenderManager)}, the updater submits
+ * one task per registered Control, which copies the body's node locations
+ * (and normals, if enabled) into back buffers that aren't attached to any
+ * Mesh. The tasks run while the frame is rendered from the front buffers.
+ * During the next {@link #update(float)}, the updater waits for any
+ * unfinished tasks and swaps each Control's back buffers into its Mesh. Meshes
+ * therefore lag the physics by one frame.
+ * <p>
+ * Attach this AppState after the BulletAppState, so that its tasks are
+ * submitted after the physics has been stepped. With ThreadingType.PARALLEL,
+ * the tasks may overlap a simulation step, just as SoftBodyControl.update()
+ * may.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class SoftBodyMeshUpdater extends AbstractAppState {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(SoftBodyMeshUpdater.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * executor to run the copy tasks
+     */
+    final private ExecutorService executor;
+    /**
+     * registered controls and their buffers, in order of registration
+     */
+    final private List<Slot> slots = new ArrayList<>(16);
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an updater with no controls.
+     *
+     * @param executor the executor to run the copy tasks, for instance a
+     * fixed thread pool (not null, alias created)
+     */
+    public SoftBodyMeshUpdater(ExecutorService executor) {
+        Validate.nonNull(executor, "executor");
+        this.executor = executor;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Register the specified Control, which must be added to a Spatial. While
+     * registered, the Control doesn't synchronize its mesh during update().
+     *
+     * @param control the Control to register (not null, alias created)
+     */
+    public void add(SoftBodyControl control) {
+        Validate.nonNull(control, "control");
+        Geometry geometry = control.getGeometry();
+        if (geometry == null) {
+            throw new IllegalArgumentException(
+                    "The control must be added to a Spatial.");
+        }
+        if (control.getMeshUpdater() != null) {
+            throw new IllegalArgumentException(
+                    "The control is already registered with an updater.");
+        }
+        if (control.isMeshInterleaved()) {
+            throw new IllegalArgumentException(
+                    "Interleaved meshes aren't supported.");
+        }
+
+        Slot slot = new Slot(control);
+        slots.add(slot);
+        control.setMeshUpdater(this);
+    }
+
+    /**
+     * Count the registered controls.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countControls() {
+        int result = slots.size();
+        return result;
+    }
+
+    /**
+     * Unregister the specified Control, after waiting for its pending task.
+     * The Control resumes synchronizing its own mesh.
+     *
+     * @param control the Control to unregister (not null, registered)
+     */
+    public void remove(SoftBodyControl control) {
+        Validate.nonNull(control, "control");
+
+        for (int slotIndex = 0; slotIndex < slots.size(); ++slotIndex) {
+            Slot slot = slots.get(slotIndex);
+            if (slot.control == control) {
+                slot.finish();
+                slots.remove(slotIndex);
+                control.setMeshUpdater(null);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("The control isn't registered.");
+    }
+    // *************************************************************************
+    // AbstractAppState methods
+
+    /**
+     * Clean up this AppState during the first update after it gets detached.
+     * Finish all pending tasks and unregister all controls.
+     */
+    @Override
+    public void cleanup() {
+        for (Slot slot : slots) {
+            slot.finish();
+            slot.control.setMeshUpdater(null);
+        }
+        slots.clear();
+
+        super.cleanup();
+    }
+
+    /**
+     * Submit a copy task for each enabled Control. Invoked once per frame,
+     * after the scene graph has been updated.
+     *
+     * @param rm the application's render manager (not null)
+     */
+    @Override
+    public void render(RenderManager rm) {
+        super.render(rm);
+
+        for (Slot slot : slots) {
+            slot.submit();
+        }
+    }
+
+    /**
+     * Wait for the tasks submitted during the previous frame and swap their
+     * buffers into the meshes. Invoked once per frame, before the scene graph
+     * is updated.
+     *
+     * @param tpf the time interval between frames (in seconds, &ge;0)
+     */
+    @Override
+    public void update(float tpf) {
+        super.update(tpf);
+
+        for (Slot slot : slots) {
+            slot.finish();
+        }
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * Per-control state, including the back buffers.
+     */
+    private class Slot implements Runnable {
+        /**
+         * back buffer for normals, or null if normals aren't updated
+         */
+        private FloatBuffer backNormals;
+        /**
+         * back buffer for positions
+         */
+        private FloatBuffer backPositions;
+        /**
+         * pending copy task, or null if none
+         */
+        private Future<?> pending = null;
+        /**
+         * index map captured at submission
+         */
+        private IntBuffer indexMap;
+        /**
+         * body captured at submission
+         */
+        private PhysicsSoftBody body;
+        /**
+         * Control whose mesh is synchronized
+         */
+        final private SoftBodyControl control;
+        /**
+         * coordinate transform captured at submission
+         */
+        final private Transform physicsToMesh = new Transform();
+
+        /**
+         * Instantiate a slot for the specified Control.
+         *
+         * @param control the Control (not null, alias created)
+         */
+        Slot(SoftBodyControl control) {
+            this.control = control;
+
+            Mesh mesh = control.getGeometry().getMesh();
+            FloatBuffer positions
+                    = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+            this.backPositions
+                    = BufferUtils.createFloatBuffer(positions.capacity());
+            if (control.isUpdateNormals()) {
+                FloatBuffer normals
+                        = mesh.getFloatBuffer(VertexBuffer.Type.Normal);
+                this.backNormals
+                        = BufferUtils.createFloatBuffer(normals.capacity());
+            }
+        }
+
+        /**
+         * Wait for the pending task (if any) and swap the back buffers into
+         * the Mesh.
+         */
+        void finish() {
+            if (pending == null) {
+                return;
+            }
+            try {
+                pending.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(exception);
+            } catch (ExecutionException exception) {
+                throw new RuntimeException(exception.getCause());
+            } finally {
+                pending = null;
+            }
+
+            Mesh mesh = control.getGeometry().getMesh();
+            backPositions = swap(mesh, VertexBuffer.Type.Position,
+                    backPositions);
+            if (backNormals != null) {
+                backNormals = swap(mesh, VertexBuffer.Type.Normal,
+                        backNormals);
+            }
+            control.getSpatial().updateModelBound();
+        }
+
+        /**
+         * Copy the body's node data into the back buffers. Invoked on a
+         * worker thread.
+         */
+        @Override
+        public void run() {
+            boolean localFlag = false; // copy physics-space locations
+            NativeSoftBodyUtil.updateMesh(body, indexMap, backPositions,
+                    backNormals, localFlag, physicsToMesh);
+        }
+
+        /**
+         * Capture the Control's state and submit a copy task, unless the
+         * Control is disabled or detached.
+         */
+        void submit() {
+            assert pending == null;
+            if (!control.isEnabled() || control.getSpatial() == null) {
+                return;
+            }
+
+            this.body = control.getBody();
+            this.indexMap = control.getIndexMap();
+            control.physicsToMesh(physicsToMesh);
+            this.pending = executor.submit(this);
+        }
+
+        /**
+         * Install the specified buffer in a Mesh, returning the buffer it
+         * replaced.
+         *
+         * @param mesh the Mesh to modify (not null)
+         * @param type the type of VertexBuffer
+         * @param data the filled buffer to install (not null)
+         * @return the previous data buffer, to be re-used as the back buffer
+         */
+        private FloatBuffer swap(Mesh mesh, VertexBuffer.Type type,
+                FloatBuffer data) {
+            VertexBuffer vertexBuffer = mesh.getBuffer(type);
+            FloatBuffer result = (FloatBuffer) vertexBuffer.getData();
+            data.rewind();
+            vertexBuffer.updateData(data);
+
+            return result;
+        }
+    }
+}
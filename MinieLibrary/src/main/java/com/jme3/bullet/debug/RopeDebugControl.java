@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.debug;
+
+import com.jme3.bullet.objects.PhysicsRope;
+import com.jme3.material.Material;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.util.logging.Logger;
+
+/**
+ * A physics-debug control to visualize a PhysicsRope as a line strip, using
+ * the same material as soft-body links.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+class RopeDebugControl extends AbstractPhysicsDebugControl {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(RopeDebugControl.class.getName());
+    /**
+     * local copy of {@link com.jme3.math.Quaternion#IDENTITY}
+     */
+    final private static Quaternion rotateIdentity = new Quaternion();
+    /**
+     * local copy of {@link com.jme3.math.Vector3f#ZERO}
+     */
+    final private static Vector3f translateIdentity = new Vector3f();
+    // *************************************************************************
+    // fields
+
+    /**
+     * Geometry to visualize the segments
+     */
+    final private Geometry segmentsGeometry;
+    /**
+     * rope to visualize (not null)
+     */
+    final private PhysicsRope rope;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an enabled Control to visualize the specified rope.
+     *
+     * @param debugAppState which app state (not null, alias created)
+     * @param rope which rope to visualize (not null, alias created)
+     */
+    RopeDebugControl(SoftDebugAppState debugAppState, PhysicsRope rope) {
+        super(debugAppState);
+        this.rope = rope;
+
+        Mesh mesh = new Mesh();
+        FloatBuffer positions = rope.copyLocations(null);
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.setMode(Mesh.Mode.LineStrip);
+        mesh.setStreamed();
+        mesh.updateBound();
+
+        segmentsGeometry = new Geometry(rope + " segments", mesh);
+        segmentsGeometry.setShadowMode(RenderQueue.ShadowMode.Off);
+        Material material = debugAppState.getLinkMaterial();
+        segmentsGeometry.setMaterial(material);
+    }
+    // *************************************************************************
+    // AbstractPhysicsDebugControl methods
+
+    /**
+     * Update this Control. Invoked once per frame during the logical-state
+     * update, provided the Control is enabled and added to a scene. Should be
+     * invoked only by a subclass or by AbstractControl.
+     *
+     * @param tpf the time interval between frames (in seconds, &ge;0)
+     */
+    @Override
+    protected void controlUpdate(float tpf) {
+        Mesh mesh = segmentsGeometry.getMesh();
+        VertexBuffer positions = mesh.getBuffer(VertexBuffer.Type.Position);
+        FloatBuffer data = (FloatBuffer) positions.getData();
+        rope.copyLocations(data);
+        positions.setUpdateNeeded();
+        mesh.updateBound();
+        segmentsGeometry.updateModelBound();
+
+        applyPhysicsTransform(translateIdentity, rotateIdentity);
+    }
+
+    /**
+     * Alter which Spatial is controlled. Invoked when the Control is added to
+     * or removed from a Spatial. Should be invoked only by a subclass or from
+     * Spatial. Do not invoke directly from user code.
+     *
+     * @param spatial the Spatial to control (or null)
+     */
+    @Override
+    public void setSpatial(Spatial spatial) {
+        if (spatial instanceof Node) {
+            assert this.spatial == null;
+            ((Node) spatial).attachChild(segmentsGeometry);
+        } else if (spatial == null && this.spatial != null) {
+            ((Node) this.spatial).detachChild(segmentsGeometry);
+        }
+        super.setSpatial(spatial);
+    }
+}
@@ -33,6 +33,7 @@ package com.jme3.bullet.debug;
 
 import com.jme3.asset.AssetManager;
 import com.jme3.bullet.PhysicsSoftSpace;
+import com.jme3.bullet.objects.PhysicsRope;
 import com.jme3.bullet.objects.PhysicsSoftBody;
 import com.jme3.material.Material;
 import com.jme3.material.RenderState;
@@ -48,7 +49,8 @@ import java.util.logging.Logger;
 import jme3utilities.MyAsset;
 
 /**
- * An AppState to manage debug visualization of a PhysicsSoftSpace.
+ * An AppState to manage debug visualization of a PhysicsSoftSpace, including
+ * its soft bodies and ropes.
  *
  * @author Stephen Gold sgold@sonic.net
  *
@@ -70,6 +72,10 @@ public class SoftDebugAppState extends BulletDebugAppState {
      * limit which clusters are visualized, or null to visualize no clusters
      */
     private BulletDebugAppState.DebugAppStateFilter clusterFilter;
+    /**
+     * map ropes to visualization nodes
+     */
+    private HashMap<PhysicsRope, Node> ropes = new HashMap<>(16);
     /**
      * map soft bodies to visualization nodes
      */
@@ -242,11 +248,54 @@ public class SoftDebugAppState extends BulletDebugAppState {
     @Override
     protected void updateShapes() {
         super.updateShapes();
+        updateRopes();
         updateSoftBodies();
     }
     // *************************************************************************
     // private methods
 
+    /**
+     * Synchronize the rope debug controls with the PhysicsSoftSpace.
+     */
+    private void updateRopes() {
+        HashMap<PhysicsRope, Node> oldMap = ropes;
+        ropes = new HashMap<>(oldMap.size());
+        DebugConfiguration config = getConfiguration();
+        PhysicsSoftSpace pSpace = (PhysicsSoftSpace) config.getSpace();
+        Collection<PhysicsRope> list = pSpace.getRopeList();
+        for (PhysicsRope rope : list) {
+            Node node = oldMap.remove(rope);
+            if (node == null) {
+                node = new Node(rope.toString());
+                attachChild(node);
+            }
+            ropes.put(rope, node);
+        }
+        /*
+         * Detach nodes of ropes that have been removed from the space.
+         */
+        for (Node node : oldMap.values()) {
+            node.removeFromParent();
+        }
+
+        BulletDebugAppState.DebugAppStateFilter filter
+                = config.getFilter();
+        for (Map.Entry<PhysicsRope, Node> entry : ropes.entrySet()) {
+            PhysicsRope rope = entry.getKey();
+            boolean display = (filter == null) || filter.displayObject(rope);
+
+            Node node = entry.getValue();
+            Control control = node.getControl(RopeDebugControl.class);
+            if (control == null && display) {
+                logger.log(Level.FINE, "Create new RopeDebugControl");
+                control = new RopeDebugControl(this, rope);
+                node.addControl(control);
+            } else if (control != null && !display) {
+                node.removeControl(control);
+            }
+        }
+    }
+
     /**
      * Synchronize the soft-body debug controls with the PhysicsSoftSpace.
      */
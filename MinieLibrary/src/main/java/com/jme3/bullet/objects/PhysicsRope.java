@@ -0,0 +1,1007 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.objects;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.collision.PhysicsCollisionObject;
+import com.jme3.bullet.collision.PhysicsRayTestResult;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+import jme3utilities.math.MyVector3f;
+
+/**
+ * A lightweight rope or chain: a single strand of nodes joined by
+ * fixed-length segments, simulated in Java using position-based dynamics.
+ * <p>
+ * Each step predicts node locations by Verlet integration and then projects
+ * them onto the length constraints. Because the nodes form a chain, the
+ * linearized constraints are tridiagonal and are solved exactly in linear
+ * time, so long ropes don't stretch the way they do with Gauss-Seidel
+ * relaxation.
+ * <p>
+ * Compared to a PhysicsSoftBody created with
+ * {@link com.jme3.bullet.util.NativeSoftBodyUtil#appendFromLineMesh}, a rope
+ * stores its nodes in contiguous arrays and skips the general soft-body
+ * machinery (faces, clusters, aerodynamics, and broadphase proxies), so many
+ * more segments can be simulated for the same cost. Rigid bodies can be
+ * attached to individual nodes. Collisions with the rest of the space are
+ * optional: when enabled, each node casts one ray per step.
+ * <p>
+ * A rope isn't a collision object. Add it to a
+ * {@link com.jme3.bullet.PhysicsSoftSpace} to have it stepped (after each
+ * physics step) and visualized by the soft-body debug app state, or invoke
+ * {@link #step(float, com.jme3.bullet.PhysicsSpace)} directly.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class PhysicsRope implements PhysicsTickListener {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = MyVector3f.numAxes;
+    /**
+     * fraction of each Newton step applied per iteration: full steps excite
+     * a zigzag oscillation in taut ropes
+     */
+    final private static float relaxation = 0.7f;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(PhysicsRope.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if nodes collide with other objects in the space, otherwise false
+     */
+    private boolean collisionsEnabled = false;
+    /**
+     * clearance maintained between nodes and obstacles (in physics-space
+     * units, &ge;0)
+     */
+    private float collisionMargin = 0.04f;
+    /**
+     * fraction of each node's velocity lost per step (&ge;0, &le;1)
+     */
+    private float damping = 0.01f;
+    /**
+     * duration of the most recent step (in seconds, &ge;0)
+     */
+    private float lastTimeStep = 0f;
+    /**
+     * mass of each node (&gt;0)
+     */
+    final private float nodeMass;
+    /**
+     * inverse mass of each node (0 if pinned)
+     */
+    final private float[] inverseMasses;
+    /**
+     * current node locations (in physics-space coordinates, 3 floats per
+     * node)
+     */
+    final private float[] locations;
+    /**
+     * node locations at the end of the previous step (in physics-space
+     * coordinates, 3 floats per node)
+     */
+    final private float[] previous;
+    /**
+     * rest length of each segment (in physics-space units)
+     */
+    final private float[] restLengths;
+    /**
+     * solver scratch: constraint multiplier for each segment
+     */
+    final private float[] lambdas;
+    /**
+     * solver scratch: modified super-diagonal for each segment
+     */
+    final private float[] superDiagonal;
+    /**
+     * solver scratch: unit direction of each segment (3 floats per segment)
+     */
+    final private float[] directions;
+    /**
+     * solver scratch: inverse mass of each node, as seen by the solver
+     */
+    final private float[] solverWeights;
+    /**
+     * number of constraint-solver iterations per step (&ge;1)
+     */
+    private int numIterations = 8;
+    /**
+     * rigid bodies attached to nodes
+     */
+    final private List<Attachment> attachments = new ArrayList<>(2);
+    /**
+     * reusable list for ray-test results
+     */
+    final private List<PhysicsRayTestResult> rayResults = new ArrayList<>(4);
+    /**
+     * temporary storage
+     */
+    final private Quaternion tmpRotation = new Quaternion();
+    final private Vector3f tmpFrom = new Vector3f();
+    final private Vector3f tmpNormal = new Vector3f();
+    final private Vector3f tmpImpulse = new Vector3f();
+    final private Vector3f tmpTo = new Vector3f();
+    /**
+     * gravitational acceleration (in physics-space coordinates)
+     */
+    final private Vector3f gravity = new Vector3f(0f, -9.81f, 0f);
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a rope with its nodes at the specified locations, for
+     * instance the positions of a line-strip mesh. Segment rest lengths are
+     * taken from the initial spacing. The rope starts at rest.
+     *
+     * @param nodeLocations the initial node locations (in physics-space
+     * coordinates, not null, unaffected, at least 2 nodes)
+     * @param totalMass the total mass of the rope (&gt;0)
+     */
+    public PhysicsRope(FloatBuffer nodeLocations, float totalMass) {
+        Validate.positive(totalMass, "total mass");
+        int numFloats = nodeLocations.limit();
+        Validate.require(numFloats % numAxes == 0,
+                "limit a multiple of 3");
+        int numNodes = numFloats / numAxes;
+        Validate.require(numNodes >= 2, "at least 2 nodes");
+
+        this.locations = new float[numFloats];
+        for (int i = 0; i < numFloats; ++i) {
+            locations[i] = nodeLocations.get(i);
+        }
+        this.previous = locations.clone();
+
+        this.nodeMass = totalMass / numNodes;
+        this.inverseMasses = new float[numNodes];
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            inverseMasses[nodeIndex] = 1f / nodeMass;
+        }
+
+        int numSegments = numNodes - 1;
+        this.restLengths = new float[numSegments];
+        for (int segIndex = 0; segIndex < numSegments; ++segIndex) {
+            restLengths[segIndex] = distance(segIndex, segIndex + 1);
+        }
+
+        this.directions = new float[numAxes * numSegments];
+        this.lambdas = new float[numSegments];
+        this.solverWeights = new float[numNodes];
+        this.superDiagonal = new float[numSegments];
+    }
+
+    /**
+     * Instantiate a straight rope at rest, with evenly spaced nodes.
+     *
+     * @param start the location of the first node (in physics-space
+     * coordinates, not null, unaffected)
+     * @param end the location of the last node (in physics-space
+     * coordinates, not null, unaffected)
+     * @param numSegments the number of segments (&ge;1)
+     * @param totalMass the total mass of the rope (&gt;0)
+     */
+    public PhysicsRope(Vector3f start, Vector3f end, int numSegments,
+            float totalMass) {
+        this(straightLine(start, end, numSegments), totalMass);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Attach the indexed node to a point on the specified rigid body. The
+     * node follows the point. If the body is dynamic, the rope pulls back on
+     * it, treating the body as a point mass at the attachment.
+     *
+     * @param nodeIndex which node (&ge;0, &lt;numNodes)
+     * @param body the body to attach to (not null, alias created)
+     * @param pivotInBody the attachment point (in the body's local
+     * coordinates, not null, unaffected)
+     */
+    public void attach(int nodeIndex, PhysicsRigidBody body,
+            Vector3f pivotInBody) {
+        validateNodeIndex(nodeIndex);
+        Validate.nonNull(body, "body");
+        Validate.finite(pivotInBody, "pivot");
+
+        detach(nodeIndex);
+        Attachment attachment
+                = new Attachment(nodeIndex, body, pivotInBody.clone());
+        attachments.add(attachment);
+    }
+
+    /**
+     * Copy the locations of all nodes.
+     *
+     * @param storeResult storage for the result (modified if not null)
+     * @return a buffer containing physics-space coordinates (either
+     * storeResult or a new direct buffer, capacity&ge;3*numNodes)
+     */
+    public FloatBuffer copyLocations(FloatBuffer storeResult) {
+        int numFloats = locations.length;
+        FloatBuffer result = reuseOrCreate(storeResult, numFloats);
+        for (int i = 0; i < numFloats; ++i) {
+            result.put(i, locations[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Copy the velocities of all nodes, as of the most recent step.
+     *
+     * @param storeResult storage for the result (modified if not null)
+     * @return a buffer containing velocity vectors (in physics-space
+     * coordinates, either storeResult or a new direct buffer,
+     * capacity&ge;3*numNodes)
+     */
+    public FloatBuffer copyVelocities(FloatBuffer storeResult) {
+        int numFloats = locations.length;
+        FloatBuffer result = reuseOrCreate(storeResult, numFloats);
+        float invStep = (lastTimeStep > 0f) ? 1f / lastTimeStep : 0f;
+        for (int i = 0; i < numFloats; ++i) {
+            result.put(i, (locations[i] - previous[i]) * invStep);
+        }
+
+        return result;
+    }
+
+    /**
+     * Count the rigid bodies attached to this rope.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countAttachments() {
+        int result = attachments.size();
+        return result;
+    }
+
+    /**
+     * Count the nodes in this rope.
+     *
+     * @return the count (&ge;2)
+     */
+    public int countNodes() {
+        int result = inverseMasses.length;
+        return result;
+    }
+
+    /**
+     * Count the segments in this rope.
+     *
+     * @return the count (&ge;1)
+     */
+    public int countSegments() {
+        int result = restLengths.length;
+        return result;
+    }
+
+    /**
+     * Detach the indexed node from any rigid body.
+     *
+     * @param nodeIndex which node (&ge;0, &lt;numNodes)
+     * @return true if the node was attached, otherwise false
+     */
+    public boolean detach(int nodeIndex) {
+        validateNodeIndex(nodeIndex);
+
+        for (int i = 0; i < attachments.size(); ++i) {
+            if (attachments.get(i).nodeIndex == nodeIndex) {
+                attachments.remove(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the collision margin.
+     *
+     * @return the clearance maintained between nodes and obstacles (in
+     * physics-space units, &ge;0)
+     */
+    public float getCollisionMargin() {
+        return collisionMargin;
+    }
+
+    /**
+     * Return the damping.
+     *
+     * @return the fraction of each node's velocity lost per step (&ge;0,
+     * &le;1)
+     */
+    public float getDamping() {
+        return damping;
+    }
+
+    /**
+     * Copy the gravitational acceleration.
+     *
+     * @param storeResult storage for the result (modified if not null)
+     * @return an acceleration vector (in physics-space coordinates, either
+     * storeResult or a new vector, not null)
+     */
+    public Vector3f getGravity(Vector3f storeResult) {
+        Vector3f result = (storeResult == null) ? new Vector3f() : storeResult;
+        result.set(gravity);
+        return result;
+    }
+
+    /**
+     * Locate the indexed node.
+     *
+     * @param nodeIndex which node (&ge;0, &lt;numNodes)
+     * @param storeResult storage for the result (modified if not null)
+     * @return the location (in physics-space coordinates, either storeResult
+     * or a new vector, not null)
+     */
+    public Vector3f getNodeLocation(int nodeIndex, Vector3f storeResult) {
+        validateNodeIndex(nodeIndex);
+        Vector3f result = (storeResult == null) ? new Vector3f() : storeResult;
+
+        int start = numAxes * nodeIndex;
+        result.set(locations[start], locations[start + 1],
+                locations[start + 2]);
+
+        return result;
+    }
+
+    /**
+     * Test whether nodes collide with other objects in the space.
+     *
+     * @return true if enabled, otherwise false
+     */
+    public boolean isCollisionEnabled() {
+        return collisionsEnabled;
+    }
+
+    /**
+     * Test whether the indexed node is pinned.
+     *
+     * @param nodeIndex which node (&ge;0, &lt;numNodes)
+     * @return true if pinned, otherwise false
+     */
+    public boolean isPinned(int nodeIndex) {
+        validateNodeIndex(nodeIndex);
+        boolean result = inverseMasses[nodeIndex] == 0f;
+        return result;
+    }
+
+    /**
+     * Return the number of solver iterations per step.
+     *
+     * @return the count (&ge;1)
+     */
+    public int numIterations() {
+        return numIterations;
+    }
+
+    /**
+     * Move the indexed node to the specified location and hold it there until
+     * it's unpinned.
+     *
+     * @param nodeIndex which node (&ge;0, &lt;numNodes)
+     * @param location the desired location (in physics-space coordinates, not
+     * null, unaffected)
+     */
+    public void pinNode(int nodeIndex, Vector3f location) {
+        validateNodeIndex(nodeIndex);
+        Validate.finite(location, "location");
+
+        int start = numAxes * nodeIndex;
+        locations[start] = previous[start] = location.x;
+        locations[start + 1] = previous[start + 1] = location.y;
+        locations[start + 2] = previous[start + 2] = location.z;
+        inverseMasses[nodeIndex] = 0f;
+    }
+
+    /**
+     * Calculate the total rest length of this rope.
+     *
+     * @return the length (in physics-space units, &ge;0)
+     */
+    public float restLength() {
+        float result = 0f;
+        for (float length : restLengths) {
+            result += length;
+        }
+
+        return result;
+    }
+
+    /**
+     * Enable or disable collisions between nodes and other objects in the
+     * space. Each node casts one ray per step, so enabling collisions
+     * dominates the cost of long ropes.
+     *
+     * @param setting true to enable, false to disable (default=false)
+     */
+    public void setCollisionEnabled(boolean setting) {
+        this.collisionsEnabled = setting;
+    }
+
+    /**
+     * Alter the collision margin.
+     *
+     * @param margin the desired clearance between nodes and obstacles (in
+     * physics-space units, &ge;0, default=0.04)
+     */
+    public void setCollisionMargin(float margin) {
+        Validate.nonNegative(margin, "margin");
+        this.collisionMargin = margin;
+    }
+
+    /**
+     * Alter the damping.
+     *
+     * @param damping the desired fraction of each node's velocity lost per
+     * step (&ge;0, &le;1, default=0.01)
+     */
+    public void setDamping(float damping) {
+        Validate.fraction(damping, "damping");
+        this.damping = damping;
+    }
+
+    /**
+     * Alter the gravitational acceleration. Adding the rope to a space
+     * replaces this with the space's gravity.
+     *
+     * @param acceleration the desired acceleration vector (in physics-space
+     * coordinates, not null, unaffected, default=(0,-9.81,0))
+     */
+    public void setGravity(Vector3f acceleration) {
+        Validate.finite(acceleration, "acceleration");
+        gravity.set(acceleration);
+    }
+
+    /**
+     * Alter the number of solver iterations per step. Each iteration solves
+     * the linearized constraints of the whole rope at once. Fast-moving ropes
+     * with hundreds of segments may need more iterations to avoid stretching.
+     *
+     * @param numIterations the desired count (&ge;1, default=8)
+     */
+    public void setIterations(int numIterations) {
+        Validate.positive(numIterations, "number of iterations");
+        this.numIterations = numIterations;
+    }
+
+    /**
+     * Advance this rope by one time step.
+     *
+     * @param timeStep the duration of the step (in seconds, &gt;0)
+     * @param space the space to test for collisions, or null to skip
+     * collisions
+     */
+    public void step(float timeStep, PhysicsSpace space) {
+        Validate.positive(timeStep, "time step");
+
+        integrate(timeStep);
+
+        System.arraycopy(inverseMasses, 0, solverWeights, 0,
+                inverseMasses.length);
+        int numAttachments = attachments.size();
+        for (int i = 0; i < numAttachments; ++i) {
+            attachments.get(i).beginStep(tmpRotation);
+        }
+        for (int iteration = 0; iteration < numIterations; ++iteration) {
+            solveChain();
+        }
+        for (int i = 0; i < numAttachments; ++i) {
+            attachments.get(i).endStep(timeStep, tmpImpulse);
+        }
+
+        if (collisionsEnabled && space != null) {
+            collide(space);
+        }
+        this.lastTimeStep = timeStep;
+    }
+
+    /**
+     * Release the indexed node, if it was pinned.
+     *
+     * @param nodeIndex which node (&ge;0, &lt;numNodes)
+     */
+    public void unpinNode(int nodeIndex) {
+        validateNodeIndex(nodeIndex);
+        inverseMasses[nodeIndex] = 1f / nodeMass;
+    }
+    // *************************************************************************
+    // PhysicsTickListener methods
+
+    /**
+     * Callback from Bullet, invoked just after the physics has been stepped.
+     * Advance the rope, so attachments see the updated rigid bodies.
+     *
+     * @param space the space that was just stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void physicsTick(PhysicsSpace space, float timeStep) {
+        if (timeStep > 0f) {
+            step(timeStep, space);
+        }
+    }
+
+    /**
+     * Callback from Bullet, invoked just before the physics is stepped. No
+     * effect.
+     *
+     * @param space the space that is about to be stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        // do nothing
+    }
+    // *************************************************************************
+    // Object methods
+
+    /**
+     * Represent this rope as a String.
+     *
+     * @return a descriptive string of text (not null, not empty)
+     */
+    @Override
+    public String toString() {
+        String result = String.format("PhysicsRope[numNodes=%d, "
+                + "restLength=%g]", countNodes(), restLength());
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Push nodes that moved into other collision objects back out, using one
+     * ray per node from its previous location. Attached bodies are ignored.
+     * Velocity into the obstacle is cancelled.
+     *
+     * @param space the space to test (not null)
+     */
+    private void collide(PhysicsSpace space) {
+        int numNodes = countNodes();
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            if (inverseMasses[nodeIndex] == 0f || isAttached(nodeIndex)) {
+                continue;
+            }
+            int start = numAxes * nodeIndex;
+            tmpFrom.set(previous[start], previous[start + 1],
+                    previous[start + 2]);
+            tmpTo.set(locations[start], locations[start + 1],
+                    locations[start + 2]);
+            if (tmpFrom.distanceSquared(tmpTo) < 1e-12f) {
+                continue;
+            }
+
+            space.rayTestRaw(tmpFrom, tmpTo, rayResults);
+            float bestFraction = Float.POSITIVE_INFINITY;
+            PhysicsRayTestResult best = null;
+            for (PhysicsRayTestResult hit : rayResults) {
+                PhysicsCollisionObject pco = hit.getCollisionObject();
+                if (hit.getHitFraction() < bestFraction
+                        && !isAttachedTo(pco)) {
+                    bestFraction = hit.getHitFraction();
+                    best = hit;
+                }
+            }
+            if (best == null) {
+                continue;
+            }
+            /*
+             * Place the node just outside the hit point and remove the
+             * normal component of its velocity.
+             */
+            best.getHitNormalLocal(tmpNormal);
+            tmpTo.subtractLocal(tmpFrom).multLocal(bestFraction);
+            tmpTo.addLocal(tmpFrom);
+            tmpTo.addLocal(tmpNormal.x * collisionMargin,
+                    tmpNormal.y * collisionMargin,
+                    tmpNormal.z * collisionMargin);
+
+            float vx = locations[start] - previous[start];
+            float vy = locations[start + 1] - previous[start + 1];
+            float vz = locations[start + 2] - previous[start + 2];
+            float vn = vx * tmpNormal.x + vy * tmpNormal.y + vz * tmpNormal.z;
+            if (vn < 0f) {
+                vx -= vn * tmpNormal.x;
+                vy -= vn * tmpNormal.y;
+                vz -= vn * tmpNormal.z;
+            }
+            locations[start] = tmpTo.x;
+            locations[start + 1] = tmpTo.y;
+            locations[start + 2] = tmpTo.z;
+            previous[start] = tmpTo.x - vx;
+            previous[start + 1] = tmpTo.y - vy;
+            previous[start + 2] = tmpTo.z - vz;
+        }
+        rayResults.clear();
+    }
+
+    /**
+     * Calculate the distance between 2 nodes.
+     *
+     * @param index1 the index of the first node
+     * @param index2 the index of the 2nd node
+     * @return the distance (in physics-space units, &ge;0)
+     */
+    private float distance(int index1, int index2) {
+        int start1 = numAxes * index1;
+        int start2 = numAxes * index2;
+        float dx = locations[start2] - locations[start1];
+        float dy = locations[start2 + 1] - locations[start1 + 1];
+        float dz = locations[start2 + 2] - locations[start1 + 2];
+        float result = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        return result;
+    }
+
+    /**
+     * Predict new node locations from their velocities and gravity (Verlet
+     * integration).
+     *
+     * @param timeStep the duration of the step (in seconds, &gt;0)
+     */
+    private void integrate(float timeStep) {
+        float gdx = gravity.x * timeStep * timeStep;
+        float gdy = gravity.y * timeStep * timeStep;
+        float gdz = gravity.z * timeStep * timeStep;
+        /*
+         * The step may differ from the previous one, so scale the velocity.
+         */
+        float velocityScale = 1f - damping;
+        if (lastTimeStep > 0f) {
+            velocityScale *= timeStep / lastTimeStep;
+        }
+
+        int numNodes = countNodes();
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            int start = numAxes * nodeIndex;
+            if (inverseMasses[nodeIndex] == 0f) {
+                previous[start] = locations[start];
+                previous[start + 1] = locations[start + 1];
+                previous[start + 2] = locations[start + 2];
+                continue;
+            }
+
+            float x = locations[start];
+            float y = locations[start + 1];
+            float z = locations[start + 2];
+            locations[start] += (x - previous[start]) * velocityScale + gdx;
+            locations[start + 1]
+                    += (y - previous[start + 1]) * velocityScale + gdy;
+            locations[start + 2]
+                    += (z - previous[start + 2]) * velocityScale + gdz;
+            previous[start] = x;
+            previous[start + 1] = y;
+            previous[start + 2] = z;
+        }
+    }
+
+    /**
+     * Test whether the indexed node is attached to a rigid body.
+     *
+     * @param nodeIndex which node
+     * @return true if attached, otherwise false
+     */
+    private boolean isAttached(int nodeIndex) {
+        for (Attachment attachment : attachments) {
+            if (attachment.nodeIndex == nodeIndex) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Test whether the specified collision object is attached to this rope.
+     *
+     * @param pco the object to test (may be null)
+     * @return true if attached, otherwise false
+     */
+    private boolean isAttachedTo(PhysicsCollisionObject pco) {
+        for (Attachment attachment : attachments) {
+            if (attachment.body == pco) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reuse the specified buffer or else create a new one.
+     *
+     * @param storeResult the buffer to reuse, or null
+     * @param numFloats the required capacity (&ge;0)
+     * @return storeResult or a new direct buffer (not null)
+     */
+    private static FloatBuffer reuseOrCreate(FloatBuffer storeResult,
+            int numFloats) {
+        FloatBuffer result;
+        if (storeResult == null) {
+            result = BufferUtils.createFloatBuffer(numFloats);
+        } else {
+            Validate.require(storeResult.capacity() >= numFloats,
+                    "a buffer large enough for all nodes");
+            result = storeResult;
+        }
+
+        return result;
+    }
+
+    /**
+     * Perform one (relaxed) Newton iteration on the length constraints:
+     * linearize them about the current locations, solve the resulting
+     * tridiagonal system for the multipliers (Thomas algorithm), and move the
+     * nodes accordingly.
+     */
+    private void solveChain() {
+        int numSegments = restLengths.length;
+        /*
+         * Calculate segment directions and constraint errors.  The errors are
+         * stored (negated) in the lambdas array, which becomes the solution.
+         */
+        for (int segIndex = 0; segIndex < numSegments; ++segIndex) {
+            int start = numAxes * segIndex;
+            float dx = locations[start + 3] - locations[start];
+            float dy = locations[start + 4] - locations[start + 1];
+            float dz = locations[start + 5] - locations[start + 2];
+            float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (length > 1e-9f) {
+                float invLength = 1f / length;
+                directions[start] = dx * invLength;
+                directions[start + 1] = dy * invLength;
+                directions[start + 2] = dz * invLength;
+            } else { // degenerate segment: leave it alone this iteration
+                directions[start] = 0f;
+                directions[start + 1] = 0f;
+                directions[start + 2] = 0f;
+                length = restLengths[segIndex];
+            }
+            lambdas[segIndex] = relaxation * (restLengths[segIndex] - length);
+        }
+        /*
+         * Forward elimination.  The diagonal is w[j] + w[j+1] and the
+         * off-diagonals are -w[j+1] * dot(u[j], u[j+1]).
+         */
+        float previousSuper = 0f;
+        for (int segIndex = 0; segIndex < numSegments; ++segIndex) {
+            int start = numAxes * segIndex;
+            float w1 = solverWeights[segIndex];
+            float w2 = solverWeights[segIndex + 1];
+            float sub = 0f;
+            if (segIndex > 0) {
+                sub = -w1 * (directions[start - 3] * directions[start]
+                        + directions[start - 2] * directions[start + 1]
+                        + directions[start - 1] * directions[start + 2]);
+            }
+            float sup = 0f;
+            if (segIndex < numSegments - 1) {
+                sup = -w2 * (directions[start] * directions[start + 3]
+                        + directions[start + 1] * directions[start + 4]
+                        + directions[start + 2] * directions[start + 5]);
+            }
+
+            float pivot = w1 + w2 - sub * previousSuper;
+            if (pivot <= 1e-12f) { // both ends immovable
+                lambdas[segIndex] = 0f;
+                superDiagonal[segIndex] = 0f;
+            } else {
+                float rhs = lambdas[segIndex];
+                if (segIndex > 0) {
+                    rhs -= sub * lambdas[segIndex - 1];
+                }
+                lambdas[segIndex] = rhs / pivot;
+                superDiagonal[segIndex] = sup / pivot;
+            }
+            previousSuper = superDiagonal[segIndex];
+        }
+        /*
+         * Back substitution.
+         */
+        for (int segIndex = numSegments - 2; segIndex >= 0; --segIndex) {
+            lambdas[segIndex]
+                    -= superDiagonal[segIndex] * lambdas[segIndex + 1];
+        }
+        /*
+         * Apply the corrections:  node i moves by
+         * w[i] * (lambda[i-1] * u[i-1] - lambda[i] * u[i]),
+         * so a positive lambda lengthens its segment.
+         */
+        int numNodes = solverWeights.length;
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            float w = solverWeights[nodeIndex];
+            if (w == 0f) {
+                continue;
+            }
+            int start = numAxes * nodeIndex;
+            float cx = 0f;
+            float cy = 0f;
+            float cz = 0f;
+            if (nodeIndex > 0) { // 2nd end of the preceding segment
+                float lambda = lambdas[nodeIndex - 1];
+                cx += lambda * directions[start - 3];
+                cy += lambda * directions[start - 2];
+                cz += lambda * directions[start - 1];
+            }
+            if (nodeIndex < numSegments) { // first end of the next segment
+                float lambda = lambdas[nodeIndex];
+                cx -= lambda * directions[start];
+                cy -= lambda * directions[start + 1];
+                cz -= lambda * directions[start + 2];
+            }
+            locations[start] += w * cx;
+            locations[start + 1] += w * cy;
+            locations[start + 2] += w * cz;
+        }
+    }
+
+    /**
+     * Generate evenly spaced locations along a line segment.
+     *
+     * @param start the first location (not null, unaffected)
+     * @param end the last location (not null, unaffected)
+     * @param numSegments the number of intervals (&ge;1)
+     * @return a new direct buffer (capacity=3*(numSegments+1))
+     */
+    private static FloatBuffer straightLine(Vector3f start, Vector3f end,
+            int numSegments) {
+        Validate.finite(start, "start");
+        Validate.finite(end, "end");
+        Validate.positive(numSegments, "number of segments");
+
+        int numNodes = numSegments + 1;
+        FloatBuffer result = BufferUtils.createFloatBuffer(numAxes * numNodes);
+        Vector3f tmp = new Vector3f();
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            float t = nodeIndex / (float) numSegments;
+            MyVector3f.lerp(t, start, end, tmp);
+            result.put(tmp.x).put(tmp.y).put(tmp.z);
+        }
+        result.flip();
+
+        return result;
+    }
+
+    /**
+     * Verify that the specified node index is in range.
+     *
+     * @param nodeIndex the index to test
+     */
+    private void validateNodeIndex(int nodeIndex) {
+        int numNodes = countNodes();
+        Validate.inRange(nodeIndex, "node index", 0, numNodes - 1);
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A rigid body attached to one node of the rope.
+     */
+    private class Attachment {
+        /**
+         * index of the attached node
+         */
+        final int nodeIndex;
+        /**
+         * attached body (not null)
+         */
+        final PhysicsRigidBody body;
+        /**
+         * attachment point (in the body's local coordinates)
+         */
+        final Vector3f pivot;
+        /**
+         * attachment point (in physics-space coordinates) for this step
+         */
+        final Vector3f target = new Vector3f();
+        /**
+         * attachment point relative to the body's center (in physics-space
+         * coordinates) for this step
+         */
+        final Vector3f worldOffset = new Vector3f();
+        /**
+         * Instantiate an attachment.
+         *
+         * @param nodeIndex which node
+         * @param body the body (not null, alias created)
+         * @param pivot the attachment point (in the body's local coordinates,
+         * not null, alias created)
+         */
+        Attachment(int nodeIndex, PhysicsRigidBody body, Vector3f pivot) {
+            this.nodeIndex = nodeIndex;
+            this.body = body;
+            this.pivot = pivot;
+        }
+
+        /**
+         * Move the node to the attachment point for the current step and
+         * tell the solver how freely it can move from there.
+         *
+         * @param tmpRotation temporary storage (not null)
+         */
+        void beginStep(Quaternion tmpRotation) {
+            body.getPhysicsRotation(tmpRotation);
+            tmpRotation.mult(pivot, worldOffset);
+            body.getPhysicsLocation(target);
+            target.addLocal(worldOffset);
+
+            int start = numAxes * nodeIndex;
+            locations[start] = target.x;
+            locations[start + 1] = target.y;
+            locations[start + 2] = target.z;
+            solverWeights[nodeIndex]
+                    = body.isDynamic() ? 1f / body.getMass() : 0f;
+        }
+
+        /**
+         * Return the node to the attachment point and apply the solver's
+         * correction to a dynamic body as an impulse at that point.
+         *
+         * @param timeStep the duration of the step (in seconds, &gt;0)
+         * @param tmpImpulse temporary storage (not null)
+         */
+        void endStep(float timeStep, Vector3f tmpImpulse) {
+            int start = numAxes * nodeIndex;
+            if (body.isDynamic()) {
+                float scale = body.getMass() / timeStep;
+                tmpImpulse.set(locations[start] - target.x,
+                        locations[start + 1] - target.y,
+                        locations[start + 2] - target.z);
+                tmpImpulse.multLocal(scale);
+                if (MyVector3f.lengthSquared(tmpImpulse) > 0.0) {
+                    body.applyImpulse(tmpImpulse, worldOffset);
+                }
+            }
+
+            locations[start] = target.x;
+            locations[start + 1] = target.y;
+            locations[start + 2] = target.z;
+        }
+    }
+}
@@ -37,6 +37,7 @@ import com.jme3.bullet.collision.PcoType;
 import com.jme3.bullet.collision.shapes.CollisionShape;
 import com.jme3.bullet.collision.shapes.infos.DebugMeshNormals;
 import com.jme3.bullet.objects.infos.Cluster;
+import com.jme3.bullet.objects.infos.ClusterLayout;
 import com.jme3.bullet.objects.infos.SoftBodyConfig;
 import com.jme3.bullet.objects.infos.SoftBodyMaterial;
 import com.jme3.export.InputCapsule;
@@ -1086,6 +1087,41 @@ public class PhysicsSoftBody extends PhysicsBody {
         }
     }
 
+    /**
+     * Replace this body's clusters with those described by the specified
+     * layout, for instance one captured from an identical body. This is much
+     * faster than regenerating them. Any pre-existing clusters are released.
+     * <p>
+     * Only the node count is verified here, since hashing the topology costs
+     * as much as copying it. Callers that haven't already checked the layout
+     * should use {@link ClusterLayout#matches(PhysicsSoftBody)}.
+     *
+     * @param layout the desired layout (not null, must match this body's
+     * topology)
+     * @see ClusterLayout#matches(PhysicsSoftBody)
+     */
+    public void setClusters(ClusterLayout layout) {
+        Validate.require(layout.countNodes() == countNodes(),
+                "a layout with the same number of nodes");
+
+        releaseAllClusters();
+        long objectId = nativeId();
+        int numClusters = layout.countClusters();
+        for (int clusterIndex = 0; clusterIndex < numClusters; ++clusterIndex) {
+            IntBuffer nodeIndices = layout.listNodesInCluster(clusterIndex,
+                    null);
+            int numNodesInCluster = nodeIndices.capacity();
+            appendCluster(objectId, numNodesInCluster, nodeIndices);
+
+            for (Cluster clusterParameter : Cluster.values()) {
+                float value = layout.get(clusterParameter, clusterIndex);
+                set(clusterParameter, clusterIndex, value);
+            }
+        }
+        finishClusters(objectId);
+        assert countClusters() == numClusters : countClusters();
+    }
+
     /**
      * Alter the collision margin of this body.
      *
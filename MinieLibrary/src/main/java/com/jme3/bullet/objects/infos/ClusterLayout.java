@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.objects.infos;
+
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.util.BufferUtils;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * An immutable, serializable description of the clusters in a soft body: the
+ * nodes in each cluster plus its parameter values, keyed by a hash of the
+ * body's topology.
+ * <p>
+ * Cluster generation (K-means) can be slow for large bodies. A layout
+ * captured from one body can be saved (for instance, in a J3O file) and then
+ * applied to other bodies built from the same mesh, avoiding the cost of
+ * regenerating the clusters.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ * @see PhysicsSoftBody#setClusters(ClusterLayout)
+ */
+public class ClusterLayout implements Savable {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * FNV-1a offset basis for 64-bit hashes
+     */
+    final private static long fnvOffset = 0xcbf29ce484222325L;
+    /**
+     * FNV-1a prime for 64-bit hashes
+     */
+    final private static long fnvPrime = 0x100000001b3L;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(ClusterLayout.class.getName());
+    /**
+     * field names for serialization
+     */
+    final private static String tagIndices = "indices";
+    final private static String tagMeshHash = "meshHash";
+    final private static String tagNumClusters = "numClusters";
+    final private static String tagNumNodes = "numNodes";
+    // *************************************************************************
+    // fields
+
+    /**
+     * parameter values for each cluster, indexed by cluster and then by
+     * parameter ordinal
+     */
+    private float[][] parameters;
+    /**
+     * node indices for each cluster
+     */
+    private int[][] clusterNodes;
+    /**
+     * number of nodes in the body
+     */
+    private int numNodes;
+    /**
+     * hash of the body's topology
+     */
+    private long meshHash;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * No-argument constructor needed by SavableClassUtil.
+     */
+    protected ClusterLayout() {
+    }
+
+    /**
+     * Capture the clusters of the specified soft body.
+     *
+     * @param softBody the body to capture (not null, unaffected)
+     */
+    public ClusterLayout(PhysicsSoftBody softBody) {
+        this.meshHash = meshHash(softBody);
+        this.numNodes = softBody.countNodes();
+
+        int numClusters = softBody.countClusters();
+        Cluster[] allParameters = Cluster.values();
+        this.clusterNodes = new int[numClusters][];
+        this.parameters = new float[numClusters][allParameters.length];
+        for (int clusterIndex = 0; clusterIndex < numClusters; ++clusterIndex) {
+            IntBuffer nodeIndices
+                    = softBody.listNodesInCluster(clusterIndex, null);
+            int numNodesInCluster = nodeIndices.capacity();
+            int[] nodes = new int[numNodesInCluster];
+            for (int i = 0; i < numNodesInCluster; ++i) {
+                nodes[i] = nodeIndices.get(i);
+            }
+            clusterNodes[clusterIndex] = nodes;
+
+            for (Cluster parameter : allParameters) {
+                float value = softBody.get(parameter, clusterIndex);
+                parameters[clusterIndex][parameter.ordinal()] = value;
+            }
+        }
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Count the clusters in this layout.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countClusters() {
+        int result = clusterNodes.length;
+        return result;
+    }
+
+    /**
+     * Count the nodes in the body this layout was captured from.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Count the nodes in the indexed cluster.
+     *
+     * @param clusterIndex which cluster (&ge;0, &lt;numClusters)
+     * @return the count (&ge;0)
+     */
+    public int countNodesInCluster(int clusterIndex) {
+        Validate.inRange(clusterIndex, "cluster index", 0,
+                clusterNodes.length - 1);
+        int result = clusterNodes[clusterIndex].length;
+        return result;
+    }
+
+    /**
+     * Read the specified parameter of the indexed cluster.
+     *
+     * @param parameter which parameter to read (not null)
+     * @param clusterIndex which cluster (&ge;0, &lt;numClusters)
+     * @return the parameter value
+     */
+    public float get(Cluster parameter, int clusterIndex) {
+        Validate.inRange(clusterIndex, "cluster index", 0,
+                clusterNodes.length - 1);
+        float result = parameters[clusterIndex][parameter.ordinal()];
+        return result;
+    }
+
+    /**
+     * Read the topology hash of the body from which this layout was captured.
+     *
+     * @return the hash value
+     */
+    public long getMeshHash() {
+        return meshHash;
+    }
+
+    /**
+     * Enumerate the nodes in the indexed cluster.
+     *
+     * @param clusterIndex which cluster (&ge;0, &lt;numClusters)
+     * @param storeResult storage for the result (modified if not null)
+     * @return a buffer containing node indices (either storeResult or a new
+     * direct buffer, capacity=numNodesInCluster)
+     */
+    public IntBuffer listNodesInCluster(int clusterIndex,
+            IntBuffer storeResult) {
+        int numNodesInCluster = countNodesInCluster(clusterIndex);
+        IntBuffer result;
+        if (storeResult == null) {
+            result = BufferUtils.createIntBuffer(numNodesInCluster);
+        } else {
+            Validate.require(storeResult.capacity() >= numNodesInCluster,
+                    "a buffer large enough for the cluster");
+            result = storeResult;
+        }
+
+        int[] nodes = clusterNodes[clusterIndex];
+        for (int i = 0; i < numNodesInCluster; ++i) {
+            result.put(i, nodes[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Test whether this layout can be applied to the specified soft body,
+     * meaning the body has the same topology as the one it was captured from.
+     *
+     * @param softBody the body to test (not null, unaffected)
+     * @return true if applicable, otherwise false
+     */
+    public boolean matches(PhysicsSoftBody softBody) {
+        boolean result = softBody.countNodes() == numNodes
+                && meshHash(softBody) == meshHash;
+        return result;
+    }
+
+    /**
+     * Calculate a hash of the specified body's topology: its node count,
+     * faces, links, and tetrahedra. Node locations are excluded, so bodies
+     * built from the same mesh hash alike regardless of where they spawn. The
+     * result is stable across runs.
+     *
+     * @param softBody the body to hash (not null, unaffected)
+     * @return the hash value
+     */
+    public static long meshHash(PhysicsSoftBody softBody) {
+        long result = fnvOffset;
+        result = hash(result, softBody.countNodes());
+
+        IntBuffer indices = softBody.copyFaces(null);
+        result = hash(result, indices);
+        indices = softBody.copyLinks(null);
+        result = hash(result, indices);
+        indices = softBody.copyTetras(null);
+        result = hash(result, indices);
+
+        return result;
+    }
+    // *************************************************************************
+    // Savable methods
+
+    /**
+     * De-serialize this layout from the specified importer, for example when
+     * loading from a J3O file.
+     *
+     * @param importer (not null)
+     * @throws IOException from the importer
+     */
+    @Override
+    public void read(JmeImporter importer) throws IOException {
+        InputCapsule capsule = importer.getCapsule(this);
+
+        meshHash = capsule.readLong(tagMeshHash, 0L);
+        numNodes = capsule.readInt(tagNumNodes, 0);
+
+        int numClusters = capsule.readInt(tagNumClusters, 0);
+        Cluster[] allParameters = Cluster.values();
+        clusterNodes = new int[numClusters][];
+        parameters = new float[numClusters][allParameters.length];
+        for (int clusterIndex = 0; clusterIndex < numClusters; ++clusterIndex) {
+            clusterNodes[clusterIndex] = capsule.readIntArray(
+                    tagIndices + clusterIndex, new int[0]);
+            for (Cluster parameter : allParameters) {
+                String tag = parameter.toString() + clusterIndex;
+                float defValue = parameter.defValue();
+                parameters[clusterIndex][parameter.ordinal()]
+                        = capsule.readFloat(tag, defValue);
+            }
+        }
+    }
+
+    /**
+     * Serialize this layout to the specified exporter, for example when
+     * saving to a J3O file.
+     *
+     * @param exporter (not null)
+     * @throws IOException from the exporter
+     */
+    @Override
+    public void write(JmeExporter exporter) throws IOException {
+        OutputCapsule capsule = exporter.getCapsule(this);
+
+        capsule.write(meshHash, tagMeshHash, 0L);
+        capsule.write(numNodes, tagNumNodes, 0);
+
+        int numClusters = clusterNodes.length;
+        capsule.write(numClusters, tagNumClusters, 0);
+        for (int clusterIndex = 0; clusterIndex < numClusters; ++clusterIndex) {
+            capsule.write(clusterNodes[clusterIndex],
+                    tagIndices + clusterIndex, null);
+            for (Cluster parameter : Cluster.values()) {
+                String tag = parameter.toString() + clusterIndex;
+                float value = parameters[clusterIndex][parameter.ordinal()];
+                capsule.write(value, tag, parameter.defValue());
+            }
+        }
+    }
+    // *************************************************************************
+    // Object methods
+
+    /**
+     * Represent this layout as a String.
+     *
+     * @return a descriptive string of text (not null, not empty)
+     */
+    @Override
+    public String toString() {
+        String result = String.format("ClusterLayout[hash=%016x, "
+                + "numNodes=%d, numClusters=%d]", meshHash, numNodes,
+                clusterNodes.length);
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Fold the specified value into an FNV-1a hash.
+     *
+     * @param hash the hash so far
+     * @param value the value to fold in
+     * @return the updated hash
+     */
+    private static long hash(long hash, int value) {
+        long result = hash;
+        for (int shift = 0; shift < 32; shift += 8) {
+            result ^= (value >>> shift) & 0xff;
+            result *= fnvPrime;
+        }
+
+        return result;
+    }
+
+    /**
+     * Fold the length and contents of the specified buffer into an FNV-1a
+     * hash.
+     *
+     * @param hash the hash so far
+     * @param buffer the values to fold in (not null, unaffected)
+     * @return the updated hash
+     */
+    private static long hash(long hash, IntBuffer buffer) {
+        int numInts = buffer.capacity();
+        long result = hash(hash, numInts);
+        for (int i = 0; i < numInts; ++i) {
+            result = hash(result, buffer.get(i));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,787 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.Plane;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A dynamic bounding-volume tree of axis-aligned boxes, for fast box, sphere,
+ * and frustum queries without native calls.
+ * <p>
+ * Each leaf stores a user object, its exact box, and a "fat" box enlarged by a
+ * margin. Moving an object only restructures the tree when its new box
+ * escapes its fat box. Internal nodes are kept balanced using tree rotations.
+ * Queries descend through fat boxes and test leaves against exact boxes.
+ * <p>
+ * Nodes are stored in parallel arrays and recycled, so steady-state updates
+ * and queries don't allocate. This class isn't thread-safe.
+ *
+ * @param <T> the type of user object
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class AabbTree<T> {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of frustum planes in a Camera
+     */
+    final private static int numFrustumPlanes = 6;
+    /**
+     * index value that indicates "no node"
+     */
+    final private static int nullNode = -1;
+    /**
+     * number of floats per stored box
+     */
+    final private static int stride = 6;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(AabbTree.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * fat box of each node: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    private float[] fat;
+    /**
+     * exact box of each leaf: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    private float[] exact;
+    /**
+     * amount by which each leaf's fat box exceeds its exact box on every side
+     * (&ge;0)
+     */
+    final private float margin;
+    /**
+     * index of each node's 1st child, or nullNode for a leaf
+     */
+    private int[] child1;
+    /**
+     * index of each node's 2nd child, or nullNode for a leaf
+     */
+    private int[] child2;
+    /**
+     * height of each node's subtree (0 for a leaf, -1 if free)
+     */
+    private int[] height;
+    /**
+     * index of each node's parent, or the next free node for a free node
+     */
+    private int[] parent;
+    /**
+     * stack for iterative traversal
+     */
+    private int[] stack = new int[64];
+    /**
+     * head of the free list, or nullNode if none
+     */
+    private int freeList;
+    /**
+     * number of leaves in the tree
+     */
+    private int numLeaves = 0;
+    /**
+     * index of the root node, or nullNode if the tree is empty
+     */
+    private int root = nullNode;
+    /**
+     * user object of each leaf
+     */
+    private Object[] objects;
+    /**
+     * temporary storage for box extrema
+     */
+    final private Vector3f tmpMax = new Vector3f();
+    /**
+     * temporary storage for box extrema
+     */
+    final private Vector3f tmpMin = new Vector3f();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty tree.
+     *
+     * @param margin the amount by which to enlarge boxes in the tree (&ge;0)
+     */
+    public AabbTree(float margin) {
+        Validate.nonNegative(margin, "margin");
+
+        this.margin = margin;
+        allocate(16);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Remove all leaves.
+     */
+    public void clear() {
+        int capacity = height.length;
+        Arrays.fill(objects, null);
+        allocate(capacity);
+        numLeaves = 0;
+        root = nullNode;
+    }
+
+    /**
+     * Count the leaves.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countLeaves() {
+        return numLeaves;
+    }
+
+    /**
+     * Access the user object of the specified leaf.
+     *
+     * @param proxy the ID returned by {@link #insert(java.lang.Object,
+     * com.jme3.bounding.BoundingBox)}
+     * @return the pre-existing object
+     */
+    @SuppressWarnings("unchecked")
+    public T getObject(int proxy) {
+        validateLeaf(proxy);
+        T result = (T) objects[proxy];
+
+        return result;
+    }
+
+    /**
+     * Return the height of the tree.
+     *
+     * @return the number of levels below the root (&ge;0, 0 if empty or a
+     * single leaf)
+     */
+    public int height() {
+        int result = (root == nullNode) ? 0 : height[root];
+        return result;
+    }
+
+    /**
+     * Add a leaf.
+     *
+     * @param object the user object (alias created)
+     * @param box the object's bounds (not null, unaffected)
+     * @return a proxy ID for the new leaf (&ge;0)
+     */
+    public int insert(T object, BoundingBox box) {
+        Validate.nonNull(box, "box");
+
+        int leaf = allocateNode();
+        objects[leaf] = object;
+        height[leaf] = 0;
+        setExact(leaf, box);
+        fatten(leaf);
+        insertLeaf(leaf);
+        ++numLeaves;
+
+        return leaf;
+    }
+
+    /**
+     * Update the bounds of the specified leaf.
+     *
+     * @param proxy the ID returned by {@link #insert(java.lang.Object,
+     * com.jme3.bounding.BoundingBox)}
+     * @param box the object's new bounds (not null, unaffected)
+     * @return true if the tree was restructured, false if the new bounds fit
+     * in the existing fat box
+     */
+    public boolean move(int proxy, BoundingBox box) {
+        validateLeaf(proxy);
+        Validate.nonNull(box, "box");
+
+        setExact(proxy, box);
+        int base = stride * proxy;
+        boolean fits = true;
+        for (int axis = 0; axis < 3; ++axis) {
+            if (exact[base + axis] < fat[base + axis]
+                    || exact[base + 3 + axis] > fat[base + 3 + axis]) {
+                fits = false;
+                break;
+            }
+        }
+        if (fits) {
+            return false;
+        }
+
+        removeLeaf(proxy);
+        fatten(proxy);
+        insertLeaf(proxy);
+
+        return true;
+    }
+
+    /**
+     * Find all leaves whose bounds overlap the specified box.
+     *
+     * @param box the region to query (not null, unaffected)
+     * @param addResult storage for the user objects found (not null, added
+     * to)
+     * @return the number of objects found (&ge;0)
+     */
+    @SuppressWarnings("unchecked")
+    public int overlapBox(BoundingBox box, Collection<? super T> addResult) {
+        box.getMin(tmpMin);
+        box.getMax(tmpMax);
+        float minX = tmpMin.x, minY = tmpMin.y, minZ = tmpMin.z;
+        float maxX = tmpMax.x, maxY = tmpMax.y, maxZ = tmpMax.z;
+
+        int result = 0;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == nullNode) {
+                continue;
+            }
+            float[] bounds = (child1[node] == nullNode) ? exact : fat;
+            int base = stride * node;
+            if (bounds[base] > maxX || bounds[base + 3] < minX
+                    || bounds[base + 1] > maxY || bounds[base + 4] < minY
+                    || bounds[base + 2] > maxZ || bounds[base + 5] < minZ) {
+                continue;
+            }
+            if (child1[node] == nullNode) {
+                addResult.add((T) objects[node]);
+                ++result;
+            } else {
+                top = push(top, child1[node]);
+                top = push(top, child2[node]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find all leaves whose bounds intersect the frustum of the specified
+     * Camera.
+     *
+     * @param camera the camera whose frustum is to be queried (not null,
+     * unaffected)
+     * @param addResult storage for the user objects found (not null, added
+     * to)
+     * @return the number of objects found (&ge;0)
+     */
+    public int overlapFrustum(Camera camera,
+            Collection<? super T> addResult) {
+        Plane[] planes = new Plane[numFrustumPlanes];
+        for (int planeIndex = 0; planeIndex < numFrustumPlanes; ++planeIndex) {
+            planes[planeIndex] = camera.getWorldPlane(planeIndex);
+        }
+        int result = overlapPlanes(planes, addResult);
+
+        return result;
+    }
+
+    /**
+     * Find all leaves whose bounds aren't entirely behind any of the specified
+     * planes, for instance the planes of a convex frustum with normals
+     * pointing inward. The test is conservative near edges and corners.
+     *
+     * @param planes the bounding planes (not null, unaffected)
+     * @param addResult storage for the user objects found (not null, added
+     * to)
+     * @return the number of objects found (&ge;0)
+     */
+    @SuppressWarnings("unchecked")
+    public int overlapPlanes(Plane[] planes,
+            Collection<? super T> addResult) {
+        int result = 0;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == nullNode) {
+                continue;
+            }
+            float[] bounds = (child1[node] == nullNode) ? exact : fat;
+            int base = stride * node;
+            boolean outside = false;
+            for (Plane plane : planes) {
+                /*
+                 * Test the box corner farthest along the plane's normal.
+                 */
+                Vector3f normal = plane.getNormal(); // alias
+                float x = bounds[base + (normal.x >= 0f ? 3 : 0)];
+                float y = bounds[base + (normal.y >= 0f ? 4 : 1)];
+                float z = bounds[base + (normal.z >= 0f ? 5 : 2)];
+                float d = normal.x * x + normal.y * y + normal.z * z
+                        - plane.getConstant();
+                if (d < 0f) {
+                    outside = true;
+                    break;
+                }
+            }
+            if (outside) {
+                continue;
+            }
+            if (child1[node] == nullNode) {
+                addResult.add((T) objects[node]);
+                ++result;
+            } else {
+                top = push(top, child1[node]);
+                top = push(top, child2[node]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find all leaves whose bounds intersect the specified sphere.
+     *
+     * @param center the center of the sphere (not null, unaffected)
+     * @param radius the radius of the sphere (&ge;0)
+     * @param addResult storage for the user objects found (not null, added
+     * to)
+     * @return the number of objects found (&ge;0)
+     */
+    @SuppressWarnings("unchecked")
+    public int overlapSphere(Vector3f center, float radius,
+            Collection<? super T> addResult) {
+        Validate.nonNegative(radius, "radius");
+
+        float cx = center.x, cy = center.y, cz = center.z;
+        float rSquared = radius * radius;
+
+        int result = 0;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == nullNode) {
+                continue;
+            }
+            float[] bounds = (child1[node] == nullNode) ? exact : fat;
+            int base = stride * node;
+            float dx = Math.max(0f, Math.max(bounds[base] - cx,
+                    cx - bounds[base + 3]));
+            float dy = Math.max(0f, Math.max(bounds[base + 1] - cy,
+                    cy - bounds[base + 4]));
+            float dz = Math.max(0f, Math.max(bounds[base + 2] - cz,
+                    cz - bounds[base + 5]));
+            if (dx * dx + dy * dy + dz * dz > rSquared) {
+                continue;
+            }
+            if (child1[node] == nullNode) {
+                addResult.add((T) objects[node]);
+                ++result;
+            } else {
+                top = push(top, child1[node]);
+                top = push(top, child2[node]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the specified leaf. Its proxy ID may be re-used.
+     *
+     * @param proxy the ID returned by {@link #insert(java.lang.Object,
+     * com.jme3.bounding.BoundingBox)}
+     */
+    public void remove(int proxy) {
+        validateLeaf(proxy);
+
+        removeLeaf(proxy);
+        freeNode(proxy);
+        --numLeaves;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * (Re-)allocate the node arrays with the specified capacity, and link all
+     * nodes into the free list.
+     *
+     * @param capacity the desired number of nodes (&gt;0)
+     */
+    private void allocate(int capacity) {
+        fat = new float[stride * capacity];
+        exact = new float[stride * capacity];
+        child1 = new int[capacity];
+        child2 = new int[capacity];
+        height = new int[capacity];
+        parent = new int[capacity];
+        objects = new Object[capacity];
+        linkFree(0, capacity);
+    }
+
+    /**
+     * Take a node from the free list, growing the arrays if necessary.
+     *
+     * @return the index of the node (&ge;0)
+     */
+    private int allocateNode() {
+        if (freeList == nullNode) {
+            int oldCapacity = height.length;
+            int newCapacity = 2 * oldCapacity;
+            fat = Arrays.copyOf(fat, stride * newCapacity);
+            exact = Arrays.copyOf(exact, stride * newCapacity);
+            child1 = Arrays.copyOf(child1, newCapacity);
+            child2 = Arrays.copyOf(child2, newCapacity);
+            height = Arrays.copyOf(height, newCapacity);
+            parent = Arrays.copyOf(parent, newCapacity);
+            objects = Arrays.copyOf(objects, newCapacity);
+            linkFree(oldCapacity, newCapacity);
+        }
+
+        int result = freeList;
+        freeList = parent[result];
+        parent[result] = nullNode;
+        child1[result] = nullNode;
+        child2[result] = nullNode;
+        height[result] = 0;
+
+        return result;
+    }
+
+    /**
+     * Calculate the surface area of the union of 2 fat boxes.
+     *
+     * @param a the index of the 1st node
+     * @param b the index of the 2nd node
+     * @return the area (&ge;0)
+     */
+    private float area(int a, int b) {
+        int baseA = stride * a;
+        int baseB = stride * b;
+        float dx = Math.max(fat[baseA + 3], fat[baseB + 3])
+                - Math.min(fat[baseA], fat[baseB]);
+        float dy = Math.max(fat[baseA + 4], fat[baseB + 4])
+                - Math.min(fat[baseA + 1], fat[baseB + 1]);
+        float dz = Math.max(fat[baseA + 5], fat[baseB + 5])
+                - Math.min(fat[baseA + 2], fat[baseB + 2]);
+        float result = 2f * (dx * dy + dy * dz + dz * dx);
+
+        return result;
+    }
+
+    /**
+     * Rebalance the subtree rooted at the specified node, if its children's
+     * heights differ by more than one.
+     *
+     * @param iA the index of the subtree's root
+     * @return the index of the subtree's new root
+     */
+    private int balance(int iA) {
+        if (child1[iA] == nullNode || height[iA] < 2) {
+            return iA;
+        }
+
+        int iB = child1[iA];
+        int iC = child2[iA];
+        int imbalance = height[iC] - height[iB];
+
+        if (imbalance > 1) { // rotate C up
+            int iF = child1[iC];
+            int iG = child2[iC];
+            child1[iC] = iA;
+            parent[iC] = parent[iA];
+            parent[iA] = iC;
+            replaceChild(parent[iC], iA, iC);
+
+            if (height[iF] > height[iG]) {
+                child2[iC] = iF;
+                child2[iA] = iG;
+                parent[iG] = iA;
+            } else {
+                child2[iC] = iG;
+                child2[iA] = iF;
+                parent[iF] = iA;
+            }
+            refit(iA);
+            refit(iC);
+            return iC;
+
+        } else if (imbalance < -1) { // rotate B up
+            int iD = child1[iB];
+            int iE = child2[iB];
+            child1[iB] = iA;
+            parent[iB] = parent[iA];
+            parent[iA] = iB;
+            replaceChild(parent[iB], iA, iB);
+
+            if (height[iD] > height[iE]) {
+                child2[iB] = iD;
+                child1[iA] = iE;
+                parent[iE] = iA;
+            } else {
+                child2[iB] = iE;
+                child1[iA] = iD;
+                parent[iD] = iA;
+            }
+            refit(iA);
+            refit(iB);
+            return iB;
+        }
+
+        return iA;
+    }
+
+    /**
+     * Enlarge the exact box of the specified leaf by the margin to obtain its
+     * fat box.
+     *
+     * @param leaf the index of the leaf
+     */
+    private void fatten(int leaf) {
+        int base = stride * leaf;
+        for (int axis = 0; axis < 3; ++axis) {
+            fat[base + axis] = exact[base + axis] - margin;
+            fat[base + 3 + axis] = exact[base + 3 + axis] + margin;
+        }
+    }
+
+    /**
+     * Return a node to the free list.
+     *
+     * @param node the index of the node
+     */
+    private void freeNode(int node) {
+        objects[node] = null;
+        height[node] = -1;
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    /**
+     * Insert the specified leaf, choosing a sibling using the surface-area
+     * heuristic.
+     *
+     * @param leaf the index of the leaf
+     */
+    private void insertLeaf(int leaf) {
+        if (root == nullNode) {
+            root = leaf;
+            parent[leaf] = nullNode;
+            return;
+        }
+        /*
+         * Find the best sibling.
+         */
+        int index = root;
+        while (child1[index] != nullNode) {
+            int c1 = child1[index];
+            int c2 = child2[index];
+            float area = area(index, index);
+            float combinedArea = area(index, leaf);
+            float cost = 2f * combinedArea;
+            float inheritance = 2f * (combinedArea - area);
+
+            float cost1 = area(c1, leaf) + inheritance;
+            if (child1[c1] != nullNode) {
+                cost1 -= area(c1, c1);
+            }
+            float cost2 = area(c2, leaf) + inheritance;
+            if (child1[c2] != nullNode) {
+                cost2 -= area(c2, c2);
+            }
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = (cost1 < cost2) ? c1 : c2;
+        }
+        /*
+         * Create a new parent for the leaf and its sibling.
+         */
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        if (oldParent == nullNode) {
+            root = newParent;
+        } else {
+            replaceChild(oldParent, sibling, newParent);
+        }
+        /*
+         * Walk back up the tree, rebalancing and refitting.
+         */
+        index = newParent;
+        while (index != nullNode) {
+            index = balance(index);
+            refit(index);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Link the specified range of nodes into the free list, ahead of any free
+     * nodes already listed.
+     *
+     * @param start the index of the first node
+     * @param end the index after the last node
+     */
+    private void linkFree(int start, int end) {
+        int oldHead = (start == 0) ? nullNode : freeList;
+        for (int node = start; node < end - 1; ++node) {
+            parent[node] = node + 1;
+            height[node] = -1;
+        }
+        parent[end - 1] = oldHead;
+        height[end - 1] = -1;
+        freeList = start;
+    }
+
+    /**
+     * Push a node onto the traversal stack, growing the stack if necessary.
+     *
+     * @param top the current stack depth
+     * @param node the index of the node to push
+     * @return the new stack depth
+     */
+    private int push(int top, int node) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * top);
+        }
+        stack[top] = node;
+
+        return top + 1;
+    }
+
+    /**
+     * Recalculate the height and fat box of the specified internal node from
+     * its children.
+     *
+     * @param node the index of the node
+     */
+    private void refit(int node) {
+        int c1 = child1[node];
+        int c2 = child2[node];
+        height[node] = 1 + Math.max(height[c1], height[c2]);
+
+        int base = stride * node;
+        int base1 = stride * c1;
+        int base2 = stride * c2;
+        for (int axis = 0; axis < 3; ++axis) {
+            fat[base + axis] = Math.min(fat[base1 + axis], fat[base2 + axis]);
+            fat[base + 3 + axis]
+                    = Math.max(fat[base1 + 3 + axis], fat[base2 + 3 + axis]);
+        }
+    }
+
+    /**
+     * Remove the specified leaf from the tree structure, without freeing it.
+     *
+     * @param leaf the index of the leaf
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = nullNode;
+            return;
+        }
+
+        int oldParent = parent[leaf];
+        int grandparent = parent[oldParent];
+        int sibling = (child1[oldParent] == leaf)
+                ? child2[oldParent] : child1[oldParent];
+        freeNode(oldParent);
+
+        if (grandparent == nullNode) {
+            root = sibling;
+            parent[sibling] = nullNode;
+        } else {
+            replaceChild(grandparent, oldParent, sibling);
+            parent[sibling] = grandparent;
+            int index = grandparent;
+            while (index != nullNode) {
+                index = balance(index);
+                refit(index);
+                index = parent[index];
+            }
+        }
+    }
+
+    /**
+     * Replace a child of the specified node, or the root if the node is null.
+     *
+     * @param node the index of the parent node, or nullNode
+     * @param oldChild the index of the child to replace
+     * @param newChild the index of the replacement
+     */
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == nullNode) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    /**
+     * Copy the specified box to the exact box of a leaf.
+     *
+     * @param leaf the index of the leaf
+     * @param box the box to copy (not null, unaffected)
+     */
+    private void setExact(int leaf, BoundingBox box) {
+        box.getMin(tmpMin);
+        box.getMax(tmpMax);
+        int base = stride * leaf;
+        exact[base] = tmpMin.x;
+        exact[base + 1] = tmpMin.y;
+        exact[base + 2] = tmpMin.z;
+        exact[base + 3] = tmpMax.x;
+        exact[base + 4] = tmpMax.y;
+        exact[base + 5] = tmpMax.z;
+    }
+
+    /**
+     * Verify that the specified proxy ID refers to a leaf.
+     *
+     * @param proxy the ID to verify
+     */
+    private void validateLeaf(int proxy) {
+        if (proxy < 0 || proxy >= height.length || height[proxy] != 0
+                || child1[proxy] != nullNode) {
+            throw new IllegalArgumentException("proxy = " + proxy);
+        }
+    }
+}
@@ -34,9 +34,13 @@ package com.jme3.bullet.util;
 import com.jme3.bullet.collision.shapes.BoxCollisionShape;
 import com.jme3.bullet.collision.shapes.CollisionShape;
 import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.bullet.collision.shapes.GImpactCollisionShape;
 import com.jme3.bullet.collision.shapes.HeightfieldCollisionShape;
 import com.jme3.bullet.collision.shapes.HullCollisionShape;
 import com.jme3.bullet.collision.shapes.MeshCollisionShape;
+import com.jme3.bullet.collision.shapes.infos.ChildCollisionShape;
+import com.jme3.bullet.collision.shapes.infos.IndexedMesh;
+import com.jme3.math.Matrix3f;
 import com.jme3.math.Transform;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
@@ -50,9 +54,17 @@ import com.jme3.terrain.Terrain;
 import com.jme3.util.BufferUtils;
 import java.nio.Buffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import jme3utilities.MyMesh;
 import jme3utilities.MySpatial;
@@ -62,6 +74,9 @@ import jme3utilities.math.MyVector3f;
 import vhacd.VHACD;
 import vhacd.VHACDHull;
 import vhacd.VHACDParameters;
+import vhacd.VHACDPreset;
+import vhacd.VHACDProgressListener;
+import vhacd.VHACDService;
 
 /**
  * Utility methods for generating collision shapes from models.
@@ -72,6 +87,10 @@ public class CollisionShapeFactory {
     // *************************************************************************
     // constants and loggers
 
+    /**
+     * maximum number of GImpact conversions cached in memory
+     */
+    final private static int maxCachedConversions = 64;
     /**
      * number of axes in a vector
      */
@@ -82,6 +101,40 @@ public class CollisionShapeFactory {
     final public static Logger logger
             = Logger.getLogger(CollisionShapeFactory.class.getName());
     // *************************************************************************
+    // fields
+
+    /**
+     * registry used to share identical box, hull, and mesh shapes, or null to
+     * always create new shapes
+     */
+    private static volatile ShapeRegistry shapeRegistry = null;
+    /**
+     * compound shapes converted from GImpact meshes, keyed by mesh hash and
+     * parameters, in access order: once the cache is full, the least recently
+     * used conversion is evicted
+     */
+    final private static Map<String, CompoundCollisionShape> conversionCache
+            = new LinkedHashMap<String, CompoundCollisionShape>(
+                    16, 0.75f, true) {
+        final private static long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, CompoundCollisionShape> eldest) {
+            return size() > maxCachedConversions;
+        }
+    };
+    /**
+     * parameters for converting GImpact shapes, or null if conversion is
+     * disabled
+     */
+    private static VHACDParameters conversionParameters = null;
+    /**
+     * service used to convert GImpact shapes, or null to convert on the
+     * calling thread without a disk cache
+     */
+    private static VHACDService conversionService = null;
+    // *************************************************************************
     // constructors
 
     /**
@@ -92,6 +145,139 @@ public class CollisionShapeFactory {
     // *************************************************************************
     // new methods exposed
 
+    /**
+     * Discard all compound shapes cached by GImpact conversion. Files in the
+     * conversion service's disk cache are unaffected.
+     */
+    public static void clearConversionCache() {
+        synchronized (conversionCache) {
+            conversionCache.clear();
+        }
+    }
+
+    /**
+     * Copy the parameters used to convert GImpact shapes.
+     *
+     * @return a new instance, or null if conversion is disabled
+     */
+    public static VHACDParameters getGImpactConversion() {
+        synchronized (conversionCache) {
+            VHACDParameters result = (conversionParameters == null)
+                    ? null : conversionParameters.clone();
+            return result;
+        }
+    }
+
+    /**
+     * Access the registry used to share identical shapes.
+     *
+     * @return the pre-existing instance, or null if shapes aren't shared
+     */
+    public static ShapeRegistry getShapeRegistry() {
+        return shapeRegistry;
+    }
+
+    /**
+     * Alter which registry (if any) is used to share identical box, hull, and
+     * mesh shapes when generating compound shapes. Shapes obtained from a
+     * registry are shared and should not be modified.
+     * <p>
+     * While a registry is set, every box, hull, or mesh shape returned by this
+     * factory is registered in it, and so is every compound built from such
+     * shapes: the compound holds the references to its children. The caller
+     * owns one reference to the returned shape and should pass it to
+     * {@link ShapeRegistry#release(
+     * com.jme3.bullet.collision.shapes.CollisionShape)} once it's no longer
+     * used, which releases the children too.
+     *
+     * @param registry the desired registry (alias created) or null to always
+     * create new shapes (default=null)
+     */
+    public static void setShapeRegistry(ShapeRegistry registry) {
+        shapeRegistry = registry;
+    }
+
+    /**
+     * Enable or disable the conversion of GImpact shapes to compounds of hull
+     * shapes. When enabled, {@link #createGImpactShape(com.jme3.scene.Spatial)}
+     * and {@link #convertGImpact(
+     * com.jme3.bullet.collision.shapes.GImpactCollisionShape)} return a
+     * V-HACD decomposition instead of a GImpact shape. The most recently used
+     * decompositions (up to 64) are cached in memory, and identical meshes
+     * share a single compound shape, which therefore should not be modified.
+     *
+     * @param parameters the V-HACD parameters (not null, unaffected) or null
+     * to disable conversion (default=null)
+     * @param service the service used to run decompositions (alias created)
+     * or null to run them on the calling thread without a disk cache
+     */
+    public static void setGImpactConversion(VHACDParameters parameters,
+            VHACDService service) {
+        synchronized (conversionCache) {
+            conversionParameters
+                    = (parameters == null) ? null : parameters.clone();
+            conversionService = service;
+        }
+    }
+
+    /**
+     * Enable the conversion of GImpact shapes to compounds of hull shapes,
+     * using the specified preset.
+     *
+     * @param preset the quality/performance trade-off (not null)
+     * @param service the service used to run decompositions (alias created)
+     * or null to run them on the calling thread without a disk cache
+     */
+    public static void setGImpactConversion(VHACDPreset preset,
+            VHACDService service) {
+        Validate.nonNull(preset, "preset");
+
+        VHACDParameters parameters = preset.createParameters();
+        setGImpactConversion(parameters, service);
+    }
+
+    /**
+     * Replace the specified GImpact shape with a compound of hull shapes, if
+     * GImpact conversion is enabled. The shape's scale is baked into the
+     * result.
+     *
+     * @param shape the shape to convert (not null, unaffected)
+     * @return a (possibly shared) compound shape if conversion is enabled
+     * and V-HACD generated at least one hull, otherwise the argument
+     */
+    public static CollisionShape convertGImpact(GImpactCollisionShape shape) {
+        Validate.nonNull(shape, "shape");
+
+        VHACDParameters parameters;
+        VHACDService service;
+        synchronized (conversionCache) {
+            parameters = conversionParameters;
+            service = conversionService;
+        }
+        if (parameters == null) {
+            return shape;
+        }
+
+        boolean dedup = true;
+        IndexedMesh indexedMesh = new IndexedMesh(shape,
+                DebugShapeFactory.lowResolution, dedup);
+        FloatBuffer positionBuffer = indexedMesh.copyVertexPositions();
+        float[] positionArray = new float[positionBuffer.capacity()];
+        positionBuffer.rewind();
+        positionBuffer.get(positionArray);
+        IntBuffer indexBuffer = indexedMesh.copyIndices();
+        int[] indexArray = new int[indexBuffer.capacity()];
+        indexBuffer.rewind();
+        indexBuffer.get(indexArray);
+        CollisionShape result
+                = convertMesh(positionArray, indexArray, parameters, service);
+        if (result == null) {
+            result = shape;
+        }
+
+        return result;
+    }
+
     /**
      * Create a simplified shape for a movable object, based on the axis-aligned
      * bounding boxes of its meshes.
@@ -120,6 +306,34 @@ public class CollisionShapeFactory {
             throw new IllegalArgumentException(
                     "The model root must either be a Node or a Geometry!");
         }
+        adoptIfRegistered(result);
+
+        return result;
+    }
+
+    /**
+     * Create a simplified shape for a movable object, based on the axis-aligned
+     * bounding boxes of its meshes, converting the meshes in parallel.
+     *
+     * @param modelRoot the model on which to base the shape (not null,
+     * unaffected)
+     * @param executor the executor to run conversions, for instance a
+     * ForkJoinPool (not null)
+     * @return a CompoundCollisionShape with box shapes as children
+     */
+    public static CollisionShape createBoxShape(Spatial modelRoot,
+            ExecutorService executor) {
+        Validate.nonNull(executor, "executor");
+
+        CollisionShape result;
+        if (modelRoot instanceof Node) {
+            boolean meshAccurate = false;
+            boolean dynamic = true;
+            result = createCompoundShape((Node) modelRoot, meshAccurate,
+                    dynamic, executor);
+        } else {
+            result = createBoxShape(modelRoot);
+        }
 
         return result;
     }
@@ -147,6 +361,7 @@ public class CollisionShapeFactory {
             boolean meshAccurate = true;
             boolean dynamic = true;
             createCompoundShape(node, node, result, meshAccurate, dynamic);
+            adoptIfRegistered(result);
             return result;
 
         } else {
@@ -155,6 +370,73 @@ public class CollisionShapeFactory {
         }
     }
 
+    /**
+     * Create a shape for a movable object, based on the convex hulls of its
+     * model's meshes, converting the meshes in parallel.
+     *
+     * @param modelRoot the model on which to base the shape (not null,
+     * unaffected)
+     * @param executor the executor to run conversions, for instance a
+     * ForkJoinPool (not null)
+     * @return a new HullCollisionShape (if modelRoot is a Geometry) or a new
+     * CompoundCollisionShape with hull shapes as children (if modelRoot is a
+     * Node)
+     */
+    public static CollisionShape createDynamicMeshShape(Spatial modelRoot,
+            ExecutorService executor) {
+        Validate.nonNull(executor, "executor");
+
+        CollisionShape result;
+        if (modelRoot instanceof Node) {
+            boolean meshAccurate = true;
+            boolean dynamic = true;
+            result = createCompoundShape((Node) modelRoot, meshAccurate,
+                    dynamic, executor);
+        } else {
+            result = createDynamicMeshShape(modelRoot);
+        }
+
+        return result;
+    }
+
+    /**
+     * Create a mesh-accurate shape for a movable object. If GImpact conversion
+     * is enabled, the result is a (possibly shared) V-HACD decomposition of
+     * the model instead, unless V-HACD generates no hulls.
+     *
+     * @param modelRoot the model on which to base the shape (not null,
+     * unaffected)
+     * @return a new GImpactCollisionShape or a CompoundCollisionShape with
+     * hull shapes as children
+     * @see #setGImpactConversion(vhacd.VHACDParameters, vhacd.VHACDService)
+     */
+    public static CollisionShape createGImpactShape(Spatial modelRoot) {
+        Validate.nonNull(modelRoot, "model root");
+
+        VHACDParameters parameters;
+        VHACDService service;
+        synchronized (conversionCache) {
+            parameters = conversionParameters;
+            service = conversionService;
+        }
+
+        Mesh mergedMesh = makeMergedMesh(modelRoot);
+        CollisionShape result;
+        if (parameters == null) {
+            result = new GImpactCollisionShape(mergedMesh);
+        } else {
+            float[] positionArray = positionArray(mergedMesh);
+            int[] indexArray = indexArray(mergedMesh);
+            result = convertMesh(positionArray, indexArray, parameters,
+                    service);
+            if (result == null) {
+                result = new GImpactCollisionShape(mergedMesh);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Create a very simple shape for an object, based its model's bounding box.
      *
@@ -202,6 +484,75 @@ public class CollisionShapeFactory {
         return result;
     }
 
+    /**
+     * Create a simplified shape for a movable object, based the convex hull of
+     * its model. The hull of each Geometry is found in parallel (in Java) and
+     * the final hull is built from their vertices.
+     *
+     * @param modelRoot the model on which to base the shape (not null,
+     * unaffected)
+     * @param executor the executor to run conversions, for instance a
+     * ForkJoinPool (not null)
+     * @return a new HullCollisionShape
+     */
+    public static HullCollisionShape createMergedHullShape(
+            final Spatial modelRoot, ExecutorService executor) {
+        Validate.nonNull(modelRoot, "model root");
+        Validate.nonNull(executor, "executor");
+
+        List<Geometry> geometries = MySpatial.listGeometries(modelRoot);
+        List<Callable<float[]>> tasks = new ArrayList<>(geometries.size());
+        for (final Geometry geometry : geometries) {
+            Boolean ignore = geometry.getUserData(UserData.JME_PHYSICSIGNORE);
+            if (ignore != null && ignore) {
+                continue;
+            }
+            final Mesh jmeMesh = geometry.getMesh();
+            if (jmeMesh == null || jmeMesh.getVertexCount() == 0) {
+                continue;
+            }
+
+            tasks.add(new Callable<float[]>() {
+                @Override
+                public float[] call() {
+                    Transform transform
+                            = relativeTransform(geometry, modelRoot);
+                    int numVertices = jmeMesh.getVertexCount();
+                    float[] points = new float[numAxes * numVertices];
+                    Vector3f tmpPosition = new Vector3f();
+                    for (int vi = 0; vi < numVertices; ++vi) {
+                        MyMesh.vertexVector3f(jmeMesh,
+                                VertexBuffer.Type.Position, vi, tmpPosition);
+                        transform.transformVector(tmpPosition, tmpPosition);
+                        points[numAxes * vi] = tmpPosition.x;
+                        points[numAxes * vi + 1] = tmpPosition.y;
+                        points[numAxes * vi + 2] = tmpPosition.z;
+                    }
+                    float[] result = QuickHull.hullVertices(points);
+
+                    return result;
+                }
+            });
+        }
+        Validate.require(!tasks.isEmpty(), "at least one vertex");
+        List<float[]> hulls = invokeAll(executor, tasks);
+
+        int numFloats = 0;
+        for (float[] hull : hulls) {
+            numFloats += hull.length;
+        }
+        float[] allVertices = new float[numFloats];
+        int floatIndex = 0;
+        for (float[] hull : hulls) {
+            System.arraycopy(hull, 0, allVertices, floatIndex, hull.length);
+            floatIndex += hull.length;
+        }
+        float[] hullVertices = QuickHull.hullVertices(allVertices);
+        HullCollisionShape result = new HullCollisionShape(hullVertices);
+
+        return result;
+    }
+
     /**
      * Create a mesh-accurate shape for an immovable object, based on its model.
      * This version ignores terrain.
@@ -244,6 +595,7 @@ public class CollisionShapeFactory {
             boolean meshAccurate = true;
             boolean dynamic = false;
             createCompoundShape(node, node, result, meshAccurate, dynamic);
+            adoptIfRegistered(result);
             return result;
 
         } else {
@@ -252,6 +604,36 @@ public class CollisionShapeFactory {
         }
     }
 
+    /**
+     * Create a mesh-accurate shape for an immovable object, based on its model,
+     * converting the meshes in parallel. This version handles terrain.
+     *
+     * @param modelRoot the model on which to base the shape (not null,
+     * unaffected)
+     * @param executor the executor to run conversions, for instance a
+     * ForkJoinPool (not null)
+     * @return a new MeshCollisionShape (if modelRoot is a Geometry) or a new
+     * HeightfieldCollisionShape (if modelRoot is a TerrainQuad or TerrainPatch)
+     * or a new CompoundCollisionShape with mesh/heightfield shapes as children
+     * (if modelRoot is a Node)
+     */
+    public static CollisionShape createMeshShape(Spatial modelRoot,
+            ExecutorService executor) {
+        Validate.nonNull(executor, "executor");
+
+        CollisionShape result;
+        if (modelRoot instanceof Node && !(modelRoot instanceof Terrain)) {
+            boolean meshAccurate = true;
+            boolean dynamic = false;
+            result = createCompoundShape((Node) modelRoot, meshAccurate,
+                    dynamic, executor);
+        } else {
+            result = createMeshShape(modelRoot);
+        }
+
+        return result;
+    }
+
     /**
      * Create a shape for a dynamic object using the V-HACD library.
      *
@@ -267,26 +649,28 @@ public class CollisionShapeFactory {
         Validate.nonNull(parameters, "parameters");
 
         Mesh mergedMesh = makeMergedMesh(modelRoot);
-
-        FloatBuffer positionBuffer
-                = mergedMesh.getFloatBuffer(VertexBuffer.Type.Position);
-        int numFloats = positionBuffer.limit();
-        float[] positionArray = new float[numFloats];
-        for (int offset = 0; offset < numFloats; ++offset) {
-            positionArray[offset] = positionBuffer.get(offset);
-        }
-
-        IndexBuffer indexBuffer = mergedMesh.getIndicesAsList();
-        int numIndices = indexBuffer.size();
-        int[] indexArray = new int[numIndices];
-        for (int offset = 0; offset < numIndices; ++offset) {
-            indexArray[offset] = indexBuffer.get(offset);
-        }
+        float[] positionArray = positionArray(mergedMesh);
+        int[] indexArray = indexArray(mergedMesh);
         /*
          * Use the V-HACD algorithm to generate a list of hulls.
          */
         List<VHACDHull> vhacdHulls
                 = VHACD.compute(positionArray, indexArray, parameters);
+        CompoundCollisionShape result = createVhacdShape(vhacdHulls, addResult);
+
+        return result;
+    }
+
+    /**
+     * Create a compound shape from the hulls of a V-HACD decomposition.
+     *
+     * @param vhacdHulls the hulls to convert (not null, unaffected)
+     * @param addResult the compound shape to append to (modified if not null)
+     * @return a compound shape (either addResult or a new shape, not null)
+     */
+    public static CompoundCollisionShape createVhacdShape(
+            List<VHACDHull> vhacdHulls, CompoundCollisionShape addResult) {
+        Validate.nonNull(vhacdHulls, "hulls");
         /*
          * Convert each V-HACD hull to a HullCollisionShape
          * and add that to the result.
@@ -305,9 +689,118 @@ public class CollisionShapeFactory {
 
         return result;
     }
+
+    /**
+     * Submit a V-HACD decomposition of the specified model to a service, for
+     * asynchronous execution. The model is read before this method returns.
+     * Once the Future completes, its hulls can be converted using
+     * {@link #createVhacdShape(java.util.List,
+     * com.jme3.bullet.collision.shapes.CompoundCollisionShape)}.
+     *
+     * @param modelRoot the model on which to base the shape (not null,
+     * unaffected)
+     * @param parameters (not null, unaffected)
+     * @param service the service to run the decomposition (not null)
+     * @param listener a progress listener for this decomposition only (alias
+     * created) or null for none
+     * @return a Future for the list of hulls (not null)
+     */
+    public static Future<List<VHACDHull>> submitVhacd(Spatial modelRoot,
+            VHACDParameters parameters, VHACDService service,
+            VHACDProgressListener listener) {
+        Validate.nonNull(modelRoot, "model root");
+        Validate.nonNull(parameters, "parameters");
+        Validate.nonNull(service, "service");
+
+        Mesh mergedMesh = makeMergedMesh(modelRoot);
+        float[] positionArray = positionArray(mergedMesh);
+        int[] indexArray = indexArray(mergedMesh);
+        Future<List<VHACDHull>> result = service.submit(positionArray,
+                indexArray, parameters, listener);
+
+        return result;
+    }
     // *************************************************************************
     // private methods
 
+    /**
+     * Add the specified child to a compound shape.
+     *
+     * @param compound the compound shape to modify (not null)
+     * @param child the child to add (not null, unaffected)
+     */
+    private static void addChild(CompoundCollisionShape compound,
+            ChildCollisionShape child) {
+        CollisionShape childShape = child.getShape();
+        Vector3f offset = child.copyOffset(null);
+        Matrix3f rotation = child.copyRotationMatrix(null);
+        compound.addChildShape(childShape, offset, rotation);
+    }
+
+    /**
+     * If a shape registry is set, register the specified compound in it, so
+     * that releasing the compound releases its registered children.
+     *
+     * @param compound the newly built compound (not null, alias created)
+     */
+    private static void adoptIfRegistered(CompoundCollisionShape compound) {
+        ShapeRegistry registry = shapeRegistry;
+        if (registry != null) {
+            registry.adopt(compound);
+        }
+    }
+
+    /**
+     * Convert the specified mesh to a compound of V-HACD hulls, re-using a
+     * cached compound if possible. If V-HACD generates no hulls, nothing is
+     * cached, so the caller can fall back to a GImpact shape.
+     *
+     * @param positions the vertex positions (not null, unaffected)
+     * @param indices the vertex indices (not null, unaffected)
+     * @param parameters the V-HACD parameters (not null, unaffected)
+     * @param service the service to use, or null to run on this thread
+     * @return a compound shape, or null if V-HACD generated no hulls
+     */
+    private static CompoundCollisionShape convertMesh(float[] positions,
+            int[] indices, VHACDParameters parameters, VHACDService service) {
+        String key = VHACDService.cacheFileName(positions, indices, parameters);
+        synchronized (conversionCache) {
+            CompoundCollisionShape cached = conversionCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<VHACDHull> hulls;
+        if (service == null) {
+            hulls = VHACD.compute(positions, indices, parameters);
+        } else {
+            Future<List<VHACDHull>> future
+                    = service.submit(positions, indices, parameters, null);
+            hulls = waitFor(future);
+        }
+        if (hulls.isEmpty()) {
+            logger.log(Level.WARNING,
+                    "V-HACD generated no hulls; keeping the GImpact shape.");
+            return null;
+        }
+        CompoundCollisionShape result = createVhacdShape(hulls, null);
+        /*
+         * If another thread converted the same mesh meanwhile,
+         * keep its result so identical meshes share one shape.
+         */
+        synchronized (conversionCache) {
+            CompoundCollisionShape cached = conversionCache.get(key);
+            if (cached == null) {
+                conversionCache.put(key, result);
+            } else {
+                result = cached;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Append transformed mesh triangles to a merged mesh.
      *
@@ -349,46 +842,116 @@ public class CollisionShapeFactory {
         }
     }
 
+    /**
+     * Create a child for the specified terrain or Geometry.
+     *
+     * @param spatial the terrain or Geometry on which to base the child (not
+     * null, unaffected)
+     * @param modelRoot the ancestor for which the shape is being generated (not
+     * null, unaffected)
+     * @param meshAccurate true for hull/mesh children, false for box children
+     * @param dynamic true for hull children, false for mesh children
+     * @return a new child, or null if the Geometry doesn't yield a shape
+     */
+    private static ChildCollisionShape createChild(Spatial spatial,
+            Node modelRoot, boolean meshAccurate, boolean dynamic) {
+        Transform transform = relativeTransform(spatial, modelRoot);
+
+        CollisionShape childShape;
+        if (spatial instanceof Terrain) {
+            childShape = new HeightfieldCollisionShape((Terrain) spatial,
+                    transform.getScale());
+
+        } else {
+            Geometry geometry = (Geometry) spatial;
+            Vector3f centerOffset = new Vector3f(0f, 0f, 0f);
+            if (meshAccurate) {
+                if (dynamic) {
+                    childShape = createSingleHullShape(geometry, modelRoot);
+                } else {
+                    childShape = createSingleMeshShape(geometry, modelRoot);
+                }
+            } else {
+                childShape = createSingleBoxShape(geometry, modelRoot,
+                        centerOffset);
+                transform.getRotation().mult(centerOffset, centerOffset);
+                transform.getTranslation().addLocal(centerOffset);
+            }
+        }
+
+        ChildCollisionShape result = null;
+        if (childShape != null) {
+            Vector3f offset = transform.getTranslation();
+            Matrix3f rotation = transform.getRotation().toRotationMatrix();
+            result = new ChildCollisionShape(offset, rotation, childShape);
+        }
+
+        return result;
+    }
+
     private static void createCompoundShape(Node modelRoot, Node parent,
             CompoundCollisionShape shape, boolean meshAccurate,
             boolean dynamic) {
-        for (Spatial child : parent.getChildren()) {
-            Boolean skipChild = child.getUserData(UserData.JME_PHYSICSIGNORE);
-            if (skipChild != null && skipChild) {
-                continue; // to the next child spatial
+        List<Spatial> leaves = new ArrayList<>(parent.getQuantity());
+        listLeaves(parent, leaves);
+        for (Spatial leaf : leaves) {
+            ChildCollisionShape child
+                    = createChild(leaf, modelRoot, meshAccurate, dynamic);
+            if (child != null) {
+                addChild(shape, child);
             }
-            Transform transform = relativeTransform(child, modelRoot);
-
-            CollisionShape childShape;
-            if (child instanceof Terrain) {
-                childShape = new HeightfieldCollisionShape((Terrain) child,
-                        transform.getScale());
-                shape.addChildShape(childShape, transform);
+        }
+    }
 
-            } else if (child instanceof Node) {
-                createCompoundShape(modelRoot, (Node) child, shape,
-                        meshAccurate, dynamic);
-
-            } else if (child instanceof Geometry) {
-                Geometry geometry = (Geometry) child;
-                Vector3f centerOffset = new Vector3f(0f, 0f, 0f);
-                if (meshAccurate) {
-                    if (dynamic) {
-                        childShape = createSingleHullShape(geometry, modelRoot);
-                    } else {
-                        childShape = createSingleMeshShape(geometry, modelRoot);
-                    }
-                } else {
-                    childShape = createSingleBoxShape(geometry, modelRoot,
-                            centerOffset);
-                    transform.getRotation().mult(centerOffset, centerOffset);
-                    transform.getTranslation().addLocal(centerOffset);
-                }
-                if (childShape != null) {
-                    shape.addChildShape(childShape, transform);
+    /**
+     * Create a compound shape for the specified model, converting its
+     * geometries to child shapes in parallel. The children are added in
+     * traversal order, so the result doesn't depend on thread scheduling.
+     *
+     * @param modelRoot the model on which to base the shape (not null,
+     * unaffected)
+     * @param meshAccurate true for hull/mesh children, false for box children
+     * @param dynamic true for hull children, false for mesh children
+     * @param executor the executor to run conversions (not null)
+     * @return a new compound shape
+     */
+    private static CompoundCollisionShape createCompoundShape(
+            final Node modelRoot, final boolean meshAccurate,
+            final boolean dynamic, ExecutorService executor) {
+        /*
+         * Traverse the scene graph on the current thread.
+         */
+        List<Spatial> leaves = new ArrayList<>(modelRoot.getQuantity());
+        listLeaves(modelRoot, leaves);
+        /*
+         * Convert the leaves in parallel.
+         */
+        List<Callable<ChildCollisionShape>> tasks
+                = new ArrayList<>(leaves.size());
+        for (final Spatial leaf : leaves) {
+            tasks.add(new Callable<ChildCollisionShape>() {
+                @Override
+                public ChildCollisionShape call() {
+                    ChildCollisionShape result = createChild(leaf, modelRoot,
+                            meshAccurate, dynamic);
+                    return result;
                 }
+            });
+        }
+        List<ChildCollisionShape> children = invokeAll(executor, tasks);
+        /*
+         * Assemble the result in traversal order.
+         */
+        int capacity = Math.max(1, children.size());
+        CompoundCollisionShape result = new CompoundCollisionShape(capacity);
+        for (ChildCollisionShape child : children) {
+            if (child != null) {
+                addChild(result, child);
             }
         }
+        adoptIfRegistered(result);
+
+        return result;
     }
 
     /**
@@ -422,8 +985,14 @@ public class CollisionShapeFactory {
 
         MyVector3f.midpoint(maxima, minima, storeCenter);
         Vector3f halfExtents = maxima.subtract(storeCenter);
-        BoxCollisionShape result = new BoxCollisionShape(halfExtents);
-        result.setScale(transform.getScale());
+        BoxCollisionShape result;
+        ShapeRegistry registry = shapeRegistry;
+        if (registry == null) {
+            result = new BoxCollisionShape(halfExtents);
+            result.setScale(transform.getScale());
+        } else {
+            result = registry.acquireBox(halfExtents, transform.getScale());
+        }
 
         return result;
     }
@@ -444,8 +1013,14 @@ public class CollisionShapeFactory {
 
         Transform transform = relativeTransform(geometry, modelRoot);
         // TODO recognize AbstractBox, Cylinder, Quad, and Sphere from com.jme3.scene.shape package
-        HullCollisionShape hullShape = new HullCollisionShape(mesh);
-        hullShape.setScale(transform.getScale());
+        HullCollisionShape hullShape;
+        ShapeRegistry registry = shapeRegistry;
+        if (registry == null) {
+            hullShape = new HullCollisionShape(mesh);
+            hullShape.setScale(transform.getScale());
+        } else {
+            hullShape = registry.acquireHull(mesh, transform.getScale());
+        }
 
         return hullShape;
     }
@@ -468,12 +1043,84 @@ public class CollisionShapeFactory {
 
         Transform transform = relativeTransform(geometry, modelRoot);
         // TODO recognize AbstractBox, Cylinder, Quad, and Sphere from com.jme3.scene.shape package
-        MeshCollisionShape result = new MeshCollisionShape(mesh);
-        result.setScale(transform.getScale());
+        MeshCollisionShape result;
+        ShapeRegistry registry = shapeRegistry;
+        if (registry == null) {
+            result = new MeshCollisionShape(mesh);
+            result.setScale(transform.getScale());
+        } else {
+            result = registry.acquireMesh(mesh, transform.getScale());
+        }
+
+        return result;
+    }
+
+    /**
+     * Copy the vertex indices of the specified Mesh to a new array.
+     *
+     * @param mesh the Mesh to read (not null, unaffected)
+     * @return a new array
+     */
+    private static int[] indexArray(Mesh mesh) {
+        IndexBuffer indexBuffer = mesh.getIndicesAsList();
+        int numIndices = indexBuffer.size();
+        int[] result = new int[numIndices];
+        for (int offset = 0; offset < numIndices; ++offset) {
+            result[offset] = indexBuffer.get(offset);
+        }
+
+        return result;
+    }
+
+    /**
+     * Run the specified tasks and wait for all of them to complete.
+     *
+     * @param <T> the type of result
+     * @param executor the executor to use (not null)
+     * @param tasks the tasks to run (not null, unaffected)
+     * @return a new list of results, in the same order as the tasks
+     */
+    private static <T> List<T> invokeAll(ExecutorService executor,
+            List<Callable<T>> tasks) {
+        List<Future<T>> futures;
+        try {
+            futures = executor.invokeAll(tasks);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(exception);
+        }
+
+        List<T> result = new ArrayList<>(tasks.size());
+        for (Future<T> future : futures) {
+            result.add(waitFor(future));
+        }
 
         return result;
     }
 
+    /**
+     * Enumerate the terrains and geometries in the specified subtree, in
+     * depth-first order, excluding any tagged with "JmePhysicsIgnore" and
+     * their descendants.
+     *
+     * @param parent the root of the subtree (not null, unaffected)
+     * @param addResult the list to append to (not null, modified)
+     */
+    private static void listLeaves(Node parent, List<Spatial> addResult) {
+        for (Spatial child : parent.getChildren()) {
+            Boolean skipChild = child.getUserData(UserData.JME_PHYSICSIGNORE);
+            if (skipChild != null && skipChild) {
+                continue; // to the next child spatial
+            }
+
+            if (child instanceof Terrain || child instanceof Geometry) {
+                addResult.add(child);
+            } else if (child instanceof Node) {
+                listLeaves((Node) child, addResult);
+            }
+        }
+    }
+
     /**
      * Generate a Mesh that merges the triangles of non-empty geometries not
      * tagged with "JmePhysicsIgnore".
@@ -534,6 +1181,24 @@ public class CollisionShapeFactory {
         return result;
     }
 
+    /**
+     * Copy the vertex positions of the specified Mesh to a new array.
+     *
+     * @param mesh the Mesh to read (not null, unaffected)
+     * @return a new array
+     */
+    private static float[] positionArray(Mesh mesh) {
+        FloatBuffer positionBuffer
+                = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        int numFloats = positionBuffer.limit();
+        float[] result = new float[numFloats];
+        for (int offset = 0; offset < numFloats; ++offset) {
+            result[offset] = positionBuffer.get(offset);
+        }
+
+        return result;
+    }
+
     /**
      * Calculate the Transform for a ChildCollisionShape relative to the
      * ancestor for which the shape is being generated.
@@ -558,4 +1223,31 @@ public class CollisionShapeFactory {
 
         return result;
     }
+
+    /**
+     * Wait for the specified Future to complete, unwrapping any exception
+     * thrown by its task.
+     *
+     * @param <T> the type of result
+     * @param future the Future to wait for (not null)
+     * @return the result of the task
+     */
+    private static <T> T waitFor(Future<T> future) {
+        try {
+            T result = future.get();
+            return result;
+
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
 }
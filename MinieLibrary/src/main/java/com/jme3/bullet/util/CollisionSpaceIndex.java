@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bullet.CollisionSpace;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.collision.PhysicsCollisionObject;
+import com.jme3.math.Plane;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A Java-side index of the axis-aligned bounding boxes of the collision
+ * objects in a CollisionSpace, for region queries that make no native calls.
+ * <p>
+ * The index is a snapshot: {@link #refresh(com.jme3.bullet.CollisionSpace)}
+ * reads each object's bounding box once, after which any number of box,
+ * sphere, and frustum queries can be answered from an {@link AabbTree}. When
+ * added to a PhysicsSpace as a tick listener, the index refreshes itself after
+ * each simulation step.
+ * <p>
+ * This class isn't thread-safe: query it on the physics thread or between
+ * steps.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class CollisionSpaceIndex implements PhysicsTickListener {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(CollisionSpaceIndex.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * tree of bounding boxes
+     */
+    final private AabbTree<PhysicsCollisionObject> tree;
+    /**
+     * temporary storage for bounding boxes
+     */
+    final private BoundingBox tmpBox = new BoundingBox();
+    /**
+     * number of refreshes so far
+     */
+    private int refreshCount = 0;
+    /**
+     * map indexed objects to their leaves
+     */
+    final private Map<PhysicsCollisionObject, Leaf> pcoToLeaf
+            = new IdentityHashMap<>(256);
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty index.
+     *
+     * @param margin the amount by which to enlarge boxes in the tree, to
+     * reduce restructuring as objects move (in physics-space units, &ge;0)
+     */
+    public CollisionSpaceIndex(float margin) {
+        Validate.nonNegative(margin, "margin");
+        this.tree = new AabbTree<>(margin);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Remove all objects from the index.
+     */
+    public void clear() {
+        tree.clear();
+        pcoToLeaf.clear();
+    }
+
+    /**
+     * Test whether the specified object is indexed.
+     *
+     * @param pco the object to test (unaffected)
+     * @return true if indexed, otherwise false
+     */
+    public boolean contains(PhysicsCollisionObject pco) {
+        boolean result = pcoToLeaf.containsKey(pco);
+        return result;
+    }
+
+    /**
+     * Count the indexed objects.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countObjects() {
+        int result = tree.countLeaves();
+        return result;
+    }
+
+    /**
+     * Find all indexed objects whose bounding boxes overlap the specified box.
+     *
+     * @param box the region to query (in physics-space coordinates, not null,
+     * unaffected)
+     * @param addResult storage for the objects found (not null, added to)
+     * @return the number of objects found (&ge;0)
+     */
+    public int overlapBox(BoundingBox box,
+            Collection<? super PhysicsCollisionObject> addResult) {
+        Validate.nonNull(box, "box");
+        Validate.nonNull(addResult, "add result");
+
+        int result = tree.overlapBox(box, addResult);
+        return result;
+    }
+
+    /**
+     * Find all indexed objects whose bounding boxes intersect the frustum of
+     * the specified Camera.
+     *
+     * @param camera the camera (not null, unaffected)
+     * @param addResult storage for the objects found (not null, added to)
+     * @return the number of objects found (&ge;0)
+     */
+    public int overlapFrustum(Camera camera,
+            Collection<? super PhysicsCollisionObject> addResult) {
+        Validate.nonNull(camera, "camera");
+        Validate.nonNull(addResult, "add result");
+
+        int result = tree.overlapFrustum(camera, addResult);
+        return result;
+    }
+
+    /**
+     * Find all indexed objects whose bounding boxes aren't entirely behind
+     * any of the specified planes.
+     *
+     * @param planes the bounding planes, with normals pointing inward (not
+     * null, unaffected)
+     * @param addResult storage for the objects found (not null, added to)
+     * @return the number of objects found (&ge;0)
+     */
+    public int overlapPlanes(Plane[] planes,
+            Collection<? super PhysicsCollisionObject> addResult) {
+        Validate.nonNull(planes, "planes");
+        Validate.nonNull(addResult, "add result");
+
+        int result = tree.overlapPlanes(planes, addResult);
+        return result;
+    }
+
+    /**
+     * Find all indexed objects whose bounding boxes intersect the specified
+     * sphere.
+     *
+     * @param center the center of the sphere (in physics-space coordinates,
+     * not null, unaffected)
+     * @param radius the radius of the sphere (&ge;0)
+     * @param addResult storage for the objects found (not null, added to)
+     * @return the number of objects found (&ge;0)
+     */
+    public int overlapSphere(Vector3f center, float radius,
+            Collection<? super PhysicsCollisionObject> addResult) {
+        Validate.finite(center, "center");
+        Validate.nonNull(addResult, "add result");
+
+        int result = tree.overlapSphere(center, radius, addResult);
+        return result;
+    }
+
+    /**
+     * Synchronize the index with the specified space: add new objects, update
+     * the bounding boxes of existing ones, and remove objects that have left
+     * the space.
+     *
+     * @param space the space to index (not null, unaffected)
+     */
+    public void refresh(CollisionSpace space) {
+        ++refreshCount;
+        for (PhysicsCollisionObject pco : space.getPcoList()) {
+            pco.boundingBox(tmpBox);
+            Leaf leaf = pcoToLeaf.get(pco);
+            if (leaf == null) {
+                int proxy = tree.insert(pco, tmpBox);
+                pcoToLeaf.put(pco, new Leaf(proxy, refreshCount));
+            } else {
+                tree.move(leaf.proxy, tmpBox);
+                leaf.lastSeen = refreshCount;
+            }
+        }
+
+        Iterator<Leaf> iterator = pcoToLeaf.values().iterator();
+        while (iterator.hasNext()) {
+            Leaf leaf = iterator.next();
+            if (leaf.lastSeen != refreshCount) {
+                tree.remove(leaf.proxy);
+                iterator.remove();
+            }
+        }
+    }
+    // *************************************************************************
+    // PhysicsTickListener methods
+
+    /**
+     * Callback from Bullet, invoked just after the physics has been stepped.
+     * Refresh the index.
+     *
+     * @param space the space that was just stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void physicsTick(PhysicsSpace space, float timeStep) {
+        refresh(space);
+    }
+
+    /**
+     * Callback from Bullet, invoked just before the physics is stepped. No
+     * effect.
+     *
+     * @param space the space that is about to be stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        // do nothing
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * Per-object bookkeeping.
+     */
+    private static class Leaf {
+        /**
+         * proxy ID in the tree
+         */
+        final int proxy;
+        /**
+         * refresh in which the object was last seen
+         */
+        int lastSeen;
+
+        Leaf(int proxy, int lastSeen) {
+            this.proxy = proxy;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.math.FastMath;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * Utility methods to reduce the number of vertices in a convex hull. These
+ * methods are pure Java and may be invoked from any thread.
+ * <p>
+ * The algorithm is greedy: it samples a fixed set of directions and
+ * repeatedly adds the input point that's furthest out in the direction where
+ * the reduced hull falls shortest of the full hull. For convex sets, that
+ * shortfall (the difference of support functions) is the Hausdorff distance
+ * between the hulls, so the tolerance is measured in the same units as the
+ * input coordinates. Since only sampled directions are considered, the true
+ * deviation may slightly exceed the tolerance.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class HullSimplifier {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of sampled directions
+     */
+    final private static int numDirections = 256;
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(HullSimplifier.class.getName());
+    /**
+     * unit vectors distributed evenly over the sphere
+     */
+    final private static float[] directions = fibonacciSphere(numDirections);
+    // *************************************************************************
+    // constructors
+
+    /**
+     * A private constructor to inhibit instantiation of this class.
+     */
+    private HullSimplifier() {
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Select a subset of the specified points whose hull approximates the hull
+     * of all the points.
+     *
+     * @param points the input coordinates (not null, not empty, length a
+     * multiple of 3, unaffected)
+     * @param maxVertices the maximum number of points to select (&gt;0)
+     * @param tolerance the acceptable deviation between hulls (in input units,
+     * &ge;0)
+     * @return a new array of coordinates, a subset of the input (not empty,
+     * length a multiple of 3)
+     */
+    public static float[] simplify(float[] points, int maxVertices,
+            float tolerance) {
+        Validate.nonEmpty(points, "points");
+        Validate.require(points.length % numAxes == 0,
+                "length a multiple of 3");
+        Validate.positive(maxVertices, "max vertices");
+        Validate.nonNegative(tolerance, "tolerance");
+
+        int numPoints = points.length / numAxes;
+        /*
+         * For each direction, find the full hull's support point and value.
+         */
+        int[] fullIndex = new int[numDirections];
+        float[] fullSupport = new float[numDirections];
+        float[] reducedSupport = new float[numDirections];
+        for (int dirI = 0; dirI < numDirections; ++dirI) {
+            float best = Float.NEGATIVE_INFINITY;
+            int bestIndex = 0;
+            for (int pointI = 0; pointI < numPoints; ++pointI) {
+                float dot = dot(points, pointI, dirI);
+                if (dot > best) {
+                    best = dot;
+                    bestIndex = pointI;
+                }
+            }
+            fullIndex[dirI] = bestIndex;
+            fullSupport[dirI] = best;
+            reducedSupport[dirI] = Float.NEGATIVE_INFINITY;
+        }
+        /*
+         * Greedily add the support point for the direction
+         * with the largest shortfall.
+         */
+        int maxSelected = Math.min(maxVertices, numPoints);
+        int[] selected = new int[maxSelected];
+        int numSelected = 0;
+        while (numSelected < maxSelected) {
+            float worstGap = 0f;
+            int worstDir = -1;
+            for (int dirI = 0; dirI < numDirections; ++dirI) {
+                float gap = fullSupport[dirI] - reducedSupport[dirI];
+                if (gap > worstGap) {
+                    worstGap = gap;
+                    worstDir = dirI;
+                }
+            }
+            if (worstDir == -1 || worstGap <= tolerance) {
+                break;
+            }
+
+            int pointI = fullIndex[worstDir];
+            selected[numSelected] = pointI;
+            ++numSelected;
+            for (int dirI = 0; dirI < numDirections; ++dirI) {
+                float dot = dot(points, pointI, dirI);
+                if (dot > reducedSupport[dirI]) {
+                    reducedSupport[dirI] = dot;
+                }
+            }
+        }
+        assert numSelected > 0 : numSelected;
+
+        float[] result = new float[numAxes * numSelected];
+        for (int i = 0; i < numSelected; ++i) {
+            System.arraycopy(points, numAxes * selected[i], result,
+                    numAxes * i, numAxes);
+        }
+
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Calculate the dot product of an input point and a sampled direction.
+     *
+     * @param points the input coordinates (not null, unaffected)
+     * @param pointIndex the index of the point (&ge;0)
+     * @param dirIndex the index of the direction (&ge;0)
+     * @return the dot product
+     */
+    private static float dot(float[] points, int pointIndex, int dirIndex) {
+        int p = numAxes * pointIndex;
+        int d = numAxes * dirIndex;
+        float result = points[p] * directions[d]
+                + points[p + 1] * directions[d + 1]
+                + points[p + 2] * directions[d + 2];
+
+        return result;
+    }
+
+    /**
+     * Generate unit vectors distributed evenly over the sphere, using a
+     * Fibonacci lattice.
+     *
+     * @param count the number of vectors (&gt;0)
+     * @return a new array of coordinates (length = 3 * count)
+     */
+    private static float[] fibonacciSphere(int count) {
+        float[] result = new float[numAxes * count];
+        float goldenAngle = FastMath.PI * (3f - FastMath.sqrt(5f));
+        for (int i = 0; i < count; ++i) {
+            float y = 1f - 2f * (i + 0.5f) / count;
+            float radius = FastMath.sqrt(1f - y * y);
+            float theta = goldenAngle * i;
+            result[numAxes * i] = radius * FastMath.cos(theta);
+            result[numAxes * i + 1] = y;
+            result[numAxes * i + 2] = radius * FastMath.sin(theta);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.collision.PhysicsCollisionObject;
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * Interest management for networked simulations: maintain, for each
+ * observer, the set of collision objects near it, and report which objects
+ * entered or left that set during the latest update.
+ * <p>
+ * An object enters an observer's interest set when its bounding box comes
+ * within the observer's radius, and leaves it only when its bounding box is
+ * farther than the radius plus a hysteresis distance, so objects near the
+ * boundary don't flicker in and out.
+ * <p>
+ * All observers are updated in bulk after each simulation step, using a
+ * {@link CollisionSpaceIndex}, so no native calls are made per observer. This
+ * class isn't thread-safe: read the deltas on the physics thread or between
+ * steps.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class InterestManager implements PhysicsTickListener {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(InterestManager.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if this manager refreshes the index itself, false if the index is
+     * shared and refreshed elsewhere
+     */
+    final private boolean ownsIndex;
+    /**
+     * index used to locate nearby objects
+     */
+    final private CollisionSpaceIndex index;
+    /**
+     * distance beyond the radius at which objects leave an interest set
+     * (&ge;0)
+     */
+    private float hysteresis;
+    /**
+     * registered observers, in order of addition
+     */
+    final private List<Observer> observers = new ArrayList<>(16);
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a manager with its own index. Add the manager to a
+     * PhysicsSpace as a tick listener to update it after each step.
+     *
+     * @param hysteresis the distance beyond each observer's radius at which
+     * objects leave its interest set (in physics-space units, &ge;0)
+     */
+    public InterestManager(float hysteresis) {
+        Validate.nonNegative(hysteresis, "hysteresis");
+
+        this.hysteresis = hysteresis;
+        this.index = new CollisionSpaceIndex(hysteresis);
+        this.ownsIndex = true;
+    }
+
+    /**
+     * Instantiate a manager that shares the specified index. The index must be
+     * refreshed before this manager is updated, for instance by adding it to
+     * the PhysicsSpace as a tick listener ahead of this manager.
+     *
+     * @param sharedIndex the index to use (not null, alias created)
+     * @param hysteresis the distance beyond each observer's radius at which
+     * objects leave its interest set (in physics-space units, &ge;0)
+     */
+    public InterestManager(CollisionSpaceIndex sharedIndex, float hysteresis) {
+        Validate.nonNull(sharedIndex, "shared index");
+        Validate.nonNegative(hysteresis, "hysteresis");
+
+        this.hysteresis = hysteresis;
+        this.index = sharedIndex;
+        this.ownsIndex = false;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Add an observer.
+     *
+     * @param location the observer's initial location (in physics-space
+     * coordinates, not null, unaffected)
+     * @param radius the observer's radius of interest (&ge;0)
+     * @return a new observer, whose interest set will be populated by the next
+     * update
+     */
+    public Observer addObserver(Vector3f location, float radius) {
+        Validate.finite(location, "location");
+        Validate.nonNegative(radius, "radius");
+
+        Observer result = new Observer(location, radius);
+        observers.add(result);
+
+        return result;
+    }
+
+    /**
+     * Count the registered observers.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countObservers() {
+        int result = observers.size();
+        return result;
+    }
+
+    /**
+     * Access the index used to locate nearby objects.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    public CollisionSpaceIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Return the hysteresis distance.
+     *
+     * @return the distance beyond each observer's radius at which objects
+     * leave its interest set (in physics-space units, &ge;0)
+     */
+    public float hysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * Remove the specified observer. Its sets are left unchanged.
+     *
+     * @param observer the observer to remove (not null)
+     */
+    public void removeObserver(Observer observer) {
+        Validate.nonNull(observer, "observer");
+
+        boolean success = observers.remove(observer);
+        if (!success) {
+            throw new IllegalArgumentException(
+                    "The observer isn't registered.");
+        }
+    }
+
+    /**
+     * Alter the hysteresis distance.
+     *
+     * @param distance the desired distance (in physics-space units, &ge;0)
+     */
+    public void setHysteresis(float distance) {
+        Validate.nonNegative(distance, "distance");
+        this.hysteresis = distance;
+    }
+
+    /**
+     * Update every observer's interest set and deltas from the index. Invoked
+     * automatically after each step by
+     * {@link #physicsTick(com.jme3.bullet.PhysicsSpace, float)}.
+     */
+    public void update() {
+        for (Observer observer : observers) {
+            observer.update();
+        }
+    }
+    // *************************************************************************
+    // PhysicsTickListener methods
+
+    /**
+     * Callback from Bullet, invoked just after the physics has been stepped.
+     * Refresh the index (if it isn't shared) and update all observers.
+     *
+     * @param space the space that was just stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void physicsTick(PhysicsSpace space, float timeStep) {
+        if (ownsIndex) {
+            index.refresh(space);
+        }
+        update();
+    }
+
+    /**
+     * Callback from Bullet, invoked just before the physics is stepped. No
+     * effect.
+     *
+     * @param space the space that is about to be stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        // do nothing
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A location of interest, such as a client's avatar or camera, with its
+     * interest set and deltas.
+     */
+    public class Observer {
+        // *********************************************************************
+        // fields
+
+        /**
+         * radius of interest (&ge;0)
+         */
+        private float radius;
+        /**
+         * objects that entered the interest set during the latest update
+         */
+        final private List<PhysicsCollisionObject> entered
+                = new ArrayList<>(16);
+        /**
+         * objects that left the interest set during the latest update
+         */
+        final private List<PhysicsCollisionObject> left
+                = new ArrayList<>(16);
+        /**
+         * reusable storage for query results
+         */
+        final private List<PhysicsCollisionObject> queryResults
+                = new ArrayList<>(64);
+        /**
+         * current interest set, mapped to the number of the update in which
+         * each object was last within range
+         */
+        final private Map<PhysicsCollisionObject, int[]> interests
+                = new IdentityHashMap<>(64);
+        /**
+         * number of updates so far
+         */
+        private int updateCount = 0;
+        /**
+         * location (in physics-space coordinates)
+         */
+        final private Vector3f location;
+
+        /**
+         * Instantiate an observer.
+         *
+         * @param location the initial location (not null, unaffected)
+         * @param radius the radius of interest (&ge;0)
+         */
+        Observer(Vector3f location, float radius) {
+            this.location = location.clone();
+            this.radius = radius;
+        }
+        // *********************************************************************
+        // new methods exposed
+
+        /**
+         * Copy the location.
+         *
+         * @param storeResult storage for the result (modified if not null)
+         * @return the location (in physics-space coordinates, either
+         * storeResult or a new vector)
+         */
+        public Vector3f copyLocation(Vector3f storeResult) {
+            Vector3f result = (storeResult == null) ? new Vector3f()
+                    : storeResult;
+            result.set(location);
+
+            return result;
+        }
+
+        /**
+         * Count the objects in the interest set.
+         *
+         * @return the count (&ge;0)
+         */
+        public int countInterests() {
+            int result = interests.size();
+            return result;
+        }
+
+        /**
+         * Access the objects that entered the interest set during the latest
+         * update.
+         *
+         * @return an unmodifiable view (not null)
+         */
+        public List<PhysicsCollisionObject> getEntered() {
+            List<PhysicsCollisionObject> result
+                    = Collections.unmodifiableList(entered);
+            return result;
+        }
+
+        /**
+         * Access the current interest set.
+         *
+         * @return an unmodifiable view (not null)
+         */
+        public Set<PhysicsCollisionObject> getInterests() {
+            Set<PhysicsCollisionObject> result
+                    = Collections.unmodifiableSet(interests.keySet());
+            return result;
+        }
+
+        /**
+         * Access the objects that left the interest set during the latest
+         * update.
+         *
+         * @return an unmodifiable view (not null)
+         */
+        public List<PhysicsCollisionObject> getLeft() {
+            List<PhysicsCollisionObject> result
+                    = Collections.unmodifiableList(left);
+            return result;
+        }
+
+        /**
+         * Test whether the specified object is in the interest set.
+         *
+         * @param pco the object to test (unaffected)
+         * @return true if interested, otherwise false
+         */
+        public boolean isInterested(PhysicsCollisionObject pco) {
+            boolean result = interests.containsKey(pco);
+            return result;
+        }
+
+        /**
+         * Return the radius of interest.
+         *
+         * @return the radius (in physics-space units, &ge;0)
+         */
+        public float radius() {
+            return radius;
+        }
+
+        /**
+         * Alter the location.
+         *
+         * @param newLocation the desired location (in physics-space
+         * coordinates, not null, unaffected)
+         */
+        public void setLocation(Vector3f newLocation) {
+            Validate.finite(newLocation, "new location");
+            location.set(newLocation);
+        }
+
+        /**
+         * Alter the radius of interest.
+         *
+         * @param newRadius the desired radius (in physics-space units, &ge;0)
+         */
+        public void setRadius(float newRadius) {
+            Validate.nonNegative(newRadius, "new radius");
+            this.radius = newRadius;
+        }
+        // *********************************************************************
+        // private methods
+
+        /**
+         * Recompute the interest set and deltas.
+         */
+        private void update() {
+            ++updateCount;
+            entered.clear();
+            left.clear();
+            /*
+             * Objects within the leave radius stay in the set.
+             */
+            queryResults.clear();
+            index.overlapSphere(location, radius + hysteresis, queryResults);
+            for (PhysicsCollisionObject pco : queryResults) {
+                int[] stamp = interests.get(pco);
+                if (stamp != null) {
+                    stamp[0] = updateCount;
+                }
+            }
+            /*
+             * Objects within the enter radius join the set.
+             */
+            queryResults.clear();
+            index.overlapSphere(location, radius, queryResults);
+            for (PhysicsCollisionObject pco : queryResults) {
+                int[] stamp = interests.get(pco);
+                if (stamp == null) {
+                    interests.put(pco, new int[]{updateCount});
+                    entered.add(pco);
+                } else {
+                    stamp[0] = updateCount;
+                }
+            }
+            /*
+             * All other objects leave the set.
+             */
+            for (Map.Entry<PhysicsCollisionObject, int[]> entry
+                    : interests.entrySet()) {
+                if (entry.getValue()[0] != updateCount) {
+                    left.add(entry.getKey());
+                }
+            }
+            for (PhysicsCollisionObject pco : left) {
+                interests.remove(pco);
+            }
+        }
+    }
+}
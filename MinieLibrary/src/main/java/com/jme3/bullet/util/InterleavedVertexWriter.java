@@ -0,0 +1,489 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * Write soft-body node data into the single interleaved vertex buffer of a
+ * jME Mesh, so that positions, normals, and (optionally) tangents are
+ * uploaded to the GPU with one buffer update instead of one per attribute.
+ * <p>
+ * The Mesh must already use jME's interleaved layout (see
+ * {@link #interleave(com.jme3.scene.Mesh, boolean)}). The writer reads the
+ * offset and stride of each attribute from the Mesh, so it works with any
+ * attribute order. Because the per-attribute buffers of an interleaved Mesh
+ * hold no data, the writer also maintains the Mesh's bounding box.
+ * <p>
+ * This class isn't thread-safe.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class InterleavedVertexWriter {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * number of bytes in a float
+     */
+    final private static int bytesPerFloat = 4;
+    /**
+     * number of vertices per triangle
+     */
+    final private static int vpt = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(InterleavedVertexWriter.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * staging buffer for the native copy of locations (direct)
+     */
+    final private FloatBuffer stagedPositions;
+    /**
+     * staging buffer for the native copy of normals (direct) or null if the
+     * layout has no normals
+     */
+    final private FloatBuffer stagedNormals;
+    /**
+     * accumulated texture-space U directions, 3 per vertex, or null if the
+     * layout has no tangents
+     */
+    final private float[] uSums;
+    /**
+     * accumulated texture-space V directions, 3 per vertex, or null if the
+     * layout has no tangents
+     */
+    final private float[] vSums;
+    /**
+     * byte offset of the normal within each vertex, or -1 for none
+     */
+    final private int normalOffset;
+    /**
+     * number of vertices in the Mesh
+     */
+    final private int numVertices;
+    /**
+     * byte offset of the position within each vertex
+     */
+    final private int positionOffset;
+    /**
+     * number of bytes per vertex
+     */
+    final private int stride;
+    /**
+     * byte offset of the tangent within each vertex, or -1 for none
+     */
+    final private int tangentOffset;
+    /**
+     * byte offset of the texture coordinates within each vertex, or -1 for
+     * none
+     */
+    final private int texCoordOffset;
+    /**
+     * triangle indices, used to calculate tangents, or null if the layout has
+     * no tangents
+     */
+    final private IndexBuffer triangles;
+    /**
+     * the Mesh to update
+     */
+    final private Mesh mesh;
+    /**
+     * the interleaved vertex buffer
+     */
+    final private VertexBuffer interleaved;
+    /**
+     * temporary storage for the minimum corner of the bounding box
+     */
+    final private Vector3f tmpMin = new Vector3f();
+    /**
+     * temporary storage for the maximum corner of the bounding box
+     */
+    final private Vector3f tmpMax = new Vector3f();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a writer for the specified interleaved Mesh.
+     *
+     * @param mesh the Mesh to update (not null, interleaved, alias created)
+     */
+    public InterleavedVertexWriter(Mesh mesh) {
+        Validate.nonNull(mesh, "mesh");
+        this.interleaved = mesh.getBuffer(VertexBuffer.Type.InterleavedData);
+        if (interleaved == null) {
+            throw new IllegalArgumentException(
+                    "The mesh must have an interleaved layout.");
+        }
+
+        this.mesh = mesh;
+        this.numVertices = mesh.getVertexCount();
+
+        VertexBuffer position = mesh.getBuffer(VertexBuffer.Type.Position);
+        requireFloats(position, numAxes);
+        this.positionOffset = position.getOffset();
+        this.stride = position.getStride();
+        this.stagedPositions
+                = BufferUtils.createFloatBuffer(numAxes * numVertices);
+
+        VertexBuffer normal = mesh.getBuffer(VertexBuffer.Type.Normal);
+        if (normal == null) {
+            this.normalOffset = -1;
+            this.stagedNormals = null;
+        } else {
+            requireFloats(normal, numAxes);
+            this.normalOffset = normal.getOffset();
+            this.stagedNormals
+                    = BufferUtils.createFloatBuffer(numAxes * numVertices);
+        }
+
+        VertexBuffer tangent = mesh.getBuffer(VertexBuffer.Type.Tangent);
+        VertexBuffer texCoord = mesh.getBuffer(VertexBuffer.Type.TexCoord);
+        if (tangent == null || normal == null || texCoord == null
+                || mesh.getMode() != Mesh.Mode.Triangles) {
+            this.tangentOffset = -1;
+            this.texCoordOffset = -1;
+            this.triangles = null;
+            this.uSums = null;
+            this.vSums = null;
+        } else {
+            requireFloats(tangent, 4);
+            requireFloats(texCoord, 2);
+            this.tangentOffset = tangent.getOffset();
+            this.texCoordOffset = texCoord.getOffset();
+            this.triangles = mesh.getIndicesAsList();
+            this.uSums = new float[numAxes * numVertices];
+            this.vSums = new float[numAxes * numVertices];
+        }
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Test whether this writer calculates tangents.
+     *
+     * @return true if tangents are written, otherwise false
+     */
+    public boolean hasTangents() {
+        boolean result = (tangentOffset >= 0);
+        return result;
+    }
+
+    /**
+     * Convert the specified Mesh to jME's interleaved layout, optionally
+     * adding a tangent buffer first. The interleaved buffer is marked for
+     * streaming, since soft-body vertices change every frame.
+     *
+     * @param mesh the Mesh to convert (not null, not interleaved, position
+     * buffer must be present, modified)
+     * @param addTangents if true and the Mesh lacks a tangent buffer, add one
+     * (requires triangle mode plus normals and texture coordinates)
+     */
+    public static void interleave(Mesh mesh, boolean addTangents) {
+        Validate.nonNull(mesh, "mesh");
+        if (mesh.getBuffer(VertexBuffer.Type.InterleavedData) != null) {
+            throw new IllegalArgumentException(
+                    "The mesh is already interleaved.");
+        }
+        requireFloats(mesh.getBuffer(VertexBuffer.Type.Position), numAxes);
+
+        if (addTangents
+                && mesh.getBuffer(VertexBuffer.Type.Tangent) == null) {
+            Validate.require(mesh.getMode() == Mesh.Mode.Triangles,
+                    "a mesh in Triangles mode");
+            Validate.require(
+                    mesh.getBuffer(VertexBuffer.Type.Normal) != null,
+                    "a mesh with normals");
+            Validate.require(
+                    mesh.getBuffer(VertexBuffer.Type.TexCoord) != null,
+                    "a mesh with texture coordinates");
+
+            int numFloats = 4 * mesh.getVertexCount();
+            FloatBuffer tangents = BufferUtils.createFloatBuffer(numFloats);
+            mesh.setBuffer(VertexBuffer.Type.Tangent, 4, tangents);
+        }
+
+        setInterleaved(mesh);
+        VertexBuffer interleaved
+                = mesh.getBuffer(VertexBuffer.Type.InterleavedData);
+        interleaved.setUsage(VertexBuffer.Usage.Stream);
+    }
+
+    /**
+     * Update the Mesh from the nodes of the specified soft body: copy
+     * locations and normals via native code, apply the transform, then write
+     * every attribute into the interleaved buffer and recompute the bounding
+     * box, in a single pass over the vertices. If the layout includes
+     * tangents, they are recalculated from the deformed positions.
+     * <p>
+     * Afterward, the caller should pass the Mesh's bound to
+     * {@link com.jme3.scene.Geometry#setModelBound(
+     * com.jme3.bounding.BoundingVolume)}, since
+     * {@link com.jme3.scene.Mesh#updateBound()} doesn't work on interleaved
+     * meshes.
+     *
+     * @param body the soft body to provide locations and normals (not null,
+     * unaffected)
+     * @param vertexToNodeMap the index map to apply (must be direct) or null
+     * for identity
+     * @param meshInLocalSpace if true, transform node locations into the body's
+     * local coordinates (relative to its bounding-box center), otherwise use
+     * physics-space coordinates
+     * @param updateNormals if true, update normals (and tangents, if any),
+     * otherwise leave them unchanged
+     * @param physicsToMesh the coordinate transform to apply, or null for
+     * identity (unaffected)
+     */
+    public void update(PhysicsSoftBody body, IntBuffer vertexToNodeMap,
+            boolean meshInLocalSpace, boolean updateNormals,
+            Transform physicsToMesh) {
+        Validate.nonNull(body, "body");
+
+        boolean writeNormals = updateNormals && stagedNormals != null;
+        FloatBuffer normals = writeNormals ? stagedNormals : null;
+        NativeSoftBodyUtil.updateMesh(body, vertexToNodeMap, stagedPositions,
+                normals, meshInLocalSpace, physicsToMesh);
+
+        ByteBuffer data = (ByteBuffer) interleaved.getData();
+        tmpMin.set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.POSITIVE_INFINITY);
+        tmpMax.set(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.NEGATIVE_INFINITY);
+
+        for (int vertexIndex = 0; vertexIndex < numVertices; ++vertexIndex) {
+            int floatIndex = numAxes * vertexIndex;
+            float x = stagedPositions.get(floatIndex);
+            float y = stagedPositions.get(floatIndex + 1);
+            float z = stagedPositions.get(floatIndex + 2);
+
+            int byteIndex = vertexIndex * stride + positionOffset;
+            data.putFloat(byteIndex, x);
+            data.putFloat(byteIndex + bytesPerFloat, y);
+            data.putFloat(byteIndex + 2 * bytesPerFloat, z);
+
+            tmpMin.x = Math.min(tmpMin.x, x);
+            tmpMin.y = Math.min(tmpMin.y, y);
+            tmpMin.z = Math.min(tmpMin.z, z);
+            tmpMax.x = Math.max(tmpMax.x, x);
+            tmpMax.y = Math.max(tmpMax.y, y);
+            tmpMax.z = Math.max(tmpMax.z, z);
+
+            if (writeNormals) {
+                byteIndex = vertexIndex * stride + normalOffset;
+                data.putFloat(byteIndex, stagedNormals.get(floatIndex));
+                data.putFloat(byteIndex + bytesPerFloat,
+                        stagedNormals.get(floatIndex + 1));
+                data.putFloat(byteIndex + 2 * bytesPerFloat,
+                        stagedNormals.get(floatIndex + 2));
+            }
+        }
+
+        if (writeNormals && tangentOffset >= 0) {
+            writeTangents(data);
+        }
+        interleaved.setUpdateNeeded();
+
+        if (numVertices > 0) {
+            BoundingVolume bound = mesh.getBound();
+            if (bound instanceof BoundingBox) {
+                ((BoundingBox) bound).setMinMax(tmpMin, tmpMax);
+            } else {
+                mesh.setBound(new BoundingBox(tmpMin, tmpMax));
+            }
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Verify that the specified VertexBuffer exists and contains the
+     * specified number of floats per vertex.
+     *
+     * @param buffer the buffer to test (may be null, unaffected)
+     * @param numComponents the required number of components
+     */
+    private static void requireFloats(VertexBuffer buffer, int numComponents) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("A buffer is missing.");
+        }
+        VertexBuffer.Type type = buffer.getBufferType();
+        if (buffer.getFormat() != VertexBuffer.Format.Float) {
+            throw new IllegalArgumentException(
+                    "The " + type + " buffer must contain floats.");
+        }
+        if (buffer.getNumComponents() != numComponents) {
+            throw new IllegalArgumentException("The " + type + " buffer must "
+                    + "have " + numComponents + " components per vertex.");
+        }
+    }
+
+    /**
+     * Convert the specified Mesh to jME's interleaved layout.
+     * <p>
+     * Mesh.setInterleaved() is deprecated, but it's the only way to attach
+     * an InterleavedData buffer: Mesh.setBuffer() refuses one, because
+     * Mesh.updateCounts() throws once the Mesh is interleaved. The warning is
+     * suppressed here so it doesn't spread to callers.
+     *
+     * @param mesh the Mesh to convert (not null, not interleaved, modified)
+     */
+    @SuppressWarnings("deprecation")
+    private static void setInterleaved(Mesh mesh) {
+        mesh.setInterleaved();
+    }
+
+    /**
+     * Calculate per-vertex tangents from the staged positions and normals and
+     * the texture coordinates in the interleaved buffer, using Lengyel's
+     * method, and write them into the interleaved buffer.
+     *
+     * @param data the interleaved data (not null, modified)
+     */
+    private void writeTangents(ByteBuffer data) {
+        int numFloats = numAxes * numVertices;
+        for (int floatIndex = 0; floatIndex < numFloats; ++floatIndex) {
+            uSums[floatIndex] = 0f;
+            vSums[floatIndex] = 0f;
+        }
+
+        int numTriangles = triangles.size() / vpt;
+        for (int triIndex = 0; triIndex < numTriangles; ++triIndex) {
+            int startIndex = vpt * triIndex;
+            int vi0 = triangles.get(startIndex);
+            int vi1 = triangles.get(startIndex + 1);
+            int vi2 = triangles.get(startIndex + 2);
+
+            float x0 = stagedPositions.get(numAxes * vi0);
+            float y0 = stagedPositions.get(numAxes * vi0 + 1);
+            float z0 = stagedPositions.get(numAxes * vi0 + 2);
+            float e1x = stagedPositions.get(numAxes * vi1) - x0;
+            float e1y = stagedPositions.get(numAxes * vi1 + 1) - y0;
+            float e1z = stagedPositions.get(numAxes * vi1 + 2) - z0;
+            float e2x = stagedPositions.get(numAxes * vi2) - x0;
+            float e2y = stagedPositions.get(numAxes * vi2 + 1) - y0;
+            float e2z = stagedPositions.get(numAxes * vi2 + 2) - z0;
+
+            int uv0 = vi0 * stride + texCoordOffset;
+            int uv1 = vi1 * stride + texCoordOffset;
+            int uv2 = vi2 * stride + texCoordOffset;
+            float u0 = data.getFloat(uv0);
+            float v0 = data.getFloat(uv0 + bytesPerFloat);
+            float du1 = data.getFloat(uv1) - u0;
+            float dv1 = data.getFloat(uv1 + bytesPerFloat) - v0;
+            float du2 = data.getFloat(uv2) - u0;
+            float dv2 = data.getFloat(uv2 + bytesPerFloat) - v0;
+
+            float det = du1 * dv2 - du2 * dv1;
+            if (det == 0f) {
+                continue; // degenerate texture mapping
+            }
+            float r = 1f / det;
+            float ux = r * (dv2 * e1x - dv1 * e2x);
+            float uy = r * (dv2 * e1y - dv1 * e2y);
+            float uz = r * (dv2 * e1z - dv1 * e2z);
+            float vx = r * (du1 * e2x - du2 * e1x);
+            float vy = r * (du1 * e2y - du2 * e1y);
+            float vz = r * (du1 * e2z - du2 * e1z);
+
+            for (int i = 0; i < vpt; ++i) {
+                int vi = triangles.get(startIndex + i);
+                int base = numAxes * vi;
+                uSums[base] += ux;
+                uSums[base + 1] += uy;
+                uSums[base + 2] += uz;
+                vSums[base] += vx;
+                vSums[base + 1] += vy;
+                vSums[base + 2] += vz;
+            }
+        }
+
+        for (int vertexIndex = 0; vertexIndex < numVertices; ++vertexIndex) {
+            int base = numAxes * vertexIndex;
+            float nx = stagedNormals.get(base);
+            float ny = stagedNormals.get(base + 1);
+            float nz = stagedNormals.get(base + 2);
+            float ux = uSums[base];
+            float uy = uSums[base + 1];
+            float uz = uSums[base + 2];
+            /*
+             * Gram-Schmidt orthogonalize against the normal.
+             */
+            float dot = nx * ux + ny * uy + nz * uz;
+            float tx = ux - dot * nx;
+            float ty = uy - dot * ny;
+            float tz = uz - dot * nz;
+            float lengthSquared = tx * tx + ty * ty + tz * tz;
+            if (lengthSquared > 0f) {
+                float scale = 1f / (float) Math.sqrt(lengthSquared);
+                tx *= scale;
+                ty *= scale;
+                tz *= scale;
+            }
+            /*
+             * The W component encodes the handedness of the UV mapping.
+             */
+            float cx = ny * uz - nz * uy;
+            float cy = nz * ux - nx * uz;
+            float cz = nx * uy - ny * ux;
+            float handedness = cx * vSums[base] + cy * vSums[base + 1]
+                    + cz * vSums[base + 2];
+            float w = (handedness < 0f) ? -1f : 1f;
+
+            int byteIndex = vertexIndex * stride + tangentOffset;
+            data.putFloat(byteIndex, tx);
+            data.putFloat(byteIndex + bytesPerFloat, ty);
+            data.putFloat(byteIndex + 2 * bytesPerFloat, tz);
+            data.putFloat(byteIndex + 3 * bytesPerFloat, w);
+        }
+    }
+}
@@ -33,6 +33,7 @@ package com.jme3.bullet.util;
 
 import com.jme3.bullet.collision.shapes.infos.IndexedMesh;
 import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.math.Quaternion;
 import com.jme3.math.Transform;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Mesh;
@@ -50,6 +51,7 @@ import java.util.logging.Logger;
 import jme3utilities.Validate;
 import jme3utilities.math.IntPair;
 import jme3utilities.math.MyBuffer;
+import jme3utilities.math.MyQuaternion;
 import jme3utilities.math.MyVector3f;
 
 /**
@@ -161,6 +163,26 @@ public class NativeSoftBodyUtil {
         softBody.appendLinks(indexBuffer);
     }
 
+    /**
+     * Add the nodes, surface triangles, tetrahedra, and unique tetrahedron
+     * edges of the specified tetrahedral mesh to the specified soft body.
+     *
+     * @param mesh the input tetrahedral mesh (not null)
+     * @param softBody the empty soft body to which nodes, faces, tetrahedra,
+     * and links will be added (not null, modified)
+     */
+    public static void appendFromTetrahedralMesh(TetrahedralMesh mesh,
+            PhysicsSoftBody softBody) {
+        Validate.nonNull(softBody, "soft body");
+        Validate.require(softBody.isEmpty(), "an empty soft body");
+
+        FloatBuffer locations = mesh.copyLocations();
+        softBody.appendNodes(locations);
+        softBody.appendFaces(mesh.copyFaces());
+        softBody.appendTetras(mesh.copyTetras());
+        softBody.appendLinks(mesh.copyLinks());
+    }
+
     /**
      * Add the triangles and unique edges in the specified JME mesh to the
      * specified soft body.
@@ -411,7 +433,6 @@ public class NativeSoftBodyUtil {
     public static void updateMesh(PhysicsSoftBody body,
             IntBuffer vertexToNodeMap, Mesh store, boolean meshInLocalSpace,
             boolean updateNormals, Transform physicsToMesh) {
-        long bodyId = body.nativeId();
         FloatBuffer positionBuffer
                 = store.getFloatBuffer(VertexBuffer.Type.Position);
         assert positionBuffer != null;
@@ -422,6 +443,50 @@ public class NativeSoftBodyUtil {
             assert normalBuffer != null;
         }
 
+        updateMesh(body, vertexToNodeMap, positionBuffer, normalBuffer,
+                meshInLocalSpace, physicsToMesh);
+
+        store.getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
+        if (normalBuffer != null) {
+            store.getBuffer(VertexBuffer.Type.Normal).setUpdateNeeded();
+        }
+    }
+
+    /**
+     * Update the specified position/normal buffers from the nodes in the
+     * specified soft body. Unlike
+     * {@link #updateMesh(com.jme3.bullet.objects.PhysicsSoftBody,
+     * java.nio.IntBuffer, com.jme3.scene.Mesh, boolean, boolean,
+     * com.jme3.math.Transform)}, this method doesn't mark any VertexBuffer as
+     * needing an update, so it can fill buffers that aren't (yet) attached to a
+     * Mesh, for instance on a worker thread.
+     * <p>
+     * The transform is applied to positions and normals in a single pass
+     * without allocating, and is skipped entirely if it's the identity.
+     *
+     * @param body the soft body to provide locations and normals (not null,
+     * unaffected)
+     * @param vertexToNodeMap the index map to apply (must be direct) or null
+     * for identity
+     * @param storePositions the position buffer to fill (not null, direct,
+     * modified)
+     * @param storeNormals the normal buffer to fill (direct, modified) or null
+     * to skip normals
+     * @param meshInLocalSpace if true, transform node locations into the body's
+     * local coordinates (relative to its bounding-box center), otherwise use
+     * physics-space coordinates
+     * @param physicsToMesh the coordinate transform to apply, or null for
+     * identity (unaffected)
+     */
+    public static void updateMesh(PhysicsSoftBody body,
+            IntBuffer vertexToNodeMap, FloatBuffer storePositions,
+            FloatBuffer storeNormals, boolean meshInLocalSpace,
+            Transform physicsToMesh) {
+        long bodyId = body.nativeId();
+        FloatBuffer positionBuffer = storePositions;
+        FloatBuffer normalBuffer = storeNormals;
+        boolean updateNormals = (normalBuffer != null);
+
         if (vertexToNodeMap != null) {
             // map mesh-vertex indices to body-node indices
             updateMesh(bodyId, vertexToNodeMap, positionBuffer, normalBuffer,
@@ -432,48 +497,8 @@ public class NativeSoftBodyUtil {
                     meshInLocalSpace, updateNormals);
         }
 
-        if (physicsToMesh != null) {
-            Vector3f tempVector = new Vector3f();
-            /*
-             * Transform physics locations to mesh positions.
-             */
-            positionBuffer.rewind();
-            while (positionBuffer.hasRemaining()) {
-                positionBuffer.mark();
-                tempVector.x = positionBuffer.get();
-                tempVector.y = positionBuffer.get();
-                tempVector.z = positionBuffer.get();
-                physicsToMesh.transformVector(tempVector, tempVector);
-
-                positionBuffer.reset();
-                positionBuffer.put(tempVector.x);
-                positionBuffer.put(tempVector.y);
-                positionBuffer.put(tempVector.z);
-            }
-
-            if (normalBuffer != null) {
-                /*
-                 * Rotate the normals.
-                 */
-                normalBuffer.rewind();
-                while (normalBuffer.hasRemaining()) {
-                    normalBuffer.mark();
-                    tempVector.x = normalBuffer.get();
-                    tempVector.y = normalBuffer.get();
-                    tempVector.z = normalBuffer.get();
-                    physicsToMesh.getRotation().mult(tempVector, tempVector);
-
-                    normalBuffer.reset();
-                    normalBuffer.put(tempVector.x);
-                    normalBuffer.put(tempVector.y);
-                    normalBuffer.put(tempVector.z);
-                }
-            }
-        }
-
-        store.getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
-        if (normalBuffer != null) {
-            store.getBuffer(VertexBuffer.Type.Normal).setUpdateNeeded();
+        if (physicsToMesh != null && !physicsToMesh.isIdentity()) {
+            transformInPlace(positionBuffer, normalBuffer, physicsToMesh);
         }
     }
 
@@ -499,6 +524,66 @@ public class NativeSoftBodyUtil {
         store.getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
     }
     // *************************************************************************
+    // private methods
+
+    /**
+     * Transform physics-space locations to mesh positions and rotate normals,
+     * in a single pass over the buffers, without allocating any objects.
+     *
+     * @param positions the locations to transform (not null, modified)
+     * @param normals the normals to rotate (modified) or null for none
+     * @param transform the transform to apply (not null, unaffected)
+     */
+    private static void transformInPlace(FloatBuffer positions,
+            FloatBuffer normals, Transform transform) {
+        /*
+         * Convert the rotation to a 3x3 matrix.
+         */
+        Quaternion rotation = transform.getRotation(); // alias
+        float qx = rotation.getX();
+        float qy = rotation.getY();
+        float qz = rotation.getZ();
+        float qw = rotation.getW();
+        float norm = qw * qw + qx * qx + qy * qy + qz * qz;
+        float s = (norm > 0f) ? 2f / norm : 0f;
+        float xs = qx * s, ys = qy * s, zs = qz * s;
+        float xx = qx * xs, xy = qx * ys, xz = qx * zs, xw = qw * xs;
+        float yy = qy * ys, yz = qy * zs, yw = qw * ys;
+        float zz = qz * zs, zw = qw * zs;
+        float m00 = 1f - (yy + zz), m01 = xy - zw, m02 = xz + yw;
+        float m10 = xy + zw, m11 = 1f - (xx + zz), m12 = yz - xw;
+        float m20 = xz - yw, m21 = yz + xw, m22 = 1f - (xx + yy);
+
+        Vector3f scale = transform.getScale(); // alias
+        Vector3f offset = transform.getTranslation(); // alias
+        boolean rotateNormals = normals != null
+                && !MyQuaternion.isRotationIdentity(rotation);
+
+        int numFloats = positions.limit();
+        assert numFloats % numAxes == 0 : numFloats;
+        for (int floatIndex = 0; floatIndex < numFloats;
+                floatIndex += numAxes) {
+            float x = scale.x * positions.get(floatIndex);
+            float y = scale.y * positions.get(floatIndex + 1);
+            float z = scale.z * positions.get(floatIndex + 2);
+            positions.put(floatIndex,
+                    m00 * x + m01 * y + m02 * z + offset.x);
+            positions.put(floatIndex + 1,
+                    m10 * x + m11 * y + m12 * z + offset.y);
+            positions.put(floatIndex + 2,
+                    m20 * x + m21 * y + m22 * z + offset.z);
+
+            if (rotateNormals) {
+                x = normals.get(floatIndex);
+                y = normals.get(floatIndex + 1);
+                z = normals.get(floatIndex + 2);
+                normals.put(floatIndex, m00 * x + m01 * y + m02 * z);
+                normals.put(floatIndex + 1, m10 * x + m11 * y + m12 * z);
+                normals.put(floatIndex + 2, m20 * x + m21 * y + m22 * z);
+            }
+        }
+    }
+    // *************************************************************************
     // native private methods
 
     native private static void updateClusterMesh(long softBodyId,
@@ -0,0 +1,864 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.collision.shapes.CapsuleCollisionShape;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.bullet.collision.shapes.CylinderCollisionShape;
+import com.jme3.bullet.collision.shapes.MultiSphere;
+import com.jme3.bullet.collision.shapes.SphereCollisionShape;
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+import jme3utilities.math.RectangularSolid;
+
+/**
+ * Propose an inexpensive collision shape to approximate a mesh, choosing the
+ * cheapest primitive that encloses the mesh without exceeding a volume-error
+ * tolerance.
+ * <p>
+ * Candidates are tried in order of increasing narrow-phase cost: sphere,
+ * capsule, box, cylinder, 2-sphere MultiSphere, and finally a compound of up
+ * to 4 primitives. Each candidate is fitted in both the mesh's own axes and
+ * its principal axes. The volume error of a candidate is its volume minus the
+ * volume of the mesh's convex hull, relative to the latter.
+ * <p>
+ * Fitting is pure Java; only {@link Fit#createShape()} uses native code.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class PrimitiveFitter {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * maximum depth of the compound split (2 &rarr; up to 4 children)
+     */
+    final private static int maxSplitDepth = 2;
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(PrimitiveFitter.class.getName());
+    // *************************************************************************
+    // enums
+
+    /**
+     * Enumerate the kinds of fits, cheapest first.
+     */
+    public enum Kind {
+        /**
+         * SphereCollisionShape
+         */
+        SPHERE,
+        /**
+         * CapsuleCollisionShape
+         */
+        CAPSULE,
+        /**
+         * BoxCollisionShape
+         */
+        BOX,
+        /**
+         * CylinderCollisionShape
+         */
+        CYLINDER,
+        /**
+         * MultiSphere with 2 spheres
+         */
+        MULTI_SPHERE,
+        /**
+         * CompoundCollisionShape with primitive children
+         */
+        COMPOUND
+    }
+    // *************************************************************************
+    // fields
+
+    /**
+     * maximum acceptable volume error, as a fraction of the hull volume
+     */
+    final private float tolerance;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a fitter with the specified tolerance.
+     *
+     * @param tolerance the maximum acceptable volume error, as a fraction of
+     * the hull volume (&ge;0, for example 0.2 for 20%)
+     */
+    public PrimitiveFitter(float tolerance) {
+        Validate.nonNegative(tolerance, "tolerance");
+        this.tolerance = tolerance;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Propose a shape for the specified locations.
+     *
+     * @param points the coordinates to enclose (not null, not empty, length a
+     * multiple of 3, unaffected)
+     * @return a new fit, or null if no candidate is within tolerance
+     */
+    public Fit fit(float... points) {
+        Validate.nonEmpty(points, "points");
+        Validate.require(points.length % numAxes == 0,
+                "length a multiple of 3");
+
+        float[] hull = QuickHull.hullVertices(points);
+        double hullVolume = QuickHull.hullVolume(hull);
+
+        Fit result = null;
+        for (Kind kind : Kind.values()) {
+            List<Part> parts;
+            if (kind == Kind.COMPOUND) {
+                parts = null;
+                for (int depth = 1; depth <= maxSplitDepth; ++depth) {
+                    List<Part> split = new ArrayList<>(1 << depth);
+                    fitSplit(points, depth, split);
+                    float error = volumeError(split, hullVolume);
+                    if (error <= tolerance) {
+                        parts = split;
+                        break;
+                    }
+                }
+            } else {
+                Part part = fitBest(hull, kind);
+                parts = (part == null) ? null : Arrays.asList(part);
+            }
+
+            if (parts != null) {
+                float error = volumeError(parts, hullVolume);
+                if (error <= tolerance) {
+                    result = new Fit(kind, error, parts);
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Propose a shape for the vertices of the specified meshes.
+     *
+     * @param meshes the meshes to enclose (not null, at least one vertex in
+     * total, unaffected)
+     * @return a new fit, or null if no candidate is within tolerance
+     */
+    public Fit fit(Mesh... meshes) {
+        Validate.nonNull(meshes, "meshes");
+
+        int numFloats = 0;
+        for (Mesh mesh : meshes) {
+            numFloats += numAxes * mesh.getVertexCount();
+        }
+        Validate.positive(numFloats, "number of vertex coordinates");
+        float[] points = new float[numFloats];
+        int floatIndex = 0;
+        for (Mesh mesh : meshes) {
+            FloatBuffer positions
+                    = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+            int count = numAxes * mesh.getVertexCount();
+            for (int i = 0; i < count; ++i) {
+                points[floatIndex++] = positions.get(i);
+            }
+        }
+        Fit result = fit(points);
+
+        return result;
+    }
+
+    /**
+     * Read the tolerance.
+     *
+     * @return the maximum acceptable volume error, as a fraction of the hull
+     * volume (&ge;0)
+     */
+    public float tolerance() {
+        return tolerance;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Fit a primitive of the specified kind in both candidate frames,
+     * returning the smaller.
+     *
+     * @param points the coordinates to enclose (not null, not empty,
+     * unaffected)
+     * @param kind which kind of primitive (not COMPOUND)
+     * @return a new part, or null if none could be fitted
+     */
+    private static Part fitBest(float[] points, Kind kind) {
+        Part result = null;
+        for (Frame frame : frames(points)) {
+            Part part = fitInFrame(frame, kind);
+            if (part != null
+                    && (result == null || part.volume < result.volume)) {
+                result = part;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Fit a primitive of the specified kind in the specified frame.
+     *
+     * @param frame the frame, with the points in local coordinates (not null)
+     * @param kind which kind of primitive (not COMPOUND)
+     * @return a new part, or null if none could be fitted
+     */
+    private static Part fitInFrame(Frame frame, Kind kind) {
+        float[] local = frame.localPoints;
+        int numPoints = local.length / numAxes;
+        int axis = frame.longestAxis();
+        int axis1 = (axis + 1) % numAxes;
+        int axis2 = (axis + 2) % numAxes;
+
+        Part result = new Part(kind, frame);
+        switch (kind) {
+            case SPHERE:
+                double maxSquared = 0.0;
+                for (int i = 0; i < numPoints; ++i) {
+                    double x = local[numAxes * i];
+                    double y = local[numAxes * i + 1];
+                    double z = local[numAxes * i + 2];
+                    maxSquared = Math.max(maxSquared, x * x + y * y + z * z);
+                }
+                result.radius = (float) Math.sqrt(maxSquared);
+                result.volume = 4.0 / 3.0 * Math.PI
+                        * Math.pow(result.radius, 3);
+                break;
+
+            case CAPSULE:
+                double radius = maxRadial(local, axis);
+                double halfHeight = 0.0;
+                for (int i = 0; i < numPoints; ++i) {
+                    double t = Math.abs(local[numAxes * i + axis]);
+                    double rho = radial(local, i, axis);
+                    double cap = Math.sqrt(Math.max(0.0,
+                            radius * radius - rho * rho));
+                    halfHeight = Math.max(halfHeight, t - cap);
+                }
+                result.axis = axis;
+                result.radius = (float) radius;
+                result.height = (float) (2.0 * halfHeight);
+                result.volume = Math.PI * radius * radius * 2.0 * halfHeight
+                        + 4.0 / 3.0 * Math.PI * Math.pow(radius, 3);
+                break;
+
+            case BOX:
+                result.halfExtents.set(frame.halfExtents);
+                result.volume = 8.0 * frame.halfExtents.x
+                        * frame.halfExtents.y * frame.halfExtents.z;
+                break;
+
+            case CYLINDER:
+                float cylRadius = (float) maxRadial(local, axis);
+                float cylHalfHeight = frame.halfExtents.get(axis);
+                result.axis = axis;
+                result.halfExtents.set(axis, cylHalfHeight);
+                result.halfExtents.set(axis1, cylRadius);
+                result.halfExtents.set(axis2, cylRadius);
+                result.volume = Math.PI * cylRadius * cylRadius * 2.0
+                        * cylHalfHeight;
+                break;
+
+            case MULTI_SPHERE:
+                if (!fitTwoSpheres(frame, axis, result)) {
+                    result = null;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException("kind = " + kind);
+        }
+
+        return result;
+    }
+
+    /**
+     * Fit the specified points with a compound, splitting them recursively at
+     * the median along their longest principal axis.
+     *
+     * @param points the coordinates to enclose (not null, not empty,
+     * unaffected)
+     * @param depth the number of remaining splits (&ge;0)
+     * @param addParts storage for the parts (not null, modified)
+     */
+    private static void fitSplit(float[] points, int depth,
+            List<Part> addParts) {
+        int numPoints = points.length / numAxes;
+        if (depth > 0 && numPoints >= 8) {
+            Frame frame = frames(points)[1];
+            int axis = frame.longestAxis();
+            float[] ts = new float[numPoints];
+            for (int i = 0; i < numPoints; ++i) {
+                ts[i] = frame.localPoints[numAxes * i + axis];
+            }
+            float[] sorted = ts.clone();
+            Arrays.sort(sorted);
+            float median = sorted[numPoints / 2];
+
+            float[] low = new float[points.length];
+            float[] high = new float[points.length];
+            int numLow = 0, numHigh = 0;
+            for (int i = 0; i < numPoints; ++i) {
+                // points on the splitting plane go to both halves
+                if (ts[i] <= median) {
+                    System.arraycopy(points, numAxes * i, low, numLow,
+                            numAxes);
+                    numLow += numAxes;
+                }
+                if (ts[i] >= median) {
+                    System.arraycopy(points, numAxes * i, high, numHigh,
+                            numAxes);
+                    numHigh += numAxes;
+                }
+            }
+            if (numLow > 0 && numHigh > 0
+                    && numLow < points.length && numHigh < points.length) {
+                fitSplit(Arrays.copyOf(low, numLow), depth - 1, addParts);
+                fitSplit(Arrays.copyOf(high, numHigh), depth - 1, addParts);
+                return;
+            }
+        }
+        /*
+         * Use the smallest primitive for this subset.
+         */
+        float[] hull = QuickHull.hullVertices(points);
+        Part best = null;
+        for (Kind kind : Kind.values()) {
+            if (kind != Kind.COMPOUND) {
+                Part part = fitBest(hull, kind);
+                if (part != null && (best == null || part.volume < best.volume)) {
+                    best = part;
+                }
+            }
+        }
+        addParts.add(best);
+    }
+
+    /**
+     * Fit 2 spheres along the specified axis and inflate them until their hull
+     * encloses every point.
+     *
+     * @param frame the frame, with the points in local coordinates (not null)
+     * @param axis the index of the axis (0, 1, or 2)
+     * @param storeResult the part to configure (not null, modified)
+     * @return true if successful, otherwise false
+     */
+    private static boolean fitTwoSpheres(Frame frame, int axis,
+            Part storeResult) {
+        float[] local = frame.localPoints;
+        int numPoints = local.length / numAxes;
+        double tMax = frame.halfExtents.get(axis);
+        double tMin = -tMax;
+        if (tMax <= 0.0) {
+            return false;
+        }
+
+        double r0 = 0.0, r1 = 0.0;
+        for (int i = 0; i < numPoints; ++i) {
+            double rho = radial(local, i, axis);
+            if (local[numAxes * i + axis] < 0f) {
+                r0 = Math.max(r0, rho);
+            } else {
+                r1 = Math.max(r1, rho);
+            }
+        }
+        r0 = Math.max(r0, 1e-6 * tMax);
+        r1 = Math.max(r1, 1e-6 * tMax);
+        double c0 = Math.min(tMin + r0, 0.0);
+        double c1 = Math.max(tMax - r1, 0.0);
+        /*
+         * Find the smallest inflation that encloses all points.
+         */
+        double high = 1.0;
+        while (!enclosesAll(local, axis, c0, high * r0, c1, high * r1)) {
+            high *= 2.0;
+            if (high > 64.0) {
+                return false;
+            }
+        }
+        double low = high / 2.0;
+        for (int iteration = 0; iteration < 20; ++iteration) {
+            double mid = 0.5 * (low + high);
+            if (enclosesAll(local, axis, c0, mid * r0, c1, mid * r1)) {
+                high = mid;
+            } else {
+                low = mid;
+            }
+        }
+        r0 *= high;
+        r1 *= high;
+
+        Vector3f localCenter = new Vector3f();
+        localCenter.set(axis, (float) c0);
+        storeResult.centers[0] = frame.toMesh(localCenter, null);
+        localCenter.set(axis, (float) c1);
+        storeResult.centers[1] = frame.toMesh(localCenter, null);
+        storeResult.radii[0] = (float) r0;
+        storeResult.radii[1] = (float) r1;
+        storeResult.volume = twoSphereVolume(c1 - c0, r0, r1);
+
+        return true;
+    }
+
+    /**
+     * Test whether the hull of 2 spheres on the specified axis encloses all
+     * the specified points.
+     *
+     * @param local the local coordinates (not null, unaffected)
+     * @param axis the index of the axis (0, 1, or 2)
+     * @param c0 the axial coordinate of the 1st center
+     * @param r0 the radius of the 1st sphere (&gt;0)
+     * @param c1 the axial coordinate of the 2nd center (&ge;c0)
+     * @param r1 the radius of the 2nd sphere (&gt;0)
+     * @return true if all enclosed, otherwise false
+     */
+    private static boolean enclosesAll(float[] local, int axis, double c0,
+            double r0, double c1, double r1) {
+        int numPoints = local.length / numAxes;
+        double d = c1 - c0;
+        boolean nested = d <= Math.abs(r0 - r1);
+        double sinA = nested ? 0.0 : (r0 - r1) / d;
+        double cosA = Math.sqrt(1.0 - sinA * sinA);
+        double ta = c0 + r0 * sinA;
+        double tb = c1 + r1 * sinA;
+
+        for (int i = 0; i < numPoints; ++i) {
+            double t = local[numAxes * i + axis];
+            double rho = radial(local, i, axis);
+            double rhoSquared = rho * rho;
+            if ((t - c0) * (t - c0) + rhoSquared <= r0 * r0
+                    || (t - c1) * (t - c1) + rhoSquared <= r1 * r1) {
+                continue;
+            }
+            if (nested || t < ta || t > tb) {
+                return false;
+            }
+            double fraction = (tb > ta) ? (t - ta) / (tb - ta) : 0.0;
+            double coneRadius = cosA * (r0 + (r1 - r0) * fraction);
+            if (rho > coneRadius) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Generate the candidate frames for the specified points: the mesh axes
+     * and the principal axes, each centered on the points' bounding box.
+     *
+     * @param points the coordinates (not null, not empty, unaffected)
+     * @return a new array of 2 frames
+     */
+    private static Frame[] frames(float[] points) {
+        int numPoints = points.length / numAxes;
+        List<Vector3f> locations = new ArrayList<>(numPoints);
+        for (int i = 0; i < numPoints; ++i) {
+            locations.add(new Vector3f(points[numAxes * i],
+                    points[numAxes * i + 1], points[numAxes * i + 2]));
+        }
+
+        Frame meshAxes = new Frame(points, new Quaternion());
+        Quaternion orientation;
+        if (numPoints >= 2) {
+            RectangularSolid solid = new RectangularSolid(locations);
+            orientation = solid.localToWorld(new Quaternion());
+        } else {
+            orientation = new Quaternion();
+        }
+        Frame principalAxes = new Frame(points, orientation);
+
+        return new Frame[]{meshAxes, principalAxes};
+    }
+
+    /**
+     * Find the largest distance of any point from the specified axis.
+     *
+     * @param local the local coordinates (not null, unaffected)
+     * @param axis the index of the axis (0, 1, or 2)
+     * @return the distance (&ge;0)
+     */
+    private static double maxRadial(float[] local, int axis) {
+        int numPoints = local.length / numAxes;
+        double result = 0.0;
+        for (int i = 0; i < numPoints; ++i) {
+            result = Math.max(result, radial(local, i, axis));
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculate the distance of a point from the specified axis.
+     *
+     * @param local the local coordinates (not null, unaffected)
+     * @param pointIndex the index of the point
+     * @param axis the index of the axis (0, 1, or 2)
+     * @return the distance (&ge;0)
+     */
+    private static double radial(float[] local, int pointIndex, int axis) {
+        double u = local[numAxes * pointIndex + (axis + 1) % numAxes];
+        double v = local[numAxes * pointIndex + (axis + 2) % numAxes];
+        double result = Math.sqrt(u * u + v * v);
+
+        return result;
+    }
+
+    /**
+     * Calculate the volume of the convex hull of 2 spheres.
+     *
+     * @param d the distance between centers (&ge;0)
+     * @param r0 the radius of the 1st sphere (&ge;0)
+     * @param r1 the radius of the 2nd sphere (&ge;0)
+     * @return the volume (&ge;0)
+     */
+    private static double twoSphereVolume(double d, double r0, double r1) {
+        if (d <= Math.abs(r0 - r1)) {
+            double r = Math.max(r0, r1);
+            return 4.0 / 3.0 * Math.PI * r * r * r;
+        }
+
+        double sinA = (r0 - r1) / d;
+        double cosSquared = 1.0 - sinA * sinA;
+        double bigR = r0 * Math.sqrt(cosSquared);
+        double smallR = r1 * Math.sqrt(cosSquared);
+        double frustumHeight = d * cosSquared;
+        double frustum = Math.PI * frustumHeight / 3.0
+                * (bigR * bigR + bigR * smallR + smallR * smallR);
+        double h0 = r0 * (1.0 + sinA);
+        double h1 = r1 * (1.0 - sinA);
+        double cap0 = Math.PI * h0 * h0 * (3.0 * r0 - h0) / 3.0;
+        double cap1 = Math.PI * h1 * h1 * (3.0 * r1 - h1) / 3.0;
+        double result = frustum + cap0 + cap1;
+
+        return result;
+    }
+
+    /**
+     * Calculate the volume error of the specified parts.
+     *
+     * @param parts the parts (not null, unaffected)
+     * @param hullVolume the volume of the convex hull (&ge;0)
+     * @return the error, as a fraction of the hull volume (&ge;0)
+     */
+    private static float volumeError(List<Part> parts, double hullVolume) {
+        double volume = 0.0;
+        for (Part part : parts) {
+            volume += part.volume;
+        }
+        double excess = Math.max(0.0, volume - hullVolume);
+        double denominator = Math.max(hullVolume, 1e-9);
+        float result = (float) (excess / denominator);
+
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A proposed shape.
+     */
+    public static class Fit {
+        /**
+         * volume error, as a fraction of the hull volume
+         */
+        final private float volumeError;
+        /**
+         * kind of fit
+         */
+        final private Kind kind;
+        /**
+         * primitives in the proposed shape (not empty)
+         */
+        final private List<Part> parts;
+
+        Fit(Kind kind, float volumeError, List<Part> parts) {
+            this.kind = kind;
+            this.volumeError = volumeError;
+            this.parts = parts;
+        }
+
+        /**
+         * Count the primitives in the proposed shape.
+         *
+         * @return the count (&gt;0)
+         */
+        public int countPrimitives() {
+            int result = parts.size();
+            return result;
+        }
+
+        /**
+         * Create the proposed shape, in the coordinates of the input. A
+         * primitive that's offset or rotated is wrapped in a compound.
+         *
+         * @return a new shape
+         */
+        public CollisionShape createShape() {
+            if (parts.size() == 1) {
+                Part part = parts.get(0);
+                if (part.kind == Kind.MULTI_SPHERE || part.isCentered()) {
+                    return part.createPrimitive();
+                }
+            }
+
+            CompoundCollisionShape result
+                    = new CompoundCollisionShape(parts.size());
+            for (Part part : parts) {
+                CollisionShape child = part.createPrimitive();
+                if (part.kind == Kind.MULTI_SPHERE) {
+                    result.addChildShape(child);
+                } else {
+                    Matrix3f rotation
+                            = part.orientation.toRotationMatrix();
+                    result.addChildShape(child, part.center, rotation);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Read the kind of fit.
+         *
+         * @return an enum value (not null)
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Read the volume error.
+         *
+         * @return the error, as a fraction of the hull volume (&ge;0)
+         */
+        public float volumeError() {
+            return volumeError;
+        }
+    }
+
+    /**
+     * A coordinate frame in which to fit primitives.
+     */
+    private static class Frame {
+        /**
+         * location of the frame's origin, in mesh coordinates
+         */
+        final Vector3f center;
+        /**
+         * half extents of the points in this frame
+         */
+        final Vector3f halfExtents = new Vector3f();
+        /**
+         * orientation of the frame's axes, in mesh coordinates
+         */
+        final Quaternion orientation;
+        /**
+         * point coordinates relative to this frame
+         */
+        final float[] localPoints;
+
+        Frame(float[] points, Quaternion orientation) {
+            this.orientation = orientation;
+            Quaternion inverse = orientation.inverse();
+            int numPoints = points.length / numAxes;
+            localPoints = new float[points.length];
+
+            Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY,
+                    Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+            Vector3f min = new Vector3f(Float.POSITIVE_INFINITY,
+                    Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+            Vector3f tmp = new Vector3f();
+            for (int i = 0; i < numPoints; ++i) {
+                tmp.set(points[numAxes * i], points[numAxes * i + 1],
+                        points[numAxes * i + 2]);
+                inverse.mult(tmp, tmp);
+                max.maxLocal(tmp);
+                min.minLocal(tmp);
+                localPoints[numAxes * i] = tmp.x;
+                localPoints[numAxes * i + 1] = tmp.y;
+                localPoints[numAxes * i + 2] = tmp.z;
+            }
+            /*
+             * Re-center on the bounding box.
+             */
+            Vector3f mid = max.add(min).multLocal(0.5f);
+            max.subtract(mid, halfExtents);
+            for (int i = 0; i < numPoints; ++i) {
+                localPoints[numAxes * i] -= mid.x;
+                localPoints[numAxes * i + 1] -= mid.y;
+                localPoints[numAxes * i + 2] -= mid.z;
+            }
+            center = orientation.mult(mid);
+        }
+
+        /**
+         * Find the axis with the largest extent.
+         *
+         * @return the axis index (0, 1, or 2)
+         */
+        int longestAxis() {
+            int result = PhysicsSpace.AXIS_X;
+            if (halfExtents.y > halfExtents.get(result)) {
+                result = PhysicsSpace.AXIS_Y;
+            }
+            if (halfExtents.z > halfExtents.get(result)) {
+                result = PhysicsSpace.AXIS_Z;
+            }
+
+            return result;
+        }
+
+        /**
+         * Transform local coordinates to mesh coordinates.
+         *
+         * @param local the input (not null, unaffected)
+         * @param storeResult storage for the result (modified if not null)
+         * @return the mesh coordinates (either storeResult or a new vector)
+         */
+        Vector3f toMesh(Vector3f local, Vector3f storeResult) {
+            Vector3f result = orientation.mult(local, storeResult);
+            result.addLocal(center);
+
+            return result;
+        }
+    }
+
+    /**
+     * A primitive fitted in a specific frame.
+     */
+    private static class Part {
+        /**
+         * sphere centers for MULTI_SPHERE, in mesh coordinates
+         */
+        final Vector3f[] centers = new Vector3f[2];
+        /**
+         * volume of the primitive
+         */
+        double volume;
+        /**
+         * radius (SPHERE or CAPSULE)
+         */
+        float radius;
+        /**
+         * height of the cylindrical portion (CAPSULE)
+         */
+        float height;
+        /**
+         * sphere radii for MULTI_SPHERE
+         */
+        final float[] radii = new float[2];
+        /**
+         * height axis (CAPSULE or CYLINDER)
+         */
+        int axis;
+        /**
+         * kind of primitive
+         */
+        final Kind kind;
+        /**
+         * orientation of the primitive, in mesh coordinates
+         */
+        final Quaternion orientation;
+        /**
+         * center of the primitive, in mesh coordinates
+         */
+        final Vector3f center;
+        /**
+         * half extents (BOX or CYLINDER)
+         */
+        final Vector3f halfExtents = new Vector3f();
+
+        Part(Kind kind, Frame frame) {
+            this.kind = kind;
+            this.center = frame.center.clone();
+            this.orientation = frame.orientation.clone();
+        }
+
+        CollisionShape createPrimitive() {
+            CollisionShape result;
+            switch (kind) {
+                case SPHERE:
+                    result = new SphereCollisionShape(radius);
+                    break;
+                case CAPSULE:
+                    result = new CapsuleCollisionShape(radius, height, axis);
+                    break;
+                case BOX:
+                    result = new BoxCollisionShape(halfExtents);
+                    break;
+                case CYLINDER:
+                    result = new CylinderCollisionShape(halfExtents, axis);
+                    break;
+                case MULTI_SPHERE:
+                    result = new MultiSphere(Arrays.asList(centers),
+                            Arrays.asList(radii[0], radii[1]));
+                    break;
+                default:
+                    throw new IllegalStateException("kind = " + kind);
+            }
+
+            return result;
+        }
+
+        boolean isCentered() {
+            boolean result = center.length() <= FastMath.ZERO_TOLERANCE
+                    && orientation.isIdentity();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,730 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.math.Vector3f;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A pure-Java implementation of the 3-D quickhull algorithm, to find the
+ * vertices of a convex hull without using native code. Its methods may be
+ * invoked from any thread, for instance to precompute hulls while loading
+ * assets. The results can be passed to
+ * {@link com.jme3.bullet.collision.shapes.HullCollisionShape#HullCollisionShape(float...)}.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class QuickHull {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(QuickHull.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * input coordinates (not null)
+     */
+    final private double[] xyz;
+    /**
+     * distance tolerance for coplanarity tests (&ge;0)
+     */
+    final private double tolerance;
+    /**
+     * number of input points (&gt;0)
+     */
+    final private int numPoints;
+    /**
+     * map directed edges to the live faces that contain them
+     */
+    final private Map<Long, Face> edgeToFace = new HashMap<>(64);
+    /**
+     * live faces that may have outside points
+     */
+    final private Deque<Face> pending = new ArrayDeque<>(64);
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a builder for the specified points.
+     *
+     * @param points the input coordinates (not null, not empty, length a
+     * multiple of 3, unaffected)
+     */
+    private QuickHull(float[] points) {
+        numPoints = points.length / numAxes;
+        xyz = new double[points.length];
+        double maxX = 0.0, maxY = 0.0, maxZ = 0.0;
+        for (int i = 0; i < numPoints; ++i) {
+            double x = points[numAxes * i];
+            double y = points[numAxes * i + 1];
+            double z = points[numAxes * i + 2];
+            xyz[numAxes * i] = x;
+            xyz[numAxes * i + 1] = y;
+            xyz[numAxes * i + 2] = z;
+            maxX = Math.max(maxX, Math.abs(x));
+            maxY = Math.max(maxY, Math.abs(y));
+            maxZ = Math.max(maxZ, Math.abs(z));
+        }
+        /*
+         * The inputs are single-precision, so scale the tolerance
+         * to the float epsilon.
+         */
+        tolerance = 3.0 * Math.ulp(1f) * (maxX + maxY + maxZ);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Find the vertices of the convex hull of the specified locations.
+     *
+     * @param locations the input locations (not null, not empty, unaffected)
+     * @return a new array of hull-vertex coordinates (not empty, length a
+     * multiple of 3)
+     */
+    public static float[] hullVertices(Collection<Vector3f> locations) {
+        Validate.nonEmpty(locations, "locations");
+
+        float[] points = new float[numAxes * locations.size()];
+        int floatIndex = 0;
+        for (Vector3f location : locations) {
+            points[floatIndex++] = location.x;
+            points[floatIndex++] = location.y;
+            points[floatIndex++] = location.z;
+        }
+        float[] result = hullVertices(points);
+
+        return result;
+    }
+
+    /**
+     * Find the vertices of the convex hull of the specified points. Interior
+     * points and points that lie (within tolerance) on the hull's faces are
+     * excluded. If the points are coplanar, the vertices of their 2-D hull are
+     * returned instead, and if they're collinear, the 2 extreme points.
+     *
+     * @param points the input coordinates (not null, not empty, length a
+     * multiple of 3, all finite, unaffected)
+     * @return a new array of hull-vertex coordinates, a subset of the input
+     * (not empty, length a multiple of 3)
+     */
+    public static float[] hullVertices(float... points) {
+        Validate.nonEmpty(points, "points");
+        Validate.require(points.length % numAxes == 0,
+                "length a multiple of 3");
+        for (float coordinate : points) {
+            Validate.finite(coordinate, "coordinate");
+        }
+
+        QuickHull builder = new QuickHull(points);
+        int[] indices = builder.build();
+
+        float[] result = new float[numAxes * indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            System.arraycopy(points, numAxes * indices[i], result, numAxes * i,
+                    numAxes);
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculate the volume of the convex hull of the specified points.
+     *
+     * @param points the input coordinates (not null, not empty, length a
+     * multiple of 3, all finite, unaffected)
+     * @return the volume (&ge;0, 0 if the points are coplanar)
+     */
+    public static double hullVolume(float... points) {
+        Validate.nonEmpty(points, "points");
+        Validate.require(points.length % numAxes == 0,
+                "length a multiple of 3");
+        for (float coordinate : points) {
+            Validate.finite(coordinate, "coordinate");
+        }
+
+        QuickHull builder = new QuickHull(points);
+        int[] vertexIndices = builder.build();
+        if (vertexIndices.length < 4 || builder.edgeToFace.isEmpty()) {
+            return 0.0;
+        }
+        /*
+         * Sum the signed volumes of tetrahedra formed by each face
+         * and the 1st vertex. Each face is registered under 3 edges.
+         */
+        int apex = vertexIndices[0];
+        double sixTimesVolume = 0.0;
+        for (Face face : builder.edgeToFace.values()) {
+            double[] u = builder.sub(face.vertices[0], apex);
+            double[] v = builder.sub(face.vertices[1], apex);
+            double[] w = builder.sub(face.vertices[2], apex);
+            sixTimesVolume += dot(u, cross(v, w));
+        }
+        double result = Math.abs(sixTimesVolume) / 18.0;
+
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Add a new face and register its edges.
+     *
+     * @param a the index of the 1st vertex
+     * @param b the index of the 2nd vertex
+     * @param c the index of the 3rd vertex
+     * @return the new face
+     */
+    private Face addFace(int a, int b, int c) {
+        Face face = new Face(a, b, c);
+        edgeToFace.put(edgeKey(a, b), face);
+        edgeToFace.put(edgeKey(b, c), face);
+        edgeToFace.put(edgeKey(c, a), face);
+
+        return face;
+    }
+
+    /**
+     * Assign a point to the outside set of the face it's furthest above, if
+     * any.
+     *
+     * @param pointIndex the index of the point
+     * @param faces the candidate faces (not null)
+     */
+    private void assignPoint(int pointIndex, List<Face> faces) {
+        Face bestFace = null;
+        double bestDistance = tolerance;
+        for (Face face : faces) {
+            double distance = face.distance(pointIndex);
+            if (distance > bestDistance) {
+                bestDistance = distance;
+                bestFace = face;
+            }
+        }
+
+        if (bestFace != null) {
+            bestFace.outside.add(pointIndex);
+            if (bestDistance > bestFace.furthestDistance) {
+                bestFace.furthestDistance = bestDistance;
+                bestFace.furthestPoint = pointIndex;
+            }
+        }
+    }
+
+    /**
+     * Run the algorithm.
+     *
+     * @return a new array of indices of hull vertices (not empty)
+     */
+    private int[] build() {
+        /*
+         * Find the pair of axis-extreme points that are furthest apart.
+         */
+        int[] extremes = new int[2 * numAxes];
+        for (int axis = 0; axis < numAxes; ++axis) {
+            for (int i = 1; i < numPoints; ++i) {
+                if (coord(i, axis) < coord(extremes[2 * axis], axis)) {
+                    extremes[2 * axis] = i;
+                }
+                if (coord(i, axis) > coord(extremes[2 * axis + 1], axis)) {
+                    extremes[2 * axis + 1] = i;
+                }
+            }
+        }
+        int i0 = extremes[0];
+        int i1 = extremes[1];
+        double maxSquared = distanceSquared(i0, i1);
+        for (int e = 0; e < extremes.length; ++e) {
+            for (int f = e + 1; f < extremes.length; ++f) {
+                double dSquared = distanceSquared(extremes[e], extremes[f]);
+                if (dSquared > maxSquared) {
+                    maxSquared = dSquared;
+                    i0 = extremes[e];
+                    i1 = extremes[f];
+                }
+            }
+        }
+        if (Math.sqrt(maxSquared) <= tolerance) {
+            return new int[]{i0};
+        }
+        /*
+         * Find the point furthest from the line through i0 and i1.
+         */
+        double[] lineDir = sub(i1, i0);
+        normalize(lineDir);
+        int i2 = -1;
+        double maxLineDistance = tolerance;
+        for (int i = 0; i < numPoints; ++i) {
+            double[] cross = cross(lineDir, sub(i, i0));
+            double distance = Math.sqrt(dot(cross, cross));
+            if (distance > maxLineDistance) {
+                maxLineDistance = distance;
+                i2 = i;
+            }
+        }
+        if (i2 == -1) {
+            return new int[]{i0, i1};
+        }
+        /*
+         * Find the point furthest from the plane through i0, i1, and i2.
+         */
+        double[] planeNormal = cross(sub(i1, i0), sub(i2, i0));
+        normalize(planeNormal);
+        int i3 = -1;
+        double maxPlaneDistance = tolerance;
+        for (int i = 0; i < numPoints; ++i) {
+            double distance = Math.abs(dot(planeNormal, sub(i, i0)));
+            if (distance > maxPlaneDistance) {
+                maxPlaneDistance = distance;
+                i3 = i;
+            }
+        }
+        if (i3 == -1) {
+            return planarHull(i0, planeNormal);
+        }
+        /*
+         * Build the initial tetrahedron, with outward-facing normals.
+         */
+        List<Face> faces = new ArrayList<>(4);
+        if (dot(planeNormal, sub(i3, i0)) > 0.0) {
+            // i3 is above the base, so the base faces away from it
+            faces.add(addFace(i0, i2, i1));
+            faces.add(addFace(i0, i1, i3));
+            faces.add(addFace(i1, i2, i3));
+            faces.add(addFace(i2, i0, i3));
+        } else {
+            faces.add(addFace(i0, i1, i2));
+            faces.add(addFace(i0, i3, i1));
+            faces.add(addFace(i1, i3, i2));
+            faces.add(addFace(i2, i3, i0));
+        }
+        for (int i = 0; i < numPoints; ++i) {
+            if (i != i0 && i != i1 && i != i2 && i != i3) {
+                assignPoint(i, faces);
+            }
+        }
+        for (Face face : faces) {
+            if (!face.outside.isEmpty()) {
+                pending.add(face);
+            }
+        }
+        /*
+         * Expand the hull until no points remain outside it.
+         */
+        while (!pending.isEmpty()) {
+            Face face = pending.removeFirst();
+            if (face.deleted || face.outside.isEmpty()) {
+                continue;
+            }
+            addPoint(face.furthestPoint, face);
+        }
+        /*
+         * Enumerate the vertices of the live faces.
+         */
+        boolean[] isVertex = new boolean[numPoints];
+        int numVertices = 0;
+        for (Face face : edgeToFace.values()) {
+            for (int v : face.vertices) {
+                if (!isVertex[v]) {
+                    isVertex[v] = true;
+                    ++numVertices;
+                }
+            }
+        }
+        int[] result = new int[numVertices];
+        int count = 0;
+        for (int i = 0; i < numPoints; ++i) {
+            if (isVertex[i]) {
+                result[count++] = i;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Add the specified eye point to the hull, replacing every face it can
+     * see.
+     *
+     * @param eye the index of the point to add
+     * @param startFace a face that can see the eye point (not null)
+     */
+    private void addPoint(int eye, Face startFace) {
+        /*
+         * Flood-fill to find the visible faces.
+         */
+        List<Face> visible = new ArrayList<>(8);
+        Deque<Face> stack = new ArrayDeque<>(8);
+        startFace.visited = true;
+        stack.push(startFace);
+        while (!stack.isEmpty()) {
+            Face face = stack.pop();
+            visible.add(face);
+            for (int e = 0; e < numAxes; ++e) {
+                Face neighbor = neighbor(face, e);
+                if (neighbor != null && !neighbor.visited
+                        && neighbor.distance(eye) > tolerance) {
+                    neighbor.visited = true;
+                    stack.push(neighbor);
+                }
+            }
+        }
+        /*
+         * Collect the horizon edges: edges of visible faces
+         * whose neighbors aren't visible.
+         */
+        List<int[]> horizon = new ArrayList<>(16);
+        for (Face face : visible) {
+            for (int e = 0; e < numAxes; ++e) {
+                Face neighbor = neighbor(face, e);
+                if (neighbor == null || !neighbor.visited) {
+                    int a = face.vertices[e];
+                    int b = face.vertices[(e + 1) % numAxes];
+                    horizon.add(new int[]{a, b});
+                }
+            }
+        }
+        /*
+         * Delete the visible faces, collecting their outside points.
+         */
+        List<Integer> orphans = new ArrayList<>(32);
+        for (Face face : visible) {
+            face.deleted = true;
+            for (int e = 0; e < numAxes; ++e) {
+                int a = face.vertices[e];
+                int b = face.vertices[(e + 1) % numAxes];
+                Long key = edgeKey(a, b);
+                if (edgeToFace.get(key) == face) {
+                    edgeToFace.remove(key);
+                }
+            }
+            orphans.addAll(face.outside);
+            face.outside.clear();
+        }
+        /*
+         * Connect the horizon to the eye point.
+         */
+        List<Face> newFaces = new ArrayList<>(horizon.size());
+        for (int[] edge : horizon) {
+            newFaces.add(addFace(edge[0], edge[1], eye));
+        }
+        for (int orphan : orphans) {
+            if (orphan != eye) {
+                assignPoint(orphan, newFaces);
+            }
+        }
+        for (Face face : newFaces) {
+            if (!face.outside.isEmpty()) {
+                pending.add(face);
+            }
+        }
+    }
+
+    /**
+     * Read one coordinate of an input point.
+     *
+     * @param pointIndex the index of the point
+     * @param axis the index of the axis (0, 1, or 2)
+     * @return the coordinate value
+     */
+    private double coord(int pointIndex, int axis) {
+        double result = xyz[numAxes * pointIndex + axis];
+        return result;
+    }
+
+    /**
+     * Calculate the cross product of 2 vectors.
+     *
+     * @param u the 1st vector (not null, unaffected)
+     * @param v the 2nd vector (not null, unaffected)
+     * @return a new vector
+     */
+    private static double[] cross(double[] u, double[] v) {
+        double[] result = {
+            u[1] * v[2] - u[2] * v[1],
+            u[2] * v[0] - u[0] * v[2],
+            u[0] * v[1] - u[1] * v[0]
+        };
+        return result;
+    }
+
+    /**
+     * Calculate the squared distance between 2 input points.
+     *
+     * @param i the index of the 1st point
+     * @param j the index of the 2nd point
+     * @return the squared distance (&ge;0)
+     */
+    private double distanceSquared(int i, int j) {
+        double[] d = sub(i, j);
+        double result = dot(d, d);
+
+        return result;
+    }
+
+    /**
+     * Calculate the dot product of 2 vectors.
+     *
+     * @param u the 1st vector (not null, unaffected)
+     * @param v the 2nd vector (not null, unaffected)
+     * @return the dot product
+     */
+    private static double dot(double[] u, double[] v) {
+        double result = u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+        return result;
+    }
+
+    /**
+     * Generate a map key for the directed edge from a to b.
+     *
+     * @param a the index of the starting vertex
+     * @param b the index of the ending vertex
+     * @return the key
+     */
+    private static Long edgeKey(int a, int b) {
+        long result = ((long) a << 32) | (b & 0xffffffffL);
+        return result;
+    }
+
+    /**
+     * Find the live face across the specified edge of a face.
+     *
+     * @param face the face (not null)
+     * @param edgeIndex which edge (0, 1, or 2)
+     * @return the pre-existing neighbor, or null if none
+     */
+    private Face neighbor(Face face, int edgeIndex) {
+        int a = face.vertices[edgeIndex];
+        int b = face.vertices[(edgeIndex + 1) % numAxes];
+        Face result = edgeToFace.get(edgeKey(b, a));
+
+        return result;
+    }
+
+    /**
+     * Normalize the specified vector in place.
+     *
+     * @param v the vector to normalize (not null, not zero, modified)
+     */
+    private static void normalize(double[] v) {
+        double length = Math.sqrt(dot(v, v));
+        v[0] /= length;
+        v[1] /= length;
+        v[2] /= length;
+    }
+
+    /**
+     * Find the 2-D hull of coplanar input points, using Andrew's monotone
+     * chain.
+     *
+     * @param origin the index of a point in the plane
+     * @param normal a unit normal to the plane (not null, unaffected)
+     * @return a new array of indices of hull vertices, in order around the
+     * hull
+     */
+    private int[] planarHull(int origin, double[] normal) {
+        /*
+         * Construct an orthonormal basis for the plane.
+         */
+        double[] uAxis = (Math.abs(normal[0]) < 0.9)
+                ? new double[]{1.0, 0.0, 0.0} : new double[]{0.0, 1.0, 0.0};
+        uAxis = cross(normal, uAxis);
+        normalize(uAxis);
+        double[] vAxis = cross(normal, uAxis);
+
+        final double[] u = new double[numPoints];
+        final double[] v = new double[numPoints];
+        Integer[] order = new Integer[numPoints];
+        for (int i = 0; i < numPoints; ++i) {
+            double[] offset = sub(i, origin);
+            u[i] = dot(offset, uAxis);
+            v[i] = dot(offset, vAxis);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                int result = Double.compare(u[i], u[j]);
+                if (result == 0) {
+                    result = Double.compare(v[i], v[j]);
+                }
+                return result;
+            }
+        });
+
+        int[] hull = new int[2 * numPoints];
+        int size = 0;
+        // lower chain
+        for (int k = 0; k < numPoints; ++k) {
+            int p = order[k];
+            while (size >= 2 && turn(u, v, hull[size - 2], hull[size - 1], p)
+                    <= tolerance * tolerance) {
+                --size;
+            }
+            hull[size++] = p;
+        }
+        // upper chain
+        int lowerSize = size + 1;
+        for (int k = numPoints - 2; k >= 0; --k) {
+            int p = order[k];
+            while (size >= lowerSize
+                    && turn(u, v, hull[size - 2], hull[size - 1], p)
+                    <= tolerance * tolerance) {
+                --size;
+            }
+            hull[size++] = p;
+        }
+        --size; // the last point repeats the first
+
+        int[] result = Arrays.copyOf(hull, size);
+        return result;
+    }
+
+    /**
+     * Calculate the difference of 2 input points.
+     *
+     * @param i the index of the minuend
+     * @param j the index of the subtrahend
+     * @return a new vector
+     */
+    private double[] sub(int i, int j) {
+        double[] result = {
+            coord(i, 0) - coord(j, 0),
+            coord(i, 1) - coord(j, 1),
+            coord(i, 2) - coord(j, 2)
+        };
+        return result;
+    }
+
+    /**
+     * Calculate the 2-D cross product (twice the signed area) of the turn
+     * o-&gt;a-&gt;b.
+     *
+     * @param u the 1st planar coordinates (not null, unaffected)
+     * @param v the 2nd planar coordinates (not null, unaffected)
+     * @param o the index of the origin point
+     * @param a the index of the 1st point
+     * @param b the index of the 2nd point
+     * @return the cross product (positive for a counter-clockwise turn)
+     */
+    private static double turn(double[] u, double[] v, int o, int a, int b) {
+        double result = (u[a] - u[o]) * (v[b] - v[o])
+                - (v[a] - v[o]) * (u[b] - u[o]);
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A triangular face of the hull under construction.
+     */
+    private class Face {
+        /**
+         * true if removed from the hull
+         */
+        boolean deleted = false;
+        /**
+         * true if found visible from the current eye point
+         */
+        boolean visited = false;
+        /**
+         * distance of the plane from the origin, along the normal
+         */
+        final double offset;
+        /**
+         * unit normal, pointing out of the hull
+         */
+        final double[] normal;
+        /**
+         * distance of the furthest outside point
+         */
+        double furthestDistance = 0.0;
+        /**
+         * indices of the vertices, in counter-clockwise order when viewed
+         * from outside
+         */
+        final int[] vertices;
+        /**
+         * index of the furthest outside point
+         */
+        int furthestPoint = -1;
+        /**
+         * indices of the points above this face that are assigned to it
+         */
+        final List<Integer> outside = new ArrayList<>(4);
+
+        Face(int a, int b, int c) {
+            vertices = new int[]{a, b, c};
+            double[] n = cross(sub(b, a), sub(c, a));
+            double length = Math.sqrt(dot(n, n));
+            if (length > 0.0) {
+                n[0] /= length;
+                n[1] /= length;
+                n[2] /= length;
+            }
+            normal = n;
+            offset = normal[0] * coord(a, 0) + normal[1] * coord(a, 1)
+                    + normal[2] * coord(a, 2);
+        }
+
+        /**
+         * Calculate the signed distance of a point above this face.
+         *
+         * @param pointIndex the index of the point
+         * @return the distance (positive if above)
+         */
+        double distance(int pointIndex) {
+            double result = normal[0] * coord(pointIndex, 0)
+                    + normal[1] * coord(pointIndex, 1)
+                    + normal[2] * coord(pointIndex, 2) - offset;
+            return result;
+        }
+    }
+}
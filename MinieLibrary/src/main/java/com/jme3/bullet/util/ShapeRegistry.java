@@ -0,0 +1,705 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.bullet.collision.shapes.GImpactCollisionShape;
+import com.jme3.bullet.collision.shapes.HullCollisionShape;
+import com.jme3.bullet.collision.shapes.MeshCollisionShape;
+import com.jme3.bullet.collision.shapes.infos.ChildCollisionShape;
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A registry to share collision shapes that have identical parameters or
+ * content, with reference counting.
+ * <p>
+ * Each acquire method returns a registered shape, creating it only if no
+ * equivalent shape is registered. Each successful acquisition should be
+ * balanced by a
+ * {@link #release(com.jme3.bullet.collision.shapes.CollisionShape)}.
+ * When a shape's reference count drops to zero, the registry forgets it and
+ * releases any shapes it held. The registry never frees native objects
+ * directly, since a collision object might still use them: like any other
+ * shape, a forgotten shape's native object is freed once the shape becomes
+ * unreachable (see
+ * {@link com.jme3.bullet.NativePhysicsObject#freeUnusedObjects()}).
+ * <p>
+ * Shapes built from registered parts, such as the compounds generated by
+ * {@link CollisionShapeFactory}, can be adopted by the registry, so that
+ * releasing the whole also releases its parts.
+ * <p>
+ * Shared shapes should be treated as immutable: altering the scale or margin
+ * of a registered shape affects every collision object that uses it.
+ * <p>
+ * Mesh-based shapes are keyed by the identity of the JME mesh plus the scale,
+ * so that spawning many copies of a prop at a handful of scales builds only
+ * one native shape (and one BVH and one debug mesh) per distinct scale.
+ * <p>
+ * The methods of this class are thread-safe.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class ShapeRegistry {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(ShapeRegistry.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * map registered shapes to their entries
+     */
+    final private Map<CollisionShape, Entry> shapeToEntry
+            = new IdentityHashMap<>(64);
+    /**
+     * map content keys to entries
+     */
+    final private Map<ShapeKey, Entry> keyToEntry = new HashMap<>(64);
+    /**
+     * serial numbers assigned to JME meshes, for use in content keys
+     */
+    final private Map<Mesh, Long> meshToSerial = new WeakHashMap<>(64);
+    /**
+     * next serial number to assign to a JME mesh
+     */
+    private long nextMeshSerial = 1L;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty registry.
+     */
+    public ShapeRegistry() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Add a reference to the specified registered shape.
+     *
+     * @param shape the shape to reference (not null, registered)
+     * @return the same shape (not null)
+     */
+    synchronized public CollisionShape acquire(CollisionShape shape) {
+        Validate.nonNull(shape, "shape");
+        Entry entry = shapeToEntry.get(shape);
+        if (entry == null) {
+            throw new IllegalArgumentException("The shape isn't registered.");
+        }
+
+        ++entry.refCount;
+        return shape;
+    }
+
+    /**
+     * Register the specified shape (typically a compound) with a reference
+     * count of one, taking over the references already acquired for its
+     * registered children: when the shape is released, each registered child
+     * is released once per occurrence. Adopted shapes are never shared by the
+     * acquire methods.
+     *
+     * @param shape the shape to adopt (not null, not registered, alias
+     * created)
+     * @return the same shape (not null)
+     */
+    synchronized public CollisionShape adopt(CollisionShape shape) {
+        Validate.nonNull(shape, "shape");
+        if (shapeToEntry.containsKey(shape)) {
+            throw new IllegalArgumentException(
+                    "The shape is already registered.");
+        }
+
+        List<CollisionShape> held = null;
+        if (shape instanceof CompoundCollisionShape) {
+            ChildCollisionShape[] children
+                    = ((CompoundCollisionShape) shape).listChildren();
+            held = new ArrayList<>(children.length);
+            for (ChildCollisionShape child : children) {
+                CollisionShape childShape = child.getShape();
+                if (shapeToEntry.containsKey(childShape)) {
+                    held.add(childShape);
+                }
+            }
+        }
+        ShapeKey noKey = null;
+        register(noKey, shape, held);
+
+        return shape;
+    }
+
+    /**
+     * Acquire a box shape with the specified half extents and scale, using the
+     * current default margin.
+     *
+     * @param halfExtents the desired unscaled half extents (not null, no
+     * negative component, unaffected)
+     * @param scale the desired scale factors (not null, no negative component,
+     * unaffected)
+     * @return a registered shape (not null)
+     */
+    synchronized public BoxCollisionShape acquireBox(Vector3f halfExtents,
+            Vector3f scale) {
+        Validate.nonNegative(halfExtents, "half extents");
+        Validate.nonNegative(scale, "scale");
+
+        float margin = CollisionShape.getDefaultMargin();
+        float[] floats = {
+            halfExtents.x, halfExtents.y, halfExtents.z,
+            scale.x, scale.y, scale.z, margin
+        };
+        ShapeKey key = new ShapeKey(BoxCollisionShape.class, floats, null,
+                null);
+
+        BoxCollisionShape result = (BoxCollisionShape) lookup(key);
+        if (result == null) {
+            result = new BoxCollisionShape(halfExtents);
+            result.setScale(scale);
+            register(key, result, null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Acquire a compound shape with the specified children. Children are
+     * compared by Java object identity and transform, so child shapes should
+     * be acquired from this registry in order to be shared.
+     * <p>
+     * When the compound is first created, the registry adds a reference to
+     * each of its registered children, which it releases when the compound's
+     * reference count drops to zero.
+     *
+     * @param children the desired children, in order (not null, not empty,
+     * unaffected)
+     * @return a registered shape (not null)
+     */
+    synchronized public CompoundCollisionShape acquireCompound(
+            List<ChildCollisionShape> children) {
+        Validate.nonEmpty(children, "children");
+
+        int numChildren = children.size();
+        float[] floats = new float[13 * numChildren + 1];
+        CollisionShape[] childShapes = new CollisionShape[numChildren];
+        Vector3f offset = new Vector3f();
+        Matrix3f rotation = new Matrix3f();
+        int floatIndex = 0;
+        for (int childIndex = 0; childIndex < numChildren; ++childIndex) {
+            ChildCollisionShape child = children.get(childIndex);
+            childShapes[childIndex] = child.getShape();
+
+            child.copyOffset(offset);
+            floats[floatIndex++] = offset.x;
+            floats[floatIndex++] = offset.y;
+            floats[floatIndex++] = offset.z;
+            child.copyRotationMatrix(rotation);
+            for (int row = 0; row < numAxes; ++row) {
+                for (int column = 0; column < numAxes; ++column) {
+                    floats[floatIndex++] = rotation.get(row, column);
+                }
+            }
+            floats[floatIndex++] = 0f; // separator
+        }
+        floats[floatIndex] = CollisionShape.getDefaultMargin();
+        ShapeKey key = new ShapeKey(CompoundCollisionShape.class, floats,
+                null, childShapes);
+
+        CompoundCollisionShape result = (CompoundCollisionShape) lookup(key);
+        if (result == null) {
+            result = new CompoundCollisionShape(numChildren);
+            List<CollisionShape> held = new ArrayList<>(numChildren);
+            for (ChildCollisionShape child : children) {
+                CollisionShape childShape = child.getShape();
+                child.copyOffset(offset);
+                child.copyRotationMatrix(rotation);
+                result.addChildShape(childShape, offset, rotation);
+
+                Entry childEntry = shapeToEntry.get(childShape);
+                if (childEntry != null) {
+                    ++childEntry.refCount;
+                    held.add(childShape);
+                }
+            }
+            register(key, result, held);
+        }
+
+        return result;
+    }
+
+    /**
+     * Acquire a GImpact shape generated from the specified JME mesh and scale,
+     * using the current default margin. The mesh is compared by identity, so
+     * its vertex positions and indices shouldn't be modified while shapes
+     * based on it are registered.
+     *
+     * @param mesh the mesh on which to base the shape (not null, alias
+     * created)
+     * @param scale the desired scale factors (not null, no negative component,
+     * unaffected)
+     * @return a registered shape (not null)
+     */
+    synchronized public GImpactCollisionShape acquireGImpact(Mesh mesh,
+            Vector3f scale) {
+        Validate.nonNull(mesh, "mesh");
+        Validate.nonNegative(scale, "scale");
+
+        ShapeKey key = meshKey(GImpactCollisionShape.class, mesh, scale);
+        GImpactCollisionShape result = (GImpactCollisionShape) lookup(key);
+        if (result == null) {
+            result = new GImpactCollisionShape(mesh);
+            result.setScale(scale);
+            register(key, result, null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Acquire a convex-hull shape generated from the specified locations and
+     * scale, using the current default margin. Locations are compared without
+     * regard to order.
+     *
+     * @param points the coordinates on which to base the hull (not null, not
+     * empty, length a multiple of 3, unaffected)
+     * @param scale the desired scale factors (not null, no negative component,
+     * unaffected)
+     * @return a registered shape (not null)
+     */
+    synchronized public HullCollisionShape acquireHull(float[] points,
+            Vector3f scale) {
+        Validate.nonEmpty(points, "points");
+        Validate.require(points.length % numAxes == 0,
+                "length a multiple of 3");
+        Validate.nonNegative(scale, "scale");
+
+        float[] sorted = sortLocations(points);
+        int numFloats = sorted.length;
+        float[] floats = Arrays.copyOf(sorted, numFloats + 4);
+        floats[numFloats] = scale.x;
+        floats[numFloats + 1] = scale.y;
+        floats[numFloats + 2] = scale.z;
+        floats[numFloats + 3] = CollisionShape.getDefaultMargin();
+        ShapeKey key = new ShapeKey(HullCollisionShape.class, floats, null,
+                null);
+
+        HullCollisionShape result = (HullCollisionShape) lookup(key);
+        if (result == null) {
+            result = new HullCollisionShape(points);
+            result.setScale(scale);
+            register(key, result, null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Acquire a convex-hull shape generated from the vertex positions of the
+     * specified JME mesh.
+     *
+     * @param mesh the mesh on which to base the hull (not null, at least one
+     * vertex, unaffected)
+     * @param scale the desired scale factors (not null, no negative component,
+     * unaffected)
+     * @return a registered shape (not null)
+     */
+    public HullCollisionShape acquireHull(Mesh mesh, Vector3f scale) {
+        Validate.nonNull(mesh, "mesh");
+
+        int numFloats = numAxes * mesh.getVertexCount();
+        Validate.positive(numFloats, "number of vertex coordinates");
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        float[] points = new float[numFloats];
+        for (int floatIndex = 0; floatIndex < numFloats; ++floatIndex) {
+            points[floatIndex] = positions.get(floatIndex);
+        }
+        HullCollisionShape result = acquireHull(points, scale);
+
+        return result;
+    }
+
+    /**
+     * Acquire a compressed mesh shape generated from the specified JME mesh and
+     * scale, using the current default margin. The mesh is compared by
+     * identity, so its vertex positions and indices shouldn't be modified while
+     * shapes based on it are registered.
+     * <p>
+     * Since altering the scale of a mesh shape rebuilds its BVH, each distinct
+     * scale gets its own native shape, built only once.
+     *
+     * @param mesh the mesh on which to base the shape (not null, at least one
+     * triangle, alias created)
+     * @param scale the desired scale factors (not null, no negative component,
+     * unaffected)
+     * @return a registered shape (not null)
+     */
+    synchronized public MeshCollisionShape acquireMesh(Mesh mesh,
+            Vector3f scale) {
+        Validate.nonNull(mesh, "mesh");
+        Validate.nonNegative(scale, "scale");
+
+        ShapeKey key = meshKey(MeshCollisionShape.class, mesh, scale);
+        MeshCollisionShape result = (MeshCollisionShape) lookup(key);
+        if (result == null) {
+            boolean useCompression = true;
+            result = new MeshCollisionShape(mesh, useCompression);
+            result.setScale(scale);
+            register(key, result, null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Forget all registered shapes, regardless of their reference counts.
+     */
+    synchronized public void clear() {
+        keyToEntry.clear();
+        shapeToEntry.clear();
+        meshToSerial.clear();
+    }
+
+    /**
+     * Count the references to the specified shape.
+     *
+     * @param shape the shape to look up (unaffected)
+     * @return the count (&ge;0, 0 if not registered)
+     */
+    synchronized public int countReferences(CollisionShape shape) {
+        Entry entry = shapeToEntry.get(shape);
+        int result = (entry == null) ? 0 : entry.refCount;
+
+        return result;
+    }
+
+    /**
+     * Count the registered shapes.
+     *
+     * @return the count (&ge;0)
+     */
+    synchronized public int countShapes() {
+        int result = shapeToEntry.size();
+        return result;
+    }
+
+    /**
+     * Test whether the specified shape is registered.
+     *
+     * @param shape the shape to test (unaffected)
+     * @return true if registered, otherwise false
+     */
+    synchronized public boolean isRegistered(CollisionShape shape) {
+        boolean result = shapeToEntry.containsKey(shape);
+        return result;
+    }
+
+    /**
+     * Remove a reference to the specified shape. If its count drops to zero,
+     * the shape is unregistered, along with the references it held to other
+     * registered shapes.
+     *
+     * @param shape the shape to release (not null, registered)
+     */
+    synchronized public void release(CollisionShape shape) {
+        Validate.nonNull(shape, "shape");
+        Entry entry = shapeToEntry.get(shape);
+        if (entry == null) {
+            throw new IllegalArgumentException("The shape isn't registered.");
+        }
+
+        assert entry.refCount > 0 : entry.refCount;
+        --entry.refCount;
+        if (entry.refCount == 0) {
+            shapeToEntry.remove(shape);
+            if (entry.key != null) {
+                Entry removed = keyToEntry.remove(entry.key);
+                assert removed == entry;
+            }
+            logger.log(Level.FINE, "Unregistered {0}.", shape);
+
+            if (entry.heldShapes != null) {
+                for (CollisionShape heldShape : entry.heldShapes) {
+                    release(heldShape);
+                }
+            }
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Look up the shape for the specified key and, if found, add a reference
+     * to it.
+     *
+     * @param key the key to look up (not null)
+     * @return the pre-existing shape, or null if none
+     */
+    private CollisionShape lookup(ShapeKey key) {
+        CollisionShape result = null;
+        Entry entry = keyToEntry.get(key);
+        if (entry != null) {
+            ++entry.refCount;
+            result = entry.shape;
+        }
+
+        return result;
+    }
+
+    /**
+     * Generate a content key for a shape based on the specified JME mesh.
+     *
+     * @param shapeClass the type of shape (not null)
+     * @param mesh the mesh (not null, alias created)
+     * @param scale the scale factors (not null, unaffected)
+     * @return a new key
+     */
+    private ShapeKey meshKey(Class<? extends CollisionShape> shapeClass,
+            Mesh mesh, Vector3f scale) {
+        Long serial = meshToSerial.get(mesh);
+        if (serial == null) {
+            serial = nextMeshSerial;
+            ++nextMeshSerial;
+            meshToSerial.put(mesh, serial);
+        }
+
+        float margin = CollisionShape.getDefaultMargin();
+        float[] floats = {scale.x, scale.y, scale.z, margin};
+        long[] ids = {serial};
+        ShapeKey result = new ShapeKey(shapeClass, floats, ids, null);
+
+        return result;
+    }
+
+    /**
+     * Register a new shape with a reference count of one.
+     *
+     * @param key the content key, or null for an adopted shape
+     * @param shape the shape to register (not null, alias created)
+     * @param heldShapes registered shapes to release when this one is
+     * unregistered (alias created) or null if none
+     */
+    private void register(ShapeKey key, CollisionShape shape,
+            List<CollisionShape> heldShapes) {
+        Entry entry = new Entry(key, shape, heldShapes);
+        if (key != null) {
+            keyToEntry.put(key, entry);
+        }
+        shapeToEntry.put(shape, entry);
+        logger.log(Level.FINE, "Registered {0}.", shape);
+    }
+
+    /**
+     * Sort the locations in the specified coordinate array, to make the hull
+     * key independent of vertex order.
+     *
+     * @param points the input coordinates (not null, length a multiple of 3,
+     * unaffected)
+     * @return a new array
+     */
+    private static float[] sortLocations(float[] points) {
+        int numLocations = points.length / numAxes;
+        float[][] locations = new float[numLocations][];
+        for (int i = 0; i < numLocations; ++i) {
+            locations[i] = Arrays.copyOfRange(points, numAxes * i,
+                    numAxes * (i + 1));
+        }
+        Arrays.sort(locations, new Comparator<float[]>() {
+            @Override
+            public int compare(float[] a, float[] b) {
+                int result = Float.compare(a[0], b[0]);
+                if (result == 0) {
+                    result = Float.compare(a[1], b[1]);
+                    if (result == 0) {
+                        result = Float.compare(a[2], b[2]);
+                    }
+                }
+                return result;
+            }
+        });
+
+        float[] result = new float[points.length];
+        for (int i = 0; i < numLocations; ++i) {
+            System.arraycopy(locations[i], 0, result, numAxes * i, numAxes);
+        }
+
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * Registry entry for a shared shape.
+     */
+    private static class Entry {
+        /**
+         * number of outstanding references (&gt;0)
+         */
+        int refCount = 1;
+        /**
+         * registered shapes referenced by this one, or null if none
+         */
+        final List<CollisionShape> heldShapes;
+        /**
+         * the shared shape (not null)
+         */
+        final CollisionShape shape;
+        /**
+         * the content key, or null for an adopted shape
+         */
+        final ShapeKey key;
+
+        Entry(ShapeKey key, CollisionShape shape,
+                List<CollisionShape> heldShapes) {
+            this.key = key;
+            this.shape = shape;
+            this.heldShapes = heldShapes;
+        }
+    }
+
+    /**
+     * Key used to locate registered shapes by content. Immutable.
+     */
+    private static class ShapeKey {
+        /**
+         * type of shape
+         */
+        final private Class<? extends CollisionShape> shapeClass;
+        /**
+         * pre-computed hash code
+         */
+        final private int hash;
+        /**
+         * parameters and/or vertex data
+         */
+        final private float[] floats;
+        /**
+         * child shapes, compared by identity, or null if none
+         */
+        final private CollisionShape[] children;
+        /**
+         * serial numbers of JME meshes, or null if none
+         */
+        final private long[] ids;
+
+        ShapeKey(Class<? extends CollisionShape> shapeClass, float[] floats,
+                long[] ids, CollisionShape[] children) {
+            this.shapeClass = shapeClass;
+            this.floats = floats;
+            this.ids = ids;
+            this.children = children;
+            /*
+             * Native IDs get re-used after shapes are freed, and shapes
+             * compare equal by native ID, so hash children by identity.
+             */
+            int h = shapeClass.hashCode();
+            h = 31 * h + Arrays.hashCode(floats);
+            h = 31 * h + Arrays.hashCode(ids);
+            if (children != null) {
+                for (CollisionShape child : children) {
+                    h = 31 * h + System.identityHashCode(child);
+                }
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object otherObject) {
+            boolean result;
+            if (otherObject == this) {
+                result = true;
+            } else if (otherObject instanceof ShapeKey) {
+                ShapeKey other = (ShapeKey) otherObject;
+                result = shapeClass == other.shapeClass
+                        && hash == other.hash
+                        && Arrays.equals(floats, other.floats)
+                        && Arrays.equals(ids, other.ids)
+                        && sameChildren(other);
+            } else {
+                result = false;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Test whether this key has the same child shapes (by identity) as
+         * another key.
+         *
+         * @param other the other key (not null, unaffected)
+         * @return true if identical, otherwise false
+         */
+        private boolean sameChildren(ShapeKey other) {
+            if (children == null || other.children == null) {
+                return children == other.children;
+            } else if (children.length != other.children.length) {
+                return false;
+            }
+            for (int i = 0; i < children.length; ++i) {
+                if (children[i] != other.children[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,659 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.bullet.PhysicsSoftSpace;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.math.Vector3f;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * Deactivate soft bodies that have come to rest, and optionally suspend soft
+ * bodies that lie outside all observer regions, so that Bullet doesn't spend
+ * solver time on them.
+ * <p>
+ * A managed body falls asleep once the kinetic energy of its nodes (per unit
+ * mass) stays below a threshold for a specified time. It wakes when the
+ * bounding box of an active dynamic rigid body or an awake soft body
+ * overlaps its own (enlarged by a margin), or when {@link
+ * #wake(com.jme3.bullet.objects.PhysicsSoftBody)} is invoked. External
+ * forces, such as wind, don't wake a body.
+ * <p>
+ * When culling is enabled, a managed body whose bounding box intersects none
+ * of the observer regions is suspended, and it resumes when it intersects one
+ * again.
+ * <p>
+ * Sleeping and suspended bodies are removed from the space. Their node
+ * locations persist in the native object, and their node velocities are
+ * saved on removal and restored on resumption. (A body that fell asleep
+ * resumes at rest.) The frame and volume poses are left alone, since
+ * resetting them via {@link PhysicsSoftBody#setPose(boolean, boolean)} would
+ * alter shape matching. Don't manage bodies that are attached to joints or
+ * to a SoftBodyControl, since those expect the body to remain in the space.
+ * <p>
+ * Add the manager to the space as a tick listener. This class isn't
+ * thread-safe: configure it on the physics thread or between steps.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class SoftBodyActivityManager implements PhysicsTickListener {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(SoftBodyActivityManager.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if culling is enabled, otherwise false
+     */
+    private boolean cullingEnabled = false;
+    /**
+     * kinetic energy per unit mass below which a body is considered at rest
+     * (in physics-space units squared per second squared)
+     */
+    private float energyThreshold = 0.32f;
+    /**
+     * time a body must remain at rest before it falls asleep (in seconds)
+     */
+    private float timeToSleep = 2f;
+    /**
+     * distance by which sleeping bodies' bounding boxes are enlarged when
+     * testing for wake-up (in physics-space units)
+     */
+    private float wakeMargin = 0.1f;
+    /**
+     * temporary storage for node masses
+     */
+    private FloatBuffer tmpMasses = BufferUtils.createFloatBuffer(1);
+    /**
+     * observer regions for culling
+     */
+    final private List<BoundingVolume> regions = new ArrayList<>(4);
+    /**
+     * map managed bodies to their state
+     */
+    final private Map<PhysicsSoftBody, Entry> bodyToEntry
+            = new IdentityHashMap<>(16);
+    /**
+     * the space that most recently invoked a tick callback, or null if none
+     */
+    private PhysicsSpace lastSpace = null;
+    /**
+     * temporary storage for bounding boxes of dynamic bodies
+     */
+    final private BoundingBox tmpBox = new BoundingBox();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a manager with no bodies, no regions, and culling disabled.
+     */
+    public SoftBodyActivityManager() {
+        // do nothing
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Start managing the specified body, which is initially awake.
+     *
+     * @param body the body to manage (not null, not already managed, alias
+     * created)
+     */
+    public void add(PhysicsSoftBody body) {
+        Validate.nonNull(body, "body");
+        if (bodyToEntry.containsKey(body)) {
+            throw new IllegalArgumentException("The body is already managed.");
+        }
+
+        Entry entry = new Entry(body);
+        bodyToEntry.put(body, entry);
+    }
+
+    /**
+     * Add an observer region for culling. The region is retained by
+     * reference, so moving it affects subsequent culling decisions.
+     *
+     * @param region the region to add (not null, alias created)
+     */
+    public void addRegion(BoundingVolume region) {
+        Validate.nonNull(region, "region");
+        regions.add(region);
+    }
+
+    /**
+     * Count the managed bodies.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countBodies() {
+        int result = bodyToEntry.size();
+        return result;
+    }
+
+    /**
+     * Count the observer regions.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countRegions() {
+        int result = regions.size();
+        return result;
+    }
+
+    /**
+     * Count the managed bodies that are currently asleep.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countSleeping() {
+        int result = 0;
+        for (Entry entry : bodyToEntry.values()) {
+            if (entry.asleep) {
+                ++result;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Count the managed bodies that are currently suspended by culling.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countSuspended() {
+        int result = 0;
+        for (Entry entry : bodyToEntry.values()) {
+            if (entry.culled) {
+                ++result;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the kinetic-energy threshold for sleep.
+     *
+     * @return the energy per unit mass (&ge;0)
+     */
+    public float energyThreshold() {
+        return energyThreshold;
+    }
+
+    /**
+     * Test whether culling is enabled.
+     *
+     * @return true if enabled, otherwise false
+     */
+    public boolean isCullingEnabled() {
+        return cullingEnabled;
+    }
+
+    /**
+     * Test whether the specified body is asleep.
+     *
+     * @param body the body to test (not null, managed, unaffected)
+     * @return true if asleep, otherwise false
+     */
+    public boolean isSleeping(PhysicsSoftBody body) {
+        Entry entry = findEntry(body);
+        return entry.asleep;
+    }
+
+    /**
+     * Test whether the specified body is suspended by culling.
+     *
+     * @param body the body to test (not null, managed, unaffected)
+     * @return true if suspended, otherwise false
+     */
+    public boolean isSuspended(PhysicsSoftBody body) {
+        Entry entry = findEntry(body);
+        return entry.culled;
+    }
+
+    /**
+     * Stop managing the specified body. If it was removed from the space
+     * because it was asleep or suspended, it's added back, awake.
+     *
+     * @param body the body to release (not null, managed)
+     */
+    public void remove(PhysicsSoftBody body) {
+        Entry entry = findEntry(body);
+        entry.asleep = false;
+        entry.culled = false;
+        entry.reconcile(lastSpace);
+        bodyToEntry.remove(body);
+    }
+
+    /**
+     * Remove the specified observer region.
+     *
+     * @param region the region to remove (not null)
+     * @return true if the region was found and removed, otherwise false
+     */
+    public boolean removeRegion(BoundingVolume region) {
+        Validate.nonNull(region, "region");
+        boolean result = regions.remove(region);
+        return result;
+    }
+
+    /**
+     * Enable or disable culling. Disabling culling resumes all suspended
+     * bodies during the next tick.
+     *
+     * @param enable true to enable, false to disable (default=false)
+     */
+    public void setCullingEnabled(boolean enable) {
+        this.cullingEnabled = enable;
+    }
+
+    /**
+     * Alter the kinetic-energy threshold for sleep.
+     *
+     * @param threshold the desired energy per unit mass (in physics-space
+     * units squared per second squared, &ge;0, default=0.32)
+     */
+    public void setEnergyThreshold(float threshold) {
+        Validate.nonNegative(threshold, "threshold");
+        this.energyThreshold = threshold;
+    }
+
+    /**
+     * Alter the time a body must remain at rest before it falls asleep.
+     *
+     * @param seconds the desired time (in seconds, &ge;0, default=2)
+     */
+    public void setTimeToSleep(float seconds) {
+        Validate.nonNegative(seconds, "seconds");
+        this.timeToSleep = seconds;
+    }
+
+    /**
+     * Alter the margin used when testing sleeping bodies for wake-up.
+     *
+     * @param margin the desired margin (in physics-space units, &ge;0,
+     * default=0.1)
+     */
+    public void setWakeMargin(float margin) {
+        Validate.nonNegative(margin, "margin");
+        this.wakeMargin = margin;
+    }
+
+    /**
+     * Return the time a body must remain at rest before it falls asleep.
+     *
+     * @return the time (in seconds, &ge;0)
+     */
+    public float timeToSleep() {
+        return timeToSleep;
+    }
+
+    /**
+     * Wake the specified body. If it isn't suspended, it rejoins the space
+     * during the next tick.
+     *
+     * @param body the body to wake (not null, managed)
+     */
+    public void wake(PhysicsSoftBody body) {
+        Entry entry = findEntry(body);
+        entry.asleep = false;
+        entry.quietTime = 0f;
+    }
+
+    /**
+     * Return the margin used when testing sleeping bodies for wake-up.
+     *
+     * @return the margin (in physics-space units, &ge;0)
+     */
+    public float wakeMargin() {
+        return wakeMargin;
+    }
+    // *************************************************************************
+    // PhysicsTickListener methods
+
+    /**
+     * Callback from Bullet, invoked just after the physics has been stepped.
+     * Update culling, wake-up, and sleep decisions, then add or remove bodies
+     * accordingly.
+     *
+     * @param space the space that was just stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void physicsTick(PhysicsSpace space, float timeStep) {
+        this.lastSpace = space;
+
+        for (Entry entry : bodyToEntry.values()) {
+            boolean simulated = !entry.removed && entry.body.isInWorld();
+            if (simulated) {
+                entry.body.boundingBox(entry.bounds);
+            }
+            entry.culled = cullingEnabled && !isInAnyRegion(entry.bounds);
+            if (simulated && !entry.culled && !entry.asleep) {
+                updateSleep(entry, timeStep);
+            }
+        }
+        wakeOverlapped(space);
+
+        for (Entry entry : bodyToEntry.values()) {
+            entry.reconcile(space);
+        }
+    }
+
+    /**
+     * Callback from Bullet, invoked just before the physics is stepped. No
+     * effect.
+     *
+     * @param space the space that is about to be stepped (not null)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    @Override
+    public void prePhysicsTick(PhysicsSpace space, float timeStep) {
+        // do nothing
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Find the entry for the specified body.
+     *
+     * @param body the body to find (not null, managed)
+     * @return the pre-existing entry (not null)
+     */
+    private Entry findEntry(PhysicsSoftBody body) {
+        Validate.nonNull(body, "body");
+        Entry result = bodyToEntry.get(body);
+        if (result == null) {
+            throw new IllegalArgumentException("The body isn't managed.");
+        }
+
+        return result;
+    }
+
+    /**
+     * Test whether the specified bounding box intersects any observer region.
+     *
+     * @param bounds the box to test (not null, unaffected)
+     * @return true if it intersects a region, otherwise false
+     */
+    private boolean isInAnyRegion(BoundingBox bounds) {
+        for (BoundingVolume region : regions) {
+            if (region.intersects(bounds)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Test whether the specified box overlaps the enlarged bounds of a
+     * sleeping body.
+     *
+     * @param box the box to test (not null, unaffected)
+     * @param sleeper the sleeping body's entry (not null, unaffected)
+     * @return true if they overlap, otherwise false
+     */
+    private boolean overlapsSleeper(BoundingBox box, Entry sleeper) {
+        BoundingBox bounds = sleeper.bounds;
+        Vector3f center = bounds.getCenter(); // alias
+        Vector3f otherCenter = box.getCenter(); // alias
+
+        boolean result = Math.abs(center.x - otherCenter.x) <= bounds
+                .getXExtent() + box.getXExtent() + wakeMargin
+                && Math.abs(center.y - otherCenter.y) <= bounds.getYExtent()
+                + box.getYExtent() + wakeMargin
+                && Math.abs(center.z - otherCenter.z) <= bounds.getZExtent()
+                + box.getZExtent() + wakeMargin;
+
+        return result;
+    }
+
+    /**
+     * Accumulate rest time for the specified awake body and put it to sleep
+     * if it has been at rest long enough.
+     *
+     * @param entry the body's entry (not null, modified)
+     * @param timeStep the time per physics step (in seconds, &ge;0)
+     */
+    private void updateSleep(Entry entry, float timeStep) {
+        PhysicsSoftBody body = entry.body;
+        int numNodes = body.countNodes();
+        if (tmpMasses.capacity() < numNodes) {
+            tmpMasses = BufferUtils.createFloatBuffer(numNodes);
+        }
+        body.copyMasses(tmpMasses);
+        FloatBuffer velocities = entry.ensureVelocities(numNodes);
+        body.copyVelocities(velocities);
+
+        double totalMass = 0.0;
+        double twiceEnergy = 0.0;
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            float mass = tmpMasses.get(nodeIndex);
+            int floatIndex = numAxes * nodeIndex;
+            float vx = velocities.get(floatIndex);
+            float vy = velocities.get(floatIndex + 1);
+            float vz = velocities.get(floatIndex + 2);
+            totalMass += mass;
+            twiceEnergy += mass * (vx * vx + vy * vy + vz * vz);
+        }
+
+        boolean atRest = totalMass <= 0.0
+                || 0.5 * twiceEnergy / totalMass < energyThreshold;
+        if (atRest) {
+            entry.quietTime += timeStep;
+            if (entry.quietTime >= timeToSleep) {
+                entry.asleep = true;
+            }
+        } else {
+            entry.quietTime = 0f;
+        }
+    }
+
+    /**
+     * Wake any sleeping, unculled bodies whose bounds are overlapped by an
+     * active dynamic rigid body or an awake soft body in the space.
+     *
+     * @param space the space that was just stepped (not null)
+     */
+    private void wakeOverlapped(PhysicsSpace space) {
+        int numSleepers = 0;
+        for (Entry entry : bodyToEntry.values()) {
+            if (entry.asleep && !entry.culled) {
+                ++numSleepers;
+            }
+        }
+        if (numSleepers == 0) {
+            return;
+        }
+
+        for (PhysicsRigidBody rigidBody : space.getRigidBodyList()) {
+            if (rigidBody.isDynamic() && rigidBody.isActive()) {
+                rigidBody.boundingBox(tmpBox);
+                wakeOverlapped(tmpBox);
+            }
+        }
+
+        if (space instanceof PhysicsSoftSpace) {
+            PhysicsSoftSpace softSpace = (PhysicsSoftSpace) space;
+            for (PhysicsSoftBody softBody : softSpace.getSoftBodyList()) {
+                Entry entry = bodyToEntry.get(softBody);
+                if (entry == null || !entry.asleep) {
+                    softBody.boundingBox(tmpBox);
+                    wakeOverlapped(tmpBox);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wake any sleeping, unculled bodies whose bounds overlap the specified
+     * box.
+     *
+     * @param box the box to test (not null, unaffected)
+     */
+    private void wakeOverlapped(BoundingBox box) {
+        for (Entry entry : bodyToEntry.values()) {
+            if (entry.asleep && !entry.culled
+                    && overlapsSleeper(box, entry)) {
+                entry.asleep = false;
+                entry.quietTime = 0f;
+            }
+        }
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * Activity state of a managed body.
+     */
+    private static class Entry {
+        // *********************************************************************
+        // fields
+
+        /**
+         * true if the body is asleep
+         */
+        private boolean asleep = false;
+        /**
+         * true if the body is suspended by culling
+         */
+        private boolean culled = false;
+        /**
+         * true if the body was removed from the space by the manager
+         */
+        private boolean removed = false;
+        /**
+         * bounding box, refreshed while in the space
+         */
+        final private BoundingBox bounds = new BoundingBox();
+        /**
+         * node velocities: temporary storage while awake, saved while out of
+         * the space
+         */
+        private FloatBuffer velocities = null;
+        /**
+         * time spent at rest (in seconds)
+         */
+        private float quietTime = 0f;
+        /**
+         * the managed body
+         */
+        final private PhysicsSoftBody body;
+        // *********************************************************************
+        // constructors
+
+        /**
+         * Instantiate an awake entry for the specified body.
+         *
+         * @param body the body (not null, alias created)
+         */
+        Entry(PhysicsSoftBody body) {
+            this.body = body;
+            body.boundingBox(bounds);
+        }
+        // *********************************************************************
+        // new methods exposed
+
+        /**
+         * Ensure that the velocity buffer holds at least the specified number
+         * of nodes.
+         *
+         * @param numNodes the number of nodes (&ge;0)
+         * @return the buffer (direct, not null)
+         */
+        FloatBuffer ensureVelocities(int numNodes) {
+            int numFloats = numAxes * Math.max(1, numNodes);
+            if (velocities == null || velocities.capacity() < numFloats) {
+                velocities = BufferUtils.createFloatBuffer(numFloats);
+            }
+
+            return velocities;
+        }
+
+        /**
+         * Add the body to, or remove it from, the specified space to match
+         * its state, saving or restoring its node velocities. Bodies that
+         * weren't added to the space by the application are left alone.
+         *
+         * @param space the space (may be null if never ticked)
+         */
+        void reconcile(PhysicsSpace space) {
+            if (space == null) {
+                return;
+            }
+
+            boolean wantInSpace = !asleep && !culled;
+            int numNodes = body.countNodes();
+            if (wantInSpace && removed) {
+                FloatBuffer saved = ensureVelocities(numNodes);
+                space.addCollisionObject(body);
+                body.setVelocities(saved);
+                this.removed = false;
+            } else if (!wantInSpace && !removed && body.isInWorld()) {
+                FloatBuffer saved = ensureVelocities(numNodes);
+                if (asleep) {
+                    for (int i = 0; i < numAxes * numNodes; ++i) {
+                        saved.put(i, 0f); // resume at rest
+                    }
+                } else {
+                    body.copyVelocities(saved);
+                }
+                space.removeCollisionObject(body);
+                this.removed = true;
+            }
+        }
+    }
+}
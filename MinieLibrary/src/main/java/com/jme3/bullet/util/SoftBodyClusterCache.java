@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.bullet.objects.infos.ClusterLayout;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A serializable cache of soft-body cluster layouts, keyed by mesh hash and
+ * K-means parameters. The first body generated from a given mesh pays for
+ * K-means; later bodies with the same topology reuse its clusters. Saving the
+ * cache to a J3O file (for example, during an asset build) makes cluster
+ * generation a one-time offline cost.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class SoftBodyClusterCache implements Savable {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(SoftBodyClusterCache.class.getName());
+    /**
+     * field names for serialization
+     */
+    final private static String tagKs = "ks";
+    final private static String tagLayouts = "layouts";
+    final private static String tagMaxIterations = "maxIterations";
+    final private static String tagMeshHashes = "meshHashes";
+    // *************************************************************************
+    // fields
+
+    /**
+     * number of cache hits since instantiation or the last clear()
+     */
+    private int numHits = 0;
+    /**
+     * map cache keys to layouts
+     */
+    private Map<Key, ClusterLayout> layouts = new HashMap<>(16);
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Remove all layouts from this cache.
+     */
+    public void clear() {
+        layouts.clear();
+        numHits = 0;
+    }
+
+    /**
+     * Count the cache hits since instantiation or the last clear().
+     *
+     * @return the count (&ge;0)
+     */
+    public int countHits() {
+        return numHits;
+    }
+
+    /**
+     * Count the layouts in this cache.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countLayouts() {
+        int result = layouts.size();
+        return result;
+    }
+
+    /**
+     * Generate clusters (K-mean) for the specified body, reusing a cached
+     * layout when one matches. Any pre-existing clusters are released.
+     *
+     * @param softBody the body to modify (not null)
+     * @param k (&ge;1, &lt;numNodes)
+     * @param maxIterations the maximum number of iterations (&gt;0,
+     * default=8192)
+     * @return true if a cached layout was used, false if K-means was run
+     * @see PhysicsSoftBody#generateClusters(int, int)
+     */
+    public boolean generateClusters(PhysicsSoftBody softBody, int k,
+            int maxIterations) {
+        Validate.positive(k, "k");
+        Validate.positive(maxIterations, "maximum number of iterations");
+
+        /*
+         * Hash the topology just once: the hash includes the node count,
+         * so a layout found under this key already matches the body.
+         */
+        long meshHash = ClusterLayout.meshHash(softBody);
+        Key key = new Key(meshHash, k, maxIterations);
+        ClusterLayout layout = layouts.get(key);
+        boolean result;
+        if (layout != null && layout.getMeshHash() == meshHash) {
+            softBody.setClusters(layout);
+            ++numHits;
+            result = true;
+
+        } else {
+            softBody.generateClusters(k, maxIterations);
+            layout = new ClusterLayout(softBody);
+            layouts.put(key, layout);
+            result = false;
+            if (logger.isLoggable(Level.INFO)) {
+                logger.log(Level.INFO, "Cached {0}", layout);
+            }
+        }
+
+        return result;
+    }
+    // *************************************************************************
+    // Savable methods
+
+    /**
+     * De-serialize this cache from the specified importer, for example when
+     * loading from a J3O file.
+     *
+     * @param importer (not null)
+     * @throws IOException from the importer
+     */
+    @Override
+    public void read(JmeImporter importer) throws IOException {
+        InputCapsule capsule = importer.getCapsule(this);
+
+        layouts.clear();
+        numHits = 0;
+        long[] meshHashes
+                = capsule.readLongArray(tagMeshHashes, new long[0]);
+        int[] ks = capsule.readIntArray(tagKs, new int[0]);
+        int[] maxIterations
+                = capsule.readIntArray(tagMaxIterations, new int[0]);
+        Savable[] savables
+                = capsule.readSavableArray(tagLayouts, new Savable[0]);
+        assert ks.length == meshHashes.length;
+        assert maxIterations.length == meshHashes.length;
+        assert savables.length == meshHashes.length;
+        for (int i = 0; i < meshHashes.length; ++i) {
+            Key key = new Key(meshHashes[i], ks[i], maxIterations[i]);
+            layouts.put(key, (ClusterLayout) savables[i]);
+        }
+    }
+
+    /**
+     * Serialize this cache to the specified exporter, for example when saving
+     * to a J3O file.
+     *
+     * @param exporter (not null)
+     * @throws IOException from the exporter
+     */
+    @Override
+    public void write(JmeExporter exporter) throws IOException {
+        OutputCapsule capsule = exporter.getCapsule(this);
+
+        int numLayouts = layouts.size();
+        long[] meshHashes = new long[numLayouts];
+        int[] ks = new int[numLayouts];
+        int[] maxIterations = new int[numLayouts];
+        Savable[] savables = new Savable[numLayouts];
+        int i = 0;
+        for (Map.Entry<Key, ClusterLayout> entry : layouts.entrySet()) {
+            Key key = entry.getKey();
+            meshHashes[i] = key.meshHash;
+            ks[i] = key.k;
+            maxIterations[i] = key.maxIterations;
+            savables[i] = entry.getValue();
+            ++i;
+        }
+        capsule.write(meshHashes, tagMeshHashes, null);
+        capsule.write(ks, tagKs, null);
+        capsule.write(maxIterations, tagMaxIterations, null);
+        capsule.write(savables, tagLayouts, null);
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * Cache key: a mesh hash plus the K-means parameters. All 3 components
+     * are compared, so distinct parameter pairs never share a layout.
+     */
+    private static class Key {
+        /**
+         * topology hash of the body, from
+         * {@link ClusterLayout#meshHash(PhysicsSoftBody)}
+         */
+        final long meshHash;
+        /**
+         * number of clusters requested (&ge;1)
+         */
+        final int k;
+        /**
+         * maximum number of K-means iterations (&gt;0)
+         */
+        final int maxIterations;
+
+        /**
+         * Instantiate a key.
+         *
+         * @param meshHash the topology hash of the body
+         * @param k the number of clusters requested (&ge;1)
+         * @param maxIterations the maximum number of K-means iterations
+         * (&gt;0)
+         */
+        Key(long meshHash, int k, int maxIterations) {
+            this.meshHash = meshHash;
+            this.k = k;
+            this.maxIterations = maxIterations;
+        }
+
+        /**
+         * Test for equivalence with another Object. Keys are equivalent if
+         * all 3 components are equal.
+         *
+         * @param otherObject the object to compare to (may be null,
+         * unaffected)
+         * @return true if the objects are equivalent, otherwise false
+         */
+        @Override
+        public boolean equals(Object otherObject) {
+            boolean result;
+            if (otherObject == this) {
+                result = true;
+            } else if (otherObject instanceof Key) {
+                Key other = (Key) otherObject;
+                result = meshHash == other.meshHash && k == other.k
+                        && maxIterations == other.maxIterations;
+            } else {
+                result = false;
+            }
+
+            return result;
+        }
+
+        /**
+         * Generate the hash code for this key.
+         *
+         * @return the value to use for hashing
+         */
+        @Override
+        public int hashCode() {
+            int result = (int) (meshHash ^ (meshHash >>> 32));
+            result = 31 * result + k;
+            result = 31 * result + maxIterations;
+
+            return result;
+        }
+    }
+}
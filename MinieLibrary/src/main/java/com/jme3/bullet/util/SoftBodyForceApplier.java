@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.math.Vector3f;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * Apply per-node forces and velocity changes to soft bodies in bulk, with a
+ * handful of native calls per body instead of one per node.
+ * <p>
+ * Bullet provides bulk access to node velocities but not to node forces, so
+ * forces are converted to the velocity change they would cause during one
+ * simulation step (force times inverse mass times the time step), which is
+ * how Bullet integrates them. For equivalence with
+ * {@link PhysicsSoftBody#applyForce(com.jme3.math.Vector3f, int)}, apply
+ * forces from
+ * {@link com.jme3.bullet.PhysicsTickListener#prePhysicsTick(
+ * com.jme3.bullet.PhysicsSpace, float)} using the step's time step. As with
+ * the per-node methods, pinned nodes (mass=0) are unaffected.
+ * <p>
+ * For smoothly varying effects such as wind, water, and explosions,
+ * {@link #applyField(com.jme3.bullet.objects.PhysicsSoftBody,
+ * SoftBodyForceApplier.ClusterField, float)} evaluates a callback once per
+ * cluster and spreads the resulting force over the cluster's nodes.
+ * <p>
+ * This class isn't thread-safe.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class SoftBodyForceApplier {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(SoftBodyForceApplier.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * temporary storage for cluster data, 3 floats per cluster
+     */
+    private FloatBuffer tmpClusterCenters = BufferUtils.createFloatBuffer(3);
+    /**
+     * temporary storage for cluster masses
+     */
+    private FloatBuffer tmpClusterMasses = BufferUtils.createFloatBuffer(1);
+    /**
+     * temporary storage for cluster velocities, 3 floats per cluster
+     */
+    private FloatBuffer tmpClusterVelocities
+            = BufferUtils.createFloatBuffer(3);
+    /**
+     * temporary storage for node masses
+     */
+    private FloatBuffer tmpMasses = BufferUtils.createFloatBuffer(1);
+    /**
+     * temporary storage for node velocities, 3 floats per node
+     */
+    private FloatBuffer tmpVelocities = BufferUtils.createFloatBuffer(3);
+    /**
+     * cached cluster membership: for each body, the node indices of each
+     * cluster
+     */
+    final private Map<PhysicsSoftBody, int[][]> membershipCache
+            = new WeakHashMap<>(16);
+    /**
+     * temporary storage for a cluster's center
+     */
+    final private Vector3f tmpCenter = new Vector3f();
+    /**
+     * temporary storage for a cluster's force
+     */
+    final private Vector3f tmpForce = new Vector3f();
+    /**
+     * temporary storage for a cluster's velocity
+     */
+    final private Vector3f tmpVelocity = new Vector3f();
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Add a velocity to each node of the specified body, skipping pinned
+     * nodes.
+     *
+     * @param body the body to modify (not null)
+     * @param deltas the velocity to add to each node (in physics-space
+     * coordinates, 3 floats per node, not null, unaffected)
+     */
+    public void addVelocities(PhysicsSoftBody body, FloatBuffer deltas) {
+        int numNodes = prepareNodes(body, deltas);
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            if (tmpMasses.get(nodeIndex) > 0f) {
+                addToVelocity(nodeIndex, deltas.get(numAxes * nodeIndex),
+                        deltas.get(numAxes * nodeIndex + 1),
+                        deltas.get(numAxes * nodeIndex + 2));
+            }
+        }
+        finishNodes(body, numNodes);
+    }
+
+    /**
+     * Apply a cluster-based force field to the specified body. The field is
+     * evaluated once per cluster, and each cluster's force is distributed
+     * over its nodes in proportion to their masses, so that every node in
+     * the cluster gains the same velocity. Nodes in no cluster are
+     * unaffected.
+     *
+     * @param body the body to modify (not null, must have clusters)
+     * @param field the force field to evaluate (not null)
+     * @param timeStep the duration over which the forces act (in seconds,
+     * &ge;0)
+     */
+    public void applyField(PhysicsSoftBody body, ClusterField field,
+            float timeStep) {
+        Validate.nonNull(field, "field");
+        Validate.nonNegative(timeStep, "time step");
+        int numClusters = body.countClusters();
+        if (numClusters == 0) {
+            throw new IllegalArgumentException("The body has no clusters.");
+        }
+
+        int[][] membership = membership(body);
+        int numFloats = numAxes * numClusters;
+        tmpClusterCenters = grow(tmpClusterCenters, numFloats);
+        tmpClusterVelocities = grow(tmpClusterVelocities, numFloats);
+        tmpClusterMasses = grow(tmpClusterMasses, numClusters);
+        body.copyClusterCenters(tmpClusterCenters);
+        body.copyClusterVelocities(tmpClusterVelocities);
+        body.copyClusterMasses(tmpClusterMasses);
+
+        int numNodes = prepareNodes(body, null);
+        for (int ci = 0; ci < numClusters; ++ci) {
+            float mass = tmpClusterMasses.get(ci);
+            if (!(mass > 0f)) {
+                continue;
+            }
+            int floatIndex = numAxes * ci;
+            tmpCenter.set(tmpClusterCenters.get(floatIndex),
+                    tmpClusterCenters.get(floatIndex + 1),
+                    tmpClusterCenters.get(floatIndex + 2));
+            tmpVelocity.set(tmpClusterVelocities.get(floatIndex),
+                    tmpClusterVelocities.get(floatIndex + 1),
+                    tmpClusterVelocities.get(floatIndex + 2));
+            tmpForce.zero();
+            field.evaluate(ci, tmpCenter, tmpVelocity, mass, tmpForce);
+
+            float scale = timeStep / mass;
+            float dx = scale * tmpForce.x;
+            float dy = scale * tmpForce.y;
+            float dz = scale * tmpForce.z;
+            for (int nodeIndex : membership[ci]) {
+                if (tmpMasses.get(nodeIndex) > 0f) {
+                    addToVelocity(nodeIndex, dx, dy, dz);
+                }
+            }
+        }
+        finishNodes(body, numNodes);
+    }
+
+    /**
+     * Apply a force to each node of the specified body, skipping pinned
+     * nodes.
+     *
+     * @param body the body to modify (not null)
+     * @param forces the force to apply to each node (in physics-space
+     * coordinates, 3 floats per node, not null, unaffected)
+     * @param timeStep the duration over which the forces act (in seconds,
+     * &ge;0)
+     */
+    public void applyForces(PhysicsSoftBody body, FloatBuffer forces,
+            float timeStep) {
+        Validate.nonNegative(timeStep, "time step");
+
+        int numNodes = prepareNodes(body, forces);
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            float mass = tmpMasses.get(nodeIndex);
+            if (mass > 0f) {
+                float scale = timeStep / mass;
+                addToVelocity(nodeIndex,
+                        scale * forces.get(numAxes * nodeIndex),
+                        scale * forces.get(numAxes * nodeIndex + 1),
+                        scale * forces.get(numAxes * nodeIndex + 2));
+            }
+        }
+        finishNodes(body, numNodes);
+    }
+
+    /**
+     * Forget the cached cluster membership of the specified body. Invoke
+     * after its clusters are regenerated or released.
+     *
+     * @param body the body to forget (not null, unaffected)
+     */
+    public void invalidate(PhysicsSoftBody body) {
+        Validate.nonNull(body, "body");
+        membershipCache.remove(body);
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Add the specified vector to the indexed node's staged velocity.
+     *
+     * @param nodeIndex which node (&ge;0)
+     * @param dx the X component to add
+     * @param dy the Y component to add
+     * @param dz the Z component to add
+     */
+    private void addToVelocity(int nodeIndex, float dx, float dy, float dz) {
+        int floatIndex = numAxes * nodeIndex;
+        tmpVelocities.put(floatIndex, tmpVelocities.get(floatIndex) + dx);
+        tmpVelocities.put(floatIndex + 1,
+                tmpVelocities.get(floatIndex + 1) + dy);
+        tmpVelocities.put(floatIndex + 2,
+                tmpVelocities.get(floatIndex + 2) + dz);
+    }
+
+    /**
+     * Write the staged velocities back to the specified body.
+     *
+     * @param body the body to modify (not null)
+     * @param numNodes the number of nodes in the body (&ge;0)
+     */
+    private void finishNodes(PhysicsSoftBody body, int numNodes) {
+        if (numNodes > 0) {
+            body.setVelocities(tmpVelocities);
+        }
+    }
+
+    /**
+     * Return a direct buffer with at least the specified capacity, reusing
+     * the specified buffer if it's large enough.
+     *
+     * @param buffer the buffer to reuse (not null)
+     * @param minFloats the required capacity (&ge;0)
+     * @return either buffer or a new buffer
+     */
+    private static FloatBuffer grow(FloatBuffer buffer, int minFloats) {
+        FloatBuffer result = buffer;
+        if (buffer.capacity() < minFloats) {
+            result = BufferUtils.createFloatBuffer(minFloats);
+        }
+
+        return result;
+    }
+
+    /**
+     * Access the cluster membership of the specified body, listing it if it
+     * isn't cached.
+     *
+     * @param body the body to list (not null, unaffected)
+     * @return the node indices of each cluster (not null)
+     */
+    private int[][] membership(PhysicsSoftBody body) {
+        int numClusters = body.countClusters();
+        int[][] result = membershipCache.get(body);
+        if (result == null || result.length != numClusters) {
+            result = new int[numClusters][];
+            for (int ci = 0; ci < numClusters; ++ci) {
+                IntBuffer nodeIndices = body.listNodesInCluster(ci, null);
+                int numInCluster = nodeIndices.capacity();
+                result[ci] = new int[numInCluster];
+                for (int i = 0; i < numInCluster; ++i) {
+                    result[ci][i] = nodeIndices.get(i);
+                }
+            }
+            membershipCache.put(body, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Stage the masses and velocities of the specified body's nodes, after
+     * verifying the size of the specified per-node input.
+     *
+     * @param body the body to read (not null, unaffected)
+     * @param perNode the per-node vectors to verify (unaffected) or null
+     * @return the number of nodes in the body (&ge;0)
+     */
+    private int prepareNodes(PhysicsSoftBody body, FloatBuffer perNode) {
+        Validate.nonNull(body, "body");
+        int numNodes = body.countNodes();
+        int numFloats = numAxes * numNodes;
+        if (perNode != null && perNode.limit() < numFloats) {
+            String message = String.format("The buffer must contain at least "
+                    + "%d floats, 3 for each node.", numFloats);
+            throw new IllegalArgumentException(message);
+        }
+
+        tmpMasses = grow(tmpMasses, numNodes);
+        tmpVelocities = grow(tmpVelocities, numFloats);
+        if (numNodes > 0) {
+            body.copyMasses(tmpMasses);
+            body.copyVelocities(tmpVelocities);
+        }
+
+        return numNodes;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A force field evaluated once per soft-body cluster.
+     */
+    public interface ClusterField {
+        /**
+         * Calculate the total force on the indexed cluster.
+         *
+         * @param clusterIndex the index of the cluster (&ge;0)
+         * @param center the location of the cluster's center of mass (in
+         * physics-space coordinates, not null, unaffected)
+         * @param velocity the cluster's linear velocity (in physics-space
+         * coordinates, not null, unaffected)
+         * @param mass the cluster's total mass (&gt;0)
+         * @param storeForce storage for the force on the cluster (in
+         * physics-space coordinates, not null, initially zero, modified)
+         */
+        void evaluate(int clusterIndex, Vector3f center, Vector3f velocity,
+                float mass, Vector3f storeForce);
+    }
+}
@@ -0,0 +1,822 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.bullet.objects.infos.SoftBodyMaterial;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+import jme3utilities.math.IntPair;
+import jme3utilities.math.MyBuffer;
+
+/**
+ * Two levels of detail for a cloth-like soft body: a fine simulation mesh
+ * with one node per unique render-mesh position, and a coarse one built by
+ * clustering fine nodes on a uniform grid. The active level switches at a
+ * distance threshold (with hysteresis) from an observer.
+ * <p>
+ * Both levels are described by index maps in the style of
+ * {@link NativeSoftBodyUtil#generateIndexMap(java.nio.FloatBuffer)}, so the
+ * render mesh is driven by whichever level is active through
+ * {@link NativeSoftBodyUtil#updateMesh(
+ * com.jme3.bullet.objects.PhysicsSoftBody, java.nio.IntBuffer,
+ * com.jme3.scene.Mesh, boolean, boolean, com.jme3.math.Transform)}. At the
+ * coarse level, render vertices in the same grid cell share a node.
+ * <p>
+ * Since Bullet can't relocate the nodes of an existing body, each switch
+ * builds a new body for the target level. The new body is built from the
+ * rest positions of its level, so its links and faces always take their
+ * rest lengths and areas from the source mesh, no matter how often the
+ * level switches. It's then placed by the rigid transform that best fits
+ * the rest positions of the old level to the old body's current node
+ * locations. Deformation beyond that transform isn't transferred, so a
+ * deformed body springs back toward its rest shape after a switch.
+ * Velocities and masses are transferred (pinned nodes stay pinned).
+ * Collision properties, configuration, material, and world info are copied
+ * from the old body. Clusters, bending constraints, anchors, and joints
+ * aren't transferred.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class SoftBodyLod {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of power iterations used to fit a rotation
+     */
+    final private static int maxIterations = 64;
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * number of vertices per edge
+     */
+    final private static int vpe = 2;
+    /**
+     * number of vertices per triangle
+     */
+    final private static int vpt = 3;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(SoftBodyLod.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * true if the coarse level is active, false if the fine level is active
+     */
+    private boolean coarse = false;
+    /**
+     * observer distance at which the levels switch (in physics-space units)
+     */
+    private float switchDistance;
+    /**
+     * half-width of the dead band around the switch distance (in
+     * physics-space units)
+     */
+    private float hysteresis;
+    /**
+     * masses of the fine nodes when the fine level was last active, or null
+     * if never saved
+     */
+    private FloatBuffer fineMasses = null;
+    /**
+     * rest positions of the coarse nodes, 3 floats per node
+     */
+    final private FloatBuffer coarseRest;
+    /**
+     * rest positions of the fine nodes, 3 floats per node
+     */
+    final private FloatBuffer fineRest;
+    /**
+     * triangles of the coarse level
+     */
+    final private IndexBuffer coarseFaces;
+    /**
+     * unique edges of the coarse level
+     */
+    final private IndexBuffer coarseLinks;
+    /**
+     * triangles of the fine level
+     */
+    final private IndexBuffer fineFaces;
+    /**
+     * unique edges of the fine level
+     */
+    final private IndexBuffer fineLinks;
+    /**
+     * number of nodes in the coarse level
+     */
+    final private int numCoarseNodes;
+    /**
+     * number of nodes in the fine level
+     */
+    final private int numFineNodes;
+    /**
+     * map from fine-node indices to coarse-node indices
+     */
+    final private IntBuffer coarseOfFine;
+    /**
+     * map from render-vertex indices to coarse-node indices
+     */
+    final private IntBuffer renderToCoarse;
+    /**
+     * map from render-vertex indices to fine-node indices
+     */
+    final private IntBuffer renderToFine;
+    /**
+     * the body of the active level
+     */
+    private PhysicsSoftBody body;
+    /**
+     * temporary storage for the body's center
+     */
+    final private Vector3f tmpCenter = new Vector3f();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate both levels from the specified render mesh. The fine level
+     * is initially active, with a node mass of 1.
+     *
+     * @param renderMesh the source mesh (not null, mode=Triangles, in
+     * physics-space coordinates, unaffected)
+     * @param reductionFactor the approximate ratio of fine nodes to coarse
+     * nodes (&ge;1)
+     * @param switchDistance the observer distance at which to switch levels
+     * (in physics-space units, &gt;0)
+     * @param hysteresis the half-width of the dead band around the switch
+     * distance (in physics-space units, &ge;0, &le;switchDistance)
+     */
+    public SoftBodyLod(Mesh renderMesh, float reductionFactor,
+            float switchDistance, float hysteresis) {
+        Validate.nonNull(renderMesh, "render mesh");
+        Validate.require(renderMesh.getMode() == Mesh.Mode.Triangles,
+                "a mesh in Triangles mode");
+        Validate.inRange(reductionFactor, "reduction factor", 1f,
+                Float.MAX_VALUE);
+        Validate.positive(switchDistance, "switch distance");
+        Validate.inRange(hysteresis, "hysteresis", 0f, switchDistance);
+
+        this.switchDistance = switchDistance;
+        this.hysteresis = hysteresis;
+        /*
+         * fine level: merge render vertices that share a position
+         */
+        FloatBuffer positions
+                = renderMesh.getFloatBuffer(VertexBuffer.Type.Position);
+        this.renderToFine = NativeSoftBodyUtil.generateIndexMap(positions);
+        FloatBuffer finePositions = NativeSoftBodyUtil.mapVertexData(
+                renderToFine, positions, numAxes);
+        this.numFineNodes = finePositions.limit() / numAxes;
+        IndexBuffer renderFaces = renderMesh.getIndicesAsList();
+        IndexBuffer mappedFaces = NativeSoftBodyUtil.mapIndices(
+                renderToFine, renderFaces, null);
+        this.fineFaces = compactFaces(mappedFaces, numFineNodes);
+        this.fineLinks = uniqueEdges(fineFaces, numFineNodes);
+        /*
+         * coarse level: cluster fine nodes on a grid whose cells span
+         * about sqrt(reductionFactor) mean edge lengths
+         */
+        float cellSize = meanEdgeLength(finePositions, fineLinks)
+                * (float) Math.sqrt(reductionFactor);
+        this.coarseOfFine = gridIndexMap(finePositions, cellSize);
+        FloatBuffer coarsePositions = NativeSoftBodyUtil.mapVertexData(
+                coarseOfFine, finePositions, numAxes);
+        this.numCoarseNodes = coarsePositions.limit() / numAxes;
+        mappedFaces = NativeSoftBodyUtil.mapIndices(
+                coarseOfFine, fineFaces, null);
+        this.coarseFaces = compactFaces(mappedFaces, numCoarseNodes);
+        this.coarseLinks = uniqueEdges(coarseFaces, numCoarseNodes);
+
+        int numVertices = renderToFine.limit();
+        this.renderToCoarse = BufferUtils.createIntBuffer(numVertices);
+        for (int vi = 0; vi < numVertices; ++vi) {
+            int fineIndex = renderToFine.get(vi);
+            renderToCoarse.put(vi, coarseOfFine.get(fineIndex));
+        }
+
+        this.coarseRest = coarsePositions;
+        this.fineRest = finePositions;
+
+        this.body = new PhysicsSoftBody();
+        body.appendNodes(finePositions);
+        body.appendFaces(fineFaces);
+        body.appendLinks(fineLinks);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Count the nodes in the coarse level.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countCoarseNodes() {
+        return numCoarseNodes;
+    }
+
+    /**
+     * Count the nodes in the fine level.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countFineNodes() {
+        return numFineNodes;
+    }
+
+    /**
+     * Access the body of the active level. The instance changes whenever the
+     * level switches.
+     *
+     * @return the pre-existing instance (not null)
+     */
+    public PhysicsSoftBody getBody() {
+        return body;
+    }
+
+    /**
+     * Access the map from render-vertex indices to node indices of the active
+     * level.
+     *
+     * @return the pre-existing buffer (not null)
+     */
+    public IntBuffer getIndexMap() {
+        IntBuffer result = coarse ? renderToCoarse : renderToFine;
+        return result;
+    }
+
+    /**
+     * Return the half-width of the dead band around the switch distance.
+     *
+     * @return the distance (in physics-space units, &ge;0)
+     */
+    public float hysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * Test whether the coarse level is active.
+     *
+     * @return true if coarse, false if fine
+     */
+    public boolean isCoarse() {
+        return coarse;
+    }
+
+    /**
+     * Alter the switch distance and its dead band.
+     *
+     * @param distance the observer distance at which to switch levels (in
+     * physics-space units, &gt;0)
+     * @param hysteresis the half-width of the dead band (in physics-space
+     * units, &ge;0, &le;distance)
+     */
+    public void setSwitchDistance(float distance, float hysteresis) {
+        Validate.positive(distance, "distance");
+        Validate.inRange(hysteresis, "hysteresis", 0f, distance);
+
+        this.switchDistance = distance;
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * Switch to the specified level immediately, transferring node state. If
+     * the old body was in the specified space, the new body replaces it.
+     *
+     * @param space the space containing the body (may be null)
+     * @param useCoarse true for the coarse level, false for the fine level
+     * @return true if the level changed, otherwise false
+     */
+    public boolean switchTo(PhysicsSpace space, boolean useCoarse) {
+        if (useCoarse == coarse) {
+            return false;
+        }
+
+        PhysicsSoftBody oldBody = body;
+        FloatBuffer locations = oldBody.copyLocations(null);
+        FloatBuffer velocities = oldBody.copyVelocities(null);
+        FloatBuffer masses = oldBody.copyMasses(null);
+
+        FloatBuffer oldRest = coarse ? coarseRest : fineRest;
+        Transform placement = fitTransform(oldRest, locations);
+
+        PhysicsSoftBody newBody = new PhysicsSoftBody();
+        if (useCoarse) {
+            this.fineMasses = masses;
+            coarsen(newBody, velocities, masses);
+        } else {
+            refine(newBody, velocities);
+        }
+        /*
+         * A rigid transform leaves the rest lengths and areas unchanged.
+         */
+        newBody.applyTransform(placement);
+        copyProperties(oldBody, newBody);
+
+        if (space != null && space.contains(oldBody)) {
+            space.removeCollisionObject(oldBody);
+            space.addCollisionObject(newBody);
+        }
+        this.body = newBody;
+        this.coarse = useCoarse;
+
+        return true;
+    }
+
+    /**
+     * Return the observer distance at which the levels switch.
+     *
+     * @return the distance (in physics-space units, &gt;0)
+     */
+    public float switchDistance() {
+        return switchDistance;
+    }
+
+    /**
+     * Switch levels, if warranted by the distance between the specified
+     * observer and the center of the body's bounding box. Invoke between
+     * simulation steps.
+     *
+     * @param space the space containing the body (may be null)
+     * @param observerLocation the observer's location (in physics-space
+     * coordinates, not null, unaffected)
+     * @return true if the level changed, otherwise false
+     */
+    public boolean update(PhysicsSpace space, Vector3f observerLocation) {
+        Validate.finite(observerLocation, "observer location");
+
+        body.getPhysicsLocation(tmpCenter);
+        float distance = tmpCenter.distance(observerLocation);
+        boolean result = false;
+        if (coarse && distance < switchDistance - hysteresis) {
+            result = switchTo(space, false);
+        } else if (!coarse && distance > switchDistance + hysteresis) {
+            result = switchTo(space, true);
+        }
+
+        return result;
+    }
+
+    /**
+     * Update the render mesh from the active level.
+     *
+     * @param store the render mesh this LOD was built from (not null,
+     * position, normal, and index buffers must be direct, modified)
+     * @param updateNormals if true, update the normal buffer, otherwise ignore
+     * the normal buffer
+     * @param physicsToMesh the coordinate transform to apply, or null for
+     * identity (unaffected)
+     */
+    public void updateMesh(Mesh store, boolean updateNormals,
+            Transform physicsToMesh) {
+        boolean localFlag = false; // copy physics-space locations, not local
+        NativeSoftBodyUtil.updateMesh(body, getIndexMap(), store, localFlag,
+                updateNormals, physicsToMesh);
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Populate the specified coarse body in its rest pose from the state of
+     * the fine body. Each coarse node takes the velocity of a representative
+     * fine node and the total mass of its fine nodes, or zero if any of them
+     * is pinned.
+     *
+     * @param newBody the empty body to populate (not null, modified)
+     * @param velocities the fine-node velocities (not null, unaffected)
+     * @param masses the fine-node masses (not null, unaffected)
+     */
+    private void coarsen(PhysicsSoftBody newBody, FloatBuffer velocities,
+            FloatBuffer masses) {
+        FloatBuffer coarseVelocities = NativeSoftBodyUtil.mapVertexData(
+                coarseOfFine, velocities, numAxes);
+
+        FloatBuffer coarseMasses
+                = BufferUtils.createFloatBuffer(numCoarseNodes);
+        boolean[] pinned = new boolean[numCoarseNodes];
+        for (int fi = 0; fi < numFineNodes; ++fi) {
+            int ci = coarseOfFine.get(fi);
+            float mass = masses.get(fi);
+            if (mass == 0f) {
+                pinned[ci] = true;
+            }
+            coarseMasses.put(ci, coarseMasses.get(ci) + mass);
+        }
+        for (int ci = 0; ci < numCoarseNodes; ++ci) {
+            if (pinned[ci]) {
+                coarseMasses.put(ci, 0f);
+            }
+        }
+
+        newBody.appendNodes(coarseRest);
+        newBody.appendFaces(coarseFaces);
+        newBody.appendLinks(coarseLinks);
+        newBody.setMasses(coarseMasses);
+        newBody.setVelocities(coarseVelocities);
+    }
+
+    /**
+     * Collapse the specified face list, dropping triangles that are
+     * degenerate or duplicated after mapping.
+     *
+     * @param faces the mapped triangle indices (not null, unaffected)
+     * @param numNodes the number of nodes referenced (&ge;0)
+     * @return a new, direct buffer
+     */
+    private static IndexBuffer compactFaces(IndexBuffer faces, int numNodes) {
+        int numIndices = faces.size();
+        int[] kept = new int[numIndices];
+        int numKept = 0;
+        Collection<Triangle> seen = new HashSet<>(numIndices / vpt);
+        for (int start = 0; start < numIndices; start += vpt) {
+            int vi0 = faces.get(start);
+            int vi1 = faces.get(start + 1);
+            int vi2 = faces.get(start + 2);
+            if (vi0 != vi1 && vi1 != vi2 && vi0 != vi2
+                    && seen.add(new Triangle(vi0, vi1, vi2))) {
+                kept[numKept] = vi0;
+                kept[numKept + 1] = vi1;
+                kept[numKept + 2] = vi2;
+                numKept += vpt;
+            }
+        }
+
+        IndexBuffer result = IndexBuffer.createIndexBuffer(
+                Math.max(numNodes, 1), numKept);
+        for (int i = 0; i < numKept; ++i) {
+            result.put(i, kept[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Copy collision properties, configuration, material, world info, and
+     * user object from one body to another.
+     *
+     * @param from the source body (not null, unaffected)
+     * @param to the destination body (not null, modified)
+     */
+    private static void copyProperties(PhysicsSoftBody from,
+            PhysicsSoftBody to) {
+        to.copyPcoProperties(from);
+        to.setCollisionGroup(from.getCollisionGroup());
+        to.setCollideWithGroups(from.getCollideWithGroups());
+        to.setMargin(from.margin());
+        to.setUserObject(from.getUserObject());
+        to.getSoftConfig().copyAll(from.getSoftConfig());
+
+        SoftBodyMaterial fromMaterial = from.getSoftMaterial();
+        SoftBodyMaterial toMaterial = to.getSoftMaterial();
+        toMaterial.setAngularStiffness(fromMaterial.angularStiffness());
+        toMaterial.setLinearStiffness(fromMaterial.linearStiffness());
+        toMaterial.setVolumeStiffness(fromMaterial.volumeStiffness());
+
+        to.setWorldInfo(from.getWorldInfo());
+        to.setProtectWorldInfo(from.isWorldInfoProtected());
+    }
+
+    /**
+     * Find the rigid transform that best maps the specified rest positions
+     * onto the specified locations, in the least-squares sense, using Horn's
+     * closed-form quaternion method. The largest eigenvector of Horn's
+     * symmetric 4x4 matrix is found by shifted power iteration.
+     *
+     * @param rest the rest positions (not null, unaffected)
+     * @param locations the corresponding locations (not null, same limit as
+     * {@code rest}, unaffected)
+     * @return a new transform (scale=1)
+     */
+    private static Transform fitTransform(FloatBuffer rest,
+            FloatBuffer locations) {
+        int numPoints = rest.limit() / numAxes;
+        assert locations.limit() == rest.limit();
+        /*
+         * Calculate the centroids.
+         */
+        double[] restCenter = new double[numAxes];
+        double[] center = new double[numAxes];
+        for (int pi = 0; pi < numPoints; ++pi) {
+            for (int axis = 0; axis < numAxes; ++axis) {
+                restCenter[axis] += rest.get(numAxes * pi + axis);
+                center[axis] += locations.get(numAxes * pi + axis);
+            }
+        }
+        for (int axis = 0; axis < numAxes; ++axis) {
+            restCenter[axis] /= Math.max(numPoints, 1);
+            center[axis] /= Math.max(numPoints, 1);
+        }
+        /*
+         * Accumulate the cross-covariance: s[i][j] = sum of r_i * c_j
+         */
+        double[][] s = new double[numAxes][numAxes];
+        for (int pi = 0; pi < numPoints; ++pi) {
+            for (int i = 0; i < numAxes; ++i) {
+                double r = rest.get(numAxes * pi + i) - restCenter[i];
+                for (int j = 0; j < numAxes; ++j) {
+                    double c = locations.get(numAxes * pi + j) - center[j];
+                    s[i][j] += r * c;
+                }
+            }
+        }
+        double[][] n = {
+            {s[0][0] + s[1][1] + s[2][2], s[1][2] - s[2][1],
+                s[2][0] - s[0][2], s[0][1] - s[1][0]},
+            {s[1][2] - s[2][1], s[0][0] - s[1][1] - s[2][2],
+                s[0][1] + s[1][0], s[2][0] + s[0][2]},
+            {s[2][0] - s[0][2], s[0][1] + s[1][0],
+                -s[0][0] + s[1][1] - s[2][2], s[1][2] + s[2][1]},
+            {s[0][1] - s[1][0], s[2][0] + s[0][2],
+                s[1][2] + s[2][1], -s[0][0] - s[1][1] + s[2][2]}
+        };
+        /*
+         * Shift by the Frobenius norm, which bounds every eigenvalue, so
+         * the largest eigenvalue dominates. Start from each axis in turn, in
+         * case one of them is orthogonal to the desired eigenvector.
+         */
+        double shift = 0.0;
+        for (double[] row : n) {
+            for (double element : row) {
+                shift += element * element;
+            }
+        }
+        shift = Math.sqrt(shift);
+        for (int i = 0; i < 4; ++i) {
+            n[i][i] += shift;
+        }
+
+        double[] best = {1.0, 0.0, 0.0, 0.0};
+        double bestQuotient = Double.NEGATIVE_INFINITY;
+        double[] q = new double[4];
+        double[] product = new double[4];
+        for (int start = 0; start < 4; ++start) {
+            Arrays.fill(q, 0.0);
+            q[start] = 1.0;
+            double quotient = 0.0;
+            for (int iteration = 0; iteration < maxIterations; ++iteration) {
+                double norm = 0.0;
+                for (int i = 0; i < 4; ++i) {
+                    product[i] = 0.0;
+                    for (int j = 0; j < 4; ++j) {
+                        product[i] += n[i][j] * q[j];
+                    }
+                    norm += product[i] * product[i];
+                }
+                norm = Math.sqrt(norm);
+                if (norm == 0.0) {
+                    break;
+                }
+                quotient = 0.0;
+                for (int i = 0; i < 4; ++i) {
+                    quotient += q[i] * product[i];
+                    q[i] = product[i] / norm;
+                }
+            }
+            if (quotient > bestQuotient) {
+                bestQuotient = quotient;
+                System.arraycopy(q, 0, best, 0, 4);
+            }
+        }
+
+        Quaternion rotation = new Quaternion((float) best[1],
+                (float) best[2], (float) best[3], (float) best[0]);
+        rotation.normalizeLocal();
+        Vector3f restCentroid = new Vector3f((float) restCenter[0],
+                (float) restCenter[1], (float) restCenter[2]);
+        Vector3f translation = new Vector3f((float) center[0],
+                (float) center[1], (float) center[2]);
+        translation.subtractLocal(rotation.mult(restCentroid));
+        Transform result = new Transform(translation, rotation);
+
+        return result;
+    }
+
+    /**
+     * Cluster the specified locations on a uniform grid.
+     *
+     * @param locations the locations to cluster (not null, unaffected)
+     * @param cellSize the width of each grid cell (&gt;0)
+     * @return a new map from location indices to cluster indices, numbered
+     * in order of first appearance
+     */
+    private static IntBuffer gridIndexMap(FloatBuffer locations,
+            float cellSize) {
+        int numLocations = locations.limit() / numAxes;
+        IntBuffer result = BufferUtils.createIntBuffer(numLocations);
+        Map<Vector3f, Integer> cellToIndex = new HashMap<>(numLocations);
+        Vector3f location = new Vector3f();
+        for (int li = 0; li < numLocations; ++li) {
+            MyBuffer.get(locations, numAxes * li, location);
+            Vector3f cell = new Vector3f(
+                    (float) Math.floor(location.x / cellSize),
+                    (float) Math.floor(location.y / cellSize),
+                    (float) Math.floor(location.z / cellSize));
+            Integer index = cellToIndex.get(cell);
+            if (index == null) {
+                index = cellToIndex.size();
+                cellToIndex.put(cell, index);
+            }
+            result.put(li, index);
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculate the mean length of the specified edges.
+     *
+     * @param locations the node locations (not null, unaffected)
+     * @param links the edge indices (not null, unaffected)
+     * @return the mean length (&gt;0)
+     */
+    private static float meanEdgeLength(FloatBuffer locations,
+            IndexBuffer links) {
+        int numLinks = links.size() / vpe;
+        double sum = 0.0;
+        Vector3f a = new Vector3f();
+        Vector3f b = new Vector3f();
+        for (int li = 0; li < numLinks; ++li) {
+            MyBuffer.get(locations, numAxes * links.get(vpe * li), a);
+            MyBuffer.get(locations, numAxes * links.get(vpe * li + 1), b);
+            sum += a.distance(b);
+        }
+
+        float result = (numLinks > 0) ? (float) (sum / numLinks) : 0f;
+        if (!(result > 0f)) {
+            result = 1f;
+        }
+
+        return result;
+    }
+
+    /**
+     * Populate the specified fine body in its rest pose from the state of
+     * the coarse body. Each fine node takes its coarse node's velocity and
+     * its own saved mass.
+     *
+     * @param newBody the empty body to populate (not null, modified)
+     * @param velocities the coarse-node velocities (not null, unaffected)
+     */
+    private void refine(PhysicsSoftBody newBody, FloatBuffer velocities) {
+        int numFloats = numAxes * numFineNodes;
+        FloatBuffer fineVelocities = BufferUtils.createFloatBuffer(numFloats);
+        for (int fi = 0; fi < numFineNodes; ++fi) {
+            int ci = coarseOfFine.get(fi);
+            for (int axis = 0; axis < numAxes; ++axis) {
+                int fineIndex = numAxes * fi + axis;
+                int coarseIndex = numAxes * ci + axis;
+                fineVelocities.put(fineIndex, velocities.get(coarseIndex));
+            }
+        }
+
+        newBody.appendNodes(fineRest);
+        newBody.appendFaces(fineFaces);
+        newBody.appendLinks(fineLinks);
+        if (fineMasses != null) {
+            newBody.setMasses(fineMasses);
+        }
+        newBody.setVelocities(fineVelocities);
+    }
+
+    /**
+     * Enumerate the unique edges of the specified triangles.
+     *
+     * @param faces the triangle indices (not null, unaffected)
+     * @param numNodes the number of nodes referenced (&ge;0)
+     * @return a new, direct buffer with 2 indices per edge
+     */
+    private static IndexBuffer uniqueEdges(IndexBuffer faces, int numNodes) {
+        int size = faces.size();
+        Collection<IntPair> edges = new HashSet<>(size);
+        for (int start = 0; start < size; start += vpt) {
+            int ti0 = faces.get(start);
+            int ti1 = faces.get(start + 1);
+            int ti2 = faces.get(start + 2);
+
+            edges.add(new IntPair(ti0, ti1));
+            edges.add(new IntPair(ti1, ti2));
+            edges.add(new IntPair(ti0, ti2));
+        }
+
+        int numIndices = vpe * edges.size();
+        IndexBuffer result = IndexBuffer.createIndexBuffer(
+                Math.max(numNodes, 1), numIndices);
+        int offset = 0;
+        for (IntPair edge : edges) {
+            result.put(offset, edge.smaller());
+            result.put(offset + 1, edge.larger());
+            offset += vpe;
+        }
+
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * An unordered triangle, used to detect duplicate faces.
+     */
+    private static class Triangle {
+        /**
+         * sorted node indices
+         */
+        final private int a, b, c;
+
+        /**
+         * Instantiate a triangle from 3 distinct node indices.
+         *
+         * @param i0 the first index
+         * @param i1 the 2nd index
+         * @param i2 the 3rd index
+         */
+        Triangle(int i0, int i1, int i2) {
+            int min = Math.min(i0, Math.min(i1, i2));
+            int max = Math.max(i0, Math.max(i1, i2));
+            this.a = min;
+            this.b = i0 + i1 + i2 - min - max;
+            this.c = max;
+        }
+
+        /**
+         * Test for equivalence with another Object.
+         *
+         * @param otherObject the object to compare to (may be null,
+         * unaffected)
+         * @return true if the objects are equivalent, otherwise false
+         */
+        @Override
+        public boolean equals(Object otherObject) {
+            boolean result;
+            if (otherObject == this) {
+                result = true;
+            } else if (otherObject instanceof Triangle) {
+                Triangle other = (Triangle) otherObject;
+                result = a == other.a && b == other.b && c == other.c;
+            } else {
+                result = false;
+            }
+
+            return result;
+        }
+
+        /**
+         * Generate the hash code for this triangle.
+         *
+         * @return the value to use for hashing
+         */
+        @Override
+        public int hashCode() {
+            int result = 31 * (31 * a + b) + c;
+            return result;
+        }
+    }
+}
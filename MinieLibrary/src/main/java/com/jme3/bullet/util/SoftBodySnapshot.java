@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.math.Vector3f;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+
+/**
+ * A compact, reusable snapshot of the node state of a soft body, for
+ * instance for rollback networking.
+ * <p>
+ * The state lives in a single direct buffer laid out as: node locations (3
+ * floats per node), node velocities (3 floats per node), node masses (1
+ * float per node, zero for pinned nodes), and the center of the body's
+ * bounding box (3 floats). The native copy routines write straight into
+ * views of that buffer, so capturing allocates nothing once the buffer is
+ * large enough, and the buffer can be sent or received as-is.
+ * <p>
+ * Bullet offers no way to set the locations of existing nodes, so
+ * {@link #restore(com.jme3.bullet.objects.PhysicsSoftBody)} restores masses
+ * and velocities exactly but restores locations only up to a translation: it
+ * moves the body so that its bounding-box center matches the snapshot. Use
+ * {@link #locationError(com.jme3.bullet.objects.PhysicsSoftBody)} to decide
+ * whether the residual deformation matters, and if so, rebuild the body from
+ * {@link #copyLocations(java.nio.FloatBuffer)}.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class SoftBodySnapshot {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * number of floats per node
+     */
+    final private static int floatsPerNode = 2 * numAxes + 1;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(SoftBodySnapshot.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * all snapshot data (direct)
+     */
+    private FloatBuffer data;
+    /**
+     * view of the node locations
+     */
+    private FloatBuffer locations;
+    /**
+     * view of the node masses
+     */
+    private FloatBuffer masses;
+    /**
+     * view of the node velocities
+     */
+    private FloatBuffer velocities;
+    /**
+     * temporary storage for node locations, or null if not yet needed
+     */
+    private FloatBuffer tmpLocations = null;
+    /**
+     * number of nodes in the snapshot
+     */
+    private int numNodes;
+    /**
+     * temporary storage for the bounding-box center
+     */
+    final private Vector3f tmpCenter = new Vector3f();
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty snapshot.
+     */
+    public SoftBodySnapshot() {
+        resize(0);
+    }
+
+    /**
+     * Instantiate a snapshot of the specified body.
+     *
+     * @param body the body to capture (not null, unaffected)
+     */
+    public SoftBodySnapshot(PhysicsSoftBody body) {
+        resize(body.countNodes());
+        capture(body);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Capture the current node state of the specified body, replacing any
+     * previous state. The buffer is reallocated only if the body has more
+     * nodes than the snapshot has room for.
+     *
+     * @param body the body to capture (not null, unaffected)
+     */
+    public void capture(PhysicsSoftBody body) {
+        Validate.nonNull(body, "body");
+
+        resize(body.countNodes());
+        if (numNodes > 0) {
+            body.copyLocations(locations);
+            body.copyVelocities(velocities);
+            body.copyMasses(masses);
+        }
+        body.getPhysicsLocation(tmpCenter);
+        int centerIndex = floatsPerNode * numNodes;
+        data.put(centerIndex, tmpCenter.x);
+        data.put(centerIndex + 1, tmpCenter.y);
+        data.put(centerIndex + 2, tmpCenter.z);
+    }
+
+    /**
+     * Copy the node locations in the snapshot.
+     *
+     * @param storeResult storage for the result (direct, modified) or null
+     * @return a direct buffer containing 3 floats per node (in physics-space
+     * coordinates, either storeResult or a new buffer)
+     */
+    public FloatBuffer copyLocations(FloatBuffer storeResult) {
+        int numFloats = numAxes * numNodes;
+        FloatBuffer result = storeResult;
+        if (result == null || result.capacity() < numFloats) {
+            result = BufferUtils.createFloatBuffer(numFloats);
+        }
+        for (int i = 0; i < numFloats; ++i) {
+            result.put(i, locations.get(i));
+        }
+        result.limit(numFloats);
+
+        return result;
+    }
+
+    /**
+     * Count the nodes in the snapshot.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Access the snapshot's data, for instance to serialize it or to fill it
+     * from a received message (after {@link #resize(int)}). The layout is
+     * described in the class documentation.
+     *
+     * @return the pre-existing direct buffer, with its limit set to the
+     * snapshot's size (not null)
+     */
+    public FloatBuffer getData() {
+        data.limit(floatsPerNode * numNodes + numAxes);
+        return data;
+    }
+
+    /**
+     * Measure how far the specified body's nodes are from the snapshot.
+     *
+     * @param body the body to compare (not null, same node count,
+     * unaffected)
+     * @return the largest distance between corresponding nodes (in
+     * physics-space units, &ge;0)
+     */
+    public float locationError(PhysicsSoftBody body) {
+        requireSameCount(body);
+
+        int numFloats = numAxes * numNodes;
+        if (tmpLocations == null || tmpLocations.capacity() < numFloats) {
+            tmpLocations = BufferUtils.createFloatBuffer(numFloats);
+        }
+        if (numNodes > 0) {
+            body.copyLocations(tmpLocations);
+        }
+
+        double maxSquared = 0.0;
+        for (int nodeIndex = 0; nodeIndex < numNodes; ++nodeIndex) {
+            int floatIndex = numAxes * nodeIndex;
+            double dx = tmpLocations.get(floatIndex)
+                    - locations.get(floatIndex);
+            double dy = tmpLocations.get(floatIndex + 1)
+                    - locations.get(floatIndex + 1);
+            double dz = tmpLocations.get(floatIndex + 2)
+                    - locations.get(floatIndex + 2);
+            maxSquared = Math.max(maxSquared, dx * dx + dy * dy + dz * dz);
+        }
+
+        float result = (float) Math.sqrt(maxSquared);
+        return result;
+    }
+
+    /**
+     * Set the number of nodes, reallocating the buffer if it's too small.
+     * The contents become undefined.
+     *
+     * @param numNodes the desired number of nodes (&ge;0)
+     */
+    final public void resize(int numNodes) {
+        Validate.nonNegative(numNodes, "number of nodes");
+
+        int numFloats = floatsPerNode * numNodes + numAxes;
+        boolean reallocate = (data == null || data.capacity() < numFloats);
+        if (reallocate) {
+            this.data = BufferUtils.createFloatBuffer(numFloats);
+        }
+        if (reallocate || numNodes != this.numNodes) {
+            this.locations = view(0, numAxes * numNodes);
+            this.velocities = view(numAxes * numNodes, numAxes * numNodes);
+            this.masses = view(2 * numAxes * numNodes, numNodes);
+        }
+        this.numNodes = numNodes;
+        data.clear();
+    }
+
+    /**
+     * Restore the snapshot into the specified body: masses (and therefore
+     * pins) and velocities exactly, and locations up to a translation of the
+     * bounding-box center. See the class documentation.
+     *
+     * @param body the body to modify (not null, same node count)
+     */
+    public void restore(PhysicsSoftBody body) {
+        requireSameCount(body);
+
+        if (numNodes > 0) {
+            body.setMasses(masses);
+        }
+
+        int centerIndex = floatsPerNode * numNodes;
+        float x = data.get(centerIndex);
+        float y = data.get(centerIndex + 1);
+        float z = data.get(centerIndex + 2);
+        body.getPhysicsLocation(tmpCenter);
+        if (tmpCenter.x != x || tmpCenter.y != y || tmpCenter.z != z) {
+            tmpCenter.set(x, y, z);
+            body.setPhysicsLocation(tmpCenter);
+        }
+
+        if (numNodes > 0) {
+            body.setVelocities(velocities);
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Verify that the specified body has the same number of nodes as the
+     * snapshot.
+     *
+     * @param body the body to test (not null, unaffected)
+     */
+    private void requireSameCount(PhysicsSoftBody body) {
+        Validate.nonNull(body, "body");
+        int bodyNodes = body.countNodes();
+        if (bodyNodes != numNodes) {
+            String message = String.format(
+                    "The body has %d nodes, the snapshot has %d.",
+                    bodyNodes, numNodes);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * Create a direct view of part of the data buffer.
+     *
+     * @param start the index of the first float (&ge;0)
+     * @param length the number of floats (&ge;0)
+     * @return a new view (direct, capacity=length)
+     */
+    private FloatBuffer view(int start, int length) {
+        data.clear();
+        data.position(start);
+        data.limit(start + length);
+        FloatBuffer result = data.slice();
+        data.clear();
+
+        return result;
+    }
+}
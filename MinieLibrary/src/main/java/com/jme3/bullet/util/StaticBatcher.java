@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.bullet.collision.PhysicsCollisionObject;
+import com.jme3.bullet.collision.PhysicsRayTestResult;
+import com.jme3.bullet.collision.shapes.MeshCollisionShape;
+import com.jme3.bullet.collision.shapes.infos.IndexedMesh;
+import com.jme3.bullet.objects.PhysicsBody;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.FastMath;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.UserData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jme3utilities.MyMesh;
+import jme3utilities.Validate;
+
+/**
+ * Merge many small static geometries into a few static rigid bodies, one per
+ * cell of a uniform grid, to reduce the load on the broadphase.
+ * <p>
+ * Each cell yields a MeshCollisionShape with one IndexedMesh per Geometry, so
+ * the part index of a ray-test result identifies the Geometry that was hit.
+ * See {@link #findGeometry(com.jme3.bullet.collision.PhysicsRayTestResult)}.
+ * Because the compressed BVH packs each part index into 10 bits, a batch
+ * holds at most 1024 geometries: a cell with more is split into several
+ * batches.
+ * <p>
+ * Geometries are batched using their world transforms and bounds, so update
+ * the scene graph's geometric state before adding them. Any physics controls
+ * previously used for the batched geometries should be removed.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class StaticBatcher {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * maximum number of parts in a batch, since a quantized BVH node stores
+     * the part index in 10 bits
+     */
+    final public static int maxPartsPerBatch = 1 << 10;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(StaticBatcher.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * edge length of each grid cell (in world units, &gt;0)
+     */
+    final private float cellSize;
+    /**
+     * geometries added so far, grouped by cell, in the order cells were first
+     * occupied
+     */
+    final private Map<CellKey, List<Geometry>> cells = new LinkedHashMap<>(64);
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate an empty batcher with the specified cell size.
+     *
+     * @param cellSize the edge length of each grid cell (in world units,
+     * &gt;0)
+     */
+    public StaticBatcher(float cellSize) {
+        Validate.positive(cellSize, "cell size");
+        this.cellSize = cellSize;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Add the specified Geometry to the cell containing the center of its
+     * world bound. A Geometry without triangles is ignored.
+     *
+     * @param geometry the Geometry to add (not null, alias created)
+     * @return true if added, otherwise false
+     */
+    public boolean add(Geometry geometry) {
+        Validate.nonNull(geometry, "geometry");
+
+        Mesh mesh = geometry.getMesh();
+        if (mesh == null || !MyMesh.hasTriangles(mesh)
+                || mesh.getTriangleCount() == 0) {
+            return false;
+        }
+
+        BoundingVolume bound = geometry.getWorldBound();
+        Vector3f center = (bound == null)
+                ? geometry.getWorldTranslation() : bound.getCenter();
+        CellKey key = new CellKey(center, cellSize);
+        List<Geometry> list = cells.get(key);
+        if (list == null) {
+            list = new ArrayList<>(8);
+            cells.put(key, list);
+        }
+        list.add(geometry);
+
+        return true;
+    }
+
+    /**
+     * Add every Geometry in the specified subtree, excluding any tagged with
+     * "JmePhysicsIgnore" and their descendants.
+     *
+     * @param subtree the subtree to add (not null, aliases created)
+     * @return the number of geometries added (&ge;0)
+     */
+    public int addAll(Spatial subtree) {
+        Validate.nonNull(subtree, "subtree");
+
+        Boolean ignore = subtree.getUserData(UserData.JME_PHYSICSIGNORE);
+        if (ignore != null && ignore) {
+            return 0;
+        }
+
+        int result = 0;
+        if (subtree instanceof Geometry) {
+            if (add((Geometry) subtree)) {
+                result = 1;
+            }
+        } else if (subtree instanceof Node) {
+            for (Spatial child : ((Node) subtree).getChildren()) {
+                result += addAll(child);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Generate a static rigid body for each occupied cell, or several for a
+     * cell with more than {@link #maxPartsPerBatch} geometries. The user
+     * object of each body is its Batch. The batcher is emptied.
+     *
+     * @return a new list of new batches, in the order cells were first occupied
+     */
+    public List<Batch> build() {
+        List<Batch> result = new ArrayList<>(cells.size());
+        for (List<Geometry> cellParts : cells.values()) {
+            int numParts = cellParts.size();
+            for (int start = 0; start < numParts; start += maxPartsPerBatch) {
+                int end = Math.min(start + maxPartsPerBatch, numParts);
+                List<Geometry> parts
+                        = new ArrayList<>(cellParts.subList(start, end));
+                Batch batch = buildBatch(parts);
+                result.add(batch);
+            }
+        }
+
+        logger.log(Level.INFO, "Merged {0} cells into {1} batches.",
+                new Object[]{cells.size(), result.size()});
+        cells.clear();
+
+        return result;
+    }
+
+    /**
+     * Count the occupied cells.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countCells() {
+        int result = cells.size();
+        return result;
+    }
+
+    /**
+     * Find the Geometry hit by a ray or sweep test, if the hit object is a
+     * batch.
+     *
+     * @param rayTestResult the result to analyze (not null, unaffected)
+     * @return the pre-existing Geometry, or null if the hit object isn't a
+     * batch
+     */
+    public static Geometry findGeometry(PhysicsRayTestResult rayTestResult) {
+        PhysicsCollisionObject pco = rayTestResult.getCollisionObject();
+        Object user = pco.getUserObject();
+
+        Geometry result = null;
+        if (user instanceof Batch) {
+            int partIndex = rayTestResult.partIndex();
+            result = ((Batch) user).getPart(partIndex);
+        }
+
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Generate a static rigid body for the specified geometries.
+     *
+     * @param parts the geometries to merge (not null, not empty, at most
+     * {@link #maxPartsPerBatch} elements, alias created)
+     * @return a new batch
+     */
+    private static Batch buildBatch(List<Geometry> parts) {
+        assert parts.size() <= maxPartsPerBatch : parts.size();
+
+        List<IndexedMesh> submeshes = new ArrayList<>(parts.size());
+        for (Geometry geometry : parts) {
+            Transform transform = geometry.getWorldTransform();
+            IndexedMesh submesh
+                    = new IndexedMesh(geometry.getMesh(), transform);
+            submeshes.add(submesh);
+        }
+
+        boolean useCompression = true;
+        MeshCollisionShape shape
+                = new MeshCollisionShape(useCompression, submeshes);
+        PhysicsRigidBody body
+                = new PhysicsRigidBody(shape, PhysicsBody.massForStatic);
+        Batch result = new Batch(body, parts);
+        body.setUserObject(result);
+
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * A merged static body and the geometries it represents.
+     */
+    public static class Batch {
+        /**
+         * the static body (not null)
+         */
+        final private PhysicsRigidBody body;
+        /**
+         * source geometries, indexed by part index
+         */
+        final private List<Geometry> parts;
+
+        /**
+         * Instantiate a batch.
+         *
+         * @param body the merged body (not null, alias created)
+         * @param parts the source geometries (not null, alias created)
+         */
+        Batch(PhysicsRigidBody body, List<Geometry> parts) {
+            this.body = body;
+            this.parts = parts;
+        }
+
+        /**
+         * Count the source geometries.
+         *
+         * @return the count (&gt;0)
+         */
+        public int countParts() {
+            int result = parts.size();
+            return result;
+        }
+
+        /**
+         * Access the merged body.
+         *
+         * @return the pre-existing instance (not null)
+         */
+        public PhysicsRigidBody getBody() {
+            return body;
+        }
+
+        /**
+         * Access the Geometry for the specified part index.
+         *
+         * @param partIndex the part index, typically from
+         * {@link com.jme3.bullet.collision.PhysicsRayTestResult#partIndex()}
+         * @return the pre-existing Geometry, or null if the index is out of
+         * range
+         */
+        public Geometry getPart(int partIndex) {
+            Geometry result = null;
+            if (partIndex >= 0 && partIndex < parts.size()) {
+                result = parts.get(partIndex);
+            }
+
+            return result;
+        }
+
+        /**
+         * Enumerate the source geometries, in part-index order.
+         *
+         * @return an unmodifiable list of pre-existing geometries
+         */
+        public List<Geometry> listParts() {
+            List<Geometry> result = Collections.unmodifiableList(parts);
+            return result;
+        }
+    }
+
+    /**
+     * Identify a cell of the grid. Immutable.
+     */
+    private static class CellKey {
+        /**
+         * grid indices
+         */
+        final private int ix, iy, iz;
+
+        CellKey(Vector3f location, float cellSize) {
+            ix = (int) FastMath.floor(location.x / cellSize);
+            iy = (int) FastMath.floor(location.y / cellSize);
+            iz = (int) FastMath.floor(location.z / cellSize);
+        }
+
+        @Override
+        public boolean equals(Object otherObject) {
+            boolean result = false;
+            if (otherObject instanceof CellKey) {
+                CellKey other = (CellKey) otherObject;
+                result = ix == other.ix && iy == other.iy && iz == other.iz;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * (31 * ix + iy) + iz;
+            return result;
+        }
+    }
+}
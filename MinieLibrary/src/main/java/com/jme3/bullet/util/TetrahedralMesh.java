@@ -0,0 +1,1946 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bullet.collision.shapes.infos.IndexedMesh;
+import com.jme3.bullet.collision.shapes.infos.SignedDistanceField;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+import jme3utilities.math.IntPair;
+import jme3utilities.math.MyVector3f;
+
+/**
+ * A tetrahedral volume mesh generated from a closed triangle mesh, for
+ * building volumetric soft bodies. Immutable.
+ * <p>
+ * The nodes are the unique surface vertices (numbered first, so surface
+ * triangles map directly onto nodes) plus interior points on a
+ * body-centered-cubic lattice whose spacing is the target element size.
+ * Interior points must lie at least half the target size inside the
+ * surface and at least a quarter of the longest edge of the closest surface
+ * triangle away from it, so coarse surface triangles don't meet the lattice
+ * in slivers. The nodes are tetrahedralized with the Bowyer-Watson Delaunay
+ * algorithm. Tetrahedra whose centroids lie outside the surface are
+ * removed; the test uses the signed distance field far from the surface and
+ * the angle-weighted pseudo-normal of the closest nearby surface feature
+ * near it, so its cost doesn't grow with the number of triangles.
+ * <p>
+ * The point set is then repaired in a few passes. Interior nodes of slivers
+ * (radius ratio below 0.1) and of flat tetrahedra are perturbed randomly,
+ * and each input triangle not covered by the boundary of the kept
+ * tetrahedra (as can happen where 4 surface vertices are co-circular) has
+ * its longest edge split at the midpoint, adding a surface node. Splitting
+ * continues only while the number of uncovered triangles shrinks, so the
+ * repair always terminates, and the best tetrahedralization found (fewest
+ * uncovered triangles, then best quality) is kept.
+ * <p>
+ * The mesh's triangles are the outward-oriented boundary faces of the kept
+ * tetrahedra, so they always conform to the tetrahedra; they are finer than
+ * the input's wherever a triangle was split. Flat tetrahedra are discarded,
+ * but slivers touching the surface can survive where the input surface
+ * leaves no better choice, so check {@link #minQuality()}; typical closed
+ * surfaces yield a radius ratio above 0.05.
+ * <p>
+ * Generation is pure Java. See
+ * {@link NativeSoftBodyUtil#appendFromTetrahedralMesh(TetrahedralMesh,
+ * com.jme3.bullet.objects.PhysicsSoftBody)} to populate a soft body.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class TetrahedralMesh {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * number of axes in a vector
+     */
+    final private static int numAxes = 3;
+    /**
+     * number of vertices per edge
+     */
+    final private static int vpe = 2;
+    /**
+     * number of vertices per tetrahedron
+     */
+    final private static int vpTetra = 4;
+    /**
+     * number of vertices per triangle
+     */
+    final private static int vpt = 3;
+    /**
+     * radius ratio below which a tetrahedron is considered a sliver
+     */
+    final private static double minRadiusRatio = 0.1;
+    /**
+     * volume (relative to the cube of the target size) below which a
+     * tetrahedron is considered flat and discarded
+     */
+    final private static double maxFlatVolume = 1e-6;
+    /**
+     * maximum number of passes used to repair the point set
+     */
+    final private static int maxRepairPasses = 8;
+    /**
+     * maximum offset (relative to the target size) of a perturbed interior
+     * point on each axis
+     */
+    final private static float perturbation = 0.2f;
+    /**
+     * minimum distance (relative to the longest edge of the closest surface
+     * triangle) between an interior point and the surface
+     */
+    final private static double surfaceClearance = 0.25;
+    /**
+     * relative tolerance for deciding that a surface triangle is covered by
+     * a coplanar boundary face
+     */
+    final private static float coplanarTolerance = 1e-3f;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(TetrahedralMesh.class.getName());
+    // *************************************************************************
+    // fields
+
+    /**
+     * smallest radius ratio among the tetrahedra (1 for a regular
+     * tetrahedron)
+     */
+    final private float minQuality;
+    /**
+     * total volume of the tetrahedra
+     */
+    final private float volume;
+    /**
+     * node locations, 3 per node
+     */
+    final private float[] locations;
+    /**
+     * node indices of the surface triangles, 3 per triangle
+     */
+    final private int[] faces;
+    /**
+     * node indices of the tetrahedra, 4 per tetrahedron
+     */
+    final private int[] tetras;
+    /**
+     * map from input-vertex indices to node indices (-1 for unreferenced
+     * vertices)
+     */
+    final private int[] vertexToNode;
+    /**
+     * number of nodes that lie on the surface
+     */
+    final private int numSurfaceNodes;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Generate a tetrahedral mesh for the specified closed triangle mesh.
+     *
+     * @param positions the vertex positions (not null, length a multiple of 3,
+     * unaffected)
+     * @param indices the vertex indices of the triangles (not null, not empty,
+     * length a multiple of 3, unaffected)
+     * @param targetSize the desired spacing of interior nodes (in mesh units,
+     * &gt;0)
+     */
+    public TetrahedralMesh(float[] positions, int[] indices,
+            float targetSize) {
+        Validate.nonNull(positions, "positions");
+        Validate.require(positions.length % numAxes == 0,
+                "length a multiple of 3");
+        Validate.nonEmpty(indices, "indices");
+        Validate.require(indices.length % vpt == 0, "length a multiple of 3");
+        Validate.positive(targetSize, "target size");
+        /*
+         * Merge surface vertices that share a position.
+         */
+        int numVertices = positions.length / numAxes;
+        this.vertexToNode = new int[numVertices];
+        Arrays.fill(vertexToNode, -1);
+        Map<Vector3f, Integer> positionToNode = new HashMap<>(numVertices);
+        List<Vector3f> points = new ArrayList<>(numVertices);
+        for (int index : indices) {
+            if (vertexToNode[index] >= 0) {
+                continue;
+            }
+            Vector3f position = new Vector3f(positions[numAxes * index],
+                    positions[numAxes * index + 1],
+                    positions[numAxes * index + 2]);
+            MyVector3f.standardize(position, position);
+            Integer node = positionToNode.get(position);
+            if (node == null) {
+                node = points.size();
+                positionToNode.put(position, node);
+                points.add(position);
+            }
+            vertexToNode[index] = node;
+        }
+        int numSurface = points.size();
+        List<int[]> surface = new ArrayList<>(indices.length / vpt);
+        for (int start = 0; start < indices.length; start += vpt) {
+            surface.add(new int[]{
+                vertexToNode[indices[start]],
+                vertexToNode[indices[start + 1]],
+                vertexToNode[indices[start + 2]]
+            });
+        }
+        /*
+         * Add interior points on a body-centered-cubic lattice.
+         */
+        SignedDistanceField field = new SignedDistanceField(
+                positions, indices, 0.5f * targetSize);
+        SurfaceIndex index
+                = new SurfaceIndex(points, surface, field, targetSize);
+        addInteriorPoints(points, index, targetSize);
+        /*
+         * Tetrahedralize and keep the tetrahedra inside the surface, then
+         * repair the point set and try again, for as long as the repairs
+         * help. Interior points that belong to slivers (or to flat
+         * tetrahedra) are perturbed. Where a surface triangle isn't covered
+         * by the boundary of the kept tetrahedra, its longest edge is split
+         * at the midpoint, but only while the number of such triangles keeps
+         * shrinking. The best attempt wins.
+         */
+        double flatVolume
+                = maxFlatVolume * targetSize * targetSize * targetSize;
+        Random random = new Random(2L);
+        Attempt best = null;
+        List<Vector3f> bestPoints = null;
+        int bestNumSurface = numSurface;
+        int leastUncovered = Integer.MAX_VALUE;
+        for (int numPasses = 0;; ++numPasses) {
+            if (numPasses > 0) {
+                index = new SurfaceIndex(points, surface, field, targetSize);
+            }
+            Attempt attempt = new Attempt(points, numSurface, surface, index,
+                    flatVolume);
+            if (attempt.isBetterThan(best)) {
+                best = attempt;
+                bestPoints = new ArrayList<>(points);
+                bestNumSurface = numSurface;
+            }
+
+            int numUncovered = attempt.uncovered.size();
+            boolean recover
+                    = numUncovered > 0 && numUncovered < leastUncovered;
+            if (numPasses == maxRepairPasses
+                    || !recover && attempt.doomed.isEmpty()) {
+                break;
+            }
+            perturbInteriorPoints(points, numSurface, attempt.doomed, index,
+                    targetSize, random);
+            if (recover) {
+                leastUncovered = numUncovered;
+                for (int[] triangle : attempt.uncovered) {
+                    numSurface = splitLongestEdge(triangle, surface, points,
+                            numSurface);
+                }
+            }
+        }
+        if (!best.uncovered.isEmpty()) {
+            logger.log(Level.WARNING,
+                    "{0} surface triangles aren''t covered by tetrahedra.",
+                    best.uncovered.size());
+        }
+        points = bestPoints;
+        Delaunay delaunay = best.delaunay;
+        List<Tet> kept = best.kept;
+        this.numSurfaceNodes = bestNumSurface;
+        this.faces = toArray(best.boundary);
+        /*
+         * Number the nodes: surface nodes first, then used interior nodes.
+         */
+        int numPoints = points.size();
+        int[] newIndex = new int[numPoints];
+        Arrays.fill(newIndex, -1);
+        for (int i = 0; i < numSurfaceNodes; ++i) {
+            newIndex[i] = i;
+        }
+        int numNodes = numSurfaceNodes;
+        for (Tet tet : kept) {
+            for (int vi : tet.v) {
+                if (newIndex[vi] < 0) {
+                    newIndex[vi] = numNodes;
+                    ++numNodes;
+                }
+            }
+        }
+
+        this.locations = new float[numAxes * numNodes];
+        for (int i = 0; i < numPoints; ++i) {
+            int ni = newIndex[i];
+            if (ni >= 0) {
+                Vector3f point = points.get(i);
+                locations[numAxes * ni] = point.x;
+                locations[numAxes * ni + 1] = point.y;
+                locations[numAxes * ni + 2] = point.z;
+            }
+        }
+
+        for (int i = 0; i < faces.length; ++i) {
+            faces[i] = newIndex[faces[i]];
+        }
+
+        this.tetras = new int[vpTetra * kept.size()];
+        double totalVolume = 0.0;
+        double worst = 1.0;
+        for (int ti = 0; ti < kept.size(); ++ti) {
+            int[] v = kept.get(ti).v;
+            for (int j = 0; j < vpTetra; ++j) {
+                tetras[vpTetra * ti + j] = newIndex[v[j]];
+            }
+            totalVolume += delaunay.volume(v);
+            worst = Math.min(worst, delaunay.radiusRatio(v));
+        }
+        this.volume = (float) totalVolume;
+        this.minQuality = kept.isEmpty() ? 0f : (float) worst;
+    }
+
+    /**
+     * Generate a tetrahedral mesh for the specified closed triangle mesh.
+     *
+     * @param mesh the surface mesh (not null, at least one triangle,
+     * unaffected)
+     * @param targetSize the desired spacing of interior nodes (in mesh units,
+     * &gt;0)
+     */
+    public TetrahedralMesh(IndexedMesh mesh, float targetSize) {
+        this(toArray(mesh.copyVertexPositions()),
+                toArray(mesh.copyIndices()), targetSize);
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Copy the surface triangles. Each is a face of some tetrahedron. Input
+     * triangles that had to be split during surface recovery are replaced by
+     * their parts.
+     *
+     * @return a new, direct buffer containing 3 node indices per triangle
+     */
+    public IndexBuffer copyFaces() {
+        IndexBuffer result = toIndexBuffer(faces);
+        return result;
+    }
+
+    /**
+     * Enumerate the unique edges of the tetrahedra.
+     *
+     * @return a new, direct buffer containing 2 node indices per edge
+     */
+    public IndexBuffer copyLinks() {
+        Collection<IntPair> uniqueEdges = new HashSet<>(6 * countTetras());
+        for (int start = 0; start < tetras.length; start += vpTetra) {
+            for (int i = 0; i < vpTetra; ++i) {
+                for (int j = i + 1; j < vpTetra; ++j) {
+                    int ni = tetras[start + i];
+                    int nj = tetras[start + j];
+                    uniqueEdges.add(new IntPair(ni, nj));
+                }
+            }
+        }
+
+        int indexCount = vpe * uniqueEdges.size();
+        IndexBuffer result
+                = IndexBuffer.createIndexBuffer(countNodes(), indexCount);
+        int edgeIndex = 0;
+        for (IntPair edge : uniqueEdges) {
+            result.put(edgeIndex, edge.smaller());
+            result.put(edgeIndex + 1, edge.larger());
+            edgeIndex += vpe;
+        }
+
+        return result;
+    }
+
+    /**
+     * Copy the node locations.
+     *
+     * @return a new, direct buffer containing 3 floats per node (in mesh
+     * coordinates)
+     */
+    public FloatBuffer copyLocations() {
+        FloatBuffer result = BufferUtils.createFloatBuffer(locations);
+        return result;
+    }
+
+    /**
+     * Copy the tetrahedra.
+     *
+     * @return a new, direct buffer containing 4 node indices per tetrahedron
+     */
+    public IndexBuffer copyTetras() {
+        IndexBuffer result = toIndexBuffer(tetras);
+        return result;
+    }
+
+    /**
+     * Copy the map from input-vertex indices to node indices, for use with
+     * {@link NativeSoftBodyUtil#updateMesh(
+     * com.jme3.bullet.objects.PhysicsSoftBody, java.nio.IntBuffer,
+     * com.jme3.scene.Mesh, boolean, boolean, com.jme3.math.Transform)}.
+     * Vertices not referenced by any triangle map to -1.
+     *
+     * @return a new, direct buffer containing one index per input vertex
+     */
+    public IntBuffer copyVertexToNodeMap() {
+        IntBuffer result = BufferUtils.createIntBuffer(vertexToNode);
+        return result;
+    }
+
+    /**
+     * Count the nodes.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countNodes() {
+        int result = locations.length / numAxes;
+        return result;
+    }
+
+    /**
+     * Count the nodes that lie on the surface, including any added during
+     * surface recovery. These are numbered before the interior nodes.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countSurfaceNodes() {
+        return numSurfaceNodes;
+    }
+
+    /**
+     * Count the tetrahedra.
+     *
+     * @return the count (&ge;0)
+     */
+    public int countTetras() {
+        int result = tetras.length / vpTetra;
+        return result;
+    }
+
+    /**
+     * Return the quality of the worst-shaped tetrahedron, measured as 3 times
+     * its inradius divided by its circumradius.
+     *
+     * @return the radius ratio (1 for a regular tetrahedron, &ge;0)
+     */
+    public float minQuality() {
+        return minQuality;
+    }
+
+    /**
+     * Return the total volume of the tetrahedra.
+     *
+     * @return the volume (in cubic mesh units, &ge;0)
+     */
+    public float volume() {
+        return volume;
+    }
+    // *************************************************************************
+    // Object methods
+
+    /**
+     * Represent this mesh as a String.
+     *
+     * @return a descriptive string of text (not null, not empty)
+     */
+    @Override
+    public String toString() {
+        String result = String.format(
+                "TetrahedralMesh[nodes=%d (%d surface), tetras=%d, "
+                + "volume=%g, minQuality=%.3f]", countNodes(),
+                numSurfaceNodes, countTetras(), volume, minQuality);
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Append interior points on a body-centered-cubic lattice, discarding
+     * those that aren't clear of the surface. A tiny deterministic jitter
+     * avoids exactly co-spherical points.
+     *
+     * @param points the points to append to (not null, modified)
+     * @param index the index of the surface (not null)
+     * @param spacing the lattice spacing (&gt;0)
+     */
+    private static void addInteriorPoints(List<Vector3f> points,
+            SurfaceIndex index, float spacing) {
+        Vector3f min = new Vector3f(Float.POSITIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        for (Vector3f point : points) {
+            min.minLocal(point);
+            max.maxLocal(point);
+        }
+
+        Random random = new Random(1L);
+        float jitter = 1e-3f * spacing;
+        int numX = (int) Math.ceil((max.x - min.x) / spacing);
+        int numY = (int) Math.ceil((max.y - min.y) / spacing);
+        int numZ = (int) Math.ceil((max.z - min.z) / spacing);
+        Vector3f candidate = new Vector3f();
+        for (int ix = 0; ix <= numX; ++ix) {
+            for (int iy = 0; iy <= numY; ++iy) {
+                for (int iz = 0; iz <= numZ; ++iz) {
+                    for (int center = 0; center < 2; ++center) {
+                        float offset = 0.5f * center;
+                        candidate.set(min.x + (ix + offset) * spacing,
+                                min.y + (iy + offset) * spacing,
+                                min.z + (iz + offset) * spacing);
+                        if (index.isClear(candidate, spacing)) {
+                            candidate.addLocal(
+                                    jitter * (random.nextFloat() - 0.5f),
+                                    jitter * (random.nextFloat() - 0.5f),
+                                    jitter * (random.nextFloat() - 0.5f));
+                            points.add(candidate.clone());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test whether the specified surface triangle is covered by a boundary
+     * face that lies in the same plane, as happens when the
+     * tetrahedralization picks the other diagonal of a planar quad.
+     *
+     * @param triangle the node indices of the triangle (not null, length=3,
+     * unaffected)
+     * @param nodeToFaces map from node indices to incident boundary faces
+     * (not null, unaffected)
+     * @param points the node locations (not null, unaffected)
+     * @return true if covered, otherwise false
+     */
+    private static boolean isCovered(int[] triangle,
+            Map<Integer, List<int[]>> nodeToFaces, List<Vector3f> points) {
+        Vector3f a = points.get(triangle[0]);
+        Vector3f b = points.get(triangle[1]);
+        Vector3f c = points.get(triangle[2]);
+        Vector3f normal = b.subtract(a).crossLocal(c.subtract(a));
+        float twiceArea = normal.length();
+        if (twiceArea == 0f) {
+            return true; // a degenerate triangle covers nothing
+        }
+        normal.divideLocal(twiceArea);
+        float size = FastMath.sqrt(twiceArea);
+        Vector3f centroid = a.add(b).addLocal(c).divideLocal(3f);
+        float tolerance = coplanarTolerance * size;
+
+        for (int vi : triangle) {
+            List<int[]> incident = nodeToFaces.get(vi);
+            if (incident == null) {
+                continue;
+            }
+            for (int[] face : incident) {
+                Vector3f p0 = points.get(face[0]);
+                Vector3f p1 = points.get(face[1]);
+                Vector3f p2 = points.get(face[2]);
+                Vector3f faceNormal
+                        = p1.subtract(p0).crossLocal(p2.subtract(p0));
+                faceNormal.normalizeLocal();
+                if (faceNormal.dot(normal) < 1f - coplanarTolerance
+                        || Math.abs(faceNormal.dot(centroid.subtract(p0)))
+                        > tolerance) {
+                    continue;
+                }
+                if (isLeftOf(p0, p1, centroid, faceNormal, tolerance)
+                        && isLeftOf(p1, p2, centroid, faceNormal, tolerance)
+                        && isLeftOf(p2, p0, centroid, faceNormal,
+                                tolerance)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Test whether a location lies on the inner side of (or within the
+     * tolerance of) a directed edge, as seen along the specified normal.
+     *
+     * @param from the start of the edge (not null, unaffected)
+     * @param to the end of the edge (not null, unaffected)
+     * @param location the location to test (not null, unaffected)
+     * @param normal the unit normal of the plane (not null, unaffected)
+     * @param tolerance the distance tolerance (&ge;0)
+     * @return true if inside or nearly so, otherwise false
+     */
+    private static boolean isLeftOf(Vector3f from, Vector3f to,
+            Vector3f location, Vector3f normal, float tolerance) {
+        Vector3f edge = to.subtract(from);
+        Vector3f offset = location.subtract(from);
+        float cross = edge.crossLocal(offset).dot(normal);
+        boolean result = cross >= -tolerance * from.distance(to);
+
+        return result;
+    }
+
+    /**
+     * Enumerate the boundary faces of the specified tetrahedra: faces not
+     * shared by 2 of them, oriented with their normals pointing outward.
+     *
+     * @param delaunay the tetrahedralization (not null, unaffected)
+     * @param tets the tetrahedra (not null, unaffected)
+     * @return a new list of faces, 3 node indices each (not null)
+     */
+    private static List<int[]> listBoundaryFaces(Delaunay delaunay,
+            List<Tet> tets) {
+        Collection<Tet> tetSet = new HashSet<>(tets);
+        List<int[]> result = new ArrayList<>(tets.size());
+        for (Tet tet : tets) {
+            for (int i = 0; i < vpTetra; ++i) {
+                Tet neighbor = tet.n[i];
+                if (neighbor != null && tetSet.contains(neighbor)) {
+                    continue;
+                }
+                int[] face = new int[vpt];
+                int j = 0;
+                for (int k = 0; k < vpTetra; ++k) {
+                    if (k != i) {
+                        face[j] = tet.v[k];
+                        ++j;
+                    }
+                }
+                if (delaunay.orient(face[0], face[1], face[2], tet.v[i])
+                        > 0.0) {
+                    int swap = face[1];
+                    face[1] = face[2];
+                    face[2] = swap;
+                }
+                result.add(face);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the surface triangles that aren't covered by the specified
+     * boundary faces, either exactly or by coplanar faces.
+     *
+     * @param surface the node indices of the surface triangles (not null,
+     * unaffected)
+     * @param boundary the node indices of the boundary faces (not null,
+     * unaffected)
+     * @param points the node locations (not null, unaffected)
+     * @return a new list of triangles from the surface (not null)
+     */
+    private static List<int[]> listUncoveredTriangles(List<int[]> surface,
+            List<int[]> boundary, List<Vector3f> points) {
+        Collection<List<Integer>> exact = new HashSet<>(2 * boundary.size());
+        Map<Integer, List<int[]>> nodeToFaces
+                = new HashMap<>(boundary.size());
+        for (int[] face : boundary) {
+            exact.add(sortedKey(face));
+            for (int vi : face) {
+                List<int[]> incident = nodeToFaces.get(vi);
+                if (incident == null) {
+                    incident = new ArrayList<>(8);
+                    nodeToFaces.put(vi, incident);
+                }
+                incident.add(face);
+            }
+        }
+
+        List<int[]> result = new ArrayList<>(16);
+        for (int[] triangle : surface) {
+            if (!exact.contains(sortedKey(triangle))
+                    && !isCovered(triangle, nodeToFaces, points)) {
+                result.add(triangle);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Move the specified interior points by random offsets, to break up the
+     * nearly co-spherical configurations that produce slivers. A point that
+     * would no longer be clear of the surface is removed instead.
+     *
+     * @param points the surface nodes followed by the interior points (not
+     * null, modified)
+     * @param numSurface the number of surface nodes
+     * @param indices the indices of the interior points to move (not null,
+     * unaffected)
+     * @param index the index of the surface (not null)
+     * @param spacing the lattice spacing (&gt;0)
+     * @param random the pseudo-random generator to use (not null, modified)
+     */
+    private static void perturbInteriorPoints(List<Vector3f> points,
+            int numSurface, Collection<Integer> indices, SurfaceIndex index,
+            float spacing, Random random) {
+        if (indices.isEmpty()) {
+            return;
+        }
+
+        float amplitude = perturbation * spacing;
+        int numPoints = points.size();
+        List<Vector3f> survivors = new ArrayList<>(numPoints);
+        for (int i = 0; i < numPoints; ++i) {
+            Vector3f point = points.get(i);
+            if (i >= numSurface && indices.contains(i)) {
+                point = point.add(amplitude * (2f * random.nextFloat() - 1f),
+                        amplitude * (2f * random.nextFloat() - 1f),
+                        amplitude * (2f * random.nextFloat() - 1f));
+                if (!index.isClear(point, spacing)) {
+                    continue;
+                }
+            }
+            survivors.add(point);
+        }
+        points.clear();
+        points.addAll(survivors);
+    }
+
+    /**
+     * Generate an order-independent key for the specified triangle.
+     *
+     * @param triangle the node indices (not null, length=3, unaffected)
+     * @return a new list of the indices in ascending order
+     */
+    private static List<Integer> sortedKey(int[] triangle) {
+        Integer[] sorted = {triangle[0], triangle[1], triangle[2]};
+        Arrays.sort(sorted);
+        List<Integer> result = Arrays.asList(sorted);
+
+        return result;
+    }
+
+    /**
+     * Split the longest edge of the specified surface triangle at its
+     * midpoint, along with the other triangle that shares the edge. The new
+     * node is numbered after the existing surface nodes.
+     *
+     * @param triangle the triangle to split (not null, unaffected)
+     * @param surface the node indices of the surface triangles (not null,
+     * modified)
+     * @param points the surface nodes followed by the interior nodes (not
+     * null, modified)
+     * @param numSurface the number of surface nodes
+     * @return the updated number of surface nodes
+     */
+    private static int splitLongestEdge(int[] triangle, List<int[]> surface,
+            List<Vector3f> points, int numSurface) {
+        if (!surface.contains(triangle)) {
+            return numSurface; // already split by a neighbor during this pass
+        }
+
+        int longest = 0;
+        float maxLength2 = -1f;
+        for (int i = 0; i < vpt; ++i) {
+            Vector3f a = points.get(triangle[i]);
+            Vector3f b = points.get(triangle[(i + 1) % vpt]);
+            float length2 = a.distanceSquared(b);
+            if (length2 > maxLength2) {
+                maxLength2 = length2;
+                longest = i;
+            }
+        }
+        int a = triangle[longest];
+        int b = triangle[(longest + 1) % vpt];
+        Vector3f midpoint = points.get(a).add(points.get(b)).multLocal(0.5f);
+        int m = numSurface;
+        points.add(m, midpoint);
+
+        int numTriangles = surface.size();
+        for (int ti = 0; ti < numTriangles; ++ti) {
+            int[] t = surface.get(ti);
+            for (int i = 0; i < vpt; ++i) {
+                int t0 = t[i];
+                int t1 = t[(i + 1) % vpt];
+                int t2 = t[(i + 2) % vpt];
+                if (t0 == a && t1 == b || t0 == b && t1 == a) {
+                    surface.set(ti, new int[]{t0, m, t2});
+                    surface.add(new int[]{m, t1, t2});
+                    break;
+                }
+            }
+        }
+
+        return numSurface + 1;
+    }
+
+    /**
+     * Copy the contents of a FloatBuffer to a new array.
+     *
+     * @param buffer the buffer to copy (not null, unaffected)
+     * @return a new array
+     */
+    private static float[] toArray(FloatBuffer buffer) {
+        int length = buffer.limit();
+        float[] result = new float[length];
+        for (int i = 0; i < length; ++i) {
+            result[i] = buffer.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Copy the contents of an IntBuffer to a new array.
+     *
+     * @param buffer the buffer to copy (not null, unaffected)
+     * @return a new array
+     */
+    private static int[] toArray(IntBuffer buffer) {
+        int length = buffer.limit();
+        int[] result = new int[length];
+        for (int i = 0; i < length; ++i) {
+            result[i] = buffer.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Flatten a list of triangles to a new array of indices.
+     *
+     * @param triangles the triangles to flatten (not null, unaffected)
+     * @return a new array with 3 indices per triangle
+     */
+    private static int[] toArray(List<int[]> triangles) {
+        int[] result = new int[vpt * triangles.size()];
+        int index = 0;
+        for (int[] triangle : triangles) {
+            for (int vi : triangle) {
+                result[index] = vi;
+                ++index;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Copy node indices to a new IndexBuffer.
+     *
+     * @param indices the indices to copy (not null, unaffected)
+     * @return a new, direct buffer
+     */
+    private IndexBuffer toIndexBuffer(int[] indices) {
+        int numNodes = Math.max(1, countNodes());
+        IndexBuffer result
+                = IndexBuffer.createIndexBuffer(numNodes, indices.length);
+        for (int i = 0; i < indices.length; ++i) {
+            result.put(i, indices[i]);
+        }
+
+        return result;
+    }
+    // *************************************************************************
+    // nested classes
+
+    /**
+     * One attempt to tetrahedralize the volume: the Delaunay
+     * tetrahedralization of the current points, the tetrahedra kept, and
+     * what's wrong with them.
+     */
+    private static class Attempt {
+        /**
+         * smallest radius ratio among the kept tetrahedra
+         */
+        private double minQuality = 1.0;
+        /**
+         * indices of the interior points that belong to slivers or flat
+         * tetrahedra
+         */
+        final private Collection<Integer> doomed = new HashSet<>(16);
+        /**
+         * the tetrahedralization of all points
+         */
+        final private Delaunay delaunay;
+        /**
+         * boundary faces of the kept tetrahedra, oriented outward
+         */
+        final private List<int[]> boundary;
+        /**
+         * surface triangles not covered by the boundary faces
+         */
+        final private List<int[]> uncovered;
+        /**
+         * tetrahedra inside the surface, excluding flat ones
+         */
+        final private List<Tet> kept;
+
+        /**
+         * Tetrahedralize the specified points and evaluate the result.
+         *
+         * @param points the surface nodes followed by the interior points
+         * (not null, unaffected)
+         * @param numSurface the number of surface nodes
+         * @param surface the node indices of the surface triangles (not null,
+         * unaffected)
+         * @param index the index of the surface (not null)
+         * @param flatVolume the volume below which a tetrahedron is flat
+         */
+        Attempt(List<Vector3f> points, int numSurface, List<int[]> surface,
+                SurfaceIndex index, double flatVolume) {
+            this.delaunay = new Delaunay(points);
+            this.kept = new ArrayList<>(delaunay.tets.size() / 2);
+            for (Tet tet : delaunay.tets) {
+                if (tet.dead || delaunay.touchesSuper(tet)
+                        || !index.isInside(delaunay.centroid(tet))) {
+                    continue;
+                }
+                boolean flat = delaunay.volume(tet.v) < flatVolume;
+                double quality = delaunay.radiusRatio(tet.v);
+                if (flat || quality < minRadiusRatio) {
+                    for (int vi : tet.v) {
+                        if (vi >= numSurface) {
+                            doomed.add(vi);
+                        }
+                    }
+                }
+                if (!flat) {
+                    kept.add(tet);
+                    minQuality = Math.min(minQuality, quality);
+                }
+            }
+            this.boundary = listBoundaryFaces(delaunay, kept);
+            this.uncovered = listUncoveredTriangles(surface, boundary, points);
+        }
+
+        /**
+         * Test whether this attempt is better than another: fewer uncovered
+         * surface triangles, or as few with better-shaped tetrahedra.
+         *
+         * @param other the other attempt (may be null, unaffected)
+         * @return true if better, otherwise false
+         */
+        boolean isBetterThan(Attempt other) {
+            boolean result;
+            if (other == null) {
+                result = true;
+            } else if (uncovered.size() != other.uncovered.size()) {
+                result = uncovered.size() < other.uncovered.size();
+            } else {
+                result = minQuality > other.minQuality;
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * A tetrahedron in the Delaunay tetrahedralization, positively oriented,
+     * with its neighbors and circumsphere.
+     */
+    private static class Tet {
+        /**
+         * true if removed from the tetrahedralization
+         */
+        private boolean dead = false;
+        /**
+         * squared radius of the circumsphere
+         */
+        private double r2;
+        /**
+         * center of the circumsphere
+         */
+        private double cx, cy, cz;
+        /**
+         * insertion stamp, used to mark membership in a cavity
+         */
+        private int stamp = -1;
+        /**
+         * vertex indices
+         */
+        final private int[] v = new int[vpTetra];
+        /**
+         * neighbor across the face opposite each vertex, or null for none
+         */
+        final private Tet[] n = new Tet[vpTetra];
+    }
+
+    /**
+     * Bowyer-Watson Delaunay tetrahedralization of a point set, enclosed in
+     * a super-tetrahedron whose 4 vertices follow the input points.
+     */
+    private static class Delaunay {
+        // *********************************************************************
+        // fields
+
+        /**
+         * point coordinates, including the super-tetrahedron's vertices
+         */
+        final private double[] x, y, z;
+        /**
+         * number of input points
+         */
+        final private int numPoints;
+        /**
+         * all tetrahedra ever created, including dead ones
+         */
+        final private List<Tet> tets;
+        // *********************************************************************
+        // constructors
+
+        /**
+         * Tetrahedralize the specified points.
+         *
+         * @param points the points (not null, not empty, unaffected)
+         */
+        Delaunay(List<Vector3f> points) {
+            this.numPoints = points.size();
+            this.x = new double[numPoints + vpTetra];
+            this.y = new double[numPoints + vpTetra];
+            this.z = new double[numPoints + vpTetra];
+
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double minZ = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            double maxZ = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < numPoints; ++i) {
+                Vector3f point = points.get(i);
+                x[i] = point.x;
+                y[i] = point.y;
+                z[i] = point.z;
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                minZ = Math.min(minZ, z[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+                maxZ = Math.max(maxZ, z[i]);
+            }
+            /*
+             * Enclose the bounding sphere in a large regular tetrahedron.
+             */
+            double midX = (minX + maxX) / 2.0;
+            double midY = (minY + maxY) / 2.0;
+            double midZ = (minZ + maxZ) / 2.0;
+            double radius = Math.max(1e-6, Math.sqrt(
+                    (maxX - minX) * (maxX - minX)
+                    + (maxY - minY) * (maxY - minY)
+                    + (maxZ - minZ) * (maxZ - minZ)));
+            double scale = 10.0 * Math.sqrt(3.0) * radius;
+            double[][] corners = {
+                {1, 1, 1}, {1, -1, -1}, {-1, 1, -1}, {-1, -1, 1}
+            };
+            Tet root = new Tet();
+            for (int i = 0; i < vpTetra; ++i) {
+                int vi = numPoints + i;
+                x[vi] = midX + scale * corners[i][0];
+                y[vi] = midY + scale * corners[i][1];
+                z[vi] = midZ + scale * corners[i][2];
+                root.v[i] = vi;
+            }
+            if (orient(root.v[0], root.v[1], root.v[2], root.v[3]) < 0.0) {
+                root.v[0] = numPoints + 1;
+                root.v[1] = numPoints;
+            }
+            circumsphere(root);
+
+            this.tets = new ArrayList<>(8 * numPoints + 1);
+            tets.add(root);
+            Tet last = root;
+            for (int pi = 0; pi < numPoints; ++pi) {
+                last = insert(pi, last);
+            }
+        }
+        // *********************************************************************
+        // new methods exposed
+
+        /**
+         * Calculate the centroid of the specified tetrahedron.
+         *
+         * @param tet the tetrahedron (not null, unaffected)
+         * @return a new vector
+         */
+        Vector3f centroid(Tet tet) {
+            double sx = 0.0;
+            double sy = 0.0;
+            double sz = 0.0;
+            for (int vi : tet.v) {
+                sx += x[vi];
+                sy += y[vi];
+                sz += z[vi];
+            }
+            Vector3f result = new Vector3f((float) (sx / vpTetra),
+                    (float) (sy / vpTetra), (float) (sz / vpTetra));
+
+            return result;
+        }
+
+        /**
+         * Calculate the radius ratio of the specified tetrahedron: 3 times
+         * its inradius divided by its circumradius.
+         *
+         * @param v the vertex indices (not null, length=4, unaffected)
+         * @return the ratio (&ge;0, &le;1)
+         */
+        double radiusRatio(int[] v) {
+            double sixVolume = Math.abs(orient(v[0], v[1], v[2], v[3]));
+            double area = triangleArea(v[1], v[2], v[3])
+                    + triangleArea(v[0], v[2], v[3])
+                    + triangleArea(v[0], v[1], v[3])
+                    + triangleArea(v[0], v[1], v[2]);
+            double inradius = (sixVolume / 2.0) / area;
+            Tet tmp = new Tet();
+            System.arraycopy(v, 0, tmp.v, 0, vpTetra);
+            circumsphere(tmp);
+            double result = 3.0 * inradius / Math.sqrt(tmp.r2);
+
+            return Math.min(1.0, result);
+        }
+
+        /**
+         * Test whether the specified tetrahedron uses a vertex of the
+         * super-tetrahedron.
+         *
+         * @param tet the tetrahedron to test (not null, unaffected)
+         * @return true if it does, otherwise false
+         */
+        boolean touchesSuper(Tet tet) {
+            for (int vi : tet.v) {
+                if (vi >= numPoints) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Calculate the volume of the specified tetrahedron.
+         *
+         * @param v the vertex indices (not null, length=4, unaffected)
+         * @return the volume (&ge;0)
+         */
+        double volume(int[] v) {
+            double result = Math.abs(orient(v[0], v[1], v[2], v[3])) / 6.0;
+            return result;
+        }
+        // *********************************************************************
+        // private methods
+
+        /**
+         * Calculate the circumsphere of the specified tetrahedron.
+         *
+         * @param tet the tetrahedron (not null, modified)
+         */
+        private void circumsphere(Tet tet) {
+            int a = tet.v[0];
+            double bx = x[tet.v[1]] - x[a];
+            double by = y[tet.v[1]] - y[a];
+            double bz = z[tet.v[1]] - z[a];
+            double cx = x[tet.v[2]] - x[a];
+            double cy = y[tet.v[2]] - y[a];
+            double cz = z[tet.v[2]] - z[a];
+            double dx = x[tet.v[3]] - x[a];
+            double dy = y[tet.v[3]] - y[a];
+            double dz = z[tet.v[3]] - z[a];
+
+            double b2 = bx * bx + by * by + bz * bz;
+            double c2 = cx * cx + cy * cy + cz * cz;
+            double d2 = dx * dx + dy * dy + dz * dz;
+            double det = bx * (cy * dz - cz * dy) - by * (cx * dz - cz * dx)
+                    + bz * (cx * dy - cy * dx);
+            double denominator = 2.0 * det;
+            if (denominator == 0.0) {
+                denominator = Double.MIN_VALUE;
+            }
+            double ox = (b2 * (cy * dz - cz * dy) + c2 * (dy * bz - dz * by)
+                    + d2 * (by * cz - bz * cy)) / denominator;
+            double oy = (b2 * (cz * dx - cx * dz) + c2 * (dz * bx - dx * bz)
+                    + d2 * (bz * cx - bx * cz)) / denominator;
+            double oz = (b2 * (cx * dy - cy * dx) + c2 * (dx * by - dy * bx)
+                    + d2 * (bx * cy - by * cx)) / denominator;
+
+            tet.cx = x[a] + ox;
+            tet.cy = y[a] + oy;
+            tet.cz = z[a] + oz;
+            tet.r2 = ox * ox + oy * oy + oz * oz;
+        }
+
+        /**
+         * Test whether the indexed point lies strictly inside the
+         * circumsphere of the specified tetrahedron.
+         *
+         * @param tet the tetrahedron (not null, unaffected)
+         * @param pi the index of the point
+         * @return true if inside, otherwise false
+         */
+        private boolean inSphere(Tet tet, int pi) {
+            double dx = x[pi] - tet.cx;
+            double dy = y[pi] - tet.cy;
+            double dz = z[pi] - tet.cz;
+            double d2 = dx * dx + dy * dy + dz * dz;
+            boolean result = d2 < tet.r2 * (1.0 - 1e-12);
+
+            return result;
+        }
+
+        /**
+         * Insert the indexed point into the tetrahedralization.
+         *
+         * @param pi the index of the point
+         * @param start a live tetrahedron from which to start searching (not
+         * null)
+         * @return a tetrahedron created by the insertion (not null)
+         */
+        private Tet insert(int pi, Tet start) {
+            Tet container = locate(pi, start);
+            /*
+             * Gather the cavity: tetrahedra whose circumspheres contain the
+             * point, connected to the container.
+             */
+            List<Tet> cavity = new ArrayList<>(32);
+            Deque<Tet> queue = new ArrayDeque<>(32);
+            container.stamp = pi;
+            cavity.add(container);
+            queue.add(container);
+            while (!queue.isEmpty()) {
+                Tet tet = queue.poll();
+                for (Tet neighbor : tet.n) {
+                    if (neighbor != null && neighbor.stamp != pi
+                            && inSphere(neighbor, pi)) {
+                        neighbor.stamp = pi;
+                        cavity.add(neighbor);
+                        queue.add(neighbor);
+                    }
+                }
+            }
+            /*
+             * Grow the cavity until the point sees every boundary face
+             * from the inside, so that the new tetrahedra are valid.
+             */
+            boolean grown = true;
+            while (grown) {
+                grown = false;
+                for (int ci = 0; ci < cavity.size(); ++ci) {
+                    Tet tet = cavity.get(ci);
+                    for (int i = 0; i < vpTetra; ++i) {
+                        Tet neighbor = tet.n[i];
+                        if (neighbor != null && neighbor.stamp != pi
+                                && orientWith(tet, i, pi) <= 0.0) {
+                            neighbor.stamp = pi;
+                            cavity.add(neighbor);
+                            grown = true;
+                        }
+                    }
+                }
+            }
+            /*
+             * Replace the cavity with tetrahedra that connect its boundary
+             * faces to the point.
+             */
+            Map<Long, Tet> edgeToTet = new HashMap<>(64);
+            Map<Long, Integer> edgeToFace = new HashMap<>(64);
+            long numVertices = x.length;
+            Tet result = null;
+            for (Tet tet : cavity) {
+                tet.dead = true;
+                for (int i = 0; i < vpTetra; ++i) {
+                    Tet outside = tet.n[i];
+                    if (outside != null && outside.stamp == pi) {
+                        continue; // interior face of the cavity
+                    }
+                    Tet created = new Tet();
+                    System.arraycopy(tet.v, 0, created.v, 0, vpTetra);
+                    created.v[i] = pi;
+                    circumsphere(created);
+                    created.n[i] = outside;
+                    if (outside != null) {
+                        for (int k = 0; k < vpTetra; ++k) {
+                            if (outside.n[k] == tet) {
+                                outside.n[k] = created;
+                            }
+                        }
+                    }
+                    /*
+                     * Link the faces that contain the new point.
+                     */
+                    for (int j = 0; j < vpTetra; ++j) {
+                        if (j == i) {
+                            continue;
+                        }
+                        int e0 = -1;
+                        int e1 = -1;
+                        for (int k = 0; k < vpTetra; ++k) {
+                            if (k != i && k != j) {
+                                if (e0 < 0) {
+                                    e0 = created.v[k];
+                                } else {
+                                    e1 = created.v[k];
+                                }
+                            }
+                        }
+                        long key = Math.min(e0, e1) * numVertices
+                                + Math.max(e0, e1);
+                        Tet partner = edgeToTet.remove(key);
+                        if (partner == null) {
+                            edgeToTet.put(key, created);
+                            edgeToFace.put(key, j);
+                        } else {
+                            int partnerFace = edgeToFace.remove(key);
+                            created.n[j] = partner;
+                            partner.n[partnerFace] = created;
+                        }
+                    }
+                    tets.add(created);
+                    result = created;
+                }
+            }
+            assert result != null;
+
+            return result;
+        }
+
+        /**
+         * Find a live tetrahedron containing the indexed point, by walking
+         * from the specified tetrahedron, or by exhaustive search if the
+         * walk fails.
+         *
+         * @param pi the index of the point
+         * @param start the tetrahedron to start from (not null)
+         * @return a live tetrahedron whose circumsphere contains the point
+         * (not null)
+         */
+        private Tet locate(int pi, Tet start) {
+            Tet tet = start;
+            int maxSteps = tets.size() + 1;
+            for (int step = 0; step < maxSteps; ++step) {
+                Tet next = null;
+                for (int i = 0; i < vpTetra; ++i) {
+                    if (tet.n[i] != null && orientWith(tet, i, pi) < 0.0) {
+                        next = tet.n[i];
+                        break;
+                    }
+                }
+                if (next == null) {
+                    return tet;
+                }
+                tet = next;
+            }
+
+            for (Tet candidate : tets) {
+                if (!candidate.dead && inSphere(candidate, pi)) {
+                    return candidate;
+                }
+            }
+            throw new IllegalStateException("point location failed");
+        }
+
+        /**
+         * Calculate 6 times the signed volume of the tetrahedron with the
+         * specified vertices.
+         *
+         * @param a the index of the first vertex
+         * @param b the index of the 2nd vertex
+         * @param c the index of the 3rd vertex
+         * @param d the index of the 4th vertex
+         * @return the determinant (positive if positively oriented)
+         */
+        private double orient(int a, int b, int c, int d) {
+            double bx = x[b] - x[a];
+            double by = y[b] - y[a];
+            double bz = z[b] - z[a];
+            double cx = x[c] - x[a];
+            double cy = y[c] - y[a];
+            double cz = z[c] - z[a];
+            double dx = x[d] - x[a];
+            double dy = y[d] - y[a];
+            double dz = z[d] - z[a];
+            double result = bx * (cy * dz - cz * dy)
+                    - by * (cx * dz - cz * dx) + bz * (cx * dy - cy * dx);
+
+            return result;
+        }
+
+        /**
+         * Calculate the orientation of the specified tetrahedron with one
+         * vertex replaced by the indexed point. The result is positive if
+         * the point lies on the same side of the opposite face as the
+         * replaced vertex.
+         *
+         * @param tet the tetrahedron (not null, unaffected)
+         * @param i which vertex to replace (&ge;0, &lt;4)
+         * @param pi the index of the point
+         * @return the determinant
+         */
+        private double orientWith(Tet tet, int i, int pi) {
+            int[] v = tet.v;
+            double result = orient(i == 0 ? pi : v[0], i == 1 ? pi : v[1],
+                    i == 2 ? pi : v[2], i == 3 ? pi : v[3]);
+            return result;
+        }
+
+        /**
+         * Calculate the area of the triangle with the specified vertices.
+         *
+         * @param a the index of the first vertex
+         * @param b the index of the 2nd vertex
+         * @param c the index of the 3rd vertex
+         * @return the area (&ge;0)
+         */
+        private double triangleArea(int a, int b, int c) {
+            double bx = x[b] - x[a];
+            double by = y[b] - y[a];
+            double bz = z[b] - z[a];
+            double cx = x[c] - x[a];
+            double cy = y[c] - y[a];
+            double cz = z[c] - z[a];
+            double nx = by * cz - bz * cy;
+            double ny = bz * cx - bx * cz;
+            double nz = bx * cy - by * cx;
+            double result = 0.5 * Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+            return result;
+        }
+    }
+
+    /**
+     * The surface triangles, bucketed on a uniform grid, for deciding which
+     * side of the surface a location lies on. Far from the surface, the
+     * signed distance field decides. Near it, the closest surface point
+     * decides, using the angle-weighted pseudo-normal of the closest feature
+     * (face, edge, or vertex), which only requires examining nearby
+     * triangles.
+     */
+    private static class SurfaceIndex {
+        // *********************************************************************
+        // constants
+
+        /**
+         * maximum number of grid rings to search around a location
+         */
+        final private static int maxRings = 4;
+        // *********************************************************************
+        // fields
+
+        /**
+         * edge length of a grid cell
+         */
+        final private double cellSize;
+        /**
+         * unit normal of each triangle, 3 per triangle
+         */
+        final private double[] faceNormals;
+        /**
+         * angle-weighted pseudo-normal of each node, 3 per node
+         */
+        final private double[] nodeNormals;
+        /**
+         * node coordinates, 3 per node
+         */
+        final private double[] xyz;
+        /**
+         * node indices of the triangles, 3 per triangle
+         */
+        final private int[] triangles;
+        /**
+         * pseudo-normal of each edge: the sum of its faces' normals
+         */
+        final private Map<IntPair, double[]> edgeNormals;
+        /**
+         * indices of the triangles that overlap each grid cell
+         */
+        final private Map<Long, List<Integer>> cells;
+        /**
+         * signed distance field of the surface (not null)
+         */
+        final private SignedDistanceField field;
+        /**
+         * closest surface point found by the latest findClosest()
+         */
+        final private double[] closestPoint = new double[numAxes];
+        /**
+         * feature code of the closest point found by the latest
+         * findClosest()
+         */
+        private int closestFeature;
+        /**
+         * index of the closest triangle found by the latest findClosest(), or
+         * -1 if none
+         */
+        private int closestTriangle;
+        // *********************************************************************
+        // constructors
+
+        /**
+         * Index the specified surface.
+         *
+         * @param points the node locations (not null, unaffected)
+         * @param surface the node indices of the surface triangles (not null,
+         * unaffected)
+         * @param field the signed distance field of the surface (not null,
+         * alias created)
+         * @param cellSize the edge length of a grid cell (&gt;0)
+         */
+        SurfaceIndex(List<Vector3f> points, List<int[]> surface,
+                SignedDistanceField field, double cellSize) {
+            this.field = field;
+            this.cellSize = cellSize;
+
+            int numPoints = points.size();
+            this.xyz = new double[numAxes * numPoints];
+            for (int i = 0; i < numPoints; ++i) {
+                Vector3f point = points.get(i);
+                xyz[numAxes * i] = point.x;
+                xyz[numAxes * i + 1] = point.y;
+                xyz[numAxes * i + 2] = point.z;
+            }
+
+            int numTriangles = surface.size();
+            this.triangles = toArray(surface);
+            this.faceNormals = new double[numAxes * numTriangles];
+            this.nodeNormals = new double[numAxes * numPoints];
+            this.edgeNormals = new HashMap<>(3 * numTriangles);
+            this.cells = new HashMap<>(numTriangles);
+            double[] ab = new double[numAxes];
+            double[] ac = new double[numAxes];
+            double[] normal = new double[numAxes];
+            for (int t = 0; t < numTriangles; ++t) {
+                for (int i = 0; i < vpt; ++i) {
+                    int a = triangles[vpt * t + i];
+                    int b = triangles[vpt * t + (i + 1) % vpt];
+                    int c = triangles[vpt * t + (i + 2) % vpt];
+                    offset(a, b, ab);
+                    offset(a, c, ac);
+                    cross(ab, ac, normal);
+                    double length = Math.sqrt(dot(normal, normal));
+                    if (length == 0.0) {
+                        break; // degenerate triangle
+                    }
+                    double angle = Math.atan2(length, dot(ab, ac));
+                    for (int axis = 0; axis < numAxes; ++axis) {
+                        double unit = normal[axis] / length;
+                        faceNormals[numAxes * t + axis] = unit;
+                        nodeNormals[numAxes * a + axis] += angle * unit;
+                    }
+
+                    IntPair edge = new IntPair(a, b);
+                    double[] sum = edgeNormals.get(edge);
+                    if (sum == null) {
+                        sum = new double[numAxes];
+                        edgeNormals.put(edge, sum);
+                    }
+                    for (int axis = 0; axis < numAxes; ++axis) {
+                        sum[axis] += normal[axis] / length;
+                    }
+                }
+                addToCells(t);
+            }
+        }
+        // *********************************************************************
+        // new methods exposed
+
+        /**
+         * Test whether the specified location lies inside the surface and
+         * clear of it: farther from it than half the spacing and farther
+         * than a fraction of the longest edge of the closest triangle, so
+         * that the interior points near a coarse surface are coarse too.
+         *
+         * @param location the location to test (not null, unaffected)
+         * @param spacing the lattice spacing (&gt;0)
+         * @return true if inside and clear, otherwise false
+         */
+        boolean isClear(Vector3f location, float spacing) {
+            float distance = field.distance(location);
+            if (distance >= -0.5f * spacing) {
+                return false;
+            }
+
+            double[] q = {location.x, location.y, location.z};
+            if (!findClosest(q)) {
+                return true; // far from the surface
+            }
+            double d2 = distanceSquared(q, closestPoint);
+            double clearance = surfaceClearance * longestEdge(closestTriangle);
+            boolean result = d2 > clearance * clearance && isInside(location);
+
+            return result;
+        }
+
+        /**
+         * Test whether the specified location lies inside the surface.
+         *
+         * @param location the location to test (not null, unaffected)
+         * @return true if inside, otherwise false
+         */
+        boolean isInside(Vector3f location) {
+            float distance = field.distance(location);
+            if (Math.abs(distance) > 2f * field.cellSize()) {
+                return distance < 0f;
+            }
+
+            double[] q = {location.x, location.y, location.z};
+            if (!findClosest(q)) {
+                return distance < 0f;
+            }
+            double[] pseudoNormal
+                    = pseudoNormal(closestTriangle, closestFeature);
+            double dot = 0.0;
+            for (int axis = 0; axis < numAxes; ++axis) {
+                dot += (q[axis] - closestPoint[axis]) * pseudoNormal[axis];
+            }
+            boolean result = dot < 0.0;
+
+            return result;
+        }
+        // *********************************************************************
+        // private methods
+
+        /**
+         * Add the indexed triangle to every grid cell its bounding box
+         * overlaps.
+         *
+         * @param t the index of the triangle
+         */
+        private void addToCells(int t) {
+            int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE};
+            int[] max = {Integer.MIN_VALUE, Integer.MIN_VALUE,
+                Integer.MIN_VALUE};
+            for (int i = 0; i < vpt; ++i) {
+                int node = triangles[vpt * t + i];
+                for (int axis = 0; axis < numAxes; ++axis) {
+                    int cell = cellIndex(xyz[numAxes * node + axis]);
+                    min[axis] = Math.min(min[axis], cell);
+                    max[axis] = Math.max(max[axis], cell);
+                }
+            }
+            for (int ix = min[0]; ix <= max[0]; ++ix) {
+                for (int iy = min[1]; iy <= max[1]; ++iy) {
+                    for (int iz = min[2]; iz <= max[2]; ++iz) {
+                        Long key = key(ix, iy, iz);
+                        List<Integer> list = cells.get(key);
+                        if (list == null) {
+                            list = new ArrayList<>(8);
+                            cells.put(key, list);
+                        }
+                        list.add(t);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Calculate the index of the grid cell containing the specified
+         * coordinate.
+         *
+         * @param coordinate the coordinate value
+         * @return the cell index
+         */
+        private int cellIndex(double coordinate) {
+            int result = (int) Math.floor(coordinate / cellSize);
+            return result;
+        }
+
+        /**
+         * Find the point of the indexed triangle closest to the specified
+         * location, and which feature of the triangle it lies on.
+         *
+         * @param p the location (not null, length=3, unaffected)
+         * @param t the index of the triangle
+         * @param storeResult storage for the closest point (not null,
+         * length=3, modified)
+         * @return the feature: 0-2 for a vertex, 3-5 for the edge that
+         * starts at that vertex, or 6 for the interior of the face
+         */
+        private int closestPoint(double[] p, int t, double[] storeResult) {
+            int a = numAxes * triangles[vpt * t];
+            int b = numAxes * triangles[vpt * t + 1];
+            int c = numAxes * triangles[vpt * t + 2];
+            double[] ab = new double[numAxes];
+            double[] ac = new double[numAxes];
+            double[] ap = new double[numAxes];
+            double[] bp = new double[numAxes];
+            double[] cp = new double[numAxes];
+            for (int axis = 0; axis < numAxes; ++axis) {
+                ab[axis] = xyz[b + axis] - xyz[a + axis];
+                ac[axis] = xyz[c + axis] - xyz[a + axis];
+                ap[axis] = p[axis] - xyz[a + axis];
+                bp[axis] = p[axis] - xyz[b + axis];
+                cp[axis] = p[axis] - xyz[c + axis];
+            }
+            /*
+             * Classify the location by the Voronoi regions of the
+             * triangle's features.
+             */
+            double d1 = dot(ab, ap);
+            double d2 = dot(ac, ap);
+            if (d1 <= 0.0 && d2 <= 0.0) {
+                interpolate(a, 0.0, ab, 0.0, ac, storeResult);
+                return 0;
+            }
+            double d3 = dot(ab, bp);
+            double d4 = dot(ac, bp);
+            if (d3 >= 0.0 && d4 <= d3) {
+                interpolate(a, 1.0, ab, 0.0, ac, storeResult);
+                return 1;
+            }
+            double vc = d1 * d4 - d3 * d2;
+            if (vc <= 0.0 && d1 >= 0.0 && d3 <= 0.0) {
+                interpolate(a, d1 / (d1 - d3), ab, 0.0, ac, storeResult);
+                return 3;
+            }
+            double d5 = dot(ab, cp);
+            double d6 = dot(ac, cp);
+            if (d6 >= 0.0 && d5 <= d6) {
+                interpolate(a, 0.0, ab, 1.0, ac, storeResult);
+                return 2;
+            }
+            double vb = d5 * d2 - d1 * d6;
+            if (vb <= 0.0 && d2 >= 0.0 && d6 <= 0.0) {
+                interpolate(a, 0.0, ab, d2 / (d2 - d6), ac, storeResult);
+                return 5;
+            }
+            double va = d3 * d6 - d5 * d4;
+            if (va <= 0.0 && d4 >= d3 && d5 >= d6) {
+                double w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+                interpolate(a, 1.0 - w, ab, w, ac, storeResult);
+                return 4;
+            }
+            double denominator = va + vb + vc;
+            interpolate(a, vb / denominator, ab, vc / denominator, ac,
+                    storeResult);
+
+            return 6;
+        }
+
+        /**
+         * Calculate the cross product of 2 vectors.
+         *
+         * @param u the first vector (not null, length=3, unaffected)
+         * @param v the 2nd vector (not null, length=3, unaffected)
+         * @param storeResult storage for the result (not null, length=3,
+         * modified)
+         */
+        private static void cross(double[] u, double[] v,
+                double[] storeResult) {
+            storeResult[0] = u[1] * v[2] - u[2] * v[1];
+            storeResult[1] = u[2] * v[0] - u[0] * v[2];
+            storeResult[2] = u[0] * v[1] - u[1] * v[0];
+        }
+
+        /**
+         * Calculate the squared distance between 2 locations.
+         *
+         * @param u the first location (not null, length=3, unaffected)
+         * @param v the 2nd location (not null, length=3, unaffected)
+         * @return the squared distance (&ge;0)
+         */
+        private static double distanceSquared(double[] u, double[] v) {
+            double dx = u[0] - v[0];
+            double dy = u[1] - v[1];
+            double dz = u[2] - v[2];
+            double result = dx * dx + dy * dy + dz * dz;
+
+            return result;
+        }
+
+        /**
+         * Calculate the dot product of 2 vectors.
+         *
+         * @param u the first vector (not null, length=3, unaffected)
+         * @param v the 2nd vector (not null, length=3, unaffected)
+         * @return the dot product
+         */
+        private static double dot(double[] u, double[] v) {
+            double result = u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+            return result;
+        }
+
+        /**
+         * Find the surface point closest to the specified location, searching
+         * the grid cells within a few rings of it. The result is stored in
+         * closestPoint, closestTriangle, and closestFeature.
+         *
+         * @param q the location (not null, length=3, unaffected)
+         * @return true if a triangle was found, otherwise false
+         */
+        private boolean findClosest(double[] q) {
+            int cx = cellIndex(q[0]);
+            int cy = cellIndex(q[1]);
+            int cz = cellIndex(q[2]);
+            double[] candidate = new double[numAxes];
+            double bestDistance2 = Double.POSITIVE_INFINITY;
+            closestTriangle = -1;
+            for (int ring = 1; ring <= maxRings; ++ring) {
+                for (int ix = cx - ring; ix <= cx + ring; ++ix) {
+                    for (int iy = cy - ring; iy <= cy + ring; ++iy) {
+                        for (int iz = cz - ring; iz <= cz + ring; ++iz) {
+                            List<Integer> list = cells.get(key(ix, iy, iz));
+                            if (list == null) {
+                                continue;
+                            }
+                            for (int t : list) {
+                                int feature = closestPoint(q, t, candidate);
+                                double d2 = distanceSquared(q, candidate);
+                                if (d2 < bestDistance2) {
+                                    bestDistance2 = d2;
+                                    closestTriangle = t;
+                                    closestFeature = feature;
+                                    System.arraycopy(candidate, 0,
+                                            closestPoint, 0, numAxes);
+                                }
+                            }
+                        }
+                    }
+                }
+                double reach = ring * cellSize;
+                if (bestDistance2 <= reach * reach) {
+                    break;
+                }
+            }
+            boolean result = closestTriangle >= 0;
+
+            return result;
+        }
+
+        /**
+         * Calculate a point in the plane of a triangle: a vertex plus
+         * weighted edge vectors.
+         *
+         * @param a the offset of the vertex in {@code xyz}
+         * @param s the weight of the first edge
+         * @param ab the first edge (not null, length=3, unaffected)
+         * @param t the weight of the 2nd edge
+         * @param ac the 2nd edge (not null, length=3, unaffected)
+         * @param storeResult storage for the result (not null, length=3,
+         * modified)
+         */
+        private void interpolate(int a, double s, double[] ab, double t,
+                double[] ac, double[] storeResult) {
+            for (int axis = 0; axis < numAxes; ++axis) {
+                storeResult[axis] = xyz[a + axis] + s * ab[axis]
+                        + t * ac[axis];
+            }
+        }
+
+        /**
+         * Generate a hash key for the indexed grid cell.
+         *
+         * @param ix the cell index on the X axis
+         * @param iy the cell index on the Y axis
+         * @param iz the cell index on the Z axis
+         * @return a key (not null)
+         */
+        private static Long key(int ix, int iy, int iz) {
+            long result = (ix & 0x1fffffL) << 42 | (iy & 0x1fffffL) << 21
+                    | (iz & 0x1fffffL);
+            return result;
+        }
+
+        /**
+         * Calculate the length of the longest edge of the indexed triangle.
+         *
+         * @param t the index of the triangle
+         * @return the length (&ge;0)
+         */
+        private double longestEdge(int t) {
+            double[] edge = new double[numAxes];
+            double max2 = 0.0;
+            for (int i = 0; i < vpt; ++i) {
+                offset(triangles[vpt * t + i],
+                        triangles[vpt * t + (i + 1) % vpt], edge);
+                max2 = Math.max(max2, dot(edge, edge));
+            }
+            double result = Math.sqrt(max2);
+
+            return result;
+        }
+
+        /**
+         * Calculate the offset from one node to another.
+         *
+         * @param from the index of the starting node
+         * @param to the index of the ending node
+         * @param storeResult storage for the result (not null, length=3,
+         * modified)
+         */
+        private void offset(int from, int to, double[] storeResult) {
+            for (int axis = 0; axis < numAxes; ++axis) {
+                storeResult[axis] = xyz[numAxes * to + axis]
+                        - xyz[numAxes * from + axis];
+            }
+        }
+
+        /**
+         * Access the pseudo-normal of the specified feature of the indexed
+         * triangle.
+         *
+         * @param t the index of the triangle
+         * @param feature the feature code returned by closestPoint()
+         * @return the normal vector (not null, length=3, may be a
+         * pre-existing array that mustn't be modified)
+         */
+        private double[] pseudoNormal(int t, int feature) {
+            double[] result;
+            if (feature < vpt) {
+                int node = triangles[vpt * t + feature];
+                result = new double[numAxes];
+                System.arraycopy(nodeNormals, numAxes * node, result, 0,
+                        numAxes);
+            } else if (feature < 2 * vpt) {
+                int i = feature - vpt;
+                int a = triangles[vpt * t + i];
+                int b = triangles[vpt * t + (i + 1) % vpt];
+                result = edgeNormals.get(new IntPair(a, b));
+            } else {
+                result = new double[numAxes];
+                System.arraycopy(faceNormals, numAxes * t, result, 0,
+                        numAxes);
+            }
+
+            return result;
+        }
+    }
+}
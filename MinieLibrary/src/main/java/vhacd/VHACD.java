@@ -51,9 +51,16 @@ public class VHACD {
     final private static Collection<VHACDProgressListener> progressListeners
             = new SafeArrayList<>(VHACDProgressListener.class);
     /**
-     * list of hulls computed during the latest decomposition
+     * list of hulls computed during the current thread's latest decomposition
      */
-    private static List<VHACDHull> results;
+    final private static ThreadLocal<List<VHACDHull>> results
+            = new ThreadLocal<>();
+    /**
+     * progress listener for the current thread's decomposition, or null if
+     * none
+     */
+    final private static ThreadLocal<VHACDProgressListener> jobListener
+            = new ThreadLocal<>();
     // *************************************************************************
     // constructors
 
@@ -89,17 +96,45 @@ public class VHACD {
      */
     public static List<VHACDHull> compute(float[] positions, int[] indices,
             VHACDParameters params) {
+        List<VHACDHull> result = compute(positions, indices, params, null);
+        return result;
+    }
+
+    /**
+     * Generate convex hulls to approximate the specified mesh, notifying a
+     * job-specific listener in addition to the registered ones. Decompositions
+     * invoked from different threads may run concurrently.
+     *
+     * @param positions the positions of all mesh vertices (not null, length a
+     * multiple of 3, unaffected)
+     * @param indices the vertex indices of all mesh triangles (not null, length
+     * a multiple of 3, unaffected)
+     * @param params the tuning parameters to use (not null, unaffected)
+     * @param listener the listener for this decomposition only (alias created)
+     * or null for none
+     * @return a new list of hulls, or an empty list if the algorithm failed
+     */
+    public static List<VHACDHull> compute(float[] positions, int[] indices,
+            VHACDParameters params, VHACDProgressListener listener) {
         Validate.nonNull(positions, "positions");
         Validate.nonNull(indices, "indices");
+        Validate.nonNull(params, "params");
         assert positions.length % MyVector3f.numAxes == 0 : positions.length;
         assert indices.length % vpt == 0 : indices.length;
 
         FloatBuffer b_pos = BufferUtils.createFloatBuffer(positions);
         IntBuffer b_ind = BufferUtils.createIntBuffer(indices);
-        results = new ArrayList<>(50);
-        compute(b_pos, b_ind, params.nativeId(), params.getDebugEnabled());
+        List<VHACDHull> result = new ArrayList<>(50);
+        results.set(result);
+        jobListener.set(listener);
+        try {
+            compute(b_pos, b_ind, params.nativeId(), params.getDebugEnabled());
+        } finally {
+            results.remove();
+            jobListener.remove();
+        }
 
-        return results;
+        return result;
     }
 
     /**
@@ -123,7 +158,7 @@ public class VHACD {
      */
     private static void addHull(long hullId) {
         VHACDHull hull = new VHACDHull(hullId);
-        results.add(hull);
+        results.get().add(hull);
     }
 
     /**
@@ -145,6 +180,12 @@ public class VHACD {
             listener.update(overallPercent, stagePercent,
                     operationPercent, stageName, operationName);
         }
+
+        VHACDProgressListener listener = jobListener.get();
+        if (listener != null) {
+            listener.update(overallPercent, stagePercent,
+                    operationPercent, stageName, operationName);
+        }
     }
     // *************************************************************************
     // native private methods
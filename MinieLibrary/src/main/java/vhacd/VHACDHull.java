@@ -51,6 +51,20 @@ public class VHACDHull {
             positions[floatIndex] = floatBuffer.get(floatIndex);
         }
     }
+
+    /**
+     * Instantiate a hull with the specified vertex positions, for instance
+     * from a cache.
+     *
+     * @param positions the vertex positions (not null, not empty, length a
+     * multiple of 3, alias created)
+     */
+    VHACDHull(float[] positions) {
+        assert positions.length > 0 : positions.length;
+        assert positions.length % MyVector3f.numAxes == 0 : positions.length;
+
+        this.positions = positions;
+    }
     // *************************************************************************
     // new methods exposed
 
@@ -452,7 +452,7 @@ public class VHACDParameters
     public int hashCode() {
         int hash = 5;
         hash = 83 * hash + (DEBUG ? 1 : 0);
-        hash = 83 * hash + getACDMode().hashCode();
+        hash = 83 * hash + getACDMode().ordinal();
         hash = 83 * hash + Double.hashCode(getAlpha());
         hash = 83 * hash + Double.hashCode(getBeta());
         hash = 83 * hash + getConvexHullApproximation();
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package vhacd;
+
+/**
+ * Enumerate some standard trade-offs between decomposition quality and cost,
+ * for use with V-HACD.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public enum VHACDPreset {
+    // *************************************************************************
+    // values
+
+    /**
+     * coarse decomposition: few voxels, few vertices per hull, quick to
+     * compute and cheap to simulate
+     */
+    FAST(10_000, 0.01, 16, 8),
+    /**
+     * the default parameters
+     */
+    BALANCED(100_000, 0.0025, 32, 4),
+    /**
+     * fine decomposition: many voxels and vertices, slow to compute and more
+     * costly to simulate
+     */
+    ACCURATE(1_000_000, 0.001, 64, 2);
+    // *************************************************************************
+    // fields
+
+    /**
+     * maximum concavity (native field: m_concavity)
+     */
+    final private double maxConcavity;
+    /**
+     * downsampling for both plane selection and hull generation
+     */
+    final private int downSampling;
+    /**
+     * maximum number of vertices per hull (native field: m_maxNumVerticesPerCH)
+     */
+    final private int maxVerticesPerHull;
+    /**
+     * maximum number of voxels (native field: m_resolution)
+     */
+    final private int voxelResolution;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Construct an enum value.
+     *
+     * @param voxelResolution the maximum number of voxels
+     * @param maxConcavity the maximum concavity
+     * @param maxVerticesPerHull the maximum number of vertices per hull
+     * @param downSampling the downsampling for plane selection and hull
+     * generation
+     */
+    VHACDPreset(int voxelResolution, double maxConcavity,
+            int maxVerticesPerHull, int downSampling) {
+        this.voxelResolution = voxelResolution;
+        this.maxConcavity = maxConcavity;
+        this.maxVerticesPerHull = maxVerticesPerHull;
+        this.downSampling = downSampling;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Create tuning parameters for this preset.
+     *
+     * @return a new instance
+     */
+    public VHACDParameters createParameters() {
+        VHACDParameters result = new VHACDParameters();
+        result.setConvexHullDownSampling(downSampling);
+        result.setMaxConcavity(maxConcavity);
+        result.setMaxVerticesPerHull(maxVerticesPerHull);
+        result.setPlaneDownSampling(downSampling);
+        result.setVoxelResolution(voxelResolution);
+
+        return result;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package vhacd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jme3utilities.Validate;
+import jme3utilities.math.MyVector3f;
+
+/**
+ * Run V-HACD decompositions asynchronously on a pool of worker threads, with
+ * optional caching of results on disk.
+ * <p>
+ * Cache files are keyed by a hash of the mesh plus the hash code of the
+ * parameters. Each file also records the parameters, so a hash collision is
+ * detected and treated as a cache miss.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class VHACDService {
+    // *************************************************************************
+    // constants and loggers
+
+    /**
+     * version number of the cache-file format
+     */
+    final private static int cacheVersion = 1;
+    /**
+     * message logger for this class
+     */
+    final public static Logger logger
+            = Logger.getLogger(VHACDService.class.getName());
+    /**
+     * filename suffix for cache files
+     */
+    final private static String cacheSuffix = ".vhacd";
+    // *************************************************************************
+    // fields
+
+    /**
+     * executor to run decomposition jobs (not null)
+     */
+    final private ExecutorService executor;
+    /**
+     * directory for cached results, or null if caching is disabled
+     */
+    final private File cacheDirectory;
+    // *************************************************************************
+    // constructors
+
+    /**
+     * Instantiate a service with one worker thread per available processor.
+     *
+     * @param cacheDirectory the directory for cached results (alias created)
+     * or null to disable caching
+     */
+    public VHACDService(File cacheDirectory) {
+        this(Runtime.getRuntime().availableProcessors(), cacheDirectory);
+    }
+
+    /**
+     * Instantiate a service with the specified number of worker threads. The
+     * workers are daemon threads, so an unused service doesn't prevent the JVM
+     * from exiting, though jobs still running at exit are abandoned.
+     *
+     * @param numThreads the number of worker threads (&gt;0)
+     * @param cacheDirectory the directory for cached results (alias created)
+     * or null to disable caching
+     */
+    public VHACDService(int numThreads, File cacheDirectory) {
+        Validate.positive(numThreads, "number of threads");
+
+        ThreadFactory factory = new ThreadFactory() {
+            final private AtomicInteger numCreated = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable job) {
+                String name = "V-HACD worker " + numCreated.incrementAndGet();
+                Thread result = new Thread(job, name);
+                result.setDaemon(true);
+
+                return result;
+            }
+        };
+        this.executor = Executors.newFixedThreadPool(numThreads, factory);
+        this.cacheDirectory = cacheDirectory;
+    }
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Generate the name of the cache file for the specified inputs.
+     *
+     * @param positions the positions of all mesh vertices (not null,
+     * unaffected)
+     * @param indices the vertex indices of all mesh triangles (not null,
+     * unaffected)
+     * @param params the tuning parameters (not null, unaffected)
+     * @return a new filename (not null, not empty)
+     */
+    public static String cacheFileName(float[] positions, int[] indices,
+            VHACDParameters params) {
+        String meshHash = meshHash(positions, indices);
+        String result = String.format("%s-%08x%s", meshHash, params.hashCode(),
+                cacheSuffix);
+
+        return result;
+    }
+
+    /**
+     * Stop accepting jobs. Jobs already submitted will still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Submit a decomposition job. The inputs are copied, so the caller may
+     * modify them after this method returns.
+     *
+     * @param positions the positions of all mesh vertices (not null, length a
+     * multiple of 3, unaffected)
+     * @param indices the vertex indices of all mesh triangles (not null, length
+     * a multiple of 3, unaffected)
+     * @param params the tuning parameters to use (not null, unaffected)
+     * @param listener a listener for this job only (alias created) or null for
+     * none
+     * @return a Future for the list of hulls (not null)
+     */
+    public Future<List<VHACDHull>> submit(float[] positions, int[] indices,
+            VHACDParameters params, final VHACDProgressListener listener) {
+        Validate.nonNull(positions, "positions");
+        Validate.nonNull(indices, "indices");
+        Validate.nonNull(params, "params");
+
+        final float[] positionsCopy = positions.clone();
+        final int[] indicesCopy = indices.clone();
+        final VHACDParameters paramsCopy = params.clone();
+        Callable<List<VHACDHull>> job = new Callable<List<VHACDHull>>() {
+            @Override
+            public List<VHACDHull> call() throws IOException {
+                List<VHACDHull> result
+                        = run(positionsCopy, indicesCopy, paramsCopy, listener);
+                return result;
+            }
+        };
+        Future<List<VHACDHull>> result = executor.submit(job);
+
+        return result;
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Hash the specified mesh data using SHA-256.
+     *
+     * @param positions the vertex positions (not null, unaffected)
+     * @param indices the vertex indices (not null, unaffected)
+     * @return a new hexadecimal string (not null, not empty)
+     */
+    private static String meshHash(float[] positions, int[] indices) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(4 * (2 + positions.length
+                + indices.length));
+        bytes.putInt(positions.length);
+        for (float position : positions) {
+            bytes.putFloat(position);
+        }
+        bytes.putInt(indices.length);
+        for (int index : indices) {
+            bytes.putInt(index);
+        }
+        byte[] hash = digest.digest(bytes.array());
+
+        StringBuilder builder = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            builder.append(String.format("%02x", b & 0xff));
+        }
+        String result = builder.toString();
+
+        return result;
+    }
+
+    /**
+     * Read hulls from the specified cache file, if possible.
+     *
+     * @param file the file to read (not null)
+     * @param params the expected parameters (not null, unaffected)
+     * @return a new list of hulls, or null if the file doesn't exist or doesn't
+     * match
+     */
+    private static List<VHACDHull> readCache(File file,
+            VHACDParameters params) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        List<VHACDHull> result = null;
+        try (DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            int version = dis.readInt();
+            if (version == cacheVersion) {
+                VHACDParameters cachedParams = new VHACDParameters();
+                cachedParams.setDebugEnabled(params.getDebugEnabled());
+                cachedParams.fromInputStream(dis);
+                if (cachedParams.equals(params)) {
+                    int numHulls = dis.readInt();
+                    result = new ArrayList<>(numHulls);
+                    for (int hullIndex = 0; hullIndex < numHulls; ++hullIndex) {
+                        int numFloats = dis.readInt();
+                        float[] hullPositions = new float[numFloats];
+                        for (int i = 0; i < numFloats; ++i) {
+                            hullPositions[i] = dis.readFloat();
+                        }
+                        result.add(new VHACDHull(hullPositions));
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            logger.log(Level.WARNING,
+                    "Failed to read V-HACD cache file {0}: {1}",
+                    new Object[]{file, exception});
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Run a decomposition, using the disk cache if enabled.
+     *
+     * @param positions the vertex positions (not null, unaffected)
+     * @param indices the vertex indices (not null, unaffected)
+     * @param params the tuning parameters (not null, unaffected)
+     * @param listener a job-specific listener, or null for none
+     * @return a new list of hulls (not null)
+     * @throws IOException if the cache file couldn't be written
+     */
+    private List<VHACDHull> run(float[] positions, int[] indices,
+            VHACDParameters params, VHACDProgressListener listener)
+            throws IOException {
+        File file = null;
+        if (cacheDirectory != null) {
+            String fileName = cacheFileName(positions, indices, params);
+            file = new File(cacheDirectory, fileName);
+            List<VHACDHull> cached = readCache(file, params);
+            if (cached != null) {
+                logger.log(Level.INFO, "Read {0} hulls from {1}.",
+                        new Object[]{cached.size(), file});
+                return cached;
+            }
+        }
+
+        List<VHACDHull> result
+                = VHACD.compute(positions, indices, params, listener);
+        if (file != null && !result.isEmpty()) {
+            writeCache(file, params, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Write hulls to the specified cache file. To avoid exposing a partial
+     * file to concurrent readers, the data are written to a temporary file
+     * which is then renamed.
+     *
+     * @param file the destination file (not null)
+     * @param params the parameters used (not null, unaffected)
+     * @param hulls the hulls to write (not null, unaffected)
+     * @throws IOException if the file couldn't be written
+     */
+    private static void writeCache(File file, VHACDParameters params,
+            List<VHACDHull> hulls) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory);
+        }
+
+        File tempFile = File.createTempFile("vhacd", ".tmp", directory);
+        try (DataOutputStream dos = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            dos.writeInt(cacheVersion);
+            params.toOutputStream(dos);
+            dos.writeInt(hulls.size());
+            for (VHACDHull hull : hulls) {
+                float[] hullPositions = hull.clonePositions();
+                assert hullPositions.length % MyVector3f.numAxes == 0;
+                dos.writeInt(hullPositions.length);
+                for (float position : hullPositions) {
+                    dos.writeFloat(position);
+                }
+            }
+        }
+
+        if (!tempFile.renameTo(file)) {
+            /*
+             * Perhaps another job wrote the same file concurrently.
+             */
+            tempFile.delete();
+            if (!file.isFile()) {
+                throw new IOException("Failed to write " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.objects;
+
+import com.jme3.math.Vector3f;
+import java.nio.FloatBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the PhysicsRope solver without a physics space.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class PhysicsRopeTest {
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Hang a horizontal rope from one end and verify that it comes to rest
+     * hanging straight down without stretching.
+     */
+    @Test
+    public void testHanging() {
+        Vector3f start = new Vector3f(0f, 0f, 0f);
+        Vector3f end = new Vector3f(2f, 0f, 0f);
+        int numSegments = 20;
+        PhysicsRope rope = new PhysicsRope(start, end, numSegments, 1f);
+        rope.setDamping(0.05f);
+        rope.pinNode(0, start);
+
+        Assert.assertEquals(numSegments + 1, rope.countNodes());
+        Assert.assertEquals(2f, rope.restLength(), 1e-5f);
+        Assert.assertTrue(rope.isPinned(0));
+        Assert.assertFalse(rope.isPinned(1));
+
+        float timeStep = 1f / 60f;
+        for (int i = 0; i < 1_200; ++i) {
+            rope.step(timeStep, null);
+        }
+
+        Vector3f pinned = rope.getNodeLocation(0, null);
+        Assert.assertEquals(0f, pinned.length(), 0f);
+
+        Vector3f tip = rope.getNodeLocation(numSegments, null);
+        Assert.assertEquals(0f, tip.x, 0.01f);
+        Assert.assertEquals(-2f, tip.y, 0.02f);
+        Assert.assertEquals(0f, tip.z, 0.01f);
+
+        FloatBuffer velocities = rope.copyVelocities(null);
+        for (int i = 0; i < velocities.capacity(); ++i) {
+            Assert.assertEquals(0f, velocities.get(i), 0.01f);
+        }
+
+        Vector3f previous = pinned;
+        for (int nodeIndex = 1; nodeIndex <= numSegments; ++nodeIndex) {
+            Vector3f location = rope.getNodeLocation(nodeIndex, null);
+            float length = location.distance(previous);
+            Assert.assertEquals(0.1f, length, 0.002f);
+            previous = location;
+        }
+    }
+}
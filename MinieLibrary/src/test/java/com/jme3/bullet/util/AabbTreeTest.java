@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.Vector3f;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the AabbTree class against brute-force queries.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class AabbTreeTest {
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Insert, move, and remove random boxes, comparing box and sphere query
+     * results with brute force after each round.
+     */
+    @Test
+    public void testRandomBoxes() {
+        Random random = new Random(1L);
+        int numBoxes = 500;
+        AabbTree<Integer> tree = new AabbTree<>(0.1f);
+        BoundingBox[] boxes = new BoundingBox[numBoxes];
+        int[] proxies = new int[numBoxes];
+        for (int i = 0; i < numBoxes; ++i) {
+            boxes[i] = randomBox(random);
+            proxies[i] = tree.insert(i, boxes[i]);
+        }
+        Assert.assertEquals(numBoxes, tree.countLeaves());
+
+        for (int round = 0; round < 20; ++round) {
+            for (int i = 0; i < numBoxes; ++i) {
+                if (proxies[i] < 0) {
+                    boxes[i] = randomBox(random);
+                    proxies[i] = tree.insert(i, boxes[i]);
+                } else if (random.nextInt(10) == 0) {
+                    tree.remove(proxies[i]);
+                    proxies[i] = -1;
+                } else {
+                    Vector3f center = boxes[i].getCenter();
+                    center.addLocal(0.2f * random.nextFloat() - 0.1f, 0f,
+                            0.2f * random.nextFloat() - 0.1f);
+                    boxes[i].setCenter(center);
+                    tree.move(proxies[i], boxes[i]);
+                }
+            }
+            // the tree should stay balanced
+            Assert.assertTrue(tree.height() < 4 * 32 - Integer
+                    .numberOfLeadingZeros(tree.countLeaves()));
+
+            for (int query = 0; query < 20; ++query) {
+                BoundingBox region = randomBox(random);
+                Set<Integer> expected = new HashSet<>();
+                for (int i = 0; i < numBoxes; ++i) {
+                    if (proxies[i] >= 0 && boxes[i].intersects(region)) {
+                        expected.add(i);
+                    }
+                }
+                Set<Integer> actual = new HashSet<>();
+                tree.overlapBox(region, actual);
+                Assert.assertEquals(expected, actual);
+
+                Vector3f center = region.getCenter();
+                float radius = 2f * random.nextFloat();
+                expected.clear();
+                for (int i = 0; i < numBoxes; ++i) {
+                    if (proxies[i] >= 0
+                            && distance(boxes[i], center) <= radius) {
+                        expected.add(i);
+                    }
+                }
+                actual.clear();
+                tree.overlapSphere(center, radius, actual);
+                Assert.assertEquals(expected, actual);
+            }
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Calculate the distance from a box to a location.
+     *
+     * @param box the box (not null, unaffected)
+     * @param location the location (not null, unaffected)
+     * @return the distance (&ge;0)
+     */
+    private static float distance(BoundingBox box, Vector3f location) {
+        Vector3f min = box.getMin(null);
+        Vector3f max = box.getMax(null);
+        Vector3f closest = new Vector3f(location);
+        closest.maxLocal(min);
+        closest.minLocal(max);
+        float result = closest.distance(location);
+
+        return result;
+    }
+
+    /**
+     * Generate a random box in a 20x20x20 region.
+     *
+     * @param random the generator to use (not null, modified)
+     * @return a new box
+     */
+    private static BoundingBox randomBox(Random random) {
+        Vector3f center = new Vector3f(20f * random.nextFloat() - 10f,
+                20f * random.nextFloat() - 10f,
+                20f * random.nextFloat() - 10f);
+        BoundingBox result = new BoundingBox(center, random.nextFloat(),
+                random.nextFloat(), random.nextFloat());
+
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the QuickHull class.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class QuickHullTest {
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Test hulls of degenerate inputs.
+     */
+    @Test
+    public void testDegenerate() {
+        float[] single = QuickHull.hullVertices(1f, 2f, 3f, 1f, 2f, 3f);
+        Assert.assertEquals(3, single.length);
+
+        float[] collinear
+                = QuickHull.hullVertices(0f, 0f, 0f, 1f, 1f, 1f, 2f, 2f, 2f);
+        Assert.assertEquals(6, collinear.length);
+
+        float[] square = QuickHull.hullVertices(0f, 0f, 0f, 1f, 0f, 0f,
+                0f, 1f, 0f, 1f, 1f, 0f, 0.5f, 0.5f, 0f);
+        Assert.assertEquals(12, square.length);
+    }
+
+    /**
+     * Test that interior points are excluded and that the hull reaches as far
+     * as the input in every direction.
+     */
+    @Test
+    public void testRandomPoints() {
+        Random random = new Random(1L);
+        int numPoints = 1_000;
+        float[] points = new float[3 * (numPoints + 8)];
+        for (int i = 0; i < 3 * numPoints; ++i) {
+            points[i] = 2f * random.nextFloat() - 1f;
+        }
+        // corners of a cube that encloses the random points
+        int floatIndex = 3 * numPoints;
+        for (int corner = 0; corner < 8; ++corner) {
+            points[floatIndex++] = ((corner & 1) == 0) ? -2f : 2f;
+            points[floatIndex++] = ((corner & 2) == 0) ? -2f : 2f;
+            points[floatIndex++] = ((corner & 4) == 0) ? -2f : 2f;
+        }
+        float[] cube = QuickHull.hullVertices(points);
+        Assert.assertEquals(24, cube.length);
+
+        float[] blob = QuickHull.hullVertices(
+                Arrays.copyOf(points, 3 * numPoints));
+        for (int trial = 0; trial < 100; ++trial) {
+            float dx = random.nextFloat() - 0.5f;
+            float dy = random.nextFloat() - 0.5f;
+            float dz = random.nextFloat() - 0.5f;
+            Assert.assertEquals(support(points, 3 * numPoints, dx, dy, dz),
+                    support(blob, blob.length, dx, dy, dz), 1e-6f);
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    private static float support(float[] points, int numFloats, float dx,
+            float dy, float dz) {
+        float result = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < numFloats; i += 3) {
+            float dot = dx * points[i] + dy * points[i + 1] + dz * points[i + 2];
+            result = Math.max(result, dot);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2022 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.bullet.util;
+
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.scene.shape.Sphere;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the TetrahedralMesh class on closed meshes of known volume.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class TetrahedralMeshTest {
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Tetrahedralize a unit cube and verify its volume, node numbering, and
+     * element quality.
+     */
+    @Test
+    public void testCube() {
+        float[] positions = {
+            0f, 0f, 0f, 1f, 0f, 0f, 1f, 1f, 0f, 0f, 1f, 0f,
+            0f, 0f, 1f, 1f, 0f, 1f, 1f, 1f, 1f, 0f, 1f, 1f
+        };
+        int[] indices = {
+            0, 2, 1, 0, 3, 2, // -Z
+            4, 5, 6, 4, 6, 7, // +Z
+            0, 1, 5, 0, 5, 4, // -Y
+            3, 7, 6, 3, 6, 2, // +Y
+            0, 4, 7, 0, 7, 3, // -X
+            1, 2, 6, 1, 6, 5 //  +X
+        };
+        TetrahedralMesh mesh = new TetrahedralMesh(positions, indices, 0.25f);
+
+        /*
+         * Surface recovery may add nodes where a face diagonal disagrees
+         * with the tetrahedralization, but the input vertices come first.
+         */
+        Assert.assertTrue(mesh.countSurfaceNodes() >= 8);
+        Assert.assertTrue(mesh.countNodes() > mesh.countSurfaceNodes());
+        IntBuffer vertexToNode = mesh.copyVertexToNodeMap();
+        for (int i = 0; i < 8; ++i) {
+            Assert.assertTrue(vertexToNode.get(i) < 8);
+        }
+        Assert.assertEquals(1f, mesh.volume(), 1e-4f);
+        Assert.assertTrue(mesh.minQuality() >= 0.05f);
+        assertValidIndices(mesh);
+        assertConforming(mesh);
+        /*
+         * A coarser target size should yield fewer tetrahedra.
+         */
+        TetrahedralMesh coarse = new TetrahedralMesh(positions, indices, 0.5f);
+        Assert.assertEquals(1f, coarse.volume(), 1e-4f);
+        Assert.assertTrue(coarse.countTetras() < mesh.countTetras());
+    }
+
+    /**
+     * Tetrahedralize a non-convex L-shaped prism, whose coarse faces aren't
+     * Delaunay, and verify that the surface is recovered without voids.
+     */
+    @Test
+    public void testNonConvex() {
+        float[] positions = {
+            0f, 0f, 0f, 2f, 0f, 0f, 2f, 1f, 0f,
+            1f, 1f, 0f, 1f, 2f, 0f, 0f, 2f, 0f,
+            0f, 0f, 1f, 2f, 0f, 1f, 2f, 1f, 1f,
+            1f, 1f, 1f, 1f, 2f, 1f, 0f, 2f, 1f
+        };
+        int[] indices = {
+            0, 2, 1, 0, 3, 2, 0, 4, 3, 0, 5, 4, // -Z cap
+            6, 7, 8, 6, 8, 9, 6, 9, 10, 6, 10, 11, // +Z cap
+            0, 1, 7, 0, 7, 6, 1, 2, 8, 1, 8, 7, // sides
+            2, 3, 9, 2, 9, 8, 3, 4, 10, 3, 10, 9,
+            4, 5, 11, 4, 11, 10, 5, 0, 6, 5, 6, 11
+        };
+        float expected = polyhedronVolume(positions, indices);
+        Assert.assertEquals(3f, expected, 1e-6f);
+
+        for (float targetSize : new float[]{0.25f, 0.5f, 1f}) {
+            TetrahedralMesh mesh
+                    = new TetrahedralMesh(positions, indices, targetSize);
+            Assert.assertEquals(expected, mesh.volume(), 1e-3f);
+            Assert.assertTrue(mesh.minQuality() >= 0.05f);
+            assertValidIndices(mesh);
+            assertConforming(mesh);
+        }
+    }
+
+    /**
+     * Tetrahedralize a finely tessellated sphere at coarse and fine target
+     * sizes. Surface recovery once diverged on this input.
+     */
+    @Test(timeout = 60000L)
+    public void testLargeSphere() {
+        assertSphere(24, 32, 0.6f);
+        assertSphere(24, 32, 0.15f);
+    }
+
+    /**
+     * Tetrahedralize a sphere mesh and compare its volume with that of the
+     * inscribed polyhedron.
+     */
+    @Test
+    public void testSphere() {
+        TetrahedralMesh mesh = assertSphere(12, 16, 0.3f);
+
+        FloatBuffer locations = mesh.copyLocations();
+        Assert.assertTrue(locations.isDirect());
+        Assert.assertEquals(3 * mesh.countNodes(), locations.limit());
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Verify that every surface triangle is a face of some tetrahedron.
+     *
+     * @param mesh the mesh to verify (not null, unaffected)
+     */
+    private static void assertConforming(TetrahedralMesh mesh) {
+        IndexBuffer tetras = mesh.copyTetras();
+        Collection<List<Integer>> tetraFaces = new HashSet<>();
+        for (int start = 0; start < tetras.size(); start += 4) {
+            for (int skip = 0; skip < 4; ++skip) {
+                Integer[] face = new Integer[3];
+                int j = 0;
+                for (int i = 0; i < 4; ++i) {
+                    if (i != skip) {
+                        face[j] = tetras.get(start + i);
+                        ++j;
+                    }
+                }
+                Arrays.sort(face);
+                tetraFaces.add(Arrays.asList(face));
+            }
+        }
+
+        IndexBuffer faces = mesh.copyFaces();
+        for (int start = 0; start < faces.size(); start += 3) {
+            Integer[] face = {
+                faces.get(start), faces.get(start + 1), faces.get(start + 2)
+            };
+            Arrays.sort(face);
+            Assert.assertTrue(tetraFaces.contains(Arrays.asList(face)));
+        }
+    }
+
+    /**
+     * Tetrahedralize a sphere mesh and verify its volume, conformity, and
+     * element quality.
+     *
+     * @param zSamples the number of rings in the sphere (&ge;3)
+     * @param radialSamples the number of segments per ring (&ge;3)
+     * @param targetSize the target element size (&gt;0)
+     * @return the new tetrahedral mesh (not null)
+     */
+    private static TetrahedralMesh assertSphere(int zSamples,
+            int radialSamples, float targetSize) {
+        Sphere sphere = new Sphere(zSamples, radialSamples, 1f);
+        FloatBuffer positionBuffer
+                = sphere.getFloatBuffer(VertexBuffer.Type.Position);
+        float[] positions = new float[positionBuffer.limit()];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = positionBuffer.get(i);
+        }
+        IndexBuffer indexBuffer = sphere.getIndexBuffer();
+        int[] indices = new int[indexBuffer.size()];
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = indexBuffer.get(i);
+        }
+        TetrahedralMesh mesh
+                = new TetrahedralMesh(positions, indices, targetSize);
+        /*
+         * The tetrahedra should fill the polyhedron exactly,
+         * without slivers.
+         */
+        float expected = polyhedronVolume(positions, indices);
+        Assert.assertEquals(expected, mesh.volume(), 1e-3f * expected);
+        Assert.assertTrue(mesh.minQuality() >= 0.05f);
+        assertValidIndices(mesh);
+        assertConforming(mesh);
+        /*
+         * The faces should use only surface nodes.
+         */
+        IndexBuffer faces = mesh.copyFaces();
+        int numSurfaceNodes = mesh.countSurfaceNodes();
+        for (int i = 0; i < faces.size(); ++i) {
+            Assert.assertTrue(faces.get(i) < numSurfaceNodes);
+        }
+
+        return mesh;
+    }
+
+    /**
+     * Verify that every tetrahedron references valid, distinct nodes.
+     *
+     * @param mesh the mesh to verify (not null, unaffected)
+     */
+    private static void assertValidIndices(TetrahedralMesh mesh) {
+        IndexBuffer tetras = mesh.copyTetras();
+        int numNodes = mesh.countNodes();
+        Assert.assertEquals(4 * mesh.countTetras(), tetras.size());
+        for (int start = 0; start < tetras.size(); start += 4) {
+            for (int i = 0; i < 4; ++i) {
+                int ni = tetras.get(start + i);
+                Assert.assertTrue(ni >= 0 && ni < numNodes);
+                for (int j = i + 1; j < 4; ++j) {
+                    Assert.assertNotEquals(ni, tetras.get(start + j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate the volume enclosed by a closed triangle mesh.
+     *
+     * @param positions the vertex positions (not null, unaffected)
+     * @param indices the triangle indices (not null, unaffected)
+     * @return the enclosed volume (&ge;0)
+     */
+    private static float polyhedronVolume(float[] positions, int[] indices) {
+        double sum = 0.0;
+        for (int start = 0; start < indices.length; start += 3) {
+            int a = 3 * indices[start];
+            int b = 3 * indices[start + 1];
+            int c = 3 * indices[start + 2];
+            sum += positions[a] * (positions[b + 1] * positions[c + 2]
+                    - positions[b + 2] * positions[c + 1])
+                    + positions[a + 1] * (positions[b + 2] * positions[c]
+                    - positions[b] * positions[c + 2])
+                    + positions[a + 2] * (positions[b] * positions[c + 1]
+                    - positions[b + 1] * positions[c]);
+        }
+        float result = (float) Math.abs(sum / 6.0);
+
+        return result;
+    }
+}
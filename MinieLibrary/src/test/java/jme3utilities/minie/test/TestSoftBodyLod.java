@@ -0,0 +1,122 @@
+/*
+ Copyright (c) 2022, Stephen Gold
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright
+ notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright
+ notice, this list of conditions and the following disclaimer in the
+ documentation and/or other materials provided with the distribution.
+ * Neither the name of the copyright holder nor the names of its contributors
+ may be used to endorse or promote products derived from this software without
+ specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3utilities.minie.test;
+
+import com.jme3.bullet.objects.PhysicsSoftBody;
+import com.jme3.bullet.util.SoftBodyLod;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.system.NativeLibraryLoader;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import jme3utilities.math.MyBuffer;
+import jme3utilities.mesh.ClothGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test level-of-detail switching of soft bodies.
+ *
+ * @author Stephen Gold sgold@sonic.net
+ */
+public class TestSoftBodyLod {
+    // *************************************************************************
+    // new methods exposed
+
+    /**
+     * Verify that the rest state survives repeated switches of a deformed
+     * body, and that the rebuilt body follows the old body's rotation.
+     */
+    @Test
+    public void testSoftBodyLod() {
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+
+        ClothGrid grid = new ClothGrid(9, 9, 0.25f);
+        SoftBodyLod lod = new SoftBodyLod(grid, 4f, 10f, 1f);
+        Assert.assertTrue(lod.countCoarseNodes() < lod.countFineNodes());
+        PhysicsSoftBody body = lod.getBody();
+        FloatBuffer restLocations = body.copyLocations(null);
+        float[] restLengths = linkLengths(body);
+        /*
+         * Rotate the fine body and switch levels twice.
+         */
+        Quaternion rotation = new Quaternion();
+        rotation.fromAngles(FastMath.HALF_PI, 0f, 0.3f);
+        body.applyRotation(rotation);
+        Assert.assertTrue(lod.switchTo(null, true));
+        Assert.assertTrue(lod.switchTo(null, false));
+
+        FloatBuffer locations = lod.getBody().copyLocations(null);
+        Vector3f rest = new Vector3f();
+        Vector3f location = new Vector3f();
+        for (int ni = 0; ni < lod.countFineNodes(); ++ni) {
+            MyBuffer.get(restLocations, 3 * ni, rest);
+            MyBuffer.get(locations, 3 * ni, location);
+            rotation.mult(rest, rest);
+            Assert.assertEquals(0f, rest.distance(location), 1e-4f);
+        }
+        /*
+         * Deform the body at each level before switching. Scaling resets
+         * the deformed body's own rest lengths, but not the source mesh's.
+         */
+        for (int cycle = 0; cycle < 3; ++cycle) {
+            lod.getBody().applyScale(new Vector3f(1.5f, 1f, 0.5f));
+            Assert.assertTrue(lod.switchTo(null, true));
+            lod.getBody().applyScale(new Vector3f(0.8f, 1.2f, 1.25f));
+            Assert.assertTrue(lod.switchTo(null, false));
+
+            float[] lengths = linkLengths(lod.getBody());
+            Assert.assertArrayEquals(restLengths, lengths, 1e-4f);
+        }
+    }
+    // *************************************************************************
+    // private methods
+
+    /**
+     * Measure the current length of each link in the specified body. Just
+     * after the body is built, these are its rest lengths.
+     *
+     * @param body the body to measure (not null, unaffected)
+     * @return a new array of lengths, one per link
+     */
+    private static float[] linkLengths(PhysicsSoftBody body) {
+        FloatBuffer locations = body.copyLocations(null);
+        IntBuffer links = body.copyLinks(null);
+        int numLinks = body.countLinks();
+        float[] result = new float[numLinks];
+        Vector3f a = new Vector3f();
+        Vector3f b = new Vector3f();
+        for (int li = 0; li < numLinks; ++li) {
+            MyBuffer.get(locations, 3 * links.get(2 * li), a);
+            MyBuffer.get(locations, 3 * links.get(2 * li + 1), b);
+            result[li] = a.distance(b);
+        }
+
+        return result;
+    }
+}